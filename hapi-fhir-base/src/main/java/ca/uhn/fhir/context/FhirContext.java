@@ -57,8 +57,6 @@ import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -66,7 +64,6 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -74,7 +71,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Properties;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
@@ -122,15 +118,13 @@ public class FhirContext {
 	private HapiLocalizer myLocalizer = new HapiLocalizer();
 	private volatile Map<String, BaseRuntimeElementDefinition<?>> myNameToElementDefinition = Collections.emptyMap();
 	private volatile Map<String, RuntimeResourceDefinition> myNameToResourceDefinition = Collections.emptyMap();
-	private volatile Map<String, Class<? extends IBaseResource>> myNameToResourceType;
+	private final ModelIndex myModelIndex;
 	private volatile INarrativeGenerator myNarrativeGenerator;
 	private volatile IParserErrorHandler myParserErrorHandler = new LenientErrorHandler();
 	private ParserOptions myParserOptions = new ParserOptions();
 	private volatile IRestfulClientFactory myRestfulClientFactory;
 	private volatile RuntimeChildUndeclaredExtensionDefinition myRuntimeChildUndeclaredExtensionDefinition;
 	private IValidationSupport myValidationSupport;
-	private Map<FhirVersionEnum, Map<String, Class<? extends IBaseResource>>> myVersionToNameToResourceType =
-			Collections.emptyMap();
 	private volatile Set<String> myResourceNames;
 	private volatile Boolean myFormatXmlSupported;
 	private volatile Boolean myFormatJsonSupported;
@@ -230,6 +224,7 @@ public class FhirContext {
 		}
 
 		myResourceTypesToScan = theResourceTypes;
+		myModelIndex = ModelIndex.forVersion(myVersion.getVersion());
 
 		/*
 		 * Check if we're running in Android mode and configure the context appropriately if so
@@ -512,20 +507,8 @@ public class FhirContext {
 			return getResourceDefinition(theResourceName);
 		}
 
-		Map<String, Class<? extends IBaseResource>> nameToType = myVersionToNameToResourceType.get(theVersion);
-		if (nameToType == null) {
-			nameToType = new HashMap<>();
-			Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> existing = new HashMap<>();
-			ModelScanner.scanVersionPropertyFile(null, nameToType, theVersion, existing);
-
-			Map<FhirVersionEnum, Map<String, Class<? extends IBaseResource>>> newVersionToNameToResourceType =
-					new HashMap<>();
-			newVersionToNameToResourceType.putAll(myVersionToNameToResourceType);
-			newVersionToNameToResourceType.put(theVersion, nameToType);
-			myVersionToNameToResourceType = newVersionToNameToResourceType;
-		}
-
-		Class<? extends IBaseResource> resourceType = nameToType.get(theResourceName.toLowerCase());
+		Class<? extends IBaseResource> resourceType =
+				ModelIndex.forVersion(theVersion).getResourceType(theResourceName.toLowerCase());
 		if (resourceType == null) {
 			throw new DataFormatException(Msg.code(1683) + createUnknownResourceNameError(theResourceName, theVersion));
 		}
@@ -588,7 +571,7 @@ public class FhirContext {
 		RuntimeResourceDefinition retVal = myNameToResourceDefinition.get(resourceName);
 
 		if (retVal == null) {
-			Class<? extends IBaseResource> clazz = myNameToResourceType.get(resourceName.toLowerCase());
+			Class<? extends IBaseResource> clazz = myModelIndex.getResourceType(resourceName);
 			if (clazz == null) {
 				// ***********************************************************************
 				// Multiple spots in HAPI FHIR and Smile CDR depend on DataFormatException
@@ -639,20 +622,7 @@ public class FhirContext {
 
 	@Nonnull
 	private Set<String> buildResourceNames() {
-		Set<String> retVal = new HashSet<>();
-		Properties props = new Properties();
-		try (InputStream propFile = myVersion.getFhirVersionPropertiesFile()) {
-			props.load(propFile);
-		} catch (IOException e) {
-			throw new ConfigurationException(Msg.code(1685) + "Failed to load version properties file", e);
-		}
-		Enumeration<?> propNames = props.propertyNames();
-		while (propNames.hasMoreElements()) {
-			String next = (String) propNames.nextElement();
-			if (next.startsWith("resource.")) {
-				retVal.add(next.substring("resource.".length()).trim());
-			}
-		}
+		Set<String> retVal = new HashSet<>(myModelIndex.getResourceNames());
 		retVal.addAll(myCustomResourceNames);
 		return retVal;
 	}
@@ -1107,8 +1077,6 @@ public class FhirContext {
 		myIdToResourceDefinition = idToElementDefinition;
 		myNameToResourceDefinition = nameToResourceDefinition;
 
-		myNameToResourceType = scanner.getNameToResourceType();
-
 		myInitialized = true;
 		return classToElementDefinition;
 	}
@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.context;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.model.api.IElement;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseDatatype;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Index of the model types declared in the version properties file of a given FHIR version
+ * (see {@link ca.uhn.fhir.model.api.IFhirVersion#getFhirVersionPropertiesFile()}).
+ * <p>
+ * The properties file is generated at build time along with the structures, so it already
+ * contains the name and implementing class of every standard resource type. This class
+ * reads it only once per JVM and per version, and resolves resource classes only when they
+ * are first requested, so that a {@link FhirContext} doesn't need to load (and initialize)
+ * every resource class in the structures jar before it can scan the first one.
+ * </p>
+ * <p>
+ * Only the class names are indexed. The runtime definitions themselves are still built by
+ * {@link ModelScanner} the first time each type is used, since they hold reflective field
+ * handles and binders which can't be precomputed at build time.
+ * </p>
+ */
+final class ModelIndex {
+
+	private static final Map<FhirVersionEnum, ModelIndex> ourIndexes =
+			Collections.synchronizedMap(new EnumMap<>(FhirVersionEnum.class));
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ModelIndex.class);
+	private final Map<String, String> myDatatypeNameToClassName;
+	private final Map<String, String> myResourceNameToClassName;
+	private final Map<String, Class<? extends IBaseResource>> myResourceNameToType = new ConcurrentHashMap<>();
+	private final Set<String> myResourceNames;
+	private volatile List<Class<? extends IBase>> myDatatypes;
+
+	private ModelIndex(Properties theProperties) {
+		Map<String, String> datatypeNameToClassName = new HashMap<>();
+		Map<String, String> resourceNameToClassName = new HashMap<>();
+		Set<String> resourceNames = new HashSet<>();
+		for (String nextKey : theProperties.stringPropertyNames()) {
+			String nextValue = theProperties.getProperty(nextKey);
+			if (nextKey.startsWith("datatype.")) {
+				datatypeNameToClassName.put(nextKey.substring("datatype.".length()), nextValue);
+			} else if (nextKey.startsWith("resource.")) {
+				String resourceName = nextKey.substring("resource.".length());
+				resourceNameToClassName.put(resourceName.toLowerCase(), nextValue);
+				resourceNames.add(resourceName.trim());
+			} else {
+				throw new ConfigurationException(
+						Msg.code(1728) + "Unexpected property in version property file: " + nextKey + "=" + nextValue);
+			}
+		}
+		myDatatypeNameToClassName = datatypeNameToClassName;
+		myResourceNameToClassName = resourceNameToClassName;
+		myResourceNames = Collections.unmodifiableSet(resourceNames);
+	}
+
+	/**
+	 * Returns the names of all resource types declared by this version, in the case used by
+	 * the specification (e.g. <code>Patient</code>)
+	 */
+	Set<String> getResourceNames() {
+		return myResourceNames;
+	}
+
+	/**
+	 * Returns the name of the class implementing the given resource type, without loading it
+	 *
+	 * @param theResourceNameLowerCase The resource name, in lower case
+	 * @return The class name, or <code>null</code> if the resource type is not declared by this version
+	 */
+	@Nullable
+	String getResourceClassName(String theResourceNameLowerCase) {
+		return myResourceNameToClassName.get(theResourceNameLowerCase);
+	}
+
+	/**
+	 * Returns the class implementing the given resource type, loading it if this is the first
+	 * time it has been requested
+	 *
+	 * @param theResourceNameLowerCase The resource name, in lower case
+	 * @return The class, or <code>null</code> if the resource type is not declared by this version
+	 */
+	@Nullable
+	Class<? extends IBaseResource> getResourceType(String theResourceNameLowerCase) {
+		Class<? extends IBaseResource> retVal = myResourceNameToType.get(theResourceNameLowerCase);
+		if (retVal == null) {
+			String className = myResourceNameToClassName.get(theResourceNameLowerCase);
+			if (className == null) {
+				return null;
+			}
+
+			Class<?> clazz;
+			try {
+				clazz = Class.forName(className);
+			} catch (ClassNotFoundException e) {
+				throw new ConfigurationException(
+						Msg.code(1727) + "Unknown class[" + className + "] for resource definition: "
+								+ theResourceNameLowerCase,
+						e);
+			}
+			if (!IBaseResource.class.isAssignableFrom(clazz)) {
+				throw new ConfigurationException(Msg.code(1726) + "Class is not assignable from "
+						+ IBaseResource.class.getSimpleName() + ": " + className);
+			}
+
+			@SuppressWarnings("unchecked")
+			Class<? extends IBaseResource> resourceType = (Class<? extends IBaseResource>) clazz;
+			retVal = resourceType;
+			myResourceNameToType.put(theResourceNameLowerCase, retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the datatype classes declared by this version. Unlike resources, these are all
+	 * loaded the first time this method is called since every context scans them on startup.
+	 */
+	List<Class<? extends IBase>> getDatatypes() {
+		List<Class<? extends IBase>> retVal = myDatatypes;
+		if (retVal == null) {
+			retVal = new ArrayList<>();
+			for (Map.Entry<String, String> nextEntry : myDatatypeNameToClassName.entrySet()) {
+				String nextValue = nextEntry.getValue();
+				Class<?> dtType;
+				try {
+					dtType = Class.forName(nextValue);
+				} catch (ClassNotFoundException e) {
+					throw new ConfigurationException(
+							Msg.code(1725) + "Unknown class[" + nextValue + "] for data type definition: "
+									+ nextEntry.getKey(),
+							e);
+				}
+
+				if (IElement.class.isAssignableFrom(dtType) || IBaseDatatype.class.isAssignableFrom(dtType)) {
+					@SuppressWarnings("unchecked")
+					Class<? extends IBase> nextClass = (Class<? extends IBase>) dtType;
+					retVal.add(nextClass);
+				} else {
+					ourLog.warn("Class is not assignable from " + IElement.class.getSimpleName() + " or "
+							+ IBaseDatatype.class.getSimpleName() + ": " + nextValue);
+				}
+			}
+			retVal = Collections.unmodifiableList(retVal);
+			myDatatypes = retVal;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the index for the given version, reading the version properties file if this
+	 * is the first time the index has been requested in this JVM
+	 */
+	static ModelIndex forVersion(FhirVersionEnum theVersion) {
+		return ourIndexes.computeIfAbsent(theVersion, ModelIndex::load);
+	}
+
+	private static ModelIndex load(FhirVersionEnum theVersion) {
+		Properties prop = new Properties();
+		try (InputStream str = theVersion.getVersionImplementation().getFhirVersionPropertiesFile()) {
+			prop.load(str);
+		} catch (IOException e) {
+			throw new ConfigurationException(Msg.code(1729) + "Failed to load model property file from classpath: "
+					+ "/ca/uhn/fhir/model/dstu/model.properties");
+		}
+		return new ModelIndex(prop);
+	}
+}
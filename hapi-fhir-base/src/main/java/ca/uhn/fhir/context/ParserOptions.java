@@ -42,6 +42,7 @@ public class ParserOptions {
 	private Set<String> myDontStripVersionsFromReferencesAtPaths = Collections.emptySet();
 	private boolean myOverrideResourceIdWithBundleEntryFullUrl = true;
 	private boolean myAutoContainReferenceTargetsWithNoId = true;
+	private boolean myStreamingJsonParsing = false;
 
 	/**
 	 * If set to {@literal true} (which is the default), contained resources may be specified by
@@ -205,4 +206,31 @@ public class ParserOptions {
 		myOverrideResourceIdWithBundleEntryFullUrl = theOverrideResourceIdWithBundleEntryFullUrl;
 		return this;
 	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will build the
+	 * parsed resource directly from the stream of JSON tokens being read, instead of first loading
+	 * the entire document into an intermediate JSON tree. This substantially reduces the peak memory
+	 * needed to parse very large resources, such as transaction and bulk import Bundles.
+	 *
+	 * @since 7.0.0
+	 */
+	public boolean isStreamingJsonParsing() {
+		return myStreamingJsonParsing;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will build the
+	 * parsed resource directly from the stream of JSON tokens being read, instead of first loading
+	 * the entire document into an intermediate JSON tree. This substantially reduces the peak memory
+	 * needed to parse very large resources, such as transaction and bulk import Bundles.
+	 *
+	 * @param theStreamingJsonParsing Should the streaming JSON parse mode be used
+	 * @return Returns a reference to <code>this</code> parser so that method calls can be chained together
+	 * @since 7.0.0
+	 */
+	public ParserOptions setStreamingJsonParsing(boolean theStreamingJsonParsing) {
+		myStreamingJsonParsing = theStreamingJsonParsing;
+		return this;
+	}
 }
@@ -675,6 +675,15 @@ public abstract class BaseParser implements IParser {
 		// Actually do the parse
 		T retVal = doParseResource(theResourceType, theReader);
 
+		return postProcessParsedResource(retVal);
+	}
+
+	/**
+	 * Performs any processing which is needed after a resource has been parsed, such as
+	 * applying {@link #isOverrideResourceIdWithBundleEntryFullUrl()} to the entries of a Bundle
+	 */
+	protected <T extends IBaseResource> T postProcessParsedResource(T theResource) {
+		T retVal = theResource;
 		RuntimeResourceDefinition def = myContext.getResourceDefinition(retVal);
 		if ("Bundle".equals(def.getName())) {
 
@@ -53,6 +53,7 @@ import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ValueType;
 import ca.uhn.fhir.parser.json.BaseJsonLikeWriter;
 import ca.uhn.fhir.parser.json.JsonLikeStructure;
 import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
+import ca.uhn.fhir.parser.json.jackson.JacksonTokenReader;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.ElementUtil;
 import org.apache.commons.lang3.StringUtils;
@@ -237,6 +238,10 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		if (getContext().getParserOptions().isStreamingJsonParsing()) {
+			return new JsonTokenStreamParser(this, new JacksonTokenReader(theReader)).parseResource(theResourceType);
+		}
+
 		JsonLikeStructure jsonStructure = new JacksonStructure();
 		jsonStructure.load(theReader);
 
@@ -245,6 +250,25 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		return retVal;
 	}
 
+	/**
+	 * Parses a resource directly from a stream of tokens, without building a tree of the
+	 * whole document first. The tokens may come from any format supported by Jackson which
+	 * has the same structure as FHIR JSON, such as the binary Smile format, so this can be
+	 * used to read such content without converting it to JSON text first.
+	 *
+	 * @param theResourceType The resource type to use, or <code>null</code> to determine it from the content
+	 * @param theTokenReader  The tokens to parse
+	 * @since 7.0.0
+	 */
+	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, JacksonTokenReader theTokenReader)
+			throws DataFormatException {
+		if (theResourceType != null) {
+			getContext().getResourceDefinition(theResourceType);
+		}
+		T retVal = new JsonTokenStreamParser(this, theTokenReader).parseResource(theResourceType);
+		return postProcessParsedResource(retVal);
+	}
+
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, JsonLikeStructure theJsonStructure) {
 		BaseJsonLikeObject object = theJsonStructure.getRootObject();
 
@@ -1238,7 +1262,10 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 	}
 
 	private BaseJsonLikeArray grabJsonArray(BaseJsonLikeObject theObject, String nextName, String thePosition) {
-		BaseJsonLikeValue object = theObject.get(nextName);
+		return grabJsonArray(theObject.get(nextName), thePosition);
+	}
+
+	BaseJsonLikeArray grabJsonArray(BaseJsonLikeValue object, String thePosition) {
 		if (object == null || object.isNull()) {
 			return null;
 		}
@@ -1250,7 +1277,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		return object.getAsArray();
 	}
 
-	private void parseAlternates(
+	void parseAlternates(
 			BaseJsonLikeValue theAlternateVal,
 			ParserState<?> theState,
 			String theElementName,
@@ -1312,7 +1339,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		}
 	}
 
-	private void parseChildren(BaseJsonLikeObject theObject, ParserState<?> theState) {
+	void parseChildren(BaseJsonLikeObject theObject, ParserState<?> theState) {
 		int allUnderscoreNames = 0;
 		int handledUnderscoreNames = 0;
 
@@ -1387,7 +1414,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		}
 	}
 
-	private void parseChildren(
+	void parseChildren(
 			ParserState<?> theState,
 			String theName,
 			BaseJsonLikeValue theJsonVal,
@@ -1464,7 +1491,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		}
 	}
 
-	private void parseExtension(ParserState<?> theState, BaseJsonLikeArray theValues, boolean theIsModifier) {
+	void parseExtension(ParserState<?> theState, BaseJsonLikeArray theValues, boolean theIsModifier) {
 		int allUnderscoreNames = 0;
 		int handledUnderscoreNames = 0;
 
@@ -1547,7 +1574,7 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		}
 	}
 
-	private void parseFhirComments(BaseJsonLikeValue theObject, ParserState<?> theState) {
+	void parseFhirComments(BaseJsonLikeValue theObject, ParserState<?> theState) {
 		if (isSupportsFhirComment()) {
 			if (theObject.isArray()) {
 				BaseJsonLikeArray comments = theObject.getAsArray();
@@ -0,0 +1,263 @@
+/*-
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.ParserOptions;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.json.BaseJsonLikeArray;
+import ca.uhn.fhir.parser.json.BaseJsonLikeObject;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ScalarType;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ValueType;
+import ca.uhn.fhir.parser.json.jackson.JacksonTokenReader;
+import com.fasterxml.jackson.core.JsonToken;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Drives a {@link ParserState} directly from a stream of JSON tokens instead of first
+ * loading the whole document into a tree. This keeps the peak memory required to parse
+ * a large resource (e.g. a Bundle with many entries) close to the size of the resulting
+ * model objects.
+ * <p>
+ * JSON objects (and arrays of objects) are streamed. Everything else within a given object
+ * (primitive values, <code>_element</code> alternates, extensions and comments) is small, so
+ * it is buffered until the end of the enclosing object and then handed to the tree-based
+ * logic in {@link JsonParser}. This means that a primitive and its alternate are combined
+ * regardless of the order in which they appear. A resource whose first property is not
+ * <code>resourceType</code> is buffered in full, since its type must be known before any of
+ * its children can be processed.
+ * </p>
+ *
+ * @see ParserOptions#setStreamingJsonParsing(boolean)
+ */
+class JsonTokenStreamParser {
+
+	private final JsonParser myParser;
+	private final JacksonTokenReader myReader;
+
+	/**
+	 * Constructor
+	 */
+	JsonTokenStreamParser(JsonParser theParser, JacksonTokenReader theReader) {
+		myParser = theParser;
+		myReader = theReader;
+	}
+
+	<T extends IBaseResource> T parseResource(Class<T> theResourceType) {
+		if (myReader.nextToken() != JsonToken.START_OBJECT) {
+			throw new DataFormatException(
+					Msg.code(2439) + "Content must be a valid JSON Object. It must start with '{'.");
+		}
+
+		ParserState<? extends IBaseResource> state = ParserState.getPreResourceInstance(
+				myParser, theResourceType, myParser.getContext(), true, myParser.getErrorHandler());
+		parseResourceObject(state, true);
+		state.endingElement();
+
+		myReader.assertNoTrailingContent();
+
+		@SuppressWarnings("unchecked")
+		T retVal = (T) state.getObject();
+		return retVal;
+	}
+
+	/**
+	 * Parses a resource. The current token must be the {@link JsonToken#START_OBJECT} of the resource.
+	 */
+	private void parseResourceObject(ParserState<?> theState, boolean theTopLevel) {
+		JsonToken token = myReader.nextToken();
+		if (token == JsonToken.FIELD_NAME && "resourceType".equals(myReader.getCurrentName())) {
+			token = myReader.nextToken();
+			if (token == JsonToken.VALUE_STRING && !isBlank(myReader.getText())) {
+				theState.enteringNewElement(null, myReader.getText());
+				parseObjectFields(theState, myReader.nextToken());
+				theState.endingElement();
+				return;
+			}
+		}
+
+		// The resource type isn't the first property, so we need to buffer this resource
+		BaseJsonLikeObject object = myReader.readRemainderOfObject();
+		BaseJsonLikeValue resourceTypeObj = object.get("resourceType");
+		if (theTopLevel) {
+			if (resourceTypeObj == null || !resourceTypeObj.isString() || isBlank(resourceTypeObj.getAsString())) {
+				throw new DataFormatException(
+						Msg.code(2440) + "Invalid JSON content detected, missing required element: 'resourceType'");
+			}
+		} else if (resourceTypeObj == null || !resourceTypeObj.isString()) {
+			throw new DataFormatException(Msg.code(2441)
+					+ "Missing required element 'resourceType' from JSON resource object, unable to parse");
+		}
+
+		theState.enteringNewElement(null, resourceTypeObj.getAsString());
+		myParser.parseChildren(object, theState);
+		theState.endingElement();
+	}
+
+	/**
+	 * Parses the properties of an object whose {@link JsonToken#START_OBJECT} has already been
+	 * consumed. Leaves the reader positioned on the {@link JsonToken#END_OBJECT}.
+	 *
+	 * @param theToken The current token
+	 */
+	private void parseObjectFields(ParserState<?> theState, JsonToken theToken) {
+		JsonToken token = theToken;
+		Set<String> names = new HashSet<>();
+		Map<String, BaseJsonLikeValue> primitives = new LinkedHashMap<>();
+		Map<String, BaseJsonLikeValue> alternates = new LinkedHashMap<>();
+
+		while (token == JsonToken.FIELD_NAME) {
+			String name = myReader.getCurrentName();
+			token = myReader.nextToken();
+
+			if ("resourceType".equals(name) && theState.isToplevelResourceElement()) {
+				myReader.skipValue();
+			} else if ("extension".equals(name) || "modifierExtension".equals(name)) {
+				BaseJsonLikeArray array = myParser.grabJsonArray(myReader.readValue(), name);
+				myParser.parseExtension(theState, array, "modifierExtension".equals(name));
+			} else if ("fhir_comments".equals(name)) {
+				myParser.parseFhirComments(myReader.readValue(), theState);
+			} else if (name.charAt(0) == '_') {
+				alternates.put(name, myReader.readValue());
+			} else {
+				names.add(name);
+				String alternateName = '_' + name;
+				if (token == JsonToken.START_OBJECT) {
+					parseStreamedObject(theState, name, alternates.get(alternateName), alternateName, false);
+				} else if (token == JsonToken.START_ARRAY) {
+					token = myReader.nextToken();
+					if (token == JsonToken.START_OBJECT) {
+						parseStreamedArray(theState, name, alternates.get(alternateName), alternateName, token);
+					} else {
+						primitives.put(name, myReader.readRemainderOfArray());
+					}
+				} else {
+					primitives.put(name, myReader.readValue());
+				}
+			}
+
+			token = myReader.nextToken();
+		}
+
+		for (Map.Entry<String, BaseJsonLikeValue> next : primitives.entrySet()) {
+			String alternateName = '_' + next.getKey();
+			myParser.parseChildren(
+					theState, next.getKey(), next.getValue(), alternates.get(alternateName), alternateName, false);
+		}
+
+		/*
+		 * This happens if an element has an extension but no actual value. I.e.
+		 * if a resource has a "_status" element but no corresponding "status"
+		 * element. See JsonParser#parseChildren(BaseJsonLikeObject, ParserState)
+		 */
+		boolean haveUnhandledAlternate = alternates.keySet().stream().anyMatch(t -> !names.contains(t.substring(1)));
+		if (haveUnhandledAlternate) {
+			for (Map.Entry<String, BaseJsonLikeValue> next : alternates.entrySet()) {
+				String alternateName = next.getKey();
+				BaseJsonLikeValue nextValue = next.getValue();
+				if (alternateName.length() > 1) {
+					if (nextValue.isObject()) {
+						String nextName = alternateName.substring(1);
+						if (!names.contains(nextName)) {
+							theState.enteringNewElement(null, nextName);
+							myParser.parseAlternates(nextValue, theState, alternateName, alternateName);
+							theState.endingElement();
+						}
+					} else {
+						myParser.getErrorHandler()
+								.incorrectJsonType(
+										null, alternateName, ValueType.OBJECT, null, nextValue.getJsonType(), null);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses an array whose first element is an object. The current token must be the first element.
+	 */
+	private void parseStreamedArray(
+			ParserState<?> theState,
+			String theName,
+			BaseJsonLikeValue theAlternateVal,
+			String theAlternateName,
+			JsonToken theToken) {
+		if (theName.equals("id")) {
+			myParser.getErrorHandler()
+					.incorrectJsonType(null, "id", ValueType.SCALAR, ScalarType.STRING, ValueType.ARRAY, null);
+		}
+
+		BaseJsonLikeValue alternateVal = theAlternateVal;
+		if (alternateVal != null && !alternateVal.isArray()) {
+			myParser.getErrorHandler()
+					.incorrectJsonType(null, theAlternateName, ValueType.ARRAY, null, alternateVal.getJsonType(), null);
+			alternateVal = null;
+		}
+		BaseJsonLikeArray alternateArray = BaseJsonLikeValue.asArray(alternateVal);
+
+		JsonToken token = theToken;
+		for (int i = 0; token != JsonToken.END_ARRAY; i++) {
+			BaseJsonLikeValue nextAlternate = null;
+			if (alternateArray != null && alternateArray.size() >= (i + 1)) {
+				nextAlternate = alternateArray.get(i);
+			}
+			if (token == JsonToken.START_OBJECT) {
+				parseStreamedObject(theState, theName, nextAlternate, theAlternateName, true);
+			} else {
+				myParser.parseChildren(theState, theName, myReader.readValue(), nextAlternate, theAlternateName, true);
+			}
+			token = myReader.nextToken();
+		}
+	}
+
+	/**
+	 * Parses an element whose value is an object. The current token must be the {@link JsonToken#START_OBJECT}.
+	 */
+	private void parseStreamedObject(
+			ParserState<?> theState,
+			String theName,
+			BaseJsonLikeValue theAlternateVal,
+			String theAlternateName,
+			boolean theInArray) {
+		if (theName.equals("id")) {
+			myParser.getErrorHandler()
+					.incorrectJsonType(null, "id", ValueType.SCALAR, ScalarType.STRING, ValueType.OBJECT, null);
+		}
+		if (!theInArray && theState.elementIsRepeating(theName)) {
+			myParser.getErrorHandler().incorrectJsonType(null, theName, ValueType.ARRAY, null, ValueType.OBJECT, null);
+		}
+
+		theState.enteringNewElement(null, theName);
+		myParser.parseAlternates(theAlternateVal, theState, theAlternateName, theAlternateName);
+		if (theState.isPreResource()) {
+			parseResourceObject(theState, false);
+		} else {
+			parseObjectFields(theState, myReader.nextToken());
+		}
+		theState.endingElement();
+	}
+}
@@ -79,34 +79,10 @@ public class JacksonStructure implements JsonLikeStructure {
 
 	@Override
 	public void load(Reader theReader, boolean allowArray) throws DataFormatException {
-		PushbackReader pbr = new PushbackReader(theReader);
-		int nextInt;
 		try {
-			while (true) {
-				nextInt = pbr.read();
-				if (nextInt == -1) {
-					throw new DataFormatException(Msg.code(1857) + "Did not find any content to parse");
-				}
-				if (nextInt == '{') {
-					pbr.unread(nextInt);
-					break;
-				}
-				if (Character.isWhitespace(nextInt)) {
-					continue;
-				}
-				if (allowArray) {
-					if (nextInt == '[') {
-						pbr.unread(nextInt);
-						break;
-					}
-					throw new DataFormatException(Msg.code(1858)
-							+ "Content does not appear to be FHIR JSON, first non-whitespace character was: '"
-							+ (char) nextInt + "' (must be '{' or '[')");
-				}
-				throw new DataFormatException(Msg.code(1859)
-						+ "Content does not appear to be FHIR JSON, first non-whitespace character was: '"
-						+ (char) nextInt + "' (must be '{')");
-			}
+			PushbackReader pbr = skipToContentStart(theReader, allowArray);
+			int nextInt = pbr.read();
+			pbr.unread(nextInt);
 
 			if (nextInt == '{') {
 				setNativeObject((ObjectNode) OBJECT_MAPPER.readTree(pbr));
@@ -114,15 +90,68 @@ public class JacksonStructure implements JsonLikeStructure {
 				setNativeArray((ArrayNode) OBJECT_MAPPER.readTree(pbr));
 			}
 		} catch (Exception e) {
-			if (e.getMessage().startsWith("Unexpected char 39")) {
-				throw new DataFormatException(
-						Msg.code(1860) + "Failed to parse JSON encoded FHIR content: " + e.getMessage() + " - "
-								+ "This may indicate that single quotes are being used as JSON escapes where double quotes are required",
-						e);
+			throw toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Skips any leading whitespace and verifies that the content begins with a JSON
+	 * object (or an array if <code>theAllowArray</code> is set).
+	 *
+	 * @return A reader positioned at the opening <code>{</code> or <code>[</code>
+	 */
+	static PushbackReader skipToContentStart(Reader theReader, boolean theAllowArray) throws IOException {
+		PushbackReader pbr = new PushbackReader(theReader);
+		int nextInt;
+		while (true) {
+			nextInt = pbr.read();
+			if (nextInt == -1) {
+				throw new DataFormatException(Msg.code(1857) + "Did not find any content to parse");
 			}
-			throw new DataFormatException(
-					Msg.code(1861) + "Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+			if (nextInt == '{') {
+				pbr.unread(nextInt);
+				break;
+			}
+			if (Character.isWhitespace(nextInt)) {
+				continue;
+			}
+			if (theAllowArray) {
+				if (nextInt == '[') {
+					pbr.unread(nextInt);
+					break;
+				}
+				throw new DataFormatException(Msg.code(1858)
+						+ "Content does not appear to be FHIR JSON, first non-whitespace character was: '"
+						+ (char) nextInt + "' (must be '{' or '[')");
+			}
+			throw new DataFormatException(Msg.code(1859)
+					+ "Content does not appear to be FHIR JSON, first non-whitespace character was: '"
+					+ (char) nextInt + "' (must be '{')");
 		}
+		return pbr;
+	}
+
+	static DataFormatException toDataFormatException(Exception e) {
+		if (e.getMessage() != null && e.getMessage().startsWith("Unexpected char 39")) {
+			return new DataFormatException(
+					Msg.code(1860) + "Failed to parse JSON encoded FHIR content: " + e.getMessage() + " - "
+							+ "This may indicate that single quotes are being used as JSON escapes where double quotes are required",
+					e);
+		}
+		return new DataFormatException(
+				Msg.code(1861) + "Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+	}
+
+	/**
+	 * Wraps a single Jackson tree node so that it can be consumed through the
+	 * {@link BaseJsonLikeValue} API
+	 */
+	static BaseJsonLikeValue toJsonLikeValue(JsonNode theNode) {
+		return new JacksonJsonValue(theNode);
+	}
+
+	static ObjectMapper getObjectMapper() {
+		return OBJECT_MAPPER;
 	}
 
 	@Override
@@ -0,0 +1,197 @@
+/*-
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.parser.json.jackson;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.json.BaseJsonLikeObject;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A thin wrapper around a Jackson streaming {@link JsonParser} which allows a FHIR JSON
+ * document to be consumed one token at a time instead of being loaded into a
+ * tree first (as {@link JacksonStructure#load(Reader)} does).
+ * <p>
+ * Individual values can still be read as (small) trees using {@link #readValue()}, which
+ * returns the same {@link BaseJsonLikeValue} representation produced by {@link JacksonStructure}
+ * so that callers can mix both styles of processing.
+ * </p>
+ * <p>
+ * Any low level parse failures are reported as {@link DataFormatException} in the same way
+ * as they are by {@link JacksonStructure}.
+ * </p>
+ */
+public class JacksonTokenReader {
+
+	private static final ObjectReader TREE_READER = JacksonStructure.getObjectMapper()
+			.readerFor(JsonNode.class)
+			.without(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+
+	private final JsonParser myParser;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theReader The reader to consume. The content must start with a JSON object.
+	 */
+	public JacksonTokenReader(Reader theReader) throws DataFormatException {
+		try {
+			myParser = JacksonStructure.getObjectMapper()
+					.getFactory()
+					.createParser(JacksonStructure.skipToContentStart(theReader, false));
+		} catch (Exception e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Constructor which reads from an existing Jackson parser. This can be used to read
+	 * content in any format supported by Jackson which has the same structure as FHIR
+	 * JSON (e.g. a binary format such as Smile), without converting it to JSON text first.
+	 *
+	 * @param theParser The parser to consume. It must not have been advanced past the start of the content.
+	 * @since 7.0.0
+	 */
+	public JacksonTokenReader(JsonParser theParser) {
+		myParser = theParser;
+	}
+
+	/**
+	 * Advances to the next token
+	 *
+	 * @return Returns the next token, or <code>null</code> if the end of the content has been reached
+	 */
+	public JsonToken nextToken() {
+		try {
+			return myParser.nextToken();
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Returns the name of the property associated with the current token
+	 */
+	public String getCurrentName() {
+		try {
+			return myParser.getCurrentName();
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Returns the textual representation of the current token
+	 */
+	public String getText() {
+		try {
+			return myParser.getText();
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Reads the value starting at the current token (which must be a scalar, <code>null</code>,
+	 * {@link JsonToken#START_OBJECT} or {@link JsonToken#START_ARRAY}) and returns it. After
+	 * this method returns, calling {@link #nextToken()} returns the token following the value.
+	 */
+	public BaseJsonLikeValue readValue() {
+		return JacksonStructure.toJsonLikeValue(readTree());
+	}
+
+	/**
+	 * Skips over the value starting at the current token
+	 */
+	public void skipValue() {
+		try {
+			myParser.skipChildren();
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Reads the remainder of the array whose {@link JsonToken#START_ARRAY} token has already
+	 * been consumed. The current token must be the first element of the array, or
+	 * {@link JsonToken#END_ARRAY}.
+	 */
+	public BaseJsonLikeValue readRemainderOfArray() {
+		ArrayNode retVal = JacksonStructure.getObjectMapper().getNodeFactory().arrayNode();
+		JsonToken token = myParser.currentToken();
+		while (token != JsonToken.END_ARRAY) {
+			retVal.add(readTree());
+			token = nextToken();
+		}
+		return JacksonStructure.toJsonLikeValue(retVal);
+	}
+
+	/**
+	 * Reads the remainder of the object whose {@link JsonToken#START_OBJECT} token has already
+	 * been consumed. The current token must be a {@link JsonToken#FIELD_NAME}, the value
+	 * token of a field whose name has already been consumed, or {@link JsonToken#END_OBJECT}.
+	 */
+	public BaseJsonLikeObject readRemainderOfObject() {
+		ObjectNode retVal = JacksonStructure.getObjectMapper().getNodeFactory().objectNode();
+		JsonToken token = myParser.currentToken();
+		while (token != JsonToken.END_OBJECT) {
+			String name = getCurrentName();
+			if (token == JsonToken.FIELD_NAME) {
+				nextToken();
+			}
+			retVal.set(name, readTree());
+			token = nextToken();
+		}
+		return JacksonStructure.toJsonLikeValue(retVal).getAsObject();
+	}
+
+	/**
+	 * Verifies that nothing other than whitespace follows the root value
+	 */
+	public void assertNoTrailingContent() {
+		JsonToken token = nextToken();
+		if (token != null) {
+			throw new DataFormatException(Msg.code(2438) + "Failed to parse JSON encoded FHIR content: Trailing token ("
+					+ token + ") found after the root object");
+		}
+	}
+
+	private JsonNode readTree() {
+		try {
+			JsonNode retVal = TREE_READER.readValue(myParser);
+			if (retVal == null) {
+				retVal = JacksonStructure.getObjectMapper().getNodeFactory().nullNode();
+			}
+			return retVal;
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+}
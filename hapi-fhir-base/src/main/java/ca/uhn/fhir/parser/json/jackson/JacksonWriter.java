@@ -40,6 +40,16 @@ public class JacksonWriter extends BaseJsonLikeWriter {
 		setWriter(theWriter);
 	}
 
+	/**
+	 * Constructor which writes to an existing Jackson generator. This can be used to write
+	 * content in any format supported by Jackson (e.g. a binary format such as Smile).
+	 *
+	 * @since 7.0.0
+	 */
+	public JacksonWriter(JsonGenerator theJsonGenerator) {
+		myJsonGenerator = theJsonGenerator;
+	}
+
 	public JacksonWriter() {}
 
 	@Override
@@ -174,6 +174,13 @@ public class Constants {
 	public static final String PARAM_CONTAINED_TYPE = "_containedType";
 	public static final String PARAM_CONTENT = "_content";
 	public static final String PARAM_COUNT = "_count";
+	/**
+	 * Opaque keyset pagination cursor, used in paging links by servers which support it
+	 *
+	 * @since 7.0.0
+	 */
+	public static final String PARAM_CURSOR = "_cursor";
+
 	public static final String PARAM_OFFSET = "_offset";
 	public static final String PARAM_DELETE = "_delete";
 	public static final String PARAM_ELEMENTS = "_elements";
@@ -60,6 +60,40 @@ public class HapiExtensions {
 	public static final String EXT_SUBSCRIPTION_RESTHOOK_DELIVER_LATEST_VERSION =
 			"http://hapifhir.io/fhir/StructureDefinition/subscription-resthook-deliver-latest-version";
 
+	/**
+	 * This extension URL indicates the maximum number of REST HOOK deliveries to the
+	 * same endpoint which may be combined into a single <code>batch</code> Bundle. If
+	 * this extension is absent, or has a value of <code>1</code> or less, each
+	 * notification is delivered individually.
+	 * <p>
+	 * Batched delivery only applies to subscriptions which deliver a payload, and which
+	 * do not use payload search criteria.
+	 * </p>
+	 * <p>
+	 * This extension should be of type <code>integer</code> and should be
+	 * placed on the <code>Subscription.channel</code> element.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public static final String EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE =
+			"http://hapifhir.io/fhir/StructureDefinition/subscription-resthook-batch-max-size";
+
+	/**
+	 * This extension URL indicates the maximum number of milliseconds that a REST HOOK
+	 * delivery may be held back while waiting for other deliveries to the same endpoint,
+	 * so that they can be combined into a single <code>batch</code> Bundle. This is only
+	 * used if {@link #EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE} is also present.
+	 * <p>
+	 * This extension should be of type <code>integer</code> and should be
+	 * placed on the <code>Subscription.channel</code> element.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public static final String EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS =
+			"http://hapifhir.io/fhir/StructureDefinition/subscription-resthook-batch-window-millis";
+
 	/**
 	 * Indicate which strategy will be used to match this subscription
 	 */
@@ -95,6 +95,42 @@ public class InterceptorServiceTest {
 	}
 
 
+	/**
+	 * Hooks are invoked from an immutable snapshot, so an interceptor registered
+	 * while hooks are being called only takes effect for the next call
+	 */
+	@Test
+	public void testRegisterInterceptorWhileCallingHooks() {
+		InterceptorService svc = new InterceptorService();
+
+		@Interceptor(order = 200)
+		class SecondInterceptor {
+			@Hook(Pointcut.TEST_RB)
+			public void test(String theValue0, String theValue1) {
+				myInvocations.add("second");
+			}
+		}
+
+		@Interceptor(order = 100)
+		class FirstInterceptor {
+			@Hook(Pointcut.TEST_RB)
+			public void test(String theValue0, String theValue1) {
+				myInvocations.add("first");
+				svc.registerInterceptor(new SecondInterceptor());
+			}
+		}
+
+		svc.registerInterceptor(new FirstInterceptor());
+
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		assertThat(myInvocations, contains("first"));
+
+		myInvocations.clear();
+		svc.unregisterInterceptorsIf(t -> t instanceof FirstInterceptor);
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		assertThat(myInvocations, contains("second"));
+	}
+
 	/**
 	 * Hook methods with private access are ignored
 	 */
@@ -0,0 +1,325 @@
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.i18n.Msg;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Address;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.ContactPoint;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Dosage;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.HumanName;
+import org.hl7.fhir.r4.model.InstantType;
+import org.hl7.fhir.r4.model.MedicationRequest;
+import org.hl7.fhir.r4.model.Narrative;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Period;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.StringType;
+import org.hl7.fhir.r4.model.Timing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the resources used by the benchmarks.
+ * <p>
+ * The resources are modelled on what a typical clinical data repository stores: a patient
+ * with US Core style demographics, and their vital signs, lab results, encounters, conditions
+ * and medications. Everything is generated deterministically so that results are comparable
+ * between runs.
+ * </p>
+ */
+public class BenchmarkFixtures {
+
+	public static final String PATIENT_ID = "Patient/P0";
+	private static final String LOINC = "http://loinc.org";
+	private static final String SNOMED = "http://snomed.info/sct";
+	private static final String UCUM = "http://unitsofmeasure.org";
+
+	/**
+	 * Non instantiable
+	 */
+	private BenchmarkFixtures() {
+		super();
+	}
+
+	/**
+	 * Creates a searchset Bundle containing a patient and the given number of clinical
+	 * resources about them, in roughly the proportions seen in practice (mostly observations).
+	 */
+	public static Bundle createPatientBundle(int theResourceCount) {
+		Bundle bundle = new Bundle();
+		bundle.setId("B0");
+		bundle.setType(Bundle.BundleType.SEARCHSET);
+		bundle.setTotal(theResourceCount + 1);
+		bundle.addLink().setRelation("self").setUrl("http://example.com/fhir/Patient/P0/$everything");
+
+		for (IBaseResource next : createResources(theResourceCount)) {
+			Resource resource = (Resource) next;
+			bundle.addEntry()
+					.setFullUrl("http://example.com/fhir/" + resource.getIdElement().getValue())
+					.setResource(resource)
+					.getSearch()
+					.setMode(Bundle.SearchEntryMode.MATCH);
+		}
+
+		return bundle;
+	}
+
+	/**
+	 * Creates a patient and the given number of clinical resources about them
+	 */
+	public static List<IBaseResource> createResources(int theResourceCount) {
+		List<IBaseResource> retVal = new ArrayList<>();
+		retVal.add(createPatient());
+		for (int i = 0; i < theResourceCount; i++) {
+			switch (i % 10) {
+				case 0:
+					retVal.add(createEncounter(i));
+					break;
+				case 1:
+					retVal.add(createCondition(i));
+					break;
+				case 2:
+					retVal.add(createMedicationRequest(i));
+					break;
+				case 3:
+				case 4:
+				case 5:
+					retVal.add(createBloodPressure(i));
+					break;
+				default:
+					retVal.add(createLabResult(i));
+					break;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Creates one resource of each type used by the benchmarks
+	 */
+	public static IBaseResource createResource(String theResourceType) {
+		switch (theResourceType) {
+			case "Patient":
+				return createPatient();
+			case "Observation":
+				return createBloodPressure(0);
+			case "Encounter":
+				return createEncounter(0);
+			case "Condition":
+				return createCondition(0);
+			case "MedicationRequest":
+				return createMedicationRequest(0);
+			default:
+				throw new IllegalArgumentException(Msg.code(2476) + "Unknown resource type: " + theResourceType);
+		}
+	}
+
+	public static Patient createPatient() {
+		Patient patient = new Patient();
+		patient.setId(PATIENT_ID);
+		patient.getMeta().setVersionId("3").setLastUpdatedElement(new InstantType("2023-06-01T10:15:30.000Z"));
+		patient.getMeta().addProfile("http://hl7.org/fhir/us/core/StructureDefinition/us-core-patient");
+		patient.getText().setStatus(Narrative.NarrativeStatus.GENERATED).setDivAsString("<div>Jane Q Smith</div>");
+
+		Extension race = patient.addExtension().setUrl("http://hl7.org/fhir/us/core/StructureDefinition/us-core-race");
+		race.addExtension(
+				"ombCategory", new Coding("urn:oid:2.16.840.1.113883.6.238", "2106-3", "White"));
+		race.addExtension("text", new StringType("White"));
+
+		patient.addIdentifier()
+				.setSystem("http://hospital.example.org/mrn")
+				.setValue("MRN-0012345")
+				.getType()
+				.addCoding(new Coding("http://terminology.hl7.org/CodeSystem/v2-0203", "MR", "Medical Record Number"));
+		patient.addIdentifier().setSystem("http://hl7.org/fhir/sid/us-ssn").setValue("999-12-3456");
+		patient.setActive(true);
+		patient.addName()
+				.setUse(HumanName.NameUse.OFFICIAL)
+				.setFamily("Smith")
+				.addGiven("Jane")
+				.addGiven("Quinn")
+				.addPrefix("Ms.");
+		patient.addName().setUse(HumanName.NameUse.NICKNAME).addGiven("Janie");
+		patient.addTelecom()
+				.setSystem(ContactPoint.ContactPointSystem.PHONE)
+				.setValue("555-555-0101")
+				.setUse(ContactPoint.ContactPointUse.HOME);
+		patient.addTelecom()
+				.setSystem(ContactPoint.ContactPointSystem.PHONE)
+				.setValue("555-555-0102")
+				.setUse(ContactPoint.ContactPointUse.MOBILE);
+		patient.addTelecom().setSystem(ContactPoint.ContactPointSystem.EMAIL).setValue("jane.smith@example.com");
+		patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+		patient.setBirthDateElement(new DateType("1974-12-25"));
+		patient.addAddress()
+				.setUse(Address.AddressUse.HOME)
+				.addLine("534 Erewhon St")
+				.addLine("Apt 12")
+				.setCity("Springfield")
+				.setState("IL")
+				.setPostalCode("62701")
+				.setCountry("US");
+		patient.getMaritalStatus()
+				.addCoding(new Coding("http://terminology.hl7.org/CodeSystem/v3-MaritalStatus", "M", "Married"));
+		patient.addCommunication()
+				.setPreferred(true)
+				.getLanguage()
+				.addCoding(new Coding("urn:ietf:bcp:47", "en-US", "English (United States)"));
+		patient.addGeneralPractitioner(new Reference("Practitioner/PR1").setDisplay("Dr Adam Careful"));
+		patient.setManagingOrganization(new Reference("Organization/O1").setDisplay("Springfield General"));
+		return patient;
+	}
+
+	private static Observation createBloodPressure(int theIndex) {
+		Observation obs = createObservation(theIndex, "vital-signs", "85354-9", "Blood pressure panel");
+		obs.addComponent()
+				.setValue(new Quantity()
+						.setValue(110 + (theIndex % 30))
+						.setUnit("mmHg")
+						.setSystem(UCUM)
+						.setCode("mm[Hg]"))
+				.getCode()
+				.addCoding(new Coding(LOINC, "8480-6", "Systolic blood pressure"));
+		obs.addComponent()
+				.setValue(new Quantity()
+						.setValue(70 + (theIndex % 20))
+						.setUnit("mmHg")
+						.setSystem(UCUM)
+						.setCode("mm[Hg]"))
+				.getCode()
+				.addCoding(new Coding(LOINC, "8462-4", "Diastolic blood pressure"));
+		return obs;
+	}
+
+	private static Observation createLabResult(int theIndex) {
+		Observation obs = createObservation(theIndex, "laboratory", "2339-0", "Glucose [Mass/volume] in Blood");
+		obs.setValue(new Quantity()
+				.setValue(70 + (theIndex % 90))
+				.setUnit("mg/dL")
+				.setSystem(UCUM)
+				.setCode("mg/dL"));
+		obs.addInterpretation()
+				.addCoding(new Coding(
+						"http://terminology.hl7.org/CodeSystem/v3-ObservationInterpretation", "N", "Normal"));
+		obs.addReferenceRange()
+				.setLow(new Quantity().setValue(70).setUnit("mg/dL").setSystem(UCUM).setCode("mg/dL"))
+				.setHigh(new Quantity().setValue(140).setUnit("mg/dL").setSystem(UCUM).setCode("mg/dL"));
+		return obs;
+	}
+
+	private static Observation createObservation(int theIndex, String theCategory, String theCode, String theDisplay) {
+		Observation obs = new Observation();
+		obs.setId("Observation/OBS" + theIndex);
+		obs.getMeta().setVersionId("1").setLastUpdatedElement(new InstantType("2023-06-01T10:15:30.000Z"));
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.addCategory()
+				.addCoding(new Coding(
+						"http://terminology.hl7.org/CodeSystem/observation-category", theCategory, theCategory));
+		obs.getCode().addCoding(new Coding(LOINC, theCode, theDisplay)).setText(theDisplay);
+		obs.setSubject(new Reference(PATIENT_ID));
+		obs.setEncounter(new Reference("Encounter/ENC" + (theIndex - (theIndex % 10))));
+		obs.setEffective(new DateTimeType(effectiveDate(theIndex)));
+		obs.setIssuedElement(new InstantType(effectiveDate(theIndex) + "T12:00:00.000Z"));
+		obs.addPerformer(new Reference("Practitioner/PR1"));
+		return obs;
+	}
+
+	private static Encounter createEncounter(int theIndex) {
+		Encounter encounter = new Encounter();
+		encounter.setId("Encounter/ENC" + theIndex);
+		encounter.setStatus(Encounter.EncounterStatus.FINISHED);
+		encounter.setClass_(
+				new Coding("http://terminology.hl7.org/CodeSystem/v3-ActCode", "AMB", "ambulatory"));
+		encounter.addType().addCoding(new Coding(SNOMED, "185349003", "Encounter for check up"));
+		encounter.setSubject(new Reference(PATIENT_ID));
+		encounter.addParticipant().setIndividual(new Reference("Practitioner/PR1"));
+		encounter.setPeriod(new Period()
+				.setStartElement(new DateTimeType(effectiveDate(theIndex) + "T09:00:00Z"))
+				.setEndElement(new DateTimeType(effectiveDate(theIndex) + "T09:30:00Z")));
+		encounter.addReasonCode().addCoding(new Coding(SNOMED, "44054006", "Diabetes mellitus type 2"));
+		encounter.addLocation().setLocation(new Reference("Location/L1"));
+		encounter.setServiceProvider(new Reference("Organization/O1"));
+		return encounter;
+	}
+
+	private static Condition createCondition(int theIndex) {
+		Condition condition = new Condition();
+		condition.setId("Condition/CON" + theIndex);
+		condition
+				.getClinicalStatus()
+				.addCoding(new Coding("http://terminology.hl7.org/CodeSystem/condition-clinical", "active", "Active"));
+		condition
+				.getVerificationStatus()
+				.addCoding(new Coding(
+						"http://terminology.hl7.org/CodeSystem/condition-ver-status", "confirmed", "Confirmed"));
+		condition
+				.addCategory()
+				.addCoding(new Coding(
+						"http://terminology.hl7.org/CodeSystem/condition-category",
+						"problem-list-item",
+						"Problem List Item"));
+		condition.getCode().addCoding(new Coding(SNOMED, "44054006", "Diabetes mellitus type 2"));
+		condition.setSubject(new Reference(PATIENT_ID));
+		condition.setEncounter(new Reference("Encounter/ENC" + (theIndex - (theIndex % 10))));
+		condition.setOnset(new DateTimeType("2015-03-01"));
+		condition.setRecordedDateElement(new DateTimeType(effectiveDate(theIndex)));
+		return condition;
+	}
+
+	private static MedicationRequest createMedicationRequest(int theIndex) {
+		MedicationRequest medicationRequest = new MedicationRequest();
+		medicationRequest.setId("MedicationRequest/MR" + theIndex);
+		medicationRequest.setStatus(MedicationRequest.MedicationRequestStatus.ACTIVE);
+		medicationRequest.setIntent(MedicationRequest.MedicationRequestIntent.ORDER);
+		medicationRequest.setMedication(new CodeableConcept()
+				.addCoding(new Coding(
+						"http://www.nlm.nih.gov/research/umls/rxnorm", "860975", "Metformin 500 MG Oral Tablet")));
+		medicationRequest.setSubject(new Reference(PATIENT_ID));
+		medicationRequest.setEncounter(new Reference("Encounter/ENC" + (theIndex - (theIndex % 10))));
+		medicationRequest.setAuthoredOnElement(new DateTimeType(effectiveDate(theIndex)));
+		medicationRequest.setRequester(new Reference("Practitioner/PR1"));
+		Dosage dosage = medicationRequest.addDosageInstruction().setText("500 mg twice daily with meals");
+		dosage.setTiming(new Timing());
+		dosage.getTiming().getRepeat().setFrequency(2).setPeriod(1).setPeriodUnit(Timing.UnitsOfTime.D);
+		dosage.addDoseAndRate()
+				.setDose(new Quantity().setValue(500).setUnit("mg").setSystem(UCUM).setCode("mg"));
+		return medicationRequest;
+	}
+
+	private static String effectiveDate(int theIndex) {
+		int month = 1 + (theIndex % 12);
+		int day = 1 + (theIndex % 28);
+		return String.format("2022-%02d-%02d", month, day);
+	}
+}
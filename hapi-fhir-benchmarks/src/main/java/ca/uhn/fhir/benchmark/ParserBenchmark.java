@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and encodes an R4 searchset Bundle.
+ * <p>
+ * The <code>JSON_STREAMING</code> format uses the same JSON parser with
+ * {@link ca.uhn.fhir.context.ParserOptions#setStreamingJsonParsing(boolean) streaming parsing}
+ * enabled, so that it can be compared directly with the tree based <code>JSON</code> parser.
+ * Encoding is identical for both.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({"JSON", "JSON_STREAMING", "XML"})
+	public String myFormat;
+
+	@Param({"10", "500"})
+	public int myBundleSize;
+
+	private IParser myParser;
+	private Bundle myBundle;
+	private String myEncodedBundle;
+
+	@Setup
+	public void setup() {
+		FhirContext ctx = FhirContext.forR4();
+		switch (myFormat) {
+			case "JSON":
+				myParser = ctx.newJsonParser();
+				break;
+			case "JSON_STREAMING":
+				ctx.getParserOptions().setStreamingJsonParsing(true);
+				myParser = ctx.newJsonParser();
+				break;
+			case "XML":
+				myParser = ctx.newXmlParser();
+				break;
+			default:
+				throw new IllegalArgumentException(Msg.code(2475) + "Unknown format: " + myFormat);
+		}
+
+		myBundle = BenchmarkFixtures.createPatientBundle(myBundleSize);
+		myEncodedBundle = myParser.encodeResourceToString(myBundle);
+	}
+
+	@Benchmark
+	public Bundle parseBundle() {
+		return myParser.parseResource(Bundle.class, myEncodedBundle);
+	}
+
+	@Benchmark
+	public String encodeBundle() {
+		return myParser.encodeResourceToString(myBundle);
+	}
+}
@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the peak heap used while parsing a large (several MB) R4 searchset Bundle with the
+ * tree based JSON parser, the {@link ca.uhn.fhir.context.ParserOptions#setStreamingJsonParsing(boolean)
+ * streaming} JSON parser and the XML parser.
+ * <p>
+ * Each invocation starts from a freshly collected heap and parses the Bundle from a
+ * {@link java.io.Reader}, so the encoded text is never held as a String. The forked JVM uses the
+ * serial collector with a small young generation, so anything the parser keeps reachable for more
+ * than a moment is promoted to the old generation. The <code>peakRetainedBytes</code> counter
+ * reports the high-water mark of the old generation during the parse, which includes the parsed
+ * Bundle itself and is the figure that decides whether a Bundle of a given size fits in a given heap.
+ * The <code>encodedBytes</code> counter reports the size of the input. JMH sums both counters
+ * over the measurement iterations, so they need to be divided by the iteration count.
+ * </p>
+ * <p>
+ * Allocation rates (as opposed to the peak) can be compared by also running with <code>-prof gc</code>.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(
+		value = 1,
+		jvmArgsAppend = {"-XX:+UseSerialGC", "-Xmn16m"})
+public class ParserMemoryBenchmark {
+
+	@Param({"JSON", "JSON_STREAMING", "XML"})
+	public String myFormat;
+
+	@Param({"5000"})
+	public int myBundleSize;
+
+	private IParser myParser;
+	private byte[] myEncodedBundle;
+	private final List<MemoryPoolMXBean> myOldGenerationPools = new ArrayList<>();
+
+	@Setup
+	public void setup() {
+		FhirContext ctx = FhirContext.forR4();
+		switch (myFormat) {
+			case "JSON":
+				myParser = ctx.newJsonParser();
+				break;
+			case "JSON_STREAMING":
+				ctx.getParserOptions().setStreamingJsonParsing(true);
+				myParser = ctx.newJsonParser();
+				break;
+			case "XML":
+				myParser = ctx.newXmlParser();
+				break;
+			default:
+				throw new IllegalArgumentException(Msg.code(2485) + "Unknown format: " + myFormat);
+		}
+
+		Bundle bundle = BenchmarkFixtures.createPatientBundle(myBundleSize);
+		myEncodedBundle = myParser.encodeResourceToString(bundle).getBytes(StandardCharsets.UTF_8);
+
+		for (MemoryPoolMXBean next : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (next.getType() == MemoryType.HEAP
+					&& !next.getName().contains("Eden")
+					&& !next.getName().contains("Survivor")) {
+				myOldGenerationPools.add(next);
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void resetPeak() {
+		System.gc();
+		for (MemoryPoolMXBean next : myOldGenerationPools) {
+			next.resetPeakUsage();
+		}
+	}
+
+	@Benchmark
+	public Bundle parseBundle(HeapCounters theCounters) {
+		InputStreamReader reader =
+				new InputStreamReader(new ByteArrayInputStream(myEncodedBundle), StandardCharsets.UTF_8);
+		Bundle retVal = myParser.parseResource(Bundle.class, reader);
+
+		// Measured while the parsed Bundle is still reachable
+		long peak = 0;
+		for (MemoryPoolMXBean next : myOldGenerationPools) {
+			peak += next.getPeakUsage().getUsed();
+		}
+		theCounters.peakRetainedBytes = peak;
+		theCounters.encodedBytes = myEncodedBundle.length;
+		return retVal;
+	}
+
+	/**
+	 * Reported by JMH alongside the timings
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class HeapCounters {
+
+		public long peakRetainedBytes;
+		public long encodedBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			peakRetainedBytes = 0;
+			encodedBytes = 0;
+		}
+	}
+}
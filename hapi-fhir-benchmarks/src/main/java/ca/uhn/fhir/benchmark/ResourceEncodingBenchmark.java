@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.dao.GZipUtil;
+import ca.uhn.fhir.jpa.dao.SmileUtil;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.parser.JsonParser;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary {@link ResourceEncodingEnum resource encodings} used to store
+ * resource bodies in the JPA server, using a realistic mix of resources.
+ * <p>
+ * The benchmarks measure the whole path between the model and the stored bytes:
+ * <code>write</code> encodes each resource and compresses it if the encoding calls for it,
+ * and <code>read</code> takes the stored bytes all the way back to a parsed resource.
+ * The <code>storedBytes</code> and <code>jsonBytes</code> counters report the storage
+ * size of each encoding, compared to the plain JSON text.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceEncodingBenchmark {
+
+	@Param({"JSONC", "SMILE"})
+	public ResourceEncodingEnum myEncoding;
+
+	private final FhirContext myFhirContext = FhirContext.forR4Cached();
+	private final List<IBaseResource> myResources = new ArrayList<>();
+	private final List<byte[]> myStoredResources = new ArrayList<>();
+	private long myJsonSize;
+	private long myStoredSize;
+
+	@Setup
+	public void setup() {
+		for (IBaseResource next : BenchmarkFixtures.createResources(100)) {
+			byte[] stored = write(next);
+			myResources.add(next);
+			myStoredResources.add(stored);
+			myJsonSize += newParser().encodeResourceToString(next).getBytes(StandardCharsets.UTF_8).length;
+			myStoredSize += stored.length;
+		}
+	}
+
+	@Benchmark
+	public void write(Blackhole theBlackhole, SizeCounters theCounters) {
+		for (IBaseResource next : myResources) {
+			theBlackhole.consume(write(next));
+		}
+		theCounters.storedBytes = myStoredSize;
+		theCounters.jsonBytes = myJsonSize;
+	}
+
+	@Benchmark
+	public void read(Blackhole theBlackhole) {
+		for (int i = 0; i < myStoredResources.size(); i++) {
+			theBlackhole.consume(read(myResources.get(i).getClass(), myStoredResources.get(i)));
+		}
+	}
+
+	private byte[] write(IBaseResource theResource) {
+		switch (myEncoding) {
+			case JSONC:
+				return GZipUtil.compress(newParser().encodeResourceToString(theResource));
+			case SMILE:
+				return SmileUtil.encode(newParser(), theResource);
+			default:
+				throw new IllegalArgumentException(Msg.code(2477) + "Unsupported encoding: " + myEncoding);
+		}
+	}
+
+	private IBaseResource read(Class<? extends IBaseResource> theType, byte[] theStored) {
+		switch (myEncoding) {
+			case JSONC:
+				return newParser().parseResource(theType, GZipUtil.decompress(theStored));
+			case SMILE:
+				return SmileUtil.parse(newParser(), theType, theStored);
+			default:
+				throw new IllegalArgumentException(Msg.code(2478) + "Unsupported encoding: " + myEncoding);
+		}
+	}
+
+	private JsonParser newParser() {
+		return (JsonParser) myFhirContext.newJsonParser();
+	}
+
+	/**
+	 * Reported by JMH alongside the timings. These hold the size of the whole mix, in bytes.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class SizeCounters {
+
+		public long storedBytes;
+		public long jsonBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			storedBytes = 0;
+			jsonBytes = 0;
+		}
+	}
+}
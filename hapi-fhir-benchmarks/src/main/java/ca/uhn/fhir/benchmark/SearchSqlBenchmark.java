@@ -0,0 +1,165 @@
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.config.HibernatePropertiesProvider;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.search.builder.QueryStack;
+import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
+import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.config.TestR4Config;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.SearchContainedModeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import com.healthmarketscience.sqlbuilder.Condition;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the SQL for typical searches, the same way that the
+ * {@link ca.uhn.fhir.jpa.search.builder.SearchBuilder} does for a normal (non-everything,
+ * unsorted) search.
+ * <p>
+ * This starts a complete JPA server backed by an in-memory H2 database, since building the
+ * predicates for some parameters (e.g. references using client assigned IDs) requires
+ * database lookups. The database is populated with the benchmark fixtures first. The SQL
+ * itself is generated but not executed.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchSqlBenchmark {
+
+	@Param({
+		"Patient?family=smith&given=jane&birthdate=ge1970-01-01",
+		"Patient?identifier=http://hospital.example.org/mrn|MRN-0012345",
+		"Observation?subject=Patient/P0&code=http://loinc.org|2339-0&date=ge2022-01-01",
+		"Observation?patient=Patient/P0&category=vital-signs&value-quantity=gt100|http://unitsofmeasure.org|mg/dL",
+		"Encounter?patient=Patient/P0&status=finished&date=ge2022-01-01&date=lt2023-01-01",
+		"Condition?patient=Patient/P0&clinical-status=active&code=http://snomed.info/sct|44054006"
+	})
+	public String mySearchUrl;
+
+	private AnnotationConfigApplicationContext myAppCtx;
+	private FhirContext myFhirContext;
+	private JpaStorageSettings myStorageSettings;
+	private PartitionSettings myPartitionSettings;
+	private ISearchParamRegistry mySearchParamRegistry;
+	private SqlObjectFactory mySqlObjectFactory;
+	private HibernatePropertiesProvider myDialectProvider;
+	private RequestDetails myRequestDetails;
+	private String myResourceType;
+	private SearchParameterMap myParams;
+
+	@Setup
+	public void setup() {
+		TestR4Config.ourMaxThreads = 10;
+		myAppCtx = new AnnotationConfigApplicationContext(TestR4Config.class);
+
+		myFhirContext = myAppCtx.getBean(FhirContext.class);
+		myStorageSettings = myAppCtx.getBean(JpaStorageSettings.class);
+		myPartitionSettings = myAppCtx.getBean(PartitionSettings.class);
+		mySearchParamRegistry = myAppCtx.getBean(ISearchParamRegistry.class);
+		mySqlObjectFactory = myAppCtx.getBean(SqlObjectFactory.class);
+		myDialectProvider = myAppCtx.getBean(HibernatePropertiesProvider.class);
+		myRequestDetails = new SystemRequestDetails();
+
+		// The fixtures refer to resources which aren't part of the fixtures
+		myStorageSettings.setEnforceReferentialIntegrityOnWrite(false);
+		DaoRegistry daoRegistry = myAppCtx.getBean(DaoRegistry.class);
+		for (IBaseResource next : BenchmarkFixtures.createResources(100)) {
+			daoRegistry.getResourceDao(next).update(next, myRequestDetails);
+		}
+
+		myResourceType = mySearchUrl.substring(0, mySearchUrl.indexOf('?'));
+		RuntimeResourceDefinition resourceDef = myFhirContext.getResourceDefinition(myResourceType);
+		myParams = myAppCtx.getBean(MatchUrlService.class).translateMatchUrl(mySearchUrl, resourceDef);
+		myParams.clean();
+	}
+
+	@TearDown
+	public void tearDown() {
+		myAppCtx.close();
+	}
+
+	@Benchmark
+	public GeneratedSql generateSql() {
+		SearchQueryBuilder sqlBuilder = new SearchQueryBuilder(
+				myFhirContext,
+				myStorageSettings,
+				myPartitionSettings,
+				RequestPartitionId.allPartitions(),
+				myResourceType,
+				mySqlObjectFactory,
+				myDialectProvider,
+				false);
+		QueryStack queryStack = new QueryStack(
+				myParams, myStorageSettings, myFhirContext, sqlBuilder, mySearchParamRegistry, myPartitionSettings);
+		if (myParams.keySet().size() > 1) {
+			sqlBuilder.setNeedResourceTableRoot(true);
+		}
+
+		for (Map.Entry<String, List<List<IQueryParameterType>>> next : myParams.entrySet()) {
+			Condition predicate = queryStack.searchForIdsWithAndOr(
+					null,
+					myResourceType,
+					next.getKey(),
+					next.getValue(),
+					myRequestDetails,
+					RequestPartitionId.allPartitions(),
+					SearchContainedModeEnum.FALSE);
+			if (predicate != null) {
+				sqlBuilder.addPredicate(predicate);
+			}
+		}
+
+		return sqlBuilder.generate(0, 100);
+	}
+}
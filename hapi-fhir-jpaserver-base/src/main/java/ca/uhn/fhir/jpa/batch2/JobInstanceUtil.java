@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.batch2;
 
 import ca.uhn.fhir.batch2.model.JobInstance;
 import ca.uhn.fhir.batch2.model.WorkChunk;
+import ca.uhn.fhir.batch2.util.WorkChunkDataCodec;
 import ca.uhn.fhir.jpa.entity.Batch2JobInstanceEntity;
 import ca.uhn.fhir.jpa.entity.Batch2WorkChunkEntity;
 
@@ -121,7 +122,7 @@ class JobInstanceUtil {
 		retVal.setErrorCount(theEntity.getErrorCount());
 		retVal.setRecordsProcessed(theEntity.getRecordsProcessed());
 		// note: may be null out if queried NoData
-		retVal.setData(theEntity.getSerializedData());
+		retVal.setData(WorkChunkDataCodec.decode(theEntity.getSerializedData()));
 		retVal.setWarningMessage(theEntity.getWarningMessage());
 		return retVal;
 	}
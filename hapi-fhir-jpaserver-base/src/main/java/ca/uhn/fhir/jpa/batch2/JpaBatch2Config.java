@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.batch2;
 
 import ca.uhn.fhir.batch2.api.IJobPersistence;
 import ca.uhn.fhir.batch2.config.BaseBatch2Config;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.bulk.export.job.BulkExportJobConfig;
 import ca.uhn.fhir.jpa.dao.data.IBatch2JobInstanceRepository;
 import ca.uhn.fhir.jpa.dao.data.IBatch2WorkChunkRepository;
@@ -41,9 +42,14 @@ public class JpaBatch2Config extends BaseBatch2Config {
 			IBatch2JobInstanceRepository theJobInstanceRepository,
 			IBatch2WorkChunkRepository theWorkChunkRepository,
 			IHapiTransactionService theTransactionService,
-			EntityManager theEntityManager) {
+			EntityManager theEntityManager,
+			JpaStorageSettings theStorageSettings) {
 		return new JpaJobPersistenceImpl(
-				theJobInstanceRepository, theWorkChunkRepository, theTransactionService, theEntityManager);
+				theJobInstanceRepository,
+				theWorkChunkRepository,
+				theTransactionService,
+				theEntityManager,
+				theStorageSettings);
 	}
 
 	@Primary
@@ -52,9 +58,14 @@ public class JpaBatch2Config extends BaseBatch2Config {
 			IBatch2JobInstanceRepository theJobInstanceRepository,
 			IBatch2WorkChunkRepository theWorkChunkRepository,
 			IHapiTransactionService theTransactionService,
-			EntityManager theEntityManager) {
+			EntityManager theEntityManager,
+			JpaStorageSettings theStorageSettings) {
 		IJobPersistence retVal = batch2JobInstancePersister(
-				theJobInstanceRepository, theWorkChunkRepository, theTransactionService, theEntityManager);
+				theJobInstanceRepository,
+				theWorkChunkRepository,
+				theTransactionService,
+				theEntityManager,
+				theStorageSettings);
 		// Avoid H2 synchronization issues caused by
 		// https://github.com/h2database/h2database/issues/1808
 		// TODO: Update 2023-03-14 - The bug above appears to be fixed. I'm going to try
@@ -30,6 +30,8 @@ import ca.uhn.fhir.batch2.model.WorkChunkCreateEvent;
 import ca.uhn.fhir.batch2.model.WorkChunkErrorEvent;
 import ca.uhn.fhir.batch2.model.WorkChunkStatusEnum;
 import ca.uhn.fhir.batch2.models.JobInstanceFetchRequest;
+import ca.uhn.fhir.batch2.util.WorkChunkDataCodec;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.dao.data.IBatch2JobInstanceRepository;
 import ca.uhn.fhir.jpa.dao.data.IBatch2WorkChunkRepository;
 import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
@@ -82,6 +84,7 @@ public class JpaJobPersistenceImpl implements IJobPersistence {
 	private final IBatch2WorkChunkRepository myWorkChunkRepository;
 	private final EntityManager myEntityManager;
 	private final IHapiTransactionService myTransactionService;
+	private final JpaStorageSettings myStorageSettings;
 
 	/**
 	 * Constructor
@@ -90,13 +93,16 @@ public class JpaJobPersistenceImpl implements IJobPersistence {
 			IBatch2JobInstanceRepository theJobInstanceRepository,
 			IBatch2WorkChunkRepository theWorkChunkRepository,
 			IHapiTransactionService theTransactionService,
-			EntityManager theEntityManager) {
+			EntityManager theEntityManager,
+			JpaStorageSettings theStorageSettings) {
 		Validate.notNull(theJobInstanceRepository);
 		Validate.notNull(theWorkChunkRepository);
+		Validate.notNull(theStorageSettings);
 		myJobInstanceRepository = theJobInstanceRepository;
 		myWorkChunkRepository = theWorkChunkRepository;
 		myTransactionService = theTransactionService;
 		myEntityManager = theEntityManager;
+		myStorageSettings = theStorageSettings;
 	}
 
 	@Override
@@ -108,17 +114,35 @@ public class JpaJobPersistenceImpl implements IJobPersistence {
 		entity.setJobDefinitionVersion(theBatchWorkChunk.jobDefinitionVersion);
 		entity.setTargetStepId(theBatchWorkChunk.targetStepId);
 		entity.setInstanceId(theBatchWorkChunk.instanceId);
-		entity.setSerializedData(theBatchWorkChunk.serializedData);
+		entity.setSerializedData(encodeWorkChunkData(theBatchWorkChunk.serializedData));
 		entity.setCreateTime(new Date());
 		entity.setStartTime(new Date());
 		entity.setStatus(WorkChunkStatusEnum.QUEUED);
 		ourLog.debug("Create work chunk {}/{}/{}", entity.getInstanceId(), entity.getId(), entity.getTargetStepId());
 		ourLog.trace(
-				"Create work chunk data {}/{}: {}", entity.getInstanceId(), entity.getId(), entity.getSerializedData());
+				"Create work chunk data {}/{}: {}",
+				entity.getInstanceId(),
+				entity.getId(),
+				theBatchWorkChunk.serializedData);
 		myWorkChunkRepository.save(entity);
 		return entity.getId();
 	}
 
+	/**
+	 * Chunks are always decoded back to JSON by {@link JobInstanceUtil#fromEntityToWorkChunk(Batch2WorkChunkEntity)}
+	 */
+	private String encodeWorkChunkData(String theSerializedData) {
+		switch (myStorageSettings.getBatch2WorkChunkDataFormat()) {
+			case COMPACT:
+				return WorkChunkDataCodec.encode(theSerializedData, false);
+			case COMPACT_COMPRESSED:
+				return WorkChunkDataCodec.encode(theSerializedData, true);
+			case JSON:
+			default:
+				return theSerializedData;
+		}
+	}
+
 	@Override
 	@Transactional(propagation = Propagation.REQUIRED)
 	public Optional<WorkChunk> onWorkChunkDequeue(String theChunkId) {
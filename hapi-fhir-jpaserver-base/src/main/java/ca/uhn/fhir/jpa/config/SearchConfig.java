@@ -38,9 +38,11 @@ import ca.uhn.fhir.jpa.search.ISynchronousSearchSvc;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProviderFactory;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
 import ca.uhn.fhir.jpa.search.SearchStrategyFactory;
+import ca.uhn.fhir.jpa.search.builder.IncludeLoadingExecutor;
 import ca.uhn.fhir.jpa.search.builder.SearchBuilder;
 import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
 import ca.uhn.fhir.jpa.search.builder.tasks.SearchContinuationTask;
+import ca.uhn.fhir.jpa.search.builder.tasks.SearchCountExecutor;
 import ca.uhn.fhir.jpa.search.builder.tasks.SearchTask;
 import ca.uhn.fhir.jpa.search.builder.tasks.SearchTaskParameters;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
@@ -153,6 +155,16 @@ public class SearchConfig {
 		return new ExceptionService(myContext);
 	}
 
+	@Bean
+	public IncludeLoadingExecutor includeLoadingExecutor() {
+		return new IncludeLoadingExecutor();
+	}
+
+	@Bean
+	public SearchCountExecutor searchCountExecutor() {
+		return new SearchCountExecutor();
+	}
+
 	@Bean(name = ISearchBuilder.SEARCH_BUILDER_BEAN_NAME)
 	@Scope("prototype")
 	public ISearchBuilder newSearchBuilder(
@@ -178,7 +190,7 @@ public class SearchConfig {
 	@Bean(name = SEARCH_TASK)
 	@Scope("prototype")
 	public SearchTask createSearchTask(SearchTaskParameters theParams) {
-		return new SearchTask(
+		SearchTask retVal = new SearchTask(
 				theParams,
 				myHapiTransactionService,
 				myContext,
@@ -188,12 +200,14 @@ public class SearchConfig {
 				myStorageSettings,
 				mySearchCacheSvc,
 				myPagingProvider);
+		retVal.setSearchCountExecutor(searchCountExecutor());
+		return retVal;
 	}
 
 	@Bean(name = CONTINUE_TASK)
 	@Scope("prototype")
 	public SearchContinuationTask createSearchContinuationTask(SearchTaskParameters theParams) {
-		return new SearchContinuationTask(
+		SearchContinuationTask retVal = new SearchContinuationTask(
 				theParams,
 				myHapiTransactionService,
 				myContext,
@@ -205,5 +219,7 @@ public class SearchConfig {
 				myPagingProvider,
 				exceptionService() // singleton
 				);
+		retVal.setSearchCountExecutor(searchCountExecutor());
+		return retVal;
 	}
 }
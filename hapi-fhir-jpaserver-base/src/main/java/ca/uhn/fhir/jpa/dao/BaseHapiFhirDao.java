@@ -86,6 +86,7 @@ import ca.uhn.fhir.model.base.composite.BaseCodingDt;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.parser.JsonParser;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.InterceptorInvocationTimingEnum;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
@@ -681,8 +682,13 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 					HashFunction sha256 = Hashing.sha256();
 					HashCode hashCode;
-					String encodedResource = encodeResource(theResource, encoding, excludeElements, myContext);
-					if (myStorageSettings.getInlineResourceTextBelowSize() > 0
+					String encodedResource = null;
+					if (encoding != ResourceEncodingEnum.SMILE
+							|| myStorageSettings.getInlineResourceTextBelowSize() > 0) {
+						encodedResource = encodeResource(theResource, encoding, excludeElements, myContext);
+					}
+					if (encodedResource != null
+							&& myStorageSettings.getInlineResourceTextBelowSize() > 0
 							&& encodedResource.length() < myStorageSettings.getInlineResourceTextBelowSize()) {
 						resourceText = encodedResource;
 						resourceBinary = null;
@@ -690,7 +696,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 						hashCode = sha256.hashUnencodedChars(encodedResource);
 					} else {
 						resourceText = null;
-						resourceBinary = getResourceBinary(encoding, encodedResource);
+						resourceBinary = getResourceBinary(encoding, encodedResource, theResource, excludeElements);
 						hashCode = sha256.hashBytes(resourceBinary);
 					}
 
@@ -771,11 +777,18 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 	 * helper for returning the encoded byte array of the input resource string based on the encoding.
 	 *
 	 * @param encoding        the encoding to used
-	 * @param encodedResource the resource to encode
+	 * @param encodedResource the resource to encode, as JSON text. May be <code>null</code> only if the
+	 *                        encoding is {@link ResourceEncodingEnum#SMILE}, which is encoded from the resource itself.
+	 * @param theResource     the resource to encode
+	 * @param theExcludeElements the elements to exclude when encoding from the resource itself
 	 * @return byte array of the resource
 	 */
 	@Nonnull
-	private byte[] getResourceBinary(ResourceEncodingEnum encoding, String encodedResource) {
+	private byte[] getResourceBinary(
+			ResourceEncodingEnum encoding,
+			@Nullable String encodedResource,
+			IBaseResource theResource,
+			List<String> theExcludeElements) {
 		byte[] resourceBinary;
 		switch (encoding) {
 			case JSON:
@@ -784,6 +797,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			case JSONC:
 				resourceBinary = GZipUtil.compress(encodedResource);
 				break;
+			case SMILE:
+				resourceBinary = encodeResourceToSmile(theResource, theExcludeElements, myContext);
+				break;
 			default:
 			case DEL:
 			case ESR:
@@ -1436,8 +1452,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			ResourceEncodingEnum encoding = myStorageSettings.getResourceEncoding();
 			List<String> excludeElements = new ArrayList<>(8);
 			getExcludedElements(historyEntity.getResourceType(), excludeElements, theResource.getMeta());
-			String encodedResourceString = encodeResource(theResource, encoding, excludeElements, myContext);
-			byte[] resourceBinary = getResourceBinary(encoding, encodedResourceString);
+			String encodedResourceString = null;
+			if (encoding != ResourceEncodingEnum.SMILE || getStorageSettings().getInlineResourceTextBelowSize() > 0) {
+				encodedResourceString = encodeResource(theResource, encoding, excludeElements, myContext);
+			}
+			byte[] resourceBinary = getResourceBinary(encoding, encodedResourceString, theResource, excludeElements);
 			boolean changed = !Arrays.equals(historyEntity.getResource(), resourceBinary);
 
 			historyEntity.setUpdated(theTransactionDetails.getTransactionDate());
@@ -1450,7 +1469,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 				return historyEntity;
 			}
 
-			if (getStorageSettings().getInlineResourceTextBelowSize() > 0
+			if (encodedResourceString != null
+					&& getStorageSettings().getInlineResourceTextBelowSize() > 0
 					&& encodedResourceString.length() < getStorageSettings().getInlineResourceTextBelowSize()) {
 				populateEncodedResource(encodedResource, encodedResourceString, null, ResourceEncodingEnum.JSON);
 			} else {
@@ -1973,6 +1993,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			case JSONC:
 				resourceText = GZipUtil.decompress(theResourceBytes);
 				break;
+			case SMILE:
+				resourceText = SmileUtil.toJson(theResourceBytes);
+				break;
 			case DEL:
 			case ESR:
 				break;
@@ -1990,6 +2013,13 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		return parser.encodeResourceToString(theResource);
 	}
 
+	public static byte[] encodeResourceToSmile(
+			IBaseResource theResource, List<String> theExcludeElements, FhirContext theContext) {
+		JsonParser parser = (JsonParser) ResourceEncodingEnum.SMILE.newParser(theContext);
+		parser.setDontEncodeElements(theExcludeElements);
+		return SmileUtil.encode(parser, theResource);
+	}
+
 	private static String parseNarrativeTextIntoWords(IBaseResource theResource) {
 
 		StringBuilder b = new StringBuilder();
@@ -1682,6 +1682,7 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 	private void reindexOptimizeStorageHistoryEntity(ResourceTable entity, ResourceHistoryTable historyEntity) {
 		boolean changed = false;
 		if (historyEntity.getEncoding() == ResourceEncodingEnum.JSONC
+				|| historyEntity.getEncoding() == ResourceEncodingEnum.SMILE
 				|| historyEntity.getEncoding() == ResourceEncodingEnum.JSON) {
 			byte[] resourceBytes = historyEntity.getResource();
 			if (resourceBytes != null) {
@@ -2008,6 +2009,20 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 				theParams.setOffset(offset);
 			}
 
+			String[] cursor = theRequest.getParameters() != null
+					? theRequest.getParameters().get(Constants.PARAM_CURSOR)
+					: null;
+			if (cursor != null && cursor.length > 0 && isNotBlank(cursor[0])) {
+				if (!getStorageSettings().isKeysetPagingEnabled()) {
+					throw new InvalidRequestException(Msg.code(2457) + "The " + Constants.PARAM_CURSOR
+							+ " parameter is not supported on this server");
+				}
+				// Keyset pages continue from the cursor position, so they are always fetched from the start
+				theParams.setLoadSynchronous(true);
+				theParams.setOffset(0);
+				theParams.setCursor(cursor[0]);
+			}
+
 			Integer count = RestfulServerUtils.extractCountParameter(theRequest);
 			if (count != null) {
 				Integer maxPageSize = theRequest.getServer().getMaximumPageSize();
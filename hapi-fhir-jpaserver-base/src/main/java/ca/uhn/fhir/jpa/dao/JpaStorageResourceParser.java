@@ -51,7 +51,6 @@ import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.model.valueset.BundleEntryTransactionMethodEnum;
 import ca.uhn.fhir.parser.DataFormatException;
-import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.parser.LenientErrorHandler;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.util.IMetaTagSorter;
@@ -102,6 +101,9 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	@Autowired
 	IMetaTagSorter myMetaTagSorter;
 
+	@Autowired(required = false)
+	private ParsedResourceCache myParsedResourceCache;
+
 	@Override
 	public IBaseResource toResource(IBasePersistedResource theEntity, boolean theForHistoryOperation) {
 		RuntimeResourceDefinition type = myFhirContext.getResourceDefinition(theEntity.getResourceType());
@@ -215,14 +217,33 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			return null;
 		}
 
-		// 2. get The text
-		String decodedResourceText = decodedResourceText(resourceBytes, resourceText, resourceEncoding);
-
-		// 3. Use the appropriate custom type if one is specified in the context
+		// 2. Use the appropriate custom type if one is specified in the context
 		Class<R> resourceType = determineTypeToParse(theResourceType, tagList);
 
-		// 4. parse the text to FHIR
-		R retVal = parseResource(theEntity, resourceEncoding, decodedResourceText, resourceType);
+		// 3. Check whether this version has already been parsed
+		ParsedResourceCache.Key cacheKey = null;
+		R retVal = null;
+		if (isParsedResourceCacheable(theEntity, resourceEncoding)) {
+			cacheKey = new ParsedResourceCache.Key(
+					theEntity.getResourceId(),
+					version,
+					theEntity.getUpdatedDate().getTime(),
+					resourceType);
+			retVal = myParsedResourceCache.get(cacheKey, resourceType);
+		}
+
+		if (retVal == null) {
+			// 4. get The text and parse it to FHIR
+			// (Smile is parsed straight from the bytes, without producing the text first)
+			String decodedResourceText = null;
+			if (resourceText != null || resourceEncoding != ResourceEncodingEnum.SMILE) {
+				decodedResourceText = decodedResourceText(resourceBytes, resourceText, resourceEncoding);
+			}
+			retVal = parseResource(theEntity, resourceEncoding, decodedResourceText, resourceBytes, resourceType);
+			if (cacheKey != null) {
+				myParsedResourceCache.put(cacheKey, retVal);
+			}
+		}
 
 		// 5. fill MetaData
 		retVal = populateResourceMetadata(theEntity, theForHistoryOperation, tagList, version, retVal);
@@ -239,6 +260,21 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		return retVal;
 	}
 
+	/**
+	 * Resources stored externally or marked as deleted are never cached, and neither are
+	 * resources stored using a different FHIR version than the server's, since the cached copy is
+	 * created using the server's context.
+	 */
+	private boolean isParsedResourceCacheable(IBaseResourceEntity theEntity, ResourceEncodingEnum theEncoding) {
+		return myParsedResourceCache != null
+				&& myParsedResourceCache.isEnabled()
+				&& theEncoding != ResourceEncodingEnum.ESR
+				&& theEncoding != ResourceEncodingEnum.DEL
+				&& theEntity.getResourceId() != null
+				&& theEntity.getUpdatedDate() != null
+				&& theEntity.getFhirVersion() == myFhirContext.getVersion().getVersion();
+	}
+
 	private <R extends IBaseResource> void populateResourcePartitionInformation(
 			IBaseResourceEntity theEntity, R retVal) {
 		if (myPartitionSettings.isPartitioningEnabled()) {
@@ -257,7 +293,8 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 	private <R extends IBaseResource> R parseResource(
 			IBaseResourceEntity theEntity,
 			ResourceEncodingEnum theResourceEncoding,
-			String theDecodedResourceText,
+			@Nullable String theDecodedResourceText,
+			byte[] theResourceBytes,
 			Class<R> theResourceType) {
 		R retVal;
 		if (theResourceEncoding == ResourceEncodingEnum.ESR) {
@@ -274,11 +311,15 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 
 		} else if (theResourceEncoding != ResourceEncodingEnum.DEL) {
 
-			IParser parser = new TolerantJsonParser(
+			TolerantJsonParser parser = new TolerantJsonParser(
 					getContext(theEntity.getFhirVersion()), LENIENT_ERROR_HANDLER, theEntity.getId());
 
 			try {
-				retVal = parser.parseResource(theResourceType, theDecodedResourceText);
+				if (theDecodedResourceText == null) {
+					retVal = SmileUtil.parse(parser, theResourceType, theResourceBytes);
+				} else {
+					retVal = parser.parseResource(theResourceType, theDecodedResourceText);
+				}
 			} catch (Exception e) {
 				StringBuilder b = new StringBuilder();
 				b.append("Failed to parse database resource[");
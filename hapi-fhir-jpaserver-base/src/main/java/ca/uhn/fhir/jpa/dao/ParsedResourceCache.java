@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded cache of resources parsed from their stored text, used by {@link JpaStorageResourceParser}
+ * to avoid decoding and parsing the same resource version repeatedly. The size of the cache is
+ * controlled by {@link JpaStorageSettings#setParsedResourceCacheSize(int)}, and it is disabled by default.
+ * <p>
+ * Only the parsed resource body is cached (i.e. before any metadata is populated from the
+ * database row), and a copy is stored and returned for every access so that callers are free to
+ * modify the resources they receive.
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public class ParsedResourceCache {
+
+	private static final long TIME_TO_LIVE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private final AtomicLong myHitCount = new AtomicLong();
+	private final AtomicLong myMissCount = new AtomicLong();
+
+	@Autowired
+	private FhirContext myFhirContext;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	private volatile Cache<Key, IBaseResource> myCache;
+
+	/**
+	 * Returns <code>true</code> if the cache is enabled in the storage settings
+	 */
+	public boolean isEnabled() {
+		return myStorageSettings.getParsedResourceCacheSize() > 0;
+	}
+
+	/**
+	 * Returns a copy of the cached resource for the given key, or <code>null</code> if the cache
+	 * does not contain it
+	 */
+	@Nullable
+	public <R extends IBaseResource> R get(Key theKey, Class<R> theResourceType) {
+		IBaseResource cached = getCache().getIfPresent(theKey);
+		if (cached == null) {
+			myMissCount.incrementAndGet();
+			return null;
+		}
+		myHitCount.incrementAndGet();
+		return theResourceType.cast(myFhirContext.newTerser().clone(cached));
+	}
+
+	/**
+	 * Stores a copy of the given freshly parsed resource
+	 */
+	public void put(Key theKey, IBaseResource theResource) {
+		getCache().put(theKey, myFhirContext.newTerser().clone(theResource));
+	}
+
+	/**
+	 * Removes all entries from the cache. This is called when everything is expunged, so that
+	 * resources which no longer exist are not kept in memory (or served again if their IDs are reused).
+	 */
+	public void invalidateAll() {
+		if (myCache != null) {
+			myCache.invalidateAll();
+		}
+	}
+
+	/**
+	 * Returns the number of lookups which were satisfied by the cache
+	 */
+	public long getHitCount() {
+		return myHitCount.get();
+	}
+
+	/**
+	 * Returns the number of lookups which were not satisfied by the cache
+	 */
+	public long getMissCount() {
+		return myMissCount.get();
+	}
+
+	/**
+	 * Returns the approximate number of resources currently held in the cache
+	 */
+	public long getEstimatedSize() {
+		return myCache != null ? myCache.estimatedSize() : 0;
+	}
+
+	private Cache<Key, IBaseResource> getCache() {
+		Cache<Key, IBaseResource> retVal = myCache;
+		if (retVal == null) {
+			synchronized (this) {
+				retVal = myCache;
+				if (retVal == null) {
+					retVal = CacheFactory.build(TIME_TO_LIVE_MILLIS, myStorageSettings.getParsedResourceCacheSize());
+					myCache = retVal;
+				}
+			}
+		}
+		return retVal;
+	}
+
+	@VisibleForTesting
+	void setFhirContextForUnitTest(FhirContext theFhirContext) {
+		myFhirContext = theFhirContext;
+	}
+
+	@VisibleForTesting
+	void setStorageSettingsForUnitTest(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	/**
+	 * Identifies a single parsed resource version. The last updated timestamp is included so that
+	 * a version which is rewritten in place (e.g. by <code>$meta-delete</code> or a history rewrite)
+	 * is never served from a stale entry, and the target type is included because a resource may
+	 * be parsed into a custom type depending on its profiles.
+	 */
+	public static class Key {
+
+		private final Long myResourcePid;
+		private final long myVersion;
+		private final long myUpdatedMillis;
+		private final Class<? extends IBaseResource> myResourceType;
+		private final int myHashCode;
+
+		public Key(
+				Long theResourcePid,
+				long theVersion,
+				long theUpdatedMillis,
+				Class<? extends IBaseResource> theResourceType) {
+			myResourcePid = theResourcePid;
+			myVersion = theVersion;
+			myUpdatedMillis = theUpdatedMillis;
+			myResourceType = theResourceType;
+			myHashCode = new HashCodeBuilder()
+					.append(myResourcePid)
+					.append(myVersion)
+					.append(myUpdatedMillis)
+					.append(myResourceType)
+					.toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+			if (!(theO instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) theO;
+			return new EqualsBuilder()
+					.append(myResourcePid, that.myResourcePid)
+					.append(myVersion, that.myVersion)
+					.append(myUpdatedMillis, that.myUpdatedMillis)
+					.append(myResourceType, that.myResourceType)
+					.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+	}
+}
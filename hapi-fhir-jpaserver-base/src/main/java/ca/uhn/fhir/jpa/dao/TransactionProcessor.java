@@ -28,6 +28,7 @@ import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.config.HapiFhirHibernateJpaDialect;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.cross.IResourceLookup;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
@@ -39,6 +40,7 @@ import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.util.FhirTerser;
 import ca.uhn.fhir.util.ResourceReferenceInfo;
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.annotations.VisibleForTesting;
@@ -48,6 +50,7 @@ import org.apache.commons.lang3.Validate;
 import org.hibernate.internal.SessionImpl;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseReference;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.slf4j.Logger;
@@ -197,6 +200,13 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		preFetchConditionalUrls(
 				theTransactionDetails, theEntries, theVersionAdapter, theRequestPartitionId, idsToPreFetch);
 
+		/*
+		 * Pre-resolve any references to existing resources
+		 */
+		if (myStorageSettings.isPreResolveTransactionReferences()) {
+			preResolveReferences(theTransactionDetails, theEntries, theVersionAdapter, theRequestPartitionId);
+		}
+
 		IFhirSystemDao<?, ?> systemDao = myApplicationContext.getBean(IFhirSystemDao.class);
 		systemDao.preFetchResources(JpaPid.fromLongList(idsToPreFetch), true);
 	}
@@ -242,6 +252,83 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 		}
 	}
 
+	/**
+	 * Resolves all relative references in the resources being created and updated using a
+	 * small number of batched queries, and stores the results in the {@link TransactionDetails}
+	 * so that the individual references don't each need to be resolved by the link resolver.
+	 * References which can't be resolved here are left alone and resolved normally later.
+	 */
+	private void preResolveReferences(
+			TransactionDetails theTransactionDetails,
+			List<IBase> theEntries,
+			ITransactionProcessorVersionAdapter theVersionAdapter,
+			RequestPartitionId theRequestPartitionId) {
+		// IDs of resources deleted by the transaction, and entry fullUrls which will be replaced
+		Set<String> idsToSkip = new HashSet<>();
+		for (IBase nextEntry : theEntries) {
+			String fullUrl = theVersionAdapter.getFullUrl(nextEntry);
+			if (isNotBlank(fullUrl)) {
+				idsToSkip.add(fullUrl);
+			}
+			String verb = theVersionAdapter.getEntryRequestVerb(myFhirContext, nextEntry);
+			if ("DELETE".equals(verb)) {
+				String requestUrl = theVersionAdapter.getEntryRequestUrl(nextEntry);
+				if (requestUrl == null || requestUrl.contains("?")) {
+					// We can't tell up front what a conditional delete will remove
+					return;
+				}
+				IIdType id = myFhirContext.getVersion().newIdType();
+				id.setValue(requestUrl);
+				idsToSkip.add(id.toUnqualifiedVersionless().getValue());
+			}
+		}
+
+		FhirTerser terser = myFhirContext.newTerser();
+		Set<IIdType> idsToResolve = new HashSet<>();
+		for (IBase nextEntry : theEntries) {
+			IBaseResource resource = theVersionAdapter.getResource(nextEntry);
+			String verb = theVersionAdapter.getEntryRequestVerb(myFhirContext, nextEntry);
+			if (resource == null || !("POST".equals(verb) || "PUT".equals(verb))) {
+				continue;
+			}
+
+			for (IBaseReference nextReference :
+					terser.getAllPopulatedChildElementsOfType(resource, IBaseReference.class)) {
+				IIdType id = nextReference.getReferenceElement();
+				if (id == null
+						|| id.isEmpty()
+						|| id.isLocal()
+						|| id.isAbsolute()
+						|| !id.hasResourceType()
+						|| !id.hasIdPart()
+						|| id.getValue().contains("?")
+						|| myFhirContext.getResourceTypes().contains(id.getResourceType()) == false) {
+					continue;
+				}
+
+				IIdType versionlessId = id.toUnqualifiedVersionless();
+				if (idsToSkip.contains(versionlessId.getValue())
+						|| theTransactionDetails.hasResolvedResourceId(versionlessId)) {
+					continue;
+				}
+				idsToResolve.add(versionlessId);
+			}
+		}
+
+		if (idsToResolve.isEmpty()) {
+			return;
+		}
+
+		Map<IIdType, IResourceLookup> resolved =
+				myIdHelperService.resolveResourceIdentities(theRequestPartitionId, idsToResolve, true);
+		for (Map.Entry<IIdType, IResourceLookup> nextEntry : resolved.entrySet()) {
+			JpaPid pid = (JpaPid) nextEntry.getValue().getPersistentId();
+			pid.setAssociatedResourceId(nextEntry.getKey());
+			theTransactionDetails.addResolvedResourceId(nextEntry.getKey(), pid);
+		}
+		ourLog.debug("Pre-resolved {} of {} references in transaction", resolved.size(), idsToResolve.size());
+	}
+
 	private void preFetchConditionalUrls(
 			TransactionDetails theTransactionDetails,
 			List<IBase> theEntries,
@@ -57,6 +57,10 @@ public interface ISearchDao extends JpaRepository<Search, Long>, IHapiFhirJpaRep
 	@Query("UPDATE Search s SET s.myDeleted = :deleted WHERE s.myId = :pid")
 	void updateDeleted(@Param("pid") Long thePid, @Param("deleted") boolean theDeleted);
 
+	@Modifying
+	@Query("UPDATE Search s SET s.myTotalCount = :total WHERE s.myUuid = :uuid AND s.myTotalCount IS NULL")
+	int updateTotalCountIfNotSet(@Param("uuid") String theUuid, @Param("total") int theTotalCount);
+
 	@Modifying
 	@Query("DELETE FROM Search s WHERE s.myId = :pid")
 	void deleteByPid(@Param("pid") Long theId);
@@ -29,7 +29,10 @@ import org.springframework.stereotype.Service;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceContextType;
@@ -44,17 +47,25 @@ public class DaoSearchParamSynchronizer {
 			ResourceTable theEntity,
 			ResourceIndexedSearchParams existingParams) {
 		AddRemoveCount retVal = new AddRemoveCount();
-
-		synchronize(theEntity, retVal, theParams.myStringParams, existingParams.myStringParams);
-		synchronize(theEntity, retVal, theParams.myTokenParams, existingParams.myTokenParams);
-		synchronize(theEntity, retVal, theParams.myNumberParams, existingParams.myNumberParams);
-		synchronize(theEntity, retVal, theParams.myQuantityParams, existingParams.myQuantityParams);
-		synchronize(theEntity, retVal, theParams.myQuantityNormalizedParams, existingParams.myQuantityNormalizedParams);
-		synchronize(theEntity, retVal, theParams.myDateParams, existingParams.myDateParams);
-		synchronize(theEntity, retVal, theParams.myUriParams, existingParams.myUriParams);
-		synchronize(theEntity, retVal, theParams.myCoordsParams, existingParams.myCoordsParams);
-		synchronize(theEntity, retVal, theParams.myLinks, existingParams.myLinks);
-		synchronize(theEntity, retVal, theParams.myComboTokenNonUnique, existingParams.myComboTokenNonUnique);
+		NewIndexRows newRows = new NewIndexRows();
+
+		synchronize(theEntity, retVal, newRows, theParams.myStringParams, existingParams.myStringParams);
+		synchronize(theEntity, retVal, newRows, theParams.myTokenParams, existingParams.myTokenParams);
+		synchronize(theEntity, retVal, newRows, theParams.myNumberParams, existingParams.myNumberParams);
+		synchronize(theEntity, retVal, newRows, theParams.myQuantityParams, existingParams.myQuantityParams);
+		synchronize(
+				theEntity,
+				retVal,
+				newRows,
+				theParams.myQuantityNormalizedParams,
+				existingParams.myQuantityNormalizedParams);
+		synchronize(theEntity, retVal, newRows, theParams.myDateParams, existingParams.myDateParams);
+		synchronize(theEntity, retVal, newRows, theParams.myUriParams, existingParams.myUriParams);
+		synchronize(theEntity, retVal, newRows, theParams.myCoordsParams, existingParams.myCoordsParams);
+		synchronize(theEntity, retVal, newRows, theParams.myLinks, existingParams.myLinks);
+		synchronize(theEntity, retVal, newRows, theParams.myComboTokenNonUnique, existingParams.myComboTokenNonUnique);
+
+		newRows.persist(myEntityManager);
 
 		// make sure links are indexed
 		theEntity.setResourceLinks(theParams.myLinks);
@@ -70,6 +81,7 @@ public class DaoSearchParamSynchronizer {
 	private <T extends BaseResourceIndex> void synchronize(
 			ResourceTable theEntity,
 			AddRemoveCount theAddRemoveCount,
+			NewIndexRows theNewRows,
 			Collection<T> theNewParams,
 			Collection<T> theExistingParams) {
 		Collection<T> newParams = theNewParams;
@@ -86,19 +98,21 @@ public class DaoSearchParamSynchronizer {
 
 		List<T> paramsToRemove = subtract(theExistingParams, newParams);
 		List<T> paramsToAdd = subtract(newParams, theExistingParams);
-		tryToReuseIndexEntities(paramsToRemove, paramsToAdd);
+		int addCount = paramsToAdd.size();
+		List<T> reusedParams = tryToReuseIndexEntities(paramsToRemove, paramsToAdd);
 
 		for (T next : paramsToRemove) {
 			myEntityManager.remove(next);
 			theEntity.getParamsQuantity().remove(next);
 			theEntity.getParamsQuantityNormalized().remove(next);
 		}
-		for (T next : paramsToAdd) {
+		for (T next : reusedParams) {
 			myEntityManager.merge(next);
 		}
+		theNewRows.addAll(paramsToAdd);
 
 		// TODO:  are there any unintended consequences to fixing this bug?
-		theAddRemoveCount.addToAddCount(paramsToAdd.size());
+		theAddRemoveCount.addToAddCount(addCount);
 		theAddRemoveCount.addToRemoveCount(paramsToRemove.size());
 	}
 
@@ -110,26 +124,66 @@ public class DaoSearchParamSynchronizer {
 	 * "one delete + one insert" with "one update"
 	 *
 	 * @param theIndexesToRemove The rows that would be removed
-	 * @param theIndexesToAdd    The rows that would be added
+	 * @param theIndexesToAdd    The rows that would be added. Any rows which can be replaced by
+	 *                           a reused row (or which already have an ID) are moved from this
+	 *                           list to the returned list, leaving only brand new rows behind.
+	 * @return The rows to be saved by updating an existing row
 	 */
-	private <T extends BaseResourceIndex> void tryToReuseIndexEntities(
+	private <T extends BaseResourceIndex> List<T> tryToReuseIndexEntities(
 			List<T> theIndexesToRemove, List<T> theIndexesToAdd) {
-		for (int addIndex = 0; addIndex < theIndexesToAdd.size(); addIndex++) {
+		List<T> retVal = new ArrayList<>();
+		for (Iterator<T> iter = theIndexesToAdd.iterator(); iter.hasNext(); ) {
+			T targetEntity = iter.next();
+			if (targetEntity.getId() != null) {
+				retVal.add(targetEntity);
+				iter.remove();
+				continue;
+			}
 
 			// If there are no more rows to remove, there's nothing we can reuse
 			if (theIndexesToRemove.isEmpty()) {
-				break;
-			}
-
-			T targetEntity = theIndexesToAdd.get(addIndex);
-			if (targetEntity.getId() != null) {
 				continue;
 			}
 
 			// Take a row we were going to remove, and repurpose its ID
 			T entityToReuse = theIndexesToRemove.remove(theIndexesToRemove.size() - 1);
 			entityToReuse.copyMutableValuesFrom(targetEntity);
-			theIndexesToAdd.set(addIndex, entityToReuse);
+			retVal.add(entityToReuse);
+			iter.remove();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Collects the brand new index rows for a resource across all of the index tables so
+	 * that they can be written together, one table after another.
+	 * <p>
+	 * New rows are passed to {@link EntityManager#persist(Object)} rather than
+	 * {@link EntityManager#merge(Object)}. A merge copies the row into a second, managed
+	 * instance and walks its associations, which is wasted work for a row that is known to
+	 * be new. Grouping the rows by table keeps consecutive inserts going to the same table,
+	 * which lets Hibernate send each group as a single JDBC batch (see
+	 * <code>hibernate.jdbc.batch_size</code>) even if insert ordering has been disabled.
+	 * </p>
+	 */
+	private static class NewIndexRows {
+
+		private final Map<Class<?>, List<BaseResourceIndex>> myRowsByType = new LinkedHashMap<>();
+
+		private void addAll(Collection<? extends BaseResourceIndex> theRows) {
+			for (BaseResourceIndex next : theRows) {
+				myRowsByType
+						.computeIfAbsent(next.getClass(), t -> new ArrayList<>())
+						.add(next);
+			}
+		}
+
+		private void persist(EntityManager theEntityManager) {
+			for (List<BaseResourceIndex> nextGroup : myRowsByType.values()) {
+				for (BaseResourceIndex next : nextGroup) {
+					theEntityManager.persist(next);
+				}
+			}
 		}
 	}
 
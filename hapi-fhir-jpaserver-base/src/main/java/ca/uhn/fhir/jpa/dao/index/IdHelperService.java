@@ -188,6 +188,56 @@ public class IdHelperService implements IIdHelperService<JpaPid> {
 		return matches.get(theResourceId).get(0);
 	}
 
+	/**
+	 * Resolves a collection of resource IDs to their persistent identities, issuing one query
+	 * per resource type (per chunk of IDs) instead of one query per ID. IDs which are not found,
+	 * or which match more than one resource, are omitted from the returned map.
+	 */
+	@Override
+	@Nonnull
+	public Map<IIdType, IResourceLookup> resolveResourceIdentities(
+			@Nonnull RequestPartitionId theRequestPartitionId,
+			@Nonnull Collection<IIdType> theIds,
+			boolean theExcludeDeleted) {
+		assert myDontCheckActiveTransactionForUnitTest || TransactionSynchronizationManager.isSynchronizationActive();
+
+		Set<IIdType> ids = new HashSet<>(theIds.size());
+		for (IIdType next : theIds) {
+			Validate.isTrue(next.hasResourceType() && next.hasIdPart(), "Invalid ID: %s", next);
+			ids.add(next.toUnqualifiedVersionless());
+		}
+
+		Map<IIdType, IResourceLookup> retVal = new HashMap<>();
+		new QueryChunker<IIdType>().chunk(ids, SearchBuilder.getMaximumPageSize() / 2, chunk -> {
+			Map<String, List<IResourceLookup<JpaPid>>> matches =
+					translateForcedIdToPids(theRequestPartitionId, chunk, theExcludeDeleted);
+
+			for (IIdType nextId : chunk) {
+				List<IResourceLookup<JpaPid>> candidates =
+						matches.getOrDefault(nextId.getIdPart(), Collections.emptyList());
+				List<IResourceLookup<JpaPid>> typeMatches = candidates.stream()
+						.filter(t -> nextId.getResourceType().equals(t.getResourceType()))
+						.collect(Collectors.toList());
+
+				// Anything ambiguous is left for the single ID lookup to report
+				if (typeMatches.size() == 1) {
+					IResourceLookup<JpaPid> lookup = typeMatches.get(0);
+					retVal.put(nextId, lookup);
+
+					if (idRequiresForcedId(nextId.getIdPart())) {
+						JpaPid jpaPid = lookup.getPersistentId();
+						jpaPid.setAssociatedResourceId(nextId);
+						String key =
+								toForcedIdToPidKey(theRequestPartitionId, nextId.getResourceType(), nextId.getIdPart());
+						myMemoryCacheService.putAfterCommit(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, key, jpaPid);
+					}
+				}
+			}
+		});
+
+		return retVal;
+	}
+
 	/**
 	 * Returns a mapping of Id -> IResourcePersistentId.
 	 * If any resource is not found, it will throw ResourceNotFound exception (and no map will be returned)
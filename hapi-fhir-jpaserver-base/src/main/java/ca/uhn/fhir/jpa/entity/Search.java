@@ -276,6 +276,15 @@ public class Search implements ICachedSearchDetails, Serializable {
 		return myId;
 	}
 
+	/**
+	 * Only used by cache implementations which do not store searches in the database
+	 * (e.g. {@link ca.uhn.fhir.jpa.search.cache.MemorySearchCacheSvcImpl}), where the
+	 * ID is not assigned from a sequence.
+	 */
+	public void setId(Long theId) {
+		myId = theId;
+	}
+
 	public Collection<SearchInclude> getIncludes() {
 		if (myIncludes == null) {
 			myIncludes = new ArrayList<>();
@@ -480,6 +489,14 @@ public class Search implements ICachedSearchDetails, Serializable {
 		mySearchQueryStringHash = null;
 	}
 
+	/**
+	 * Returns the hash of the {@link #getSearchQueryString() search query string}, or <code>null</code>
+	 * if this search must not be reused
+	 */
+	public Integer getSearchQueryStringHash() {
+		return mySearchQueryStringHash;
+	}
+
 	public Integer getOffset() {
 		return myOffset;
 	}
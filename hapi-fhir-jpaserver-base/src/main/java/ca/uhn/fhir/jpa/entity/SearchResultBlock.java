@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.entity;
+
+import ca.uhn.fhir.jpa.search.cache.DatabaseBlockSearchResultCacheSvcImpl;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Stores a contiguous block of the result PIDs for a {@link Search}, compressed into
+ * a single row. This is used by
+ * {@link ca.uhn.fhir.jpa.search.cache.DatabaseBlockSearchResultCacheSvcImpl} as an alternative
+ * to storing one {@link SearchResult} row per result.
+ *
+ * @since 7.0.0
+ */
+@Entity
+@Table(
+		name = "HFJ_SEARCH_RESULT_BLK",
+		uniqueConstraints = {
+			@UniqueConstraint(
+					name = "IDX_SEARCHRESBLK_IDX",
+					columnNames = {"SEARCH_PID", "BLOCK_IDX"})
+		})
+public class SearchResultBlock implements Serializable {
+
+	/**
+	 * Large enough for a block of {@link DatabaseBlockSearchResultCacheSvcImpl#DEFAULT_BLOCK_SIZE}
+	 * PIDs even if every PID needs the largest possible encoding (a version byte, the count and
+	 * then up to 10 bytes per PID)
+	 */
+	public static final int RESULT_PIDS_MAX_LENGTH =
+			1 + 10 + (10 * DatabaseBlockSearchResultCacheSvcImpl.DEFAULT_BLOCK_SIZE);
+
+	private static final long serialVersionUID = 1L;
+
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_SEARCH_RES_BLK")
+	@SequenceGenerator(name = "SEQ_SEARCH_RES_BLK", sequenceName = "SEQ_SEARCH_RES_BLK")
+	@Id
+	@Column(name = "PID")
+	private Long myId;
+
+	@Column(name = "SEARCH_PID", insertable = true, updatable = false, nullable = false)
+	private Long mySearchPid;
+
+	@Column(name = "BLOCK_IDX", insertable = true, updatable = false, nullable = false)
+	private int myBlockIndex;
+
+	@Column(name = "RESULT_COUNT", nullable = false)
+	private int myResultCount;
+
+	@Column(name = "RESULT_PIDS", length = RESULT_PIDS_MAX_LENGTH, nullable = false)
+	private byte[] myResultPids;
+
+	/**
+	 * Constructor
+	 */
+	public SearchResultBlock() {
+		// nothing
+	}
+
+	/**
+	 * Constructor
+	 */
+	public SearchResultBlock(Search theSearch, int theBlockIndex) {
+		Validate.notNull(theSearch.getId());
+		mySearchPid = theSearch.getId();
+		myBlockIndex = theBlockIndex;
+	}
+
+	public Long getId() {
+		return myId;
+	}
+
+	public Long getSearchPid() {
+		return mySearchPid;
+	}
+
+	public int getBlockIndex() {
+		return myBlockIndex;
+	}
+
+	/**
+	 * The number of result PIDs encoded in {@link #getResultPids()}
+	 */
+	public int getResultCount() {
+		return myResultCount;
+	}
+
+	public void setResultCount(int theResultCount) {
+		myResultCount = theResultCount;
+	}
+
+	public byte[] getResultPids() {
+		return myResultPids;
+	}
+
+	public void setResultPids(byte[] theResultPids) {
+		myResultPids = theResultPids;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+				.append("search", mySearchPid)
+				.append("blockIndex", myBlockIndex)
+				.append("resultCount", myResultCount)
+				.toString();
+	}
+}
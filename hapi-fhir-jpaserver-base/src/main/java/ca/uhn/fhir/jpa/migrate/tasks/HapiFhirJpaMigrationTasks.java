@@ -110,6 +110,20 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 				.addIndex("20230911.2", "IDX_EMPi_TGT_MR_SCore")
 				.unique(false)
 				.withColumns("TARGET_TYPE", "MATCH_RESULT", "SCORE");
+
+		// Compressed search result blocks
+		Builder.BuilderAddTableByColumns searchResultBlockTable =
+				version.addTableByColumns("20231017.1", "HFJ_SEARCH_RESULT_BLK", "PID");
+		searchResultBlockTable.addColumn("PID").nonNullable().type(ColumnTypeEnum.LONG);
+		searchResultBlockTable.addColumn("SEARCH_PID").nonNullable().type(ColumnTypeEnum.LONG);
+		searchResultBlockTable.addColumn("BLOCK_IDX").nonNullable().type(ColumnTypeEnum.INT);
+		searchResultBlockTable.addColumn("RESULT_COUNT").nonNullable().type(ColumnTypeEnum.INT);
+		searchResultBlockTable.addColumn("RESULT_PIDS").nonNullable().type(ColumnTypeEnum.BINARY);
+		searchResultBlockTable
+				.addIndex("20231017.2", "IDX_SEARCHRESBLK_IDX")
+				.unique(true)
+				.withColumns("SEARCH_PID", "BLOCK_IDX");
+		version.addIdGenerator("20231017.3", "SEQ_SEARCH_RES_BLK");
 	}
 
 	protected void init680() {
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.LongArrayList;
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * Bundle provider for synchronous searches when
+ * {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#isStreamingSynchronousSearchEnabled() streaming synchronous search}
+ * is enabled. Only the PIDs of the matching resources are held, and the resources
+ * for a page (and their includes) are loaded when that page is requested.
+ * <p>
+ * Unlike the eager synchronous search, the include limit applies to each page, {@link #size()}
+ * does not count included resources, and the original {@link RequestDetails} is used for
+ * every page that is loaded.
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public class StreamingSynchronousBundleProvider implements IBundleProvider {
+
+	private final SynchronousSearchSvcImpl mySynchronousSearchSvc;
+	private final ISearchBuilder mySearchBuilder;
+	private final SearchParameterMap myParams;
+	private final RequestDetails myRequestDetails;
+	private final RequestPartitionId myRequestPartitionId;
+	private final LongArrayList myPids;
+	private final IPrimitiveType<Date> myPublished = InstantDt.withCurrentTime();
+	private Integer mySize;
+
+	StreamingSynchronousBundleProvider(
+			SynchronousSearchSvcImpl theSynchronousSearchSvc,
+			ISearchBuilder theSearchBuilder,
+			SearchParameterMap theParams,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId,
+			List<JpaPid> thePids) {
+		mySynchronousSearchSvc = theSynchronousSearchSvc;
+		mySearchBuilder = theSearchBuilder;
+		myParams = theParams;
+		myRequestDetails = theRequestDetails;
+		myRequestPartitionId = theRequestPartitionId;
+
+		myPids = new LongArrayList(thePids.size());
+		for (JpaPid next : thePids) {
+			myPids.add(next.getId());
+		}
+	}
+
+	@Override
+	public IPrimitiveType<Date> getPublished() {
+		return myPublished;
+	}
+
+	@Nonnull
+	@Override
+	public List<IBaseResource> getResources(int theFromIndex, int theToIndex) {
+		int fromIndex = Math.max(0, theFromIndex);
+		int toIndex = Math.min(theToIndex, myPids.size());
+		if (fromIndex >= toIndex) {
+			return Collections.emptyList();
+		}
+
+		List<JpaPid> pids = new ArrayList<>(toIndex - fromIndex);
+		for (int i = fromIndex; i < toIndex; i++) {
+			pids.add(JpaPid.fromId(myPids.get(i)));
+		}
+		return mySynchronousSearchSvc.loadPage(mySearchBuilder, myParams, pids, myRequestDetails, myRequestPartitionId);
+	}
+
+	@Override
+	public String getUuid() {
+		return null;
+	}
+
+	@Override
+	public Integer preferredPageSize() {
+		return myParams.getCount();
+	}
+
+	/**
+	 * Returns the total number of results, or <code>null</code> if this isn't known
+	 * because the search stopped once it reached its maximum number of results
+	 */
+	@Override
+	public Integer size() {
+		return mySize;
+	}
+
+	void setSize(Integer theSize) {
+		mySize = theSize;
+	}
+}
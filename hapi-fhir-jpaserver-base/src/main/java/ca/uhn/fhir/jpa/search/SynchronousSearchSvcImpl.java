@@ -116,6 +116,7 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 
 					// Load the results synchronously
 					final List<JpaPid> pids = new ArrayList<>();
+					String nextPageCursor = null;
 
 					Long count = 0L;
 					if (wantCount) {
@@ -157,6 +158,10 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 								break;
 							}
 						}
+						// With keyset paging, a full page means there may be more results after it
+						if (theParams.getCount() != null && pids.size() >= theParams.getCount()) {
+							nextPageCursor = resultIter.getNextPageCursor();
+						}
 					} catch (IOException e) {
 						ourLog.error("IO failure during database access", e);
 						throw new InternalErrorException(Msg.code(1164) + e);
@@ -176,6 +181,24 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 						}
 					}
 
+					if (isStreaming(theParams, theRequestDetails)) {
+						/*
+						 * In streaming mode we only hold on to the matching PIDs, and the
+						 * resources (and their includes) are loaded a page at a time
+						 */
+						StreamingSynchronousBundleProvider bundleProvider = new StreamingSynchronousBundleProvider(
+								this, theSb, theParams, theRequestDetails, theRequestPartitionId, pids);
+						if (wantCount) {
+							bundleProvider.setSize(count.intValue());
+						} else {
+							Integer queryCount = getQueryCount(theLoadSynchronousUpTo, theParams);
+							if (queryCount == null || queryCount > pids.size()) {
+								bundleProvider.setSize(pids.size());
+							}
+						}
+						return bundleProvider;
+					}
+
 					/*
 					 * For synchronous queries, we load all the includes right away
 					 * since we're returning a static bundle with all the results
@@ -186,55 +209,20 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 					 * individually for pages as we return them to clients
 					 */
 
-					// _includes
-					Integer maxIncludes = myStorageSettings.getMaximumIncludesToLoadPerPage();
-					final Set<JpaPid> includedPids = theSb.loadIncludes(
-							myContext,
-							myEntityManager,
-							pids,
-							theParams.getRevIncludes(),
-							true,
-							theParams.getLastUpdated(),
-							"(synchronous)",
-							theRequestDetails,
-							maxIncludes);
-					if (maxIncludes != null) {
-						maxIncludes -= includedPids.size();
-					}
-					pids.addAll(includedPids);
-					List<JpaPid> includedPidsList = new ArrayList<>(includedPids);
-
-					// _revincludes
-					if (theParams.getEverythingMode() == null && (maxIncludes == null || maxIncludes > 0)) {
-						Set<JpaPid> revIncludedPids = theSb.loadIncludes(
-								myContext,
-								myEntityManager,
-								pids,
-								theParams.getIncludes(),
-								false,
-								theParams.getLastUpdated(),
-								"(synchronous)",
-								theRequestDetails,
-								maxIncludes);
-						includedPids.addAll(revIncludedPids);
-						pids.addAll(revIncludedPids);
-						includedPidsList.addAll(revIncludedPids);
-					}
-
-					List<IBaseResource> resources = new ArrayList<>();
-					theSb.loadResourcesByPid(pids, includedPidsList, resources, false, theRequestDetails);
-					// Hook: STORAGE_PRESHOW_RESOURCES
-					resources = ServerInterceptorUtil.fireStoragePreshowResource(
-							resources, theRequestDetails, myInterceptorBroadcaster);
+					List<IBaseResource> resources = loadResources(theSb, theParams, pids, theRequestDetails);
 
 					SimpleBundleProvider bundleProvider = new SimpleBundleProvider(resources);
 					if (theParams.isOffsetQuery()) {
 						bundleProvider.setCurrentPageOffset(theParams.getOffset());
 						bundleProvider.setCurrentPageSize(theParams.getCount());
+						bundleProvider.setNextPageCursor(nextPageCursor);
 					}
 
 					if (wantCount) {
 						bundleProvider.setSize(count.intValue());
+					} else if (theParams.getCursor() != null) {
+						// The position of a keyset page within the results isn't known
+						bundleProvider.setSize(null);
 					} else {
 						Integer queryCount = getQueryCount(theLoadSynchronousUpTo, theParams);
 						if (queryCount == null || queryCount > resources.size()) {
@@ -274,6 +262,82 @@ public class SynchronousSearchSvcImpl implements ISynchronousSearchSvc {
 				theRequestPartitionId);
 	}
 
+	/**
+	 * Loads the resources for the given PIDs, along with the targets of any <code>_include</code>
+	 * and <code>_revinclude</code> parameters. Included PIDs are appended to <code>thePids</code>.
+	 * Must be called within a transaction.
+	 */
+	private List<IBaseResource> loadResources(
+			ISearchBuilder theSb,
+			SearchParameterMap theParams,
+			List<JpaPid> thePids,
+			RequestDetails theRequestDetails) {
+		// _includes
+		Integer maxIncludes = myStorageSettings.getMaximumIncludesToLoadPerPage();
+		final Set<JpaPid> includedPids = theSb.loadIncludes(
+				myContext,
+				myEntityManager,
+				thePids,
+				theParams.getRevIncludes(),
+				true,
+				theParams.getLastUpdated(),
+				"(synchronous)",
+				theRequestDetails,
+				maxIncludes);
+		if (maxIncludes != null) {
+			maxIncludes -= includedPids.size();
+		}
+		thePids.addAll(includedPids);
+		List<JpaPid> includedPidsList = new ArrayList<>(includedPids);
+
+		// _revincludes
+		if (theParams.getEverythingMode() == null && (maxIncludes == null || maxIncludes > 0)) {
+			Set<JpaPid> revIncludedPids = theSb.loadIncludes(
+					myContext,
+					myEntityManager,
+					thePids,
+					theParams.getIncludes(),
+					false,
+					theParams.getLastUpdated(),
+					"(synchronous)",
+					theRequestDetails,
+					maxIncludes);
+			includedPids.addAll(revIncludedPids);
+			thePids.addAll(revIncludedPids);
+			includedPidsList.addAll(revIncludedPids);
+		}
+
+		List<IBaseResource> resources = new ArrayList<>();
+		theSb.loadResourcesByPid(thePids, includedPidsList, resources, false, theRequestDetails);
+		// Hook: STORAGE_PRESHOW_RESOURCES
+		resources = ServerInterceptorUtil.fireStoragePreshowResource(
+				resources, theRequestDetails, myInterceptorBroadcaster);
+		return resources;
+	}
+
+	/**
+	 * Loads one page of results for a {@link StreamingSynchronousBundleProvider}
+	 */
+	List<IBaseResource> loadPage(
+			ISearchBuilder theSb,
+			SearchParameterMap theParams,
+			List<JpaPid> thePids,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		return myTxService
+				.withRequest(theRequestDetails)
+				.withRequestPartitionId(theRequestPartitionId)
+				.readOnly()
+				.execute(() -> loadResources(theSb, theParams, thePids, theRequestDetails));
+	}
+
+	private boolean isStreaming(SearchParameterMap theParams, RequestDetails theRequestDetails) {
+		return myStorageSettings.isStreamingSynchronousSearchEnabled()
+				&& theRequestDetails != null
+				&& !theParams.isOffsetQuery()
+				&& theParams.getEverythingMode() == null;
+	}
+
 	@Autowired
 	public void setContext(FhirContext theContext) {
 		myContext = theContext;
@@ -28,4 +28,14 @@ public interface ISearchQueryExecutor extends Iterator<Long>, Closeable {
 	 */
 	@Override
 	void close();
+
+	/**
+	 * If the query was generated with keyset paging enabled, returns the sort key values
+	 * of the row most recently returned by {@link #next()}. Returns <code>null</code> otherwise.
+	 *
+	 * @since 7.0.0
+	 */
+	default Object[] getKeysetValues() {
+		return null;
+	}
 }
@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import com.google.common.annotations.VisibleForTesting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceContextType;
+
+/**
+ * Executes the queries for a round of <code>_include</code> / <code>_revinclude</code> loading
+ * in {@link SearchBuilder}. If {@link JpaStorageSettings#getIncludeLoadingThreadCount()} is
+ * greater than 1, the queries are executed concurrently on a shared pool, each in its own
+ * read-only transaction. Otherwise they are executed on the calling thread using the caller's
+ * entity manager.
+ * <p>
+ * Queries are also executed on the calling thread if the caller is in a read-write transaction
+ * (e.g. a search within a transaction Bundle), since other transactions could not see any
+ * changes it has made but not yet committed.
+ * </p>
+ * <p>
+ * Each concurrent query holds a database connection, while the caller keeps holding its own
+ * connection until they have all finished. The pool is shared by all searches, so at most
+ * {@link JpaStorageSettings#getIncludeLoadingThreadCount()} connections are used by it in
+ * addition to the ones held by the searches themselves.
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public class IncludeLoadingExecutor {
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private IHapiTransactionService myTransactionService;
+
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+
+	private ThreadPoolTaskExecutor myExecutor;
+
+	@VisibleForTesting
+	void setStorageSettingsForUnitTest(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	@VisibleForTesting
+	void setTransactionServiceForUnitTest(IHapiTransactionService theTransactionService) {
+		myTransactionService = theTransactionService;
+	}
+
+	/**
+	 * @param theQueries The queries to execute
+	 * @return The results of each query, in the same order as the queries
+	 */
+	public <T> List<T> execute(
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId,
+			EntityManager theCallerEntityManager,
+			List<Function<EntityManager, T>> theQueries) {
+		List<T> retVal = new ArrayList<>(theQueries.size());
+		if (theQueries.size() < 2
+				|| myStorageSettings.getIncludeLoadingThreadCount() < 2
+				|| isInReadWriteTransaction()) {
+			for (Function<EntityManager, T> next : theQueries) {
+				retVal.add(next.apply(theCallerEntityManager));
+			}
+			return retVal;
+		}
+
+		ThreadPoolTaskExecutor executor = getExecutor();
+		List<Future<T>> futures = new ArrayList<>(theQueries.size());
+		for (Function<EntityManager, T> next : theQueries) {
+			futures.add(executor.submit(() -> myTransactionService
+					.withRequest(theRequestDetails)
+					.withRequestPartitionId(theRequestPartitionId)
+					.readOnly()
+					.execute(() -> next.apply(myEntityManager))));
+		}
+
+		try {
+			for (Future<T> next : futures) {
+				retVal.add(next.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			futures.forEach(t -> t.cancel(true));
+			throw new InternalErrorException(Msg.code(2453) + "Interrupted while loading includes", e);
+		} catch (ExecutionException e) {
+			futures.forEach(t -> t.cancel(true));
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(Msg.code(2454) + "Failed to load includes: " + e.getCause(), e);
+		}
+
+		return retVal;
+	}
+
+	private static boolean isInReadWriteTransaction() {
+		return TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
+	private synchronized ThreadPoolTaskExecutor getExecutor() {
+		if (myExecutor == null) {
+			int threadCount = myStorageSettings.getIncludeLoadingThreadCount();
+			myExecutor = ThreadPoolUtil.newThreadPool(threadCount, threadCount, "include-loading-");
+		}
+		return myExecutor;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+	}
+}
@@ -59,6 +59,7 @@ import ca.uhn.fhir.jpa.search.builder.models.ResolvedSearchQueryExecutor;
 import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryExecutor;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryTemplateCache;
 import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
 import ca.uhn.fhir.jpa.search.lastn.IElasticsearchSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
@@ -67,6 +68,9 @@ import ca.uhn.fhir.jpa.searchparam.util.JpaParamUtil;
 import ca.uhn.fhir.jpa.searchparam.util.LastNParameterHelper;
 import ca.uhn.fhir.jpa.util.BaseIterator;
 import ca.uhn.fhir.jpa.util.CurrentThreadCaptureQueriesListener;
+import ca.uhn.fhir.jpa.util.LongArrayList;
+import ca.uhn.fhir.jpa.util.LongHashSet;
+import ca.uhn.fhir.jpa.util.LongIntHashMap;
 import ca.uhn.fhir.jpa.util.QueryChunker;
 import ca.uhn.fhir.jpa.util.SqlQueryList;
 import ca.uhn.fhir.model.api.IQueryParameterType;
@@ -118,6 +122,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -186,6 +193,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	private Integer myMaxResultsToFetch;
 	private Set<JpaPid> myPidSet;
 	private boolean myHasNextIteratorQuery = false;
+	private boolean myKeysetPaging;
 	private RequestPartitionId myRequestPartitionId;
 
 	@Autowired(required = false)
@@ -197,6 +205,12 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	@Autowired
 	private IJpaStorageResourceParser myJpaStorageResourceParser;
 
+	@Autowired(required = false)
+	private IncludeLoadingExecutor myIncludeLoadingExecutor;
+
+	@Autowired(required = false)
+	private SearchQueryTemplateCache mySearchQueryTemplateCache;
+
 	/**
 	 * Constructor
 	 */
@@ -606,6 +620,27 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		QueryStack queryStack3 = new QueryStack(
 				theParams, myStorageSettings, myContext, sqlBuilder, mySearchParamRegistry, myPartitionSettings);
 
+		/*
+		 * Searches with the same shape generate the same SQL, so if it's safe to do so we reuse
+		 * the SQL generated by a previous search and only bind the values for this one
+		 */
+		if (mySearchQueryTemplateCache != null
+				&& mySearchQueryTemplateCache.isEnabled()
+				&& thePidList == null
+				&& !myHasNextIteratorQuery) {
+			String templateKey = mySearchQueryTemplateCache.createKey(
+					myResourceName,
+					theParams,
+					sort,
+					myRequestPartitionId,
+					theOffset,
+					myMaxResultsToFetch,
+					theCountOnlyFlag);
+			if (templateKey != null) {
+				sqlBuilder.setTemplateCache(mySearchQueryTemplateCache, templateKey);
+			}
+		}
+
 		if (theParams.keySet().size() > 1
 				|| theParams.getSort() != null
 				|| theParams.keySet().contains(Constants.PARAM_HAS)
@@ -732,6 +767,12 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			queryStack3.setUseAggregate(true);
 		}
 
+		boolean keysetPaging =
+				!theCountOnlyFlag && theOffset != null && thePidList == null && isKeysetPagingSupported(theParams);
+		if (keysetPaging) {
+			sqlBuilder.setKeysetPaging(true);
+		}
+
 		/*
 		 * Sort
 		 *
@@ -744,6 +785,24 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			createSort(queryStack3, sort, theParams);
 		}
 
+		/*
+		 * Keyset paging - Continue from the position in the cursor instead of skipping
+		 * an offset, so that the database can seek directly to the next page
+		 */
+		if (keysetPaging) {
+			List<String> cursorValues = null;
+			if (theParams.getCursor() != null) {
+				SearchCursor cursor = SearchCursor.decode(theParams.getCursor());
+				if (!cursor.getSort().equals(SearchCursor.toSortString(sort))) {
+					throw new InvalidRequestException(
+							Msg.code(2456) + "The _cursor parameter does not match the sort of this search");
+				}
+				cursorValues = cursor.getValues();
+			}
+			sqlBuilder.addKeysetPaging(cursorValues);
+			myKeysetPaging = true;
+		}
+
 		/*
 		 * Now perform the search
 		 */
@@ -829,6 +888,48 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 	}
 
+	/**
+	 * Keyset paging is only used for offset searches whose sort (if any) can be
+	 * expressed as a comparison against values we can read back from the query
+	 */
+	private boolean isKeysetPagingSupported(SearchParameterMap theParams) {
+		if (!myStorageSettings.isKeysetPagingEnabled()
+				|| theParams.getEverythingMode() != null
+				|| theParams.isLastN()
+				|| theParams.getNearDistanceParam() != null) {
+			return false;
+		}
+
+		SortSpec sort = theParams.getSort();
+		if (sort == null || isBlank(sort.getParamName())) {
+			return true;
+		}
+		if (sort.getChain() != null) {
+			return false;
+		}
+
+		String paramName = sort.getParamName();
+		if (IAnyResource.SP_RES_ID.equals(paramName) || Constants.PARAM_LASTUPDATED.equals(paramName)) {
+			return true;
+		}
+		if (paramName.indexOf('.') != -1 || paramName.indexOf(':') != -1) {
+			return false;
+		}
+
+		RuntimeSearchParam param = mySearchParamRegistry.getActiveSearchParam(myResourceName, paramName);
+		if (param == null) {
+			return false;
+		}
+		switch (param.getParamType()) {
+			case DATE:
+			case STRING:
+			case TOKEN:
+				return true;
+			default:
+				return false;
+		}
+	}
+
 	private void createSort(QueryStack theQueryStack, SortSpec theSort, SearchParameterMap theParams) {
 		if (theSort == null || isBlank(theSort.getParamName())) {
 			return;
@@ -1039,10 +1140,10 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 	private void doLoadPids(
 			Collection<JpaPid> thePids,
-			Collection<JpaPid> theIncludedPids,
+			LongHashSet theIncludedPids,
 			List<IBaseResource> theResourceListToPopulate,
 			boolean theForHistoryOperation,
-			Map<JpaPid, Integer> thePosition) {
+			LongIntHashMap thePosition) {
 
 		Map<Long, Long> resourcePidToVersion = null;
 		for (JpaPid next : thePids) {
@@ -1074,7 +1175,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			Class<? extends IBaseResource> resourceType =
 					myContext.getResourceDefinition(next.getResourceType()).getImplementingClass();
 
-			JpaPid resourceId = JpaPid.fromId(next.getResourceId());
+			long resourceId = next.getResourceId();
 
 			/*
 			 * If a specific version is requested via an include, we'll replace the current version
@@ -1085,7 +1186,6 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			 */
 			if (resourcePidToVersion != null) {
 				Long version = resourcePidToVersion.get(next.getResourceId());
-				resourceId.setVersion(version);
 				if (version != null && !version.equals(next.getVersion())) {
 					IFhirResourceDao<? extends IBaseResource> dao = myDaoRegistry.getResourceDao(resourceType);
 					next = (IBaseResourceEntity)
@@ -1107,8 +1207,8 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 				continue;
 			}
 
-			Integer index = thePosition.get(resourceId);
-			if (index == null) {
+			int index = thePosition.getOrDefault(resourceId, -1);
+			if (index == -1) {
 				ourLog.warn("Got back unexpected resource PID {}", resourceId);
 				continue;
 			}
@@ -1181,9 +1281,13 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		// when running asserts
 		assert new HashSet<>(thePids).size() == thePids.size() : "PID list contains duplicates: " + thePids;
 
-		Map<JpaPid, Integer> position = new HashMap<>();
+		/*
+		 * Each PID only appears once in the results, so positions are keyed by the
+		 * primitive resource ID rather than by JpaPid
+		 */
+		LongIntHashMap position = new LongIntHashMap(thePids.size());
 		for (JpaPid next : thePids) {
-			position.put(next, theResourceListToPopulate.size());
+			position.put(next.getId(), theResourceListToPopulate.size());
 			theResourceListToPopulate.add(null);
 		}
 
@@ -1200,12 +1304,16 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			}
 		}
 
+		LongHashSet includedPids = new LongHashSet(theIncludedPids.size());
+		for (JpaPid next : theIncludedPids) {
+			includedPids.add(next.getId());
+		}
+
 		// We only chunk because some jdbc drivers can't handle long param lists.
 		new QueryChunker<JpaPid>()
 				.chunk(
 						thePids,
-						t -> doLoadPids(
-								t, theIncludedPids, theResourceListToPopulate, theForHistoryOperation, position));
+						t -> doLoadPids(t, includedPids, theResourceListToPopulate, theForHistoryOperation, position));
 	}
 
 	/**
@@ -1306,10 +1414,25 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			findVersionFieldName = MY_TARGET_RESOURCE_VERSION;
 		}
 
-		List<JpaPid> nextRoundMatches = new ArrayList<>(matches);
-		HashSet<JpaPid> allAdded = new HashSet<>();
-		HashSet<JpaPid> original = new HashSet<>(matches);
+		/*
+		 * PIDs are tracked as primitive longs here, since with _revinclude:iterate there can be
+		 * many thousands of them (and many duplicates). A JpaPid is only created for each PID
+		 * the first time it is found.
+		 */
+		LongArrayList nextRoundMatches = new LongArrayList(matches.size());
+		PidKeySet original = new PidKeySet(matches.size());
+		for (JpaPid next : matches) {
+			nextRoundMatches.add(next.getId());
+			original.add(next.getId(), next.getVersion());
+		}
+		PidKeySet allAdded = new PidKeySet(matches.size());
+		List<JpaPid> allAddedPids = new ArrayList<>();
 		ArrayList<Include> includes = new ArrayList<>(currentIncludes);
+		/*
+		 * A maximum count is applied to each uncombined query (i.e. per path), but could only be
+		 * applied to a combined query as a whole, which would change which includes are loaded.
+		 */
+		boolean combineIncludeQueries = myStorageSettings.isCombineIncludeQueries() && maxCount == null;
 
 		int roundCounts = 0;
 		StopWatch w = new StopWatch();
@@ -1318,7 +1441,21 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		do {
 			roundCounts++;
 
-			HashSet<JpaPid> pidsToInclude = new HashSet<>();
+			LongArrayList newRoundMatches = new LongArrayList();
+			addedSomeThisRound = false;
+
+			/*
+			 * The queries for each include in this round are independent of each other, so
+			 * we collect them all first and then execute them (possibly concurrently). The
+			 * results are processed in the order the queries were added, so the outcome is
+			 * the same either way.
+			 */
+			List<Function<EntityManager, List<?>>> queries = new ArrayList<>();
+			List<List<Long>> partitions = nextRoundMatches.partition(getMaximumPageSize());
+			List<String> combinedSubQueries = new ArrayList<>();
+			Map<String, Object> combinedParams = new HashMap<>();
+			List<Function<EntityManager, List<?>>> uncombinedQueries = new ArrayList<>();
+			int combinedQueriesPosition = -1;
 
 			for (Iterator<Include> iter = includes.iterator(); iter.hasNext(); ) {
 				Include nextInclude = iter.next();
@@ -1389,40 +1526,22 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 					}
 
 					String sql = sqlBuilder.toString();
-					List<Collection<JpaPid>> partitions = partition(nextRoundMatches, getMaximumPageSize());
-					for (Collection<JpaPid> nextPartition : partitions) {
-						TypedQuery<?> q = entityManager.createQuery(sql, Object[].class);
-						q.setParameter("target_pids", JpaPid.toLongList(nextPartition));
-						if (wantResourceType != null) {
-							q.setParameter("want_resource_type", wantResourceType);
-						}
-						if (maxCount != null) {
-							q.setMaxResults(maxCount);
-						}
-						if (hasDesiredResourceTypes) {
-							q.setParameter("desired_target_resource_types", desiredResourceTypes);
-						}
-						List<?> results = q.getResultList();
-						for (Object nextRow : results) {
-							if (nextRow == null) {
-								// This can happen if there are outgoing references which are canonical or point to
-								// other servers
-								continue;
+					String finalWantResourceType = wantResourceType;
+					for (List<Long> nextPartition : partitions) {
+						queries.add(em -> {
+							TypedQuery<?> q = em.createQuery(sql, Object[].class);
+							q.setParameter("target_pids", nextPartition);
+							if (finalWantResourceType != null) {
+								q.setParameter("want_resource_type", finalWantResourceType);
 							}
-
-							Long version = null;
-							Long resourceLink = (Long) ((Object[]) nextRow)[0];
-							String resourceType = (String) ((Object[]) nextRow)[1];
-							if (findVersionFieldName != null) {
-								version = (Long) ((Object[]) nextRow)[2];
+							if (maxCount != null) {
+								q.setMaxResults(maxCount);
 							}
-
-							if (resourceLink != null) {
-								JpaPid pid =
-										JpaPid.fromIdAndVersionAndResourceType(resourceLink, version, resourceType);
-								pidsToInclude.add(pid);
+							if (hasDesiredResourceTypes) {
+								q.setParameter("desired_target_resource_types", desiredResourceTypes);
 							}
-						}
+							return q.getResultList();
+						});
 					}
 				} else {
 					List<String> paths;
@@ -1456,6 +1575,9 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 					Set<String> targetResourceTypes = computeTargetResourceTypes(nextInclude, param);
 
 					for (String nextPath : paths) {
+						// When combining, every parameter name needs to be unique within the combined query
+						String paramSuffix = combineIncludeQueries ? "_" + combinedSubQueries.size() : "";
+
 						String findPidFieldSqlColumn = findPidFieldName.equals(MY_SOURCE_RESOURCE_PID)
 								? "src_resource_id"
 								: "target_resource_id";
@@ -1477,69 +1599,101 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 								: "src_resource_id";
 						StringBuilder localReferenceQuery =
 								new StringBuilder("SELECT " + fieldsToLoad + " FROM hfj_res_link r "
-										+ " WHERE r.src_path = :src_path AND "
+										+ " WHERE r.src_path = :src_path" + paramSuffix + " AND "
 										+ " r.target_resource_id IS NOT NULL AND "
 										+ " r."
 										+ searchPidFieldSqlColumn + " IN (:target_pids) ");
-						localReferenceQueryParams.put("src_path", nextPath);
+						localReferenceQueryParams.put("src_path" + paramSuffix, nextPath);
 						// we loop over target_pids later.
 						if (targetResourceTypes != null) {
 							if (targetResourceTypes.size() == 1) {
-								localReferenceQuery.append(" AND r.target_resource_type = :target_resource_type ");
+								localReferenceQuery.append(
+										" AND r.target_resource_type = :target_resource_type" + paramSuffix + " ");
 								localReferenceQueryParams.put(
-										"target_resource_type",
+										"target_resource_type" + paramSuffix,
 										targetResourceTypes.iterator().next());
 							} else {
-								localReferenceQuery.append(" AND r.target_resource_type in (:target_resource_types) ");
-								localReferenceQueryParams.put("target_resource_types", targetResourceTypes);
+								localReferenceQuery.append(
+										" AND r.target_resource_type in (:target_resource_types" + paramSuffix + ") ");
+								localReferenceQueryParams.put(
+										"target_resource_types" + paramSuffix, targetResourceTypes);
 							}
 						}
 
 						// Case 2:
 						Pair<String, Map<String, Object>> canonicalQuery = buildCanonicalUrlQuery(
-								findVersionFieldName, searchPidFieldSqlColumn, targetResourceTypes);
+								findVersionFieldName, searchPidFieldSqlColumn, targetResourceTypes, paramSuffix);
 
 						// @formatter:on
 
-						String sql = localReferenceQuery + " UNION " + canonicalQuery.getLeft();
-
-						List<Collection<JpaPid>> partitions = partition(nextRoundMatches, getMaximumPageSize());
-						for (Collection<JpaPid> nextPartition : partitions) {
-							Query q = entityManager.createNativeQuery(sql, Tuple.class);
-							q.setParameter("target_pids", JpaPid.toLongList(nextPartition));
-							localReferenceQueryParams.forEach(q::setParameter);
-							canonicalQuery.getRight().forEach(q::setParameter);
-
-							if (maxCount != null) {
-								q.setMaxResults(maxCount);
-							}
-							@SuppressWarnings("unchecked")
-							List<Tuple> results = q.getResultList();
-							for (Tuple result : results) {
-								if (result != null) {
-									Long resourceId =
-											NumberUtils.createLong(String.valueOf(result.get(RESOURCE_ID_ALIAS)));
-									Long resourceVersion = null;
-									if (findVersionFieldName != null && result.get(RESOURCE_VERSION_ALIAS) != null) {
-										resourceVersion = NumberUtils.createLong(
-												String.valueOf(result.get(RESOURCE_VERSION_ALIAS)));
-									}
-									pidsToInclude.add(JpaPid.fromIdAndVersion(resourceId, resourceVersion));
-								}
+						if (combineIncludeQueries) {
+							if (combinedQueriesPosition == -1) {
+								combinedQueriesPosition = queries.size();
 							}
+							combinedSubQueries.add(localReferenceQuery.toString());
+							combinedSubQueries.add(canonicalQuery.getLeft());
+							combinedParams.putAll(localReferenceQueryParams);
+							combinedParams.putAll(canonicalQuery.getRight());
+						}
+
+						// When combining, these are only used if the combined query turns out to be too large
+						String sql = localReferenceQuery + " UNION " + canonicalQuery.getLeft();
+						for (List<Long> nextPartition : partitions) {
+							(combineIncludeQueries ? uncombinedQueries : queries)
+									.add(createIncludeNativeQuery(
+											sql,
+											nextPartition,
+											localReferenceQueryParams,
+											canonicalQuery.getRight(),
+											maxCount));
 						}
 					}
 				}
 			}
 
-			nextRoundMatches.clear();
-			for (JpaPid next : pidsToInclude) {
-				if (!original.contains(next) && !allAdded.contains(next)) {
-					nextRoundMatches.add(next);
+			if (!combinedSubQueries.isEmpty()) {
+				List<Function<EntityManager, List<?>>> combinedQueries = createCombinedIncludeQueries(
+						nextRoundMatches, combinedSubQueries, combinedParams, uncombinedQueries.size());
+				queries.addAll(combinedQueriesPosition, combinedQueries != null ? combinedQueries : uncombinedQueries);
+			}
+
+			List<List<?>> queryResults = executeIncludeQueries(request, entityManager, queries);
+			for (List<?> results : queryResults) {
+				for (Object nextRow : results) {
+					if (nextRow == null) {
+						// This can happen if there are outgoing references which are canonical or point to
+						// other servers
+						continue;
+					}
+
+					Long resourceId;
+					Long version = null;
+					String resourceType = null;
+					if (nextRow instanceof Tuple) {
+						Tuple result = (Tuple) nextRow;
+						resourceId = NumberUtils.createLong(String.valueOf(result.get(RESOURCE_ID_ALIAS)));
+						if (findVersionFieldName != null && result.get(RESOURCE_VERSION_ALIAS) != null) {
+							version = NumberUtils.createLong(String.valueOf(result.get(RESOURCE_VERSION_ALIAS)));
+						}
+					} else {
+						resourceId = (Long) ((Object[]) nextRow)[0];
+						resourceType = (String) ((Object[]) nextRow)[1];
+						if (findVersionFieldName != null) {
+							version = (Long) ((Object[]) nextRow)[2];
+						}
+					}
+
+					if (resourceId != null && allAdded.add(resourceId, version)) {
+						addedSomeThisRound = true;
+						allAddedPids.add(JpaPid.fromIdAndVersionAndResourceType(resourceId, version, resourceType));
+						if (!original.contains(resourceId, version)) {
+							newRoundMatches.add(resourceId);
+						}
+					}
 				}
 			}
 
-			addedSomeThisRound = allAdded.addAll(pidsToInclude);
+			nextRoundMatches = newRoundMatches;
 
 			if (maxCount != null && allAdded.size() >= maxCount) {
 				break;
@@ -1547,11 +1701,16 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 		} while (!includes.isEmpty() && !nextRoundMatches.isEmpty() && addedSomeThisRound);
 
-		allAdded.removeAll(original);
+		HashSet<JpaPid> retVal = new HashSet<>();
+		for (JpaPid next : allAddedPids) {
+			if (!original.contains(next.getId(), next.getVersion())) {
+				retVal.add(next);
+			}
+		}
 
 		ourLog.info(
 				"Loaded {} {} in {} rounds and {} ms for search {}",
-				allAdded.size(),
+				retVal.size(),
 				reverseMode ? "_revincludes" : "_includes",
 				roundCounts,
 				w.getMillisAndRestart(),
@@ -1564,11 +1723,11 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		// Interceptor call: STORAGE_PREACCESS_RESOURCES
 		// This can be used to remove results from the search result details before
 		// the user has a chance to know that they were in the results
-		if (!allAdded.isEmpty()) {
+		if (!retVal.isEmpty()) {
 
 			if (CompositeInterceptorBroadcaster.hasHooks(
 					Pointcut.STORAGE_PREACCESS_RESOURCES, myInterceptorBroadcaster, request)) {
-				List<JpaPid> includedPidList = new ArrayList<>(allAdded);
+				List<JpaPid> includedPidList = new ArrayList<>(retVal);
 				JpaPreResourceAccessDetails accessDetails =
 						new JpaPreResourceAccessDetails(includedPidList, () -> this);
 				HookParams params = new HookParams()
@@ -1582,14 +1741,14 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 					if (accessDetails.isDontReturnResourceAtIndex(i)) {
 						JpaPid value = includedPidList.remove(i);
 						if (value != null) {
-							allAdded.remove(value);
+							retVal.remove(value);
 						}
 					}
 				}
 			}
 		}
 
-		return allAdded;
+		return retVal;
 	}
 
 	/**
@@ -1624,7 +1783,10 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 
 	@Nonnull
 	private Pair<String, Map<String, Object>> buildCanonicalUrlQuery(
-			String theVersionFieldName, String thePidFieldSqlColumn, Set<String> theTargetResourceTypes) {
+			String theVersionFieldName,
+			String thePidFieldSqlColumn,
+			Set<String> theTargetResourceTypes,
+			String theParamSuffix) {
 		String fieldsToLoadFromSpidxUriTable = "rUri.res_id";
 		if (theVersionFieldName != null) {
 			// canonical-uri references aren't versioned, but we need to match the column count for the UNION
@@ -1648,43 +1810,107 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 				"SELECT " + fieldsToLoadFromSpidxUriTable + " FROM hfj_res_link r " + " JOIN hfj_spidx_uri rUri ON ( ");
 		// join on hash_identity and sp_uri - indexed in IDX_SP_URI_HASH_IDENTITY_V2
 		if (theTargetResourceTypes.size() == 1) {
-			canonicalUrlQuery.append("   rUri.hash_identity = :uri_identity_hash ");
+			canonicalUrlQuery.append("   rUri.hash_identity = :uri_identity_hash" + theParamSuffix + " ");
 			canonicalUriQueryParams.put(
-					"uri_identity_hash", identityHashesForTypes.iterator().next());
+					"uri_identity_hash" + theParamSuffix,
+					identityHashesForTypes.iterator().next());
 		} else {
-			canonicalUrlQuery.append("   rUri.hash_identity in (:uri_identity_hashes) ");
-			canonicalUriQueryParams.put("uri_identity_hashes", identityHashesForTypes);
+			canonicalUrlQuery.append("   rUri.hash_identity in (:uri_identity_hashes" + theParamSuffix + ") ");
+			canonicalUriQueryParams.put("uri_identity_hashes" + theParamSuffix, identityHashesForTypes);
 		}
 
-		canonicalUrlQuery.append("  AND r.target_resource_url = rUri.sp_uri  )" + " WHERE r.src_path = :src_path AND "
+		canonicalUrlQuery.append("  AND r.target_resource_url = rUri.sp_uri  )" + " WHERE r.src_path = :src_path"
+				+ theParamSuffix + " AND "
 				+ " r.target_resource_id IS NULL AND "
 				+ " r."
 				+ thePidFieldSqlColumn + " IN (:target_pids) ");
 		return Pair.of(canonicalUrlQuery.toString(), canonicalUriQueryParams);
 	}
 
-	private List<Collection<JpaPid>> partition(Collection<JpaPid> theNextRoundMatches, int theMaxLoad) {
-		if (theNextRoundMatches.size() <= theMaxLoad) {
-			return Collections.singletonList(theNextRoundMatches);
-		} else {
-
-			List<Collection<JpaPid>> retVal = new ArrayList<>();
-			Collection<JpaPid> current = null;
-			for (JpaPid next : theNextRoundMatches) {
-				if (current == null) {
-					current = new ArrayList<>(theMaxLoad);
-					retVal.add(current);
-				}
+	/**
+	 * Creates the queries which combine the sub-queries for every path in a round of include loading.
+	 * Each sub-query repeats the <code>:target_pids</code> list, so the PIDs are split into smaller
+	 * partitions than usual in order to keep the number of bind parameters in each combined query no
+	 * higher than in an uncombined one (some databases, e.g. MS SQL Server, only allow about 2100).
+	 * Combined queries never have a maximum number of results, so there is no <code>LIMIT</code>
+	 * bind parameter to account for.
+	 *
+	 * @return The queries, or <code>null</code> if combining would need more queries than not combining
+	 */
+	@Nullable
+	private static List<Function<EntityManager, List<?>>> createCombinedIncludeQueries(
+			LongArrayList theTargetPids,
+			List<String> theSubQueries,
+			Map<String, Object> theParams,
+			int theUncombinedQueryCount) {
+		// Rows are de-duplicated by the caller anyhow, so UNION ALL avoids making the database do it
+		String sql = String.join(" UNION ALL ", theSubQueries);
+
+		// A named parameter may appear more than once (e.g. the path is used in both the local and the
+		// canonical reference lookup) and is bound once for every appearance
+		int otherParamCount = 0;
+		for (Map.Entry<String, Object> next : theParams.entrySet()) {
+			Matcher matcher = Pattern.compile(":" + next.getKey() + "\\b").matcher(sql);
+			int appearances = 0;
+			while (matcher.find()) {
+				appearances++;
+			}
+			Object value = next.getValue();
+			otherParamCount += appearances * (value instanceof Collection ? ((Collection<?>) value).size() : 1);
+		}
+		int pidsPerQuery = (getMaximumPageSize() * 2 - otherParamCount) / theSubQueries.size();
+		if (pidsPerQuery < 1) {
+			return null;
+		}
+		List<List<Long>> partitions = theTargetPids.partition(pidsPerQuery);
+		if (partitions.size() > theUncombinedQueryCount) {
+			return null;
+		}
 
-				current.add(next);
+		List<Function<EntityManager, List<?>>> retVal = new ArrayList<>();
+		for (List<Long> nextPartition : partitions) {
+			retVal.add(createIncludeNativeQuery(sql, nextPartition, theParams, Collections.emptyMap(), null));
+		}
+		return retVal;
+	}
 
-				if (current.size() >= theMaxLoad) {
-					current = null;
-				}
+	private static Function<EntityManager, List<?>> createIncludeNativeQuery(
+			String theSql,
+			List<Long> theTargetPids,
+			Map<String, Object> theParams,
+			Map<String, Object> theCanonicalParams,
+			Integer theMaxCount) {
+		return em -> {
+			Query q = em.createNativeQuery(theSql, Tuple.class);
+			q.setParameter("target_pids", theTargetPids);
+			theParams.forEach(q::setParameter);
+			theCanonicalParams.forEach(q::setParameter);
+
+			if (theMaxCount != null) {
+				q.setMaxResults(theMaxCount);
 			}
+			return q.getResultList();
+		};
+	}
 
+	private List<List<?>> executeIncludeQueries(
+			RequestDetails theRequest,
+			EntityManager theEntityManager,
+			List<Function<EntityManager, List<?>>> theQueries) {
+		/*
+		 * Queries are only executed concurrently if we have somewhere to do so, and if nobody
+		 * is capturing the SQL for this thread (since queries on other threads would be missed)
+		 */
+		if (myIncludeLoadingExecutor == null
+				|| CompositeInterceptorBroadcaster.hasHooks(
+						Pointcut.JPA_PERFTRACE_RAW_SQL, myInterceptorBroadcaster, theRequest)) {
+			List<List<?>> retVal = new ArrayList<>(theQueries.size());
+			for (Function<EntityManager, List<?>> next : theQueries) {
+				retVal.add(next.apply(theEntityManager));
+			}
 			return retVal;
 		}
+		return myIncludeLoadingExecutor.execute(theRequest, myRequestPartitionId, theEntityManager, theQueries);
 	}
 
 	private void attemptComboUniqueSpProcessing(
@@ -1931,6 +2157,13 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		 * Will not be null if fetched using getNext()
 		 */
 		private JpaPid myNext;
+		/**
+		 * Keyset paging sort key values for {@link #myNext} and for the last
+		 * PID returned by {@link #next()}
+		 */
+		private Object[] myNextKeysetValues;
+
+		private Object[] myLastKeysetValues;
 		/**
 		 * The current query result iterator running sql and supplying PIDs
 		 * @see #myQueryList
@@ -2029,6 +2262,7 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 							JpaPid next = JpaPid.fromId(nextLong);
 							if (myPidSet.add(next)) {
 								myNext = next;
+								myNextKeysetValues = myResultsIterator.getKeysetValues();
 								myNonSkipCount++;
 								break;
 							} else {
@@ -2160,9 +2394,19 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			JpaPid retVal = myNext;
 			myNext = null;
 			Validate.isTrue(!NO_MORE.equals(retVal), "No more elements");
+			myLastKeysetValues = myNextKeysetValues;
+			myNextKeysetValues = null;
 			return retVal;
 		}
 
+		@Override
+		public String getNextPageCursor() {
+			if (!myKeysetPaging || myLastKeysetValues == null) {
+				return null;
+			}
+			return new SearchCursor(SearchCursor.toSortString(mySort), myLastKeysetValues).encode();
+		}
+
 		@Override
 		public int getSkippedCount() {
 			return mySkipCount;
@@ -2191,6 +2435,41 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 	}
 
+	/**
+	 * A set of PIDs with the same semantics as a <code>Set&lt;JpaPid&gt;</code> (i.e. PIDs are
+	 * equal if both their ID and version are equal), but which tracks the usual unversioned
+	 * PIDs as primitive longs.
+	 */
+	private static class PidKeySet {
+		private final LongHashSet myUnversioned;
+		private Set<JpaPid> myVersioned;
+
+		PidKeySet(int theExpectedSize) {
+			myUnversioned = new LongHashSet(theExpectedSize);
+		}
+
+		boolean add(long theId, Long theVersion) {
+			if (theVersion == null) {
+				return myUnversioned.add(theId);
+			}
+			if (myVersioned == null) {
+				myVersioned = new HashSet<>();
+			}
+			return myVersioned.add(JpaPid.fromIdAndVersion(theId, theVersion));
+		}
+
+		boolean contains(long theId, Long theVersion) {
+			if (theVersion == null) {
+				return myUnversioned.contains(theId);
+			}
+			return myVersioned != null && myVersioned.contains(JpaPid.fromIdAndVersion(theId, theVersion));
+		}
+
+		int size() {
+			return myUnversioned.size() + (myVersioned != null ? myVersioned.size() : 0);
+		}
+	}
+
 	public static int getMaximumPageSize() {
 		if (myUseMaxPageSize50ForTest) {
 			return MAXIMUM_PAGE_SIZE_FOR_TESTING;
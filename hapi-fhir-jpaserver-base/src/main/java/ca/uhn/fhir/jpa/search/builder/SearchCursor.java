@@ -0,0 +1,139 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.model.api.IModelJson;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.util.JsonUtil;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Opaque position marker used by keyset (seek) pagination. A cursor captures the
+ * sort which was in effect and the sort key values of the last row returned on a
+ * page, so that the next page can be fetched with a <code>WHERE (key) &gt; (last key)</code>
+ * style predicate instead of an <code>OFFSET</code>.
+ * <p>
+ * The cursor is passed to clients in the <code>_cursor</code> parameter of the
+ * <code>next</code> link, encoded as URL-safe base64 JSON.
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public class SearchCursor implements IModelJson {
+
+	@JsonProperty("sort")
+	private String mySort;
+
+	@JsonProperty("values")
+	private List<String> myValues;
+
+	/**
+	 * Constructor for Jackson
+	 */
+	public SearchCursor() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theSort   The sort string (see {@link #toSortString(SortSpec)})
+	 * @param theValues The sort key values of the last row on the page
+	 */
+	public SearchCursor(String theSort, Object[] theValues) {
+		mySort = theSort;
+		myValues = new ArrayList<>(theValues.length);
+		for (Object next : theValues) {
+			myValues.add(toValueString(next));
+		}
+	}
+
+	public String getSort() {
+		return mySort;
+	}
+
+	public List<String> getValues() {
+		return myValues;
+	}
+
+	public String encode() {
+		byte[] json = JsonUtil.serialize(this, false).getBytes(StandardCharsets.UTF_8);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+	}
+
+	public static SearchCursor decode(String theCursor) {
+		SearchCursor retVal;
+		try {
+			byte[] json = Base64.getUrlDecoder().decode(theCursor);
+			retVal = JsonUtil.deserialize(new String(json, StandardCharsets.UTF_8), SearchCursor.class);
+		} catch (RuntimeException e) {
+			retVal = null;
+		}
+		if (retVal == null || retVal.getSort() == null || retVal.getValues() == null) {
+			throw new InvalidRequestException(Msg.code(2455) + "Invalid _cursor parameter value: " + theCursor);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns a string describing the given sort, used to verify that a cursor is
+	 * only ever applied to the search which produced it
+	 */
+	public static String toSortString(SortSpec theSort) {
+		StringBuilder b = new StringBuilder();
+		for (SortSpec next = theSort; next != null; next = next.getChain()) {
+			if (b.length() > 0) {
+				b.append(',');
+			}
+			if (next.getOrder() == SortOrderEnum.DESC) {
+				b.append('-');
+			}
+			b.append(next.getParamName());
+		}
+		return b.toString();
+	}
+
+	private static String toValueString(Object theValue) {
+		if (theValue == null) {
+			return null;
+		}
+		if (theValue instanceof Number) {
+			return Long.toString(((Number) theValue).longValue());
+		}
+		if (theValue instanceof Timestamp) {
+			return ((Timestamp) theValue).toInstant().toString();
+		}
+		if (theValue instanceof Date) {
+			return Instant.ofEpochMilli(((Date) theValue).getTime()).toString();
+		}
+		return theValue.toString();
+	}
+}
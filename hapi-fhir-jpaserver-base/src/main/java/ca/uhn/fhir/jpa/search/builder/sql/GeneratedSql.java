@@ -31,14 +31,28 @@ public class GeneratedSql {
 	private final String mySql;
 	private final List<Object> myBindVariables;
 	private final boolean myMatchNothing;
+	private final int myKeysetColumnCount;
 
 	public GeneratedSql(boolean theMatchNothing, String theSql, List<Object> theBindVariables) {
+		this(theMatchNothing, theSql, theBindVariables, 0);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theKeysetColumnCount The number of sort key columns selected after the resource ID
+	 *                             column when keyset paging is in use (0 otherwise)
+	 * @since 7.0.0
+	 */
+	public GeneratedSql(
+			boolean theMatchNothing, String theSql, List<Object> theBindVariables, int theKeysetColumnCount) {
 		assert INLINE_EQ_PATTERN.matcher(theSql).find() == false : "Non-bound SQL parameter found: " + theSql;
 		assert INLINE_IN_PATTERN.matcher(theSql).find() == false : "Non-bound SQL parameter found: " + theSql;
 
 		myMatchNothing = theMatchNothing;
 		mySql = theSql;
 		myBindVariables = theBindVariables;
+		myKeysetColumnCount = theKeysetColumnCount;
 	}
 
 	public boolean isMatchNothing() {
@@ -52,4 +66,14 @@ public class GeneratedSql {
 	public String getSql() {
 		return mySql;
 	}
+
+	/**
+	 * Returns the number of keyset paging sort key columns which follow the resource ID
+	 * column in each result row, or 0 if keyset paging is not in use
+	 *
+	 * @since 7.0.0
+	 */
+	public int getKeysetColumnCount() {
+		return myKeysetColumnCount;
+	}
 }
@@ -48,6 +48,7 @@ import ca.uhn.fhir.jpa.search.builder.predicate.UriPredicateBuilder;
 import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import com.healthmarketscience.sqlbuilder.BinaryCondition;
 import com.healthmarketscience.sqlbuilder.ComboCondition;
 import com.healthmarketscience.sqlbuilder.ComboExpression;
@@ -56,7 +57,12 @@ import com.healthmarketscience.sqlbuilder.FunctionCall;
 import com.healthmarketscience.sqlbuilder.InCondition;
 import com.healthmarketscience.sqlbuilder.OrderObject;
 import com.healthmarketscience.sqlbuilder.SelectQuery;
+import com.healthmarketscience.sqlbuilder.SqlObject;
+import com.healthmarketscience.sqlbuilder.UnaryCondition;
+import com.healthmarketscience.sqlbuilder.ValidationContext;
+import com.healthmarketscience.sqlbuilder.dbspec.Column;
 import com.healthmarketscience.sqlbuilder.dbspec.Join;
+import com.healthmarketscience.sqlbuilder.dbspec.Table;
 import com.healthmarketscience.sqlbuilder.dbspec.basic.DbColumn;
 import com.healthmarketscience.sqlbuilder.dbspec.basic.DbJoin;
 import com.healthmarketscience.sqlbuilder.dbspec.basic.DbSchema;
@@ -70,6 +76,8 @@ import org.hibernate.engine.spi.RowSelection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -89,6 +97,12 @@ import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 public class SearchQueryBuilder {
 
 	private static final Logger ourLog = LoggerFactory.getLogger(SearchQueryBuilder.class);
+	/**
+	 * Tables with at most one row per resource, whose sort columns can be
+	 * used directly in a keyset paging WHERE clause
+	 */
+	private static final Set<String> KEYSET_SINGLE_VALUED_TABLES = Set.of("HFJ_RESOURCE", "HFJ_FORCED_ID");
+
 	private final String myBindVariableSubstitutionBase;
 	private final ArrayList<Object> myBindVariableValues;
 	private final DbSpec mySpec;
@@ -110,6 +124,10 @@ public class SearchQueryBuilder {
 	private boolean dialectIsMySql;
 	private boolean myNeedResourceTableRoot;
 	private int myNextNearnessColumnId = 0;
+	private List<KeysetColumn> myKeysetColumns;
+	private boolean myKeysetColumnsSelected;
+	private SearchQueryTemplateCache myTemplateCache;
+	private String myTemplateKey;
 
 	/**
 	 * Constructor
@@ -484,6 +502,15 @@ public class SearchQueryBuilder {
 		mySelect.addJoins(SelectQuery.JoinType.INNER, join);
 	}
 
+	/**
+	 * Reuse the SQL in the given cache for searches with the same key (i.e. the same shape as this
+	 * search) instead of rendering it again, and store the rendered SQL there if it isn't present
+	 */
+	public void setTemplateCache(SearchQueryTemplateCache theTemplateCache, String theTemplateKey) {
+		myTemplateCache = theTemplateCache;
+		myTemplateKey = theTemplateKey;
+	}
+
 	/**
 	 * Generate and return the SQL generated by this builder
 	 */
@@ -491,6 +518,77 @@ public class SearchQueryBuilder {
 
 		getOrCreateFirstPredicateBuilder();
 
+		int keysetColumnCount = 0;
+		if (myKeysetColumns != null) {
+			keysetColumnCount = myKeysetColumns.size();
+			if (!myKeysetColumnsSelected) {
+				DbColumn resourceIdColumn = myFirstPredicateBuilder.getResourceIdColumn();
+				for (int i = 0; i < keysetColumnCount; i++) {
+					KeysetColumn next = myKeysetColumns.get(i);
+					mySelect.addAliasedColumn(next.toExpression(next.myColumn != resourceIdColumn), "KS" + i);
+				}
+				myKeysetColumnsSelected = true;
+			}
+		}
+
+		boolean useTemplateCache = myTemplateCache != null && myTemplateKey != null;
+		String structure = null;
+		if (useTemplateCache) {
+			structure = describeStructure();
+			SearchQueryTemplateCache.SqlTemplate cached = myTemplateCache.get(myTemplateKey);
+			if (cached != null && cached.isCompatible(structure, myBindVariableValues)) {
+				assert isSameAsRendered(cached, theOffset, theMaxResultsToFetch) : myTemplateKey;
+				return new GeneratedSql(
+						myMatchNothing, cached.getSql(), cached.bind(myBindVariableValues), keysetColumnCount);
+			}
+		}
+
+		SearchQueryTemplateCache.SqlTemplate template = render(theOffset, theMaxResultsToFetch, structure);
+		if (useTemplateCache && !myMatchNothing) {
+			myTemplateCache.put(myTemplateKey, template);
+		}
+
+		return new GeneratedSql(
+				myMatchNothing, template.getSql(), template.bind(myBindVariableValues), keysetColumnCount);
+	}
+
+	private boolean isSameAsRendered(
+			SearchQueryTemplateCache.SqlTemplate theTemplate,
+			@Nullable Integer theOffset,
+			@Nullable Integer theMaxResultsToFetch) {
+		SearchQueryTemplateCache.SqlTemplate rendered = render(theOffset, theMaxResultsToFetch, null);
+		return rendered.getSql().equals(theTemplate.getSql())
+				&& rendered.bind(myBindVariableValues).equals(theTemplate.bind(myBindVariableValues));
+	}
+
+	/**
+	 * Describes the tables (including their aliases, which reflect the order they were joined in)
+	 * and columns referenced by the query that has been built so far. This is much cheaper than
+	 * rendering the SQL, and is used to make sure that a cached statement really was generated
+	 * from a query with the same structure as this one.
+	 */
+	private String describeStructure() {
+		ValidationContext context = new ValidationContext();
+		SqlObject.collectSchemaObjects(mySelect, context);
+		List<String> parts = new ArrayList<>(
+				context.getTables().size() + context.getColumns().size());
+		for (Table next : context.getTables()) {
+			parts.add(next.getAlias() + ":" + next.getTableNameSQL());
+		}
+		for (Column next : context.getColumns()) {
+			parts.add(next.getTable().getAlias() + "." + next.getColumnNameSQL());
+		}
+		parts.sort(null);
+		return String.join(",", parts);
+	}
+
+	/**
+	 * Renders the SQL for this builder, replacing our placeholders with bind variables and applying
+	 * the limit and offset using the dialect. The given structure (see {@link #describeStructure()})
+	 * is stored with the statement so that it can be checked before the statement is reused.
+	 */
+	private SearchQueryTemplateCache.SqlTemplate render(
+			@Nullable Integer theOffset, @Nullable Integer theMaxResultsToFetch, @Nullable String theStructure) {
 		mySelect.validate();
 		String sql = mySelect.toString();
 
@@ -505,7 +603,7 @@ public class SearchQueryBuilder {
 			int endIdx = sql.indexOf("'", idx + myBindVariableSubstitutionBase.length());
 			String substitutionIndexString = sql.substring(idx + myBindVariableSubstitutionBase.length(), endIdx);
 			int substitutionIndex = Integer.parseInt(substitutionIndexString);
-			bindVariables.add(myBindVariableValues.get(substitutionIndex));
+			bindVariables.add(new SearchQueryTemplateCache.PlaceholderRef(substitutionIndex));
 
 			sql = sql.substring(0, idx - 1) + "?" + sql.substring(endIdx + 1);
 		}
@@ -577,7 +675,7 @@ public class SearchQueryBuilder {
 			}
 		}
 
-		return new GeneratedSql(myMatchNothing, sql, bindVariables);
+		return new SearchQueryTemplateCache.SqlTemplate(sql, bindVariables, myBindVariableValues, theStructure);
 	}
 
 	private int bindCountParameter(
@@ -871,6 +969,12 @@ public class SearchQueryBuilder {
 			boolean theTheAscending,
 			OrderObject.NullOrder theNullOrder,
 			boolean theUseAggregate) {
+		addKeysetColumn(
+				theTheColumnValueNormalized,
+				theTheAscending,
+				theNullOrder,
+				theUseAggregate,
+				KeysetColumnTypeEnum.STRING);
 		if ((dialectIsMySql || dialectIsMsSql)) {
 			// MariaDB, MySQL and MSSQL do not support "NULLS FIRST" and "NULLS LAST" syntax.
 			String direction = theTheAscending ? " ASC" : " DESC";
@@ -915,6 +1019,8 @@ public class SearchQueryBuilder {
 			boolean theAscending,
 			OrderObject.NullOrder theNullOrder,
 			boolean theUseAggregate) {
+		addKeysetColumn(
+				theTheColumnValueNormalized, theAscending, theNullOrder, theUseAggregate, KeysetColumnTypeEnum.LONG);
 		if ((dialectIsMySql || dialectIsMsSql)) {
 			// MariaDB, MySQL and MSSQL do not support "NULLS FIRST" and "NULLS LAST" syntax.
 			// Null values are always treated as less than non-null values.
@@ -943,6 +1049,8 @@ public class SearchQueryBuilder {
 			boolean theTheAscending,
 			OrderObject.NullOrder theNullOrder,
 			boolean theUseAggregate) {
+		addKeysetColumn(
+				theTheColumnValueNormalized, theTheAscending, theNullOrder, theUseAggregate, KeysetColumnTypeEnum.DATE);
 		if ((dialectIsMySql || dialectIsMsSql)) {
 			// MariaDB, MySQL and MSSQL do not support "NULLS FIRST" and "NULLS LAST" syntax.
 			String direction = theTheAscending ? " ASC" : " DESC";
@@ -987,6 +1095,140 @@ public class SearchQueryBuilder {
 		mySelect.addCustomOrderings(orderObject);
 	}
 
+	/**
+	 * If set to true (default is false), the sort columns added to this builder are
+	 * tracked so that {@link #addKeysetPaging(List)} can be used to page through
+	 * the results by sort key instead of by offset. Must be called before any sorts
+	 * are added.
+	 *
+	 * @since 7.0.0
+	 */
+	public void setKeysetPaging(boolean theKeysetPaging) {
+		myKeysetColumns = theKeysetPaging ? new ArrayList<>() : null;
+	}
+
+	public boolean isKeysetPaging() {
+		return myKeysetColumns != null;
+	}
+
+	/**
+	 * Finishes the sort for keyset paging by adding the resource ID as a final tie-breaker
+	 * (unless the sort already ends with it) and, if a cursor is supplied, adds a predicate
+	 * selecting only rows which sort after the row the cursor values were taken from.
+	 * <p>
+	 * Sort columns from tables which have at most one row per resource are compared in the
+	 * <code>WHERE</code> clause so that the database can seek using an index. Sorts on
+	 * multi-valued index tables are compared against the same <code>MIN</code>/<code>MAX</code>
+	 * aggregates used in the <code>ORDER BY</code>, in a <code>HAVING</code> clause.
+	 * </p>
+	 *
+	 * @param theCursorValues The sort key values of the last row on the previous page, or
+	 *                        <code>null</code> if this is the first page
+	 * @since 7.0.0
+	 */
+	public void addKeysetPaging(@Nullable List<String> theCursorValues) {
+		Validate.isTrue(isKeysetPaging(), "Keyset paging is not enabled");
+
+		DbColumn resourceIdColumn = getOrCreateFirstPredicateBuilder().getResourceIdColumn();
+		if (myKeysetColumns.isEmpty() || myKeysetColumns.get(myKeysetColumns.size() - 1).myColumn != resourceIdColumn) {
+			mySelect.addCustomOrderings(new OrderObject(OrderObject.Dir.ASCENDING, resourceIdColumn));
+			myKeysetColumns.add(new KeysetColumn(
+					resourceIdColumn, true, OrderObject.NullOrder.LAST, false, KeysetColumnTypeEnum.LONG));
+		}
+
+		if (theCursorValues == null) {
+			return;
+		}
+		if (theCursorValues.size() != myKeysetColumns.size()) {
+			throw new InvalidRequestException(
+					Msg.code(2481) + "The _cursor parameter does not match the sort of this search");
+		}
+
+		List<Object> values = new ArrayList<>(theCursorValues.size());
+		boolean useAggregates = false;
+		for (int i = 0; i < myKeysetColumns.size(); i++) {
+			KeysetColumn next = myKeysetColumns.get(i);
+			values.add(next.parseValue(theCursorValues.get(i)));
+			if (next.myColumn != resourceIdColumn
+					&& !KEYSET_SINGLE_VALUED_TABLES.contains(
+							next.myColumn.getTable().getName())) {
+				useAggregates = true;
+			}
+		}
+
+		Condition condition = createKeysetCondition(values, 0, useAggregates, resourceIdColumn);
+		if (useAggregates) {
+			mySelect.addHaving(condition);
+		} else {
+			addPredicate(condition);
+		}
+	}
+
+	/**
+	 * Creates the lexicographic "row sorts after the cursor" condition, i.e.
+	 * <code>(a &gt; ?) OR (a = ? AND ((b &gt; ?) OR (b = ? AND ...)))</code>
+	 */
+	private Condition createKeysetCondition(
+			List<Object> theValues, int theIndex, boolean theUseAggregates, DbColumn theResourceIdColumn) {
+		KeysetColumn column = myKeysetColumns.get(theIndex);
+		Object expression = column.toExpression(theUseAggregates && column.myColumn != theResourceIdColumn);
+		Object value = theValues.get(theIndex);
+
+		Condition after = null;
+		if (value == null) {
+			if (column.myNullOrder == OrderObject.NullOrder.FIRST) {
+				after = UnaryCondition.isNotNull(expression);
+			}
+		} else {
+			String placeholder = generatePlaceholder(value);
+			if (column.myAscending) {
+				after = BinaryCondition.greaterThan(expression, placeholder);
+			} else {
+				after = BinaryCondition.lessThan(expression, placeholder);
+			}
+			if (column.myNullOrder == OrderObject.NullOrder.LAST) {
+				after = ComboCondition.or(after, UnaryCondition.isNull(expression));
+			}
+		}
+
+		if (theIndex == theValues.size() - 1) {
+			// The final column is always the resource ID, which is never null
+			assert after != null;
+			return after;
+		}
+
+		Condition equal;
+		if (value == null) {
+			equal = UnaryCondition.isNull(expression);
+		} else {
+			equal = BinaryCondition.equalTo(expression, generatePlaceholder(value));
+		}
+		Condition equalAndAfter = ComboCondition.and(
+				equal, createKeysetCondition(theValues, theIndex + 1, theUseAggregates, theResourceIdColumn));
+		if (after == null) {
+			return equalAndAfter;
+		}
+		return ComboCondition.or(after, equalAndAfter);
+	}
+
+	private void addKeysetColumn(
+			DbColumn theColumn,
+			boolean theAscending,
+			OrderObject.NullOrder theNullOrder,
+			boolean theUseAggregate,
+			KeysetColumnTypeEnum theType) {
+		if (myKeysetColumns == null) {
+			return;
+		}
+		OrderObject.NullOrder nullOrder = theNullOrder;
+		if ((dialectIsMySql || dialectIsMsSql) && theType != KeysetColumnTypeEnum.LONG) {
+			// These dialects ignore the requested null order (see addSortString) and treat
+			// nulls as lower than any other value
+			nullOrder = theAscending ? OrderObject.NullOrder.FIRST : OrderObject.NullOrder.LAST;
+		}
+		myKeysetColumns.add(new KeysetColumn(theColumn, theAscending, nullOrder, theUseAggregate, theType));
+	}
+
 	/**
 	 * If set to true (default is false), force the generated SQL to start
 	 * with the {@link ca.uhn.fhir.jpa.model.entity.ResourceTable HFJ_RESOURCE}
@@ -998,4 +1240,65 @@ public class SearchQueryBuilder {
 	public void setNeedResourceTableRoot(boolean theNeedResourceTableRoot) {
 		myNeedResourceTableRoot = theNeedResourceTableRoot;
 	}
+
+	private enum KeysetColumnTypeEnum {
+		LONG,
+		STRING,
+		DATE
+	}
+
+	private static class KeysetColumn {
+
+		private final DbColumn myColumn;
+		private final boolean myAscending;
+		private final OrderObject.NullOrder myNullOrder;
+		private final boolean myAggregate;
+		private final KeysetColumnTypeEnum myType;
+
+		private KeysetColumn(
+				DbColumn theColumn,
+				boolean theAscending,
+				OrderObject.NullOrder theNullOrder,
+				boolean theAggregate,
+				KeysetColumnTypeEnum theType) {
+			myColumn = theColumn;
+			myAscending = theAscending;
+			myNullOrder = theNullOrder;
+			myAggregate = theAggregate;
+			myType = theType;
+		}
+
+		/**
+		 * @param theAllowAggregate If false, the bare column is returned even if the sort uses an aggregate
+		 */
+		private Object toExpression(boolean theAllowAggregate) {
+			if (myAggregate && theAllowAggregate) {
+				FunctionCall function = myAscending ? FunctionCall.min() : FunctionCall.max();
+				return function.addColumnParams(myColumn);
+			}
+			return myColumn;
+		}
+
+		private Object parseValue(String theValue) {
+			if (theValue == null) {
+				if (myType == KeysetColumnTypeEnum.LONG) {
+					throw new InvalidRequestException(Msg.code(2479) + "Invalid _cursor parameter value");
+				}
+				return null;
+			}
+			try {
+				switch (myType) {
+					case LONG:
+						return Long.parseLong(theValue);
+					case DATE:
+						return Timestamp.from(Instant.parse(theValue));
+					case STRING:
+					default:
+						return theValue;
+				}
+			} catch (RuntimeException e) {
+				throw new InvalidRequestException(Msg.code(2480) + "Invalid _cursor parameter value: " + theValue);
+			}
+		}
+	}
 }
@@ -53,6 +53,8 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 	private boolean myQueryInitialized;
 	private ScrollableResultsIterator<Number> myResultSet;
 	private Long myNext;
+	private Object[] myNextKeysetValues;
+	private Object[] myKeysetValues;
 
 	/**
 	 * Constructor
@@ -90,9 +92,16 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 		Validate.isTrue(hasNext(), "Can not call next() right now, no data remains");
 		Long next = myNext;
 		myNext = null;
+		myKeysetValues = myNextKeysetValues;
+		myNextKeysetValues = null;
 		return next;
 	}
 
+	@Override
+	public Object[] getKeysetValues() {
+		return myKeysetValues;
+	}
+
 	private void fetchNext() {
 		if (myNext == null) {
 			String sql = myGeneratedSql.getSql();
@@ -146,6 +155,11 @@ public class SearchQueryExecutor implements ISearchQueryExecutor {
 				} else {
 					Number next = myResultSet.next();
 					myNext = next.longValue();
+					int keysetColumnCount = myGeneratedSql.getKeysetColumnCount();
+					if (keysetColumnCount > 0) {
+						Object[] row = myResultSet.getCurrentRow();
+						myNextKeysetValues = Arrays.copyOfRange(row, 1, 1 + keysetColumnCount);
+					}
 				}
 
 			} catch (Exception e) {
@@ -0,0 +1,427 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder.sql;
+
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.search.builder.SearchCursor;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.api.SearchContainedModeEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+import com.google.common.annotations.VisibleForTesting;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * A bounded cache of the SQL generated by {@link SearchQueryBuilder}, keyed by the shape of the
+ * search rather than by its values. The size of the cache is controlled by
+ * {@link JpaStorageSettings#setSearchSqlTemplateCacheSize(int)}, and it is disabled by default.
+ * <p>
+ * A cache hit only saves rendering the SQL: the predicate builders still run in full for every
+ * search, since they calculate the values (e.g. the token and string hashes) which are bound to
+ * the statement. What is skipped is turning the built query into a string, substituting the bind
+ * variable placeholders and applying the dialect limit handler.
+ * </p>
+ * <p>
+ * Only searches whose SQL is fully determined by their shape are eligible (see
+ * {@link #createKey(String, SearchParameterMap, SortSpec, RequestPartitionId, Integer, Integer, boolean)}).
+ * The storage and partition settings which affect the SQL generated for these searches are part
+ * of the key, so changing them at runtime simply causes new statements to be generated. Before a
+ * cached statement is used, the tables and columns referenced by the query built for the current
+ * search, along with the number and types of its bind variables, are checked against the ones
+ * the statement was generated from, and the SQL is rendered again if they differ.
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public class SearchQueryTemplateCache {
+
+	private static final long TIME_TO_LIVE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private final AtomicLong myHitCount = new AtomicLong();
+	private final AtomicLong myMissCount = new AtomicLong();
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private PartitionSettings myPartitionSettings;
+
+	@Autowired
+	private ISearchParamRegistry mySearchParamRegistry;
+
+	private volatile Cache<String, SqlTemplate> myCache;
+
+	/**
+	 * Returns <code>true</code> if the cache is enabled in the storage settings
+	 */
+	public boolean isEnabled() {
+		return myStorageSettings.getSearchSqlTemplateCacheSize() > 0;
+	}
+
+	/**
+	 * Creates the key identifying the shape of the given search, or returns <code>null</code> if the
+	 * SQL for the search can not be safely reused by other searches with the same key. Searches are
+	 * only eligible if every parameter is a plain token, string or date search parameter, used
+	 * without modifiers and with the same kind of value (e.g. a token with a system and a code) for
+	 * every OR value.
+	 */
+	@Nullable
+	public String createKey(
+			String theResourceName,
+			SearchParameterMap theParams,
+			@Nullable SortSpec theSort,
+			@Nullable RequestPartitionId theRequestPartitionId,
+			@Nullable Integer theOffset,
+			@Nullable Integer theMaxResultsToFetch,
+			boolean theCountOnly) {
+		if (theResourceName == null
+				|| theParams.getEverythingMode() != null
+				|| theParams.isLastN()
+				|| theParams.getNearDistanceParam() != null
+				|| theParams.getCursor() != null
+				|| (theParams.getSearchContainedMode() != null
+						&& theParams.getSearchContainedMode() != SearchContainedModeEnum.FALSE)) {
+			return null;
+		}
+		if (!mySearchParamRegistry
+				.getActiveComboSearchParams(theResourceName, theParams.keySet())
+				.isEmpty()) {
+			return null;
+		}
+
+		StringBuilder b = new StringBuilder();
+		b.append(theResourceName);
+		b.append('|').append(theRequestPartitionId);
+		b.append('|').append(theOffset);
+		b.append('|').append(theMaxResultsToFetch);
+		b.append('|').append(theCountOnly);
+		b.append('|');
+		appendSettings(b);
+		b.append('|').append(SearchCursor.toSortString(theSort));
+		b.append('|');
+		appendLastUpdated(b, theParams.getLastUpdated());
+
+		List<String> paramNames = new ArrayList<>(theParams.keySet());
+		paramNames.sort(null);
+		for (String nextParamName : paramNames) {
+			if (nextParamName.startsWith("_") || nextParamName.contains(".") || nextParamName.contains(":")) {
+				return null;
+			}
+			RuntimeSearchParam searchParam = mySearchParamRegistry.getActiveSearchParam(theResourceName, nextParamName);
+			if (searchParam == null) {
+				return null;
+			}
+			RestSearchParameterTypeEnum paramType = searchParam.getParamType();
+			if (paramType != RestSearchParameterTypeEnum.TOKEN
+					&& paramType != RestSearchParameterTypeEnum.STRING
+					&& paramType != RestSearchParameterTypeEnum.DATE) {
+				return null;
+			}
+
+			b.append('|').append(nextParamName).append('=').append(paramType.getCode());
+			for (List<IQueryParameterType> nextOrList : theParams.get(nextParamName)) {
+				String valueShape = null;
+				for (IQueryParameterType nextValue : nextOrList) {
+					String nextValueShape = describeValue(paramType, nextValue);
+					if (nextValueShape == null || (valueShape != null && !valueShape.equals(nextValueShape))) {
+						return null;
+					}
+					valueShape = nextValueShape;
+				}
+				b.append('&').append(nextOrList.size()).append('*').append(valueShape);
+			}
+		}
+
+		return b.toString();
+	}
+
+	/**
+	 * Returns the cached statement for the given key, or <code>null</code> if the cache does not
+	 * contain it
+	 */
+	@Nullable
+	public SqlTemplate get(String theKey) {
+		SqlTemplate retVal = getCache().getIfPresent(theKey);
+		if (retVal == null) {
+			myMissCount.incrementAndGet();
+		} else {
+			myHitCount.incrementAndGet();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Stores a freshly generated statement
+	 */
+	public void put(String theKey, SqlTemplate theTemplate) {
+		getCache().put(theKey, theTemplate);
+	}
+
+	/**
+	 * Removes all entries from the cache
+	 */
+	public void invalidateAll() {
+		if (myCache != null) {
+			myCache.invalidateAll();
+		}
+	}
+
+	/**
+	 * Returns the number of lookups which were satisfied by the cache
+	 */
+	public long getHitCount() {
+		return myHitCount.get();
+	}
+
+	/**
+	 * Returns the number of lookups which were not satisfied by the cache
+	 */
+	public long getMissCount() {
+		return myMissCount.get();
+	}
+
+	/**
+	 * Returns the approximate number of statements currently held in the cache
+	 */
+	public long getEstimatedSize() {
+		return myCache != null ? myCache.estimatedSize() : 0;
+	}
+
+	private Cache<String, SqlTemplate> getCache() {
+		Cache<String, SqlTemplate> retVal = myCache;
+		if (retVal == null) {
+			synchronized (this) {
+				retVal = myCache;
+				if (retVal == null) {
+					retVal = CacheFactory.build(TIME_TO_LIVE_MILLIS, myStorageSettings.getSearchSqlTemplateCacheSize());
+					myCache = retVal;
+				}
+			}
+		}
+		return retVal;
+	}
+
+	@VisibleForTesting
+	void setStorageSettingsForUnitTest(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	@VisibleForTesting
+	void setPartitionSettingsForUnitTest(PartitionSettings thePartitionSettings) {
+		myPartitionSettings = thePartitionSettings;
+	}
+
+	@VisibleForTesting
+	void setSearchParamRegistryForUnitTest(ISearchParamRegistry theSearchParamRegistry) {
+		mySearchParamRegistry = theSearchParamRegistry;
+	}
+
+	/**
+	 * Appends the settings which are read while building the SQL for eligible searches
+	 */
+	private void appendSettings(StringBuilder theBuilder) {
+		theBuilder.append(myStorageSettings.getUseOrdinalDatesForDayPrecisionSearches() ? 'o' : '-');
+		theBuilder.append(myStorageSettings.isAccountForDateIndexNulls() ? 'n' : '-');
+		theBuilder.append(myStorageSettings.isAllowContainsSearches() ? 'c' : '-');
+		theBuilder.append(myStorageSettings.isSuppressStringIndexingInTokens() ? 's' : '-');
+		theBuilder.append(myStorageSettings.isKeysetPagingEnabled() ? 'k' : '-');
+		theBuilder.append(
+				myStorageSettings.getIndexMissingFields() == JpaStorageSettings.IndexEnabledEnum.ENABLED ? 'm' : '-');
+		theBuilder.append(myPartitionSettings.isPartitioningEnabled() ? 'p' : '-');
+		theBuilder.append(myPartitionSettings.isIncludePartitionInSearchHashes() ? 'h' : '-');
+		theBuilder.append(myPartitionSettings.getDefaultPartitionId());
+	}
+
+	private static void appendLastUpdated(StringBuilder theBuilder, @Nullable DateRangeParam theLastUpdated) {
+		if (theLastUpdated == null || theLastUpdated.isEmpty()) {
+			theBuilder.append('-');
+			return;
+		}
+		appendDateShape(theBuilder, theLastUpdated.getLowerBound());
+		theBuilder.append(',');
+		appendDateShape(theBuilder, theLastUpdated.getUpperBound());
+	}
+
+	private static void appendDateShape(StringBuilder theBuilder, @Nullable DateParam theDate) {
+		if (theDate == null || theDate.isEmpty()) {
+			theBuilder.append('-');
+		} else {
+			theBuilder.append(theDate.getPrefix()).append(':').append(theDate.getPrecision());
+		}
+	}
+
+	/**
+	 * Describes the parts of a single parameter value which affect the structure of the generated
+	 * SQL, or returns <code>null</code> if the value can not be described this way
+	 */
+	@Nullable
+	private static String describeValue(RestSearchParameterTypeEnum theParamType, IQueryParameterType theValue) {
+		if (theValue.getMissing() != null) {
+			return null;
+		}
+		switch (theParamType) {
+			case TOKEN:
+				if (!(theValue instanceof TokenParam)) {
+					return null;
+				}
+				TokenParam token = (TokenParam) theValue;
+				if (token.getModifier() != null || token.isMdmExpand()) {
+					return null;
+				}
+				String systemShape = token.getSystem() == null ? "n" : isBlank(token.getSystem()) ? "b" : "s";
+				return "T" + systemShape + (isBlank(token.getValue()) ? "b" : "v");
+			case STRING:
+				if (!(theValue instanceof StringParam)) {
+					return null;
+				}
+				StringParam string = (StringParam) theValue;
+				if (string.isText()) {
+					return null;
+				}
+				return "S" + (string.isExact() ? "e" : "") + (string.isContains() ? "c" : "");
+			case DATE:
+				if (!(theValue instanceof DateParam)) {
+					return null;
+				}
+				StringBuilder b = new StringBuilder("D");
+				appendDateShape(b, (DateParam) theValue);
+				return b.toString();
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * A generated statement along with the source of each of its bind variables. Each bind variable
+	 * is either one of the placeholder values collected by the {@link SearchQueryBuilder} while
+	 * building the query, or a literal value added when applying the limit and offset.
+	 */
+	public static class SqlTemplate {
+
+		private final String mySql;
+		private final int[] myPlaceholderIndexes;
+		private final Object[] myLiterals;
+		private final Class<?>[] myPlaceholderTypes;
+		private final String myStructure;
+
+		/**
+		 * Constructor
+		 *
+		 * @param theSql              The generated SQL
+		 * @param theBindTemplate     The bind variables for the SQL, where placeholder values are represented by {@link PlaceholderRef} instances
+		 * @param thePlaceholderValues The placeholder values used to generate the SQL
+		 * @param theStructure        A description of the tables and columns referenced by the query the SQL was generated from
+		 */
+		SqlTemplate(
+				String theSql,
+				List<Object> theBindTemplate,
+				List<Object> thePlaceholderValues,
+				@Nullable String theStructure) {
+			mySql = theSql;
+			myStructure = theStructure;
+			myPlaceholderIndexes = new int[theBindTemplate.size()];
+			myLiterals = new Object[theBindTemplate.size()];
+			for (int i = 0; i < theBindTemplate.size(); i++) {
+				Object next = theBindTemplate.get(i);
+				if (next instanceof PlaceholderRef) {
+					myPlaceholderIndexes[i] = ((PlaceholderRef) next).getIndex();
+				} else {
+					myPlaceholderIndexes[i] = -1;
+					myLiterals[i] = next;
+				}
+			}
+			myPlaceholderTypes = new Class<?>[thePlaceholderValues.size()];
+			for (int i = 0; i < thePlaceholderValues.size(); i++) {
+				Object next = thePlaceholderValues.get(i);
+				myPlaceholderTypes[i] = next != null ? next.getClass() : null;
+			}
+		}
+
+		public String getSql() {
+			return mySql;
+		}
+
+		/**
+		 * Returns <code>true</code> if this statement was generated from a query with the given
+		 * structure, and the given placeholder values have the same number and types as the ones
+		 * this statement was generated with
+		 */
+		public boolean isCompatible(String theStructure, List<Object> thePlaceholderValues) {
+			if (!theStructure.equals(myStructure) || thePlaceholderValues.size() != myPlaceholderTypes.length) {
+				return false;
+			}
+			for (int i = 0; i < myPlaceholderTypes.length; i++) {
+				Object next = thePlaceholderValues.get(i);
+				if (!Objects.equals(myPlaceholderTypes[i], next != null ? next.getClass() : null)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the bind variables for this statement using the given placeholder values
+		 */
+		public List<Object> bind(List<Object> thePlaceholderValues) {
+			List<Object> retVal = new ArrayList<>(myPlaceholderIndexes.length);
+			for (int i = 0; i < myPlaceholderIndexes.length; i++) {
+				int placeholderIndex = myPlaceholderIndexes[i];
+				retVal.add(placeholderIndex >= 0 ? thePlaceholderValues.get(placeholderIndex) : myLiterals[i]);
+			}
+			return retVal;
+		}
+	}
+
+	/**
+	 * Stands in for a placeholder value in the bind variables of a {@link SqlTemplate}
+	 */
+	static class PlaceholderRef {
+
+		private final int myIndex;
+
+		PlaceholderRef(int theIndex) {
+			myIndex = theIndex;
+		}
+
+		int getIndex() {
+			return myIndex;
+		}
+	}
+}
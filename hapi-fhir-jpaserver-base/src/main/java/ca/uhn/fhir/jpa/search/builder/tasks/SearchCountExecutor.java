@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder.tasks;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import com.google.common.annotations.VisibleForTesting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Future;
+import javax.annotation.PreDestroy;
+
+/**
+ * Executes the count queries for searches needing an accurate total concurrently with the
+ * searches themselves, if {@link JpaStorageSettings#getSearchCountThreadCount()} is greater
+ * than 0. See {@link SearchTask} for how the totals are stored once they are known.
+ *
+ * @since 7.0.0
+ */
+public class SearchCountExecutor {
+
+	/**
+	 * Counts are queued rather than blocking the search thread when all of the threads are busy
+	 */
+	private static final int QUEUE_CAPACITY = 1000;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	private ThreadPoolTaskExecutor myExecutor;
+
+	/**
+	 * Returns <code>true</code> if count queries should be executed concurrently
+	 */
+	public boolean isEnabled() {
+		return myStorageSettings.getSearchCountThreadCount() > 0;
+	}
+
+	/**
+	 * Submits a count query for execution on the shared pool
+	 */
+	public Future<?> submit(Runnable theCountTask) {
+		return getExecutor().submit(theCountTask);
+	}
+
+	private synchronized ThreadPoolTaskExecutor getExecutor() {
+		if (myExecutor == null) {
+			int threadCount = myStorageSettings.getSearchCountThreadCount();
+			myExecutor = ThreadPoolUtil.newThreadPool(threadCount, threadCount, "search-count-", QUEUE_CAPACITY);
+		}
+		return myExecutor;
+	}
+
+	@VisibleForTesting
+	void setStorageSettingsForUnitTest(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+	}
+}
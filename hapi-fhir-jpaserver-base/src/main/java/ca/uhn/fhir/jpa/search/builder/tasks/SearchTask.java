@@ -122,6 +122,10 @@ public class SearchTask implements Callable<Void> {
 	private boolean myAdditionalPrefetchThresholdsRemaining;
 	private List<JpaPid> myPreviouslyAddedResourcePids;
 	private Integer myMaxResultsToFetch;
+	private SearchCountExecutor mySearchCountExecutor;
+	private final Object myConcurrentCountLock = new Object();
+	private volatile Integer myConcurrentTotalCount;
+	private boolean myPassComplete;
 
 	/**
 	 * Constructor
@@ -168,6 +172,14 @@ public class SearchTask implements Callable<Void> {
 		return myRequestPartitionId;
 	}
 
+	/**
+	 * If set, and {@link SearchCountExecutor#isEnabled() enabled}, the count query for searches
+	 * needing an accurate total is executed concurrently with the search
+	 */
+	public void setSearchCountExecutor(SearchCountExecutor theSearchCountExecutor) {
+		mySearchCountExecutor = theSearchCountExecutor;
+	}
+
 	/**
 	 * This method is called by the server HTTP thread, and
 	 * will block until at least one page of results have been
@@ -184,7 +196,11 @@ public class SearchTask implements Callable<Void> {
 		} while (getSearch().getStatus() == SearchStatusEnum.LOADING);
 		ourLog.trace("Initial sync completed");
 
-		return getSearch().getTotalCount();
+		Integer retVal = getSearch().getTotalCount();
+		if (retVal == null) {
+			retVal = myConcurrentTotalCount;
+		}
+		return retVal;
 	}
 
 	public Search getSearch() {
@@ -524,6 +540,7 @@ public class SearchTask implements Callable<Void> {
 			saveSearch();
 			span.captureException(t);
 		} finally {
+			onPassComplete();
 			myOnRemove.accept(mySearch.getUuid());
 
 			myInitialCollectionLatch.countDown();
@@ -534,6 +551,11 @@ public class SearchTask implements Callable<Void> {
 	}
 
 	private void doSaveSearch() {
+		Integer concurrentTotalCount = myConcurrentTotalCount;
+		if (concurrentTotalCount != null && mySearch.getTotalCount() == null) {
+			mySearch.setTotalCount(concurrentTotalCount);
+		}
+
 		Search newSearch = mySearchCacheSvc.save(mySearch, myRequestPartitionId);
 
 		// mySearchDao.save is not supposed to return null, but in unit tests
@@ -562,9 +584,15 @@ public class SearchTask implements Callable<Void> {
 				: SearchParameterMapCalculator.isWantCount(myStorageSettings.getDefaultTotalMode());
 
 		if (myParamWantOnlyCount || myParamOrDefaultWantCount) {
-			doCountOnlyQuery(myParamWantOnlyCount);
-			if (myParamWantOnlyCount) {
-				return;
+			if (!myParamWantOnlyCount && mySearchCountExecutor != null && mySearchCountExecutor.isEnabled()) {
+				if (mySearch.getTotalCount() == null) {
+					startConcurrentCountQuery();
+				}
+			} else {
+				doCountOnlyQuery(myParamWantOnlyCount);
+				if (myParamWantOnlyCount) {
+					return;
+				}
 			}
 		}
 
@@ -693,6 +721,62 @@ public class SearchTask implements Callable<Void> {
 		}
 	}
 
+	/**
+	 * Starts the count query on the {@link SearchCountExecutor} so that the search doesn't
+	 * have to wait for it. The total is stored with the search by whichever of the search
+	 * and the count finishes last: until the end of this pass, every save of the search
+	 * includes the total once it is known, and after that the count stores it directly.
+	 */
+	private void startConcurrentCountQuery() {
+		// See doCountOnlyQuery for why the parameters are cloned
+		SearchParameterMap params = myParams.clone();
+		String searchUuid = mySearch.getUuid();
+		mySearchCountExecutor.submit(() -> {
+			try {
+				@SuppressWarnings("rawtypes")
+				ISearchBuilder sb = newSearchBuilder();
+				Long count = myTxService
+						.withRequest(myRequest)
+						.withRequestPartitionId(myRequestPartitionId)
+						.readOnly()
+						.execute(() -> sb.createCountQuery(params, searchUuid, myRequest, myRequestPartitionId));
+				ourLog.trace("Got concurrent count {}", count);
+
+				boolean passComplete;
+				synchronized (myConcurrentCountLock) {
+					myConcurrentTotalCount = count.intValue();
+					passComplete = myPassComplete;
+				}
+				if (passComplete) {
+					mySearchCacheSvc.updateTotalCountIfNotSet(searchUuid, count.intValue(), myRequestPartitionId);
+				}
+			} catch (Exception e) {
+				ourLog.warn("Failed to count results for search {}", searchUuid, e);
+			}
+		});
+	}
+
+	/**
+	 * Called once this pass of the search is finished and will no longer save the search
+	 */
+	private void onPassComplete() {
+		Integer concurrentTotalCount;
+		synchronized (myConcurrentCountLock) {
+			myPassComplete = true;
+			concurrentTotalCount = myConcurrentTotalCount;
+		}
+		if (concurrentTotalCount != null
+				&& mySearch.getTotalCount() == null
+				&& mySearch.getStatus() != SearchStatusEnum.FAILED) {
+			try {
+				mySearchCacheSvc.updateTotalCountIfNotSet(
+						mySearch.getUuid(), concurrentTotalCount, myRequestPartitionId);
+			} catch (Exception e) {
+				ourLog.warn("Failed to store total for search {}", mySearch.getUuid(), e);
+			}
+		}
+	}
+
 	/**
 	 * Does the query but only for the count.
 	 * @param theParamWantOnlyCount - if count query is wanted only
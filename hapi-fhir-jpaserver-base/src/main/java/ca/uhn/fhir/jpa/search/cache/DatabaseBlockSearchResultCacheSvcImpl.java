@@ -0,0 +1,221 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.dao.data.ISearchResultBlockDao;
+import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchResultBlock;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An alternative to {@link DatabaseSearchResultCacheSvcImpl} which stores the result PIDs
+ * for a search in compressed blocks of up to {@link #DEFAULT_BLOCK_SIZE} PIDs per row
+ * (see {@link SearchResultBlock} and {@link SearchResultPidBlockCodec}), instead of
+ * one row per result. A search with 100,000 results therefore needs 10 rows instead of
+ * 100,000, which greatly reduces the amount of database IO needed to store and later
+ * expire large searches. Fetching a page of results only loads the block(s) which
+ * contain that page.
+ * <p>
+ * Pages of a search are served while it is still loading, so the last block is written
+ * even if it is only partly full, and it is rewritten with a single update each time more
+ * results are stored. The block is rebuilt from the previously stored PIDs supplied by
+ * the caller, so it never needs to be read back from the database.
+ * </p>
+ * <p>
+ * To use this implementation, override the <code>searchResultCacheSvc</code> bean
+ * in your server configuration:
+ * </p>
+ * <pre>
+ * &#64;Bean
+ * public ISearchResultCacheSvc searchResultCacheSvc() {
+ *    return new DatabaseBlockSearchResultCacheSvcImpl();
+ * }
+ * </pre>
+ * <p>
+ * Results stored by one implementation can not be read by the other, so searches which
+ * are in progress when switching will need to be re-run. Expiry of stale searches is
+ * handled by {@link DatabaseSearchCacheSvcImpl} for both implementations, although it only
+ * looks for result blocks while this implementation is in use, so blocks left over after
+ * switching back are only removed by an expunge of everything.
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public class DatabaseBlockSearchResultCacheSvcImpl implements ISearchResultCacheSvc {
+	public static final int DEFAULT_BLOCK_SIZE = 10000;
+	private static final Logger ourLog = LoggerFactory.getLogger(DatabaseBlockSearchResultCacheSvcImpl.class);
+
+	@Autowired
+	private ISearchResultBlockDao mySearchResultBlockDao;
+
+	@Autowired
+	private IHapiTransactionService myTransactionService;
+
+	private int myBlockSize = DEFAULT_BLOCK_SIZE;
+
+	@VisibleForTesting
+	void setSearchResultBlockDaoForUnitTest(ISearchResultBlockDao theSearchResultBlockDao) {
+		mySearchResultBlockDao = theSearchResultBlockDao;
+	}
+
+	@VisibleForTesting
+	void setTransactionServiceForUnitTest(IHapiTransactionService theTransactionService) {
+		myTransactionService = theTransactionService;
+	}
+
+	@VisibleForTesting
+	void setBlockSizeForUnitTest(int theBlockSize) {
+		Validate.isTrue(theBlockSize > 0, "theBlockSize must be greater than 0");
+		myBlockSize = theBlockSize;
+	}
+
+	@Override
+	public List<JpaPid> fetchResultPids(
+			Search theSearch,
+			int theFrom,
+			int theTo,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		return myTransactionService
+				.withRequest(theRequestDetails)
+				.withRequestPartitionId(theRequestPartitionId)
+				.execute(() -> {
+					if (theTo <= theFrom) {
+						return Collections.emptyList();
+					}
+
+					int firstBlock = theFrom / myBlockSize;
+					int lastBlock = (theTo - 1) / myBlockSize;
+					List<SearchResultBlock> blocks =
+							mySearchResultBlockDao.findBlocks(theSearch.getId(), firstBlock, lastBlock);
+
+					List<Long> pids = new ArrayList<>();
+					for (SearchResultBlock next : blocks) {
+						pids.addAll(SearchResultPidBlockCodec.decode(next.getResultPids()));
+					}
+
+					int offset = theFrom - (firstBlock * myBlockSize);
+					List<Long> retVal;
+					if (offset >= pids.size()) {
+						retVal = Collections.emptyList();
+					} else {
+						retVal = pids.subList(offset, Math.min(pids.size(), offset + (theTo - theFrom)));
+					}
+
+					ourLog.debug(
+							"fetchResultPids for range {}-{} returned {} pids from {} blocks",
+							theFrom,
+							theTo,
+							retVal.size(),
+							blocks.size());
+
+					return JpaPid.fromLongList(retVal);
+				});
+	}
+
+	@Override
+	public List<JpaPid> fetchAllResultPids(
+			Search theSearch, RequestDetails theRequestDetails, RequestPartitionId theRequestPartitionId) {
+		return myTransactionService
+				.withRequest(theRequestDetails)
+				.withRequestPartitionId(theRequestPartitionId)
+				.execute(() -> {
+					List<Long> retVal = new ArrayList<>();
+					for (SearchResultBlock next : mySearchResultBlockDao.findAllBlocks(theSearch.getId())) {
+						retVal.addAll(SearchResultPidBlockCodec.decode(next.getResultPids()));
+					}
+					ourLog.trace("fetchAllResultPids returned {} pids", retVal.size());
+					return JpaPid.fromLongList(retVal);
+				});
+	}
+
+	@Override
+	public void storeResults(
+			Search theSearch,
+			List<JpaPid> thePreviouslyStoredResourcePids,
+			List<JpaPid> theNewResourcePids,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		myTransactionService
+				.withRequest(theRequestDetails)
+				.withRequestPartitionId(theRequestPartitionId)
+				.execute(() -> {
+					ourLog.debug(
+							"Storing {} results with {} previous for search",
+							theNewResourcePids.size(),
+							thePreviouslyStoredResourcePids.size());
+
+					int order = thePreviouslyStoredResourcePids.size();
+					int index = 0;
+					while (index < theNewResourcePids.size()) {
+						int blockIndex = order / myBlockSize;
+						int offsetInBlock = order % myBlockSize;
+						int count = Math.min(myBlockSize - offsetInBlock, theNewResourcePids.size() - index);
+
+						// If the previous pass ended part way through this block, the caller already
+						// holds the PIDs it contains, so we rebuild it from those instead of reading
+						// back and decoding the stored block
+						List<Long> blockPids = new ArrayList<>(offsetInBlock + count);
+						if (offsetInBlock > 0) {
+							for (JpaPid next : thePreviouslyStoredResourcePids.subList(order - offsetInBlock, order)) {
+								blockPids.add(next.getId());
+							}
+						}
+						for (JpaPid next : theNewResourcePids.subList(index, index + count)) {
+							blockPids.add(next.getId());
+						}
+						byte[] encoded = SearchResultPidBlockCodec.encode(blockPids);
+
+						if (offsetInBlock == 0) {
+							SearchResultBlock block = new SearchResultBlock(theSearch, blockIndex);
+							block.setResultPids(encoded);
+							block.setResultCount(blockPids.size());
+							mySearchResultBlockDao.save(block);
+						} else {
+							int updated = mySearchResultBlockDao.updateBlock(
+									theSearch.getId(), blockIndex, offsetInBlock, encoded, blockPids.size());
+							if (updated != 1) {
+								throw new InternalErrorException(Msg.code(2451) + "Search result block "
+										+ blockIndex + " for search " + theSearch.getId()
+										+ " is missing or does not contain " + offsetInBlock + " results");
+							}
+						}
+						ourLog.trace("Saved search result block {} with {} results", blockIndex, blockPids.size());
+
+						order += count;
+						index += count;
+					}
+				});
+	}
+}
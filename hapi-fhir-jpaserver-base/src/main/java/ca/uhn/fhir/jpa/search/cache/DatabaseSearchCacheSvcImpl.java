@@ -24,6 +24,7 @@ import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.dao.data.ISearchDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchIncludeDao;
+import ca.uhn.fhir.jpa.dao.data.ISearchResultBlockDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchResultDao;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
@@ -37,6 +38,7 @@ import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.dstu3.model.InstantType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.AopProxyUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Slice;
@@ -80,6 +82,12 @@ public class DatabaseSearchCacheSvcImpl implements ISearchCacheSvc {
 	@Autowired
 	private ISearchIncludeDao mySearchIncludeDao;
 
+	@Autowired
+	private ISearchResultBlockDao mySearchResultBlockDao;
+
+	@Autowired
+	private ISearchResultCacheSvc mySearchResultCacheSvc;
+
 	@Autowired
 	private IHapiTransactionService myTransactionService;
 
@@ -107,6 +115,14 @@ public class DatabaseSearchCacheSvcImpl implements ISearchCacheSvc {
 				.execute(() -> mySearchDao.findByUuidAndFetchIncludes(theUuid));
 	}
 
+	@Override
+	public void updateTotalCountIfNotSet(String theUuid, int theTotalCount, RequestPartitionId theRequestPartitionId) {
+		myTransactionService
+				.withSystemRequestOnPartition(theRequestPartitionId)
+				.withPropagation(Propagation.REQUIRES_NEW)
+				.execute(() -> mySearchDao.updateTotalCountIfNotSet(theUuid, theTotalCount));
+	}
+
 	void setSearchDaoForUnitTest(ISearchDao theSearchDao) {
 		mySearchDao = theSearchDao;
 	}
@@ -238,10 +254,25 @@ public class DatabaseSearchCacheSvcImpl implements ISearchCacheSvc {
 		}
 	}
 
+	/**
+	 * Returns <code>true</code> if search results are stored in blocks by
+	 * {@link DatabaseBlockSearchResultCacheSvcImpl}, rather than one row per result
+	 */
+	private boolean isUsingSearchResultBlocks() {
+		return mySearchResultCacheSvc != null
+				&& DatabaseBlockSearchResultCacheSvcImpl.class.isAssignableFrom(
+						AopProxyUtils.ultimateTargetClass(mySearchResultCacheSvc));
+	}
+
 	private void deleteSearch(final Long theSearchPid) {
 		mySearchDao.findById(theSearchPid).ifPresent(searchToDelete -> {
 			mySearchIncludeDao.deleteForSearch(searchToDelete.getId());
 
+			// Each search has very few of these, but there is no point looking for them otherwise
+			if (isUsingSearchResultBlocks()) {
+				mySearchResultBlockDao.deleteForSearch(searchToDelete.getId());
+			}
+
 			/*
 			 * Note, we're only deleting up to 500 results in an individual search here. This
 			 * is to prevent really long running transactions in cases where there are
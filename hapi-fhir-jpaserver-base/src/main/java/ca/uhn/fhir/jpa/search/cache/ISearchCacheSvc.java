@@ -45,6 +45,27 @@ public interface ISearchCacheSvc {
 	 */
 	Optional<Search> fetchByUuid(String theUuid, RequestPartitionId theRequestPartitionId);
 
+	/**
+	 * Stores the total number of results for a search whose total was calculated separately from the
+	 * search itself. Only the total is modified, and only if the stored search does not already have one.
+	 * <p>
+	 * The default implementation loads and saves the whole search, so implementations should override
+	 * this method if they are able to update the total alone.
+	 * </p>
+	 *
+	 * @param theUuid       The search UUID
+	 * @param theTotalCount The total number of results
+	 * @since 7.0.0
+	 */
+	default void updateTotalCountIfNotSet(String theUuid, int theTotalCount, RequestPartitionId theRequestPartitionId) {
+		fetchByUuid(theUuid, theRequestPartitionId)
+				.filter(t -> t.getTotalCount() == null)
+				.ifPresent(t -> {
+					t.setTotalCount(theTotalCount);
+					save(t, theRequestPartitionId);
+				});
+	}
+
 	/**
 	 * TODO: this is perhaps an inappropriate responsibility for this service
 	 *
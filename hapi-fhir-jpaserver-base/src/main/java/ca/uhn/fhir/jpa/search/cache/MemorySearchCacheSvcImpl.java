@@ -0,0 +1,227 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link ISearchCacheSvc} which keeps searches in memory instead of in the
+ * <code>HFJ_SEARCH</code> table. This avoids several database round trips for every
+ * search, at the cost of searches not being shared between the nodes of a cluster
+ * and not surviving a restart. It is intended to be used together with
+ * {@link MemorySearchResultCacheSvcImpl} on single node servers.
+ * <p>
+ * The number of searches kept is bounded (see {@link #setMaximumSearchCount(int)}). When
+ * the limit is reached, the least recently used search is discarded. Stale searches are
+ * removed by {@link #pollForStaleSearchesAndDeleteThem(RequestPartitionId)} using the same
+ * expiry rules as {@link DatabaseSearchCacheSvcImpl}. A client requesting a page of a
+ * search which has been discarded gets the same error as for an expired search, and
+ * needs to re-run the search.
+ * </p>
+ * <p>
+ * To use this implementation, override the <code>searchCacheSvc</code> bean
+ * in your server configuration:
+ * </p>
+ * <pre>
+ * &#64;Bean
+ * public ISearchCacheSvc searchCacheSvc() {
+ *    return new MemorySearchCacheSvcImpl();
+ * }
+ * </pre>
+ *
+ * @since 7.0.0
+ */
+public class MemorySearchCacheSvcImpl implements ISearchCacheSvc {
+	public static final int DEFAULT_MAXIMUM_SEARCH_COUNT = 10000;
+	private static final Logger ourLog = LoggerFactory.getLogger(MemorySearchCacheSvcImpl.class);
+
+	/**
+	 * Access ordered, so iteration starts at the least recently used search
+	 */
+	private final LinkedHashMap<String, Search> myUuidToSearch = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final Map<Long, String> myIdToUuid = new HashMap<>();
+	private final AtomicLong myNextId = new AtomicLong(1);
+	private int myMaximumSearchCount = DEFAULT_MAXIMUM_SEARCH_COUNT;
+	private Long myNowForUnitTest;
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	/**
+	 * Sets the maximum number of searches which will be kept. Defaults to {@link #DEFAULT_MAXIMUM_SEARCH_COUNT}.
+	 */
+	public void setMaximumSearchCount(int theMaximumSearchCount) {
+		Validate.isTrue(theMaximumSearchCount > 0, "theMaximumSearchCount must be greater than 0");
+		myMaximumSearchCount = theMaximumSearchCount;
+	}
+
+	@VisibleForTesting
+	void setStorageSettingsForUnitTest(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
+	@VisibleForTesting
+	void setNowForUnitTest(Long theNow) {
+		myNowForUnitTest = theNow;
+	}
+
+	@Override
+	public synchronized Search save(Search theSearch, RequestPartitionId theRequestPartitionId) {
+		Validate.notBlank(theSearch.getUuid(), "theSearch must have a UUID");
+		if (theSearch.getId() == null) {
+			theSearch.setId(myNextId.getAndIncrement());
+		}
+
+		// Store a copy so that changes made by the caller are only visible once saved again
+		myUuidToSearch.put(theSearch.getUuid(), SerializationUtils.clone(theSearch));
+		myIdToUuid.put(theSearch.getId(), theSearch.getUuid());
+
+		Iterator<Map.Entry<String, Search>> iter = myUuidToSearch.entrySet().iterator();
+		while (myUuidToSearch.size() > myMaximumSearchCount && iter.hasNext()) {
+			Search evicted = iter.next().getValue();
+			iter.remove();
+			myIdToUuid.remove(evicted.getId());
+			ourLog.debug("Discarding least recently used search {}", evicted.getUuid());
+		}
+
+		return theSearch;
+	}
+
+	@Override
+	public synchronized Optional<Search> fetchByUuid(String theUuid, RequestPartitionId theRequestPartitionId) {
+		Validate.notBlank(theUuid);
+		return Optional.ofNullable(myUuidToSearch.get(theUuid)).map(SerializationUtils::clone);
+	}
+
+	@Override
+	public synchronized void updateTotalCountIfNotSet(
+			String theUuid, int theTotalCount, RequestPartitionId theRequestPartitionId) {
+		Search search = myUuidToSearch.get(theUuid);
+		if (search != null && search.getTotalCount() == null) {
+			search.setTotalCount(theTotalCount);
+		}
+	}
+
+	@Override
+	public synchronized Optional<Search> tryToMarkSearchAsInProgress(
+			Search theSearch, RequestPartitionId theRequestPartitionId) {
+		Search search = myUuidToSearch.getOrDefault(theSearch.getUuid(), theSearch);
+		if (search.getStatus() != SearchStatusEnum.PASSCMPLET) {
+			ourLog.warn("Failed to activate search: Can't change to LOADING because state is {}", search.getStatus());
+			return Optional.empty();
+		}
+
+		search.setStatus(SearchStatusEnum.LOADING);
+		return Optional.of(save(search, theRequestPartitionId)).map(SerializationUtils::clone);
+	}
+
+	@Override
+	public synchronized Optional<Search> findCandidatesForReuse(
+			String theResourceType,
+			String theQueryString,
+			Instant theCreatedAfter,
+			RequestPartitionId theRequestPartitionId) {
+		String queryString = Search.createSearchQueryStringForStorage(theQueryString, theRequestPartitionId);
+		Integer hashCode = queryString.hashCode();
+
+		for (Search next : myUuidToSearch.values()) {
+			if (Objects.equals(theResourceType, next.getResourceType())
+					&& hashCode.equals(next.getSearchQueryStringHash())
+					&& next.getCreated().toInstant().isAfter(theCreatedAfter)
+					&& !Boolean.TRUE.equals(next.getDeleted())
+					&& next.getStatus() != SearchStatusEnum.FAILED
+					&& queryString.equals(next.getSearchQueryString())) {
+				return Optional.of(SerializationUtils.clone(next));
+			}
+		}
+
+		return Optional.empty();
+	}
+
+	@Override
+	public synchronized void pollForStaleSearchesAndDeleteThem(RequestPartitionId theRequestPartitionId) {
+		if (!myStorageSettings.isExpireSearchResults()) {
+			return;
+		}
+
+		long cutoffMillis = myStorageSettings.getExpireSearchResultsAfterMillis();
+		if (myStorageSettings.getReuseCachedSearchResultsForMillis() != null) {
+			cutoffMillis = cutoffMillis + myStorageSettings.getReuseCachedSearchResultsForMillis();
+		}
+		long now = now();
+		long cutoff = now - cutoffMillis;
+
+		List<Long> toDelete = new ArrayList<>();
+		for (Search next : myUuidToSearch.values()) {
+			if (next.getCreated().getTime() < cutoff
+					&& (next.getExpiryOrNull() == null || next.getExpiryOrNull().getTime() < now)) {
+				toDelete.add(next.getId());
+			}
+		}
+
+		toDelete.forEach(this::removeSearch);
+		if (!toDelete.isEmpty()) {
+			ourLog.info("Deleted {} stale searches", toDelete.size());
+		}
+	}
+
+	/**
+	 * Removes a search, e.g. because its results have been discarded
+	 */
+	synchronized void removeSearch(Long theSearchPid) {
+		String uuid = myIdToUuid.remove(theSearchPid);
+		if (uuid != null) {
+			myUuidToSearch.remove(uuid);
+		}
+	}
+
+	@VisibleForTesting
+	synchronized int getSearchCount() {
+		return myUuidToSearch.size();
+	}
+
+	private long now() {
+		if (myNowForUnitTest != null) {
+			return myNowForUnitTest;
+		}
+		return System.currentTimeMillis();
+	}
+}
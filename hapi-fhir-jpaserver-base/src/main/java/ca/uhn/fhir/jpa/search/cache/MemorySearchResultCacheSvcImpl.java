@@ -0,0 +1,369 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link ISearchResultCacheSvc} which keeps the result PIDs for each search in memory as
+ * primitive <code>long</code> values, instead of in the <code>HFJ_SEARCH_RESULT</code> table.
+ * It is intended to be used together with {@link MemorySearchCacheSvcImpl} on single
+ * node servers.
+ * <p>
+ * The memory used is bounded by the total number of PIDs kept across all searches (see
+ * {@link #setMaximumStoredPidCount(long)}), with each PID using 8 bytes. When the limit is
+ * exceeded, the results of the least recently used searches are discarded. Results which
+ * have not been accessed for longer than the time to live (see {@link #setTimeToLiveMillis(long)})
+ * are discarded as well. A client requesting a page of a search whose results have been
+ * discarded gets the same error as for an expired search, and needs to re-run the search.
+ * </p>
+ * <p>
+ * If {@link #setOffHeap(boolean) off-heap storage} is enabled, the PIDs are stored in direct
+ * buffers so that large result sets do not add to the garbage collector's workload. Note
+ * that the JVM limits the total size of direct buffers (<code>-XX:MaxDirectMemorySize</code>).
+ * </p>
+ * <p>
+ * To use this implementation, override the <code>searchResultCacheSvc</code> bean
+ * in your server configuration:
+ * </p>
+ * <pre>
+ * &#64;Bean
+ * public ISearchResultCacheSvc searchResultCacheSvc() {
+ *    return new MemorySearchResultCacheSvcImpl();
+ * }
+ * </pre>
+ *
+ * @since 7.0.0
+ */
+public class MemorySearchResultCacheSvcImpl implements ISearchResultCacheSvc {
+	public static final long DEFAULT_MAXIMUM_STORED_PID_COUNT = 10_000_000L;
+	public static final long DEFAULT_TIME_TO_LIVE_MILLIS = DateUtils.MILLIS_PER_HOUR;
+	private static final Logger ourLog = LoggerFactory.getLogger(MemorySearchResultCacheSvcImpl.class);
+
+	/**
+	 * Access ordered, so iteration starts at the least recently used search
+	 */
+	private final LinkedHashMap<Long, BaseStoredPids> mySearchIdToPids = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long myStoredPidCount;
+	private long myMaximumStoredPidCount = DEFAULT_MAXIMUM_STORED_PID_COUNT;
+	private long myTimeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+	private boolean myOffHeap;
+	private Long myNowForUnitTest;
+
+	@Autowired(required = false)
+	private ISearchCacheSvc mySearchCacheSvc;
+
+	/**
+	 * Sets the maximum number of result PIDs which will be kept across all searches.
+	 * Defaults to {@link #DEFAULT_MAXIMUM_STORED_PID_COUNT}.
+	 */
+	public void setMaximumStoredPidCount(long theMaximumStoredPidCount) {
+		Validate.isTrue(theMaximumStoredPidCount > 0, "theMaximumStoredPidCount must be greater than 0");
+		myMaximumStoredPidCount = theMaximumStoredPidCount;
+	}
+
+	/**
+	 * Sets how long the results for a search are kept after they were last accessed.
+	 * Defaults to {@link #DEFAULT_TIME_TO_LIVE_MILLIS}.
+	 */
+	public void setTimeToLiveMillis(long theTimeToLiveMillis) {
+		Validate.isTrue(theTimeToLiveMillis > 0, "theTimeToLiveMillis must be greater than 0");
+		myTimeToLiveMillis = theTimeToLiveMillis;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), result PIDs for searches stored
+	 * after this call are kept in direct (off-heap) buffers instead of on the heap.
+	 */
+	public void setOffHeap(boolean theOffHeap) {
+		myOffHeap = theOffHeap;
+	}
+
+	@VisibleForTesting
+	void setSearchCacheSvcForUnitTest(ISearchCacheSvc theSearchCacheSvc) {
+		mySearchCacheSvc = theSearchCacheSvc;
+	}
+
+	@VisibleForTesting
+	void setNowForUnitTest(Long theNow) {
+		myNowForUnitTest = theNow;
+	}
+
+	@Override
+	public void storeResults(
+			Search theSearch,
+			List<JpaPid> thePreviouslyStoredResourcePids,
+			List<JpaPid> theNewResourcePids,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		Validate.notNull(theSearch.getId(), "theSearch must have an ID");
+
+		List<Long> evicted;
+		synchronized (this) {
+			BaseStoredPids pids = mySearchIdToPids.get(theSearch.getId());
+			if (pids == null) {
+				if (!thePreviouslyStoredResourcePids.isEmpty()) {
+					// The earlier results were discarded, so appending to them would leave a gap
+					ourLog.debug(
+							"Not storing results for search {} as earlier results were discarded", theSearch.getId());
+					return;
+				}
+				pids = myOffHeap ? new OffHeapStoredPids() : new HeapStoredPids();
+				mySearchIdToPids.put(theSearch.getId(), pids);
+			}
+
+			pids.addAll(theNewResourcePids);
+			pids.myLastAccessed = now();
+			myStoredPidCount += theNewResourcePids.size();
+
+			evicted = evictIfNeeded(theSearch.getId());
+		}
+
+		discardSearches(evicted);
+	}
+
+	@Override
+	public List<JpaPid> fetchResultPids(
+			Search theSearch,
+			int theFrom,
+			int theTo,
+			RequestDetails theRequestDetails,
+			RequestPartitionId theRequestPartitionId) {
+		return fetch(theSearch, theFrom, theTo);
+	}
+
+	@Override
+	public List<JpaPid> fetchAllResultPids(
+			Search theSearch, RequestDetails theRequestDetails, RequestPartitionId theRequestPartitionId) {
+		return fetch(theSearch, 0, Integer.MAX_VALUE);
+	}
+
+	private List<JpaPid> fetch(Search theSearch, int theFrom, int theTo) {
+		List<JpaPid> retVal = null;
+		List<Long> evicted;
+		synchronized (this) {
+			BaseStoredPids pids = mySearchIdToPids.get(theSearch.getId());
+			if (pids != null) {
+				pids.myLastAccessed = now();
+				int to = Math.min(theTo, pids.size());
+				retVal = new ArrayList<>(Math.max(0, to - theFrom));
+				for (int i = theFrom; i < to; i++) {
+					retVal.add(JpaPid.fromId(pids.get(i)));
+				}
+			}
+			evicted = evictIfNeeded(theSearch.getId());
+		}
+
+		discardSearches(evicted);
+
+		if (retVal == null && theSearch.getNumFound() <= 0) {
+			// Nothing was ever stored for searches without results
+			retVal = Collections.emptyList();
+		}
+
+		ourLog.debug(
+				"fetchResultPids for range {}-{} returned {} pids",
+				theFrom,
+				theTo,
+				retVal != null ? retVal.size() : null);
+		return retVal;
+	}
+
+	/**
+	 * Discards the results of expired searches, and then of the least recently used searches
+	 * until the stored PID count is within bounds. The results of the search currently being
+	 * accessed are only discarded if they alone exceed the bound.
+	 *
+	 * @return The IDs of the searches whose results were discarded
+	 */
+	private List<Long> evictIfNeeded(Long theCurrentSearchId) {
+		List<Long> retVal = null;
+		long expiryCutoff = now() - myTimeToLiveMillis;
+
+		Iterator<Map.Entry<Long, BaseStoredPids>> iter =
+				mySearchIdToPids.entrySet().iterator();
+		while (iter.hasNext()) {
+			Map.Entry<Long, BaseStoredPids> next = iter.next();
+			boolean expired = next.getValue().myLastAccessed < expiryCutoff;
+			boolean overBudget = myStoredPidCount > myMaximumStoredPidCount
+					&& (!next.getKey().equals(theCurrentSearchId) || mySearchIdToPids.size() == 1);
+			if (!expired && !overBudget) {
+				if (myStoredPidCount <= myMaximumStoredPidCount) {
+					break;
+				}
+				continue;
+			}
+
+			iter.remove();
+			myStoredPidCount -= next.getValue().size();
+			if (retVal == null) {
+				retVal = new ArrayList<>();
+			}
+			retVal.add(next.getKey());
+		}
+
+		return retVal != null ? retVal : Collections.emptyList();
+	}
+
+	/**
+	 * Searches whose results have been discarded must not be reused or continued, so if the
+	 * searches themselves are also held in memory we remove them too. Clients will then need
+	 * to re-run the search.
+	 */
+	private void discardSearches(List<Long> theSearchIds) {
+		for (Long next : theSearchIds) {
+			ourLog.debug("Discarded results for search {}", next);
+			if (mySearchCacheSvc instanceof MemorySearchCacheSvcImpl) {
+				((MemorySearchCacheSvcImpl) mySearchCacheSvc).removeSearch(next);
+			}
+		}
+	}
+
+	@VisibleForTesting
+	synchronized long getStoredPidCount() {
+		return myStoredPidCount;
+	}
+
+	/**
+	 * Returns the capacity to grow a PID store to, which is at least <code>theRequiredCapacity</code>
+	 * and never more than <code>theMaximumCapacity</code>
+	 *
+	 * @throws InternalErrorException If <code>theRequiredCapacity</code> is greater than <code>theMaximumCapacity</code>
+	 */
+	@VisibleForTesting
+	static int newCapacity(int theCurrentCapacity, long theRequiredCapacity, int theMaximumCapacity) {
+		if (theRequiredCapacity > theMaximumCapacity) {
+			throw new InternalErrorException(Msg.code(2486) + "Unable to store " + theRequiredCapacity
+					+ " results for a single search, the maximum is " + theMaximumCapacity);
+		}
+		long grown = Math.max(16, theCurrentCapacity + (long) (theCurrentCapacity >> 1));
+		return (int) Math.min(theMaximumCapacity, Math.max(theRequiredCapacity, grown));
+	}
+
+	private long now() {
+		if (myNowForUnitTest != null) {
+			return myNowForUnitTest;
+		}
+		return System.currentTimeMillis();
+	}
+
+	private abstract static class BaseStoredPids {
+		long myLastAccessed;
+		int mySize;
+
+		int size() {
+			return mySize;
+		}
+
+		void addAll(List<JpaPid> thePids) {
+			ensureCapacity((long) mySize + thePids.size());
+			for (JpaPid next : thePids) {
+				set(mySize++, next.getId());
+			}
+		}
+
+		abstract long get(int theIndex);
+
+		abstract void set(int theIndex, long theValue);
+
+		abstract void ensureCapacity(long theCapacity);
+	}
+
+	private static class HeapStoredPids extends BaseStoredPids {
+		/**
+		 * Some JVMs reserve a few header words in arrays
+		 */
+		private static final int MAXIMUM_CAPACITY = Integer.MAX_VALUE - 8;
+
+		private long[] myPids = new long[0];
+
+		@Override
+		long get(int theIndex) {
+			return myPids[theIndex];
+		}
+
+		@Override
+		void set(int theIndex, long theValue) {
+			myPids[theIndex] = theValue;
+		}
+
+		@Override
+		void ensureCapacity(long theCapacity) {
+			if (theCapacity > myPids.length) {
+				long[] pids = new long[newCapacity(myPids.length, theCapacity, MAXIMUM_CAPACITY)];
+				System.arraycopy(myPids, 0, pids, 0, mySize);
+				myPids = pids;
+			}
+		}
+	}
+
+	private static class OffHeapStoredPids extends BaseStoredPids {
+		/**
+		 * A direct buffer holds at most {@link Integer#MAX_VALUE} bytes
+		 */
+		private static final int MAXIMUM_CAPACITY = Integer.MAX_VALUE / Long.BYTES;
+
+		private LongBuffer myPids = LongBuffer.allocate(0);
+
+		@Override
+		long get(int theIndex) {
+			return myPids.get(theIndex);
+		}
+
+		@Override
+		void set(int theIndex, long theValue) {
+			myPids.put(theIndex, theValue);
+		}
+
+		@Override
+		void ensureCapacity(long theCapacity) {
+			if (theCapacity > myPids.capacity()) {
+				int capacity = newCapacity(myPids.capacity(), theCapacity, MAXIMUM_CAPACITY);
+				LongBuffer pids =
+						ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+				for (int i = 0; i < mySize; i++) {
+					pids.put(i, myPids.get(i));
+				}
+				myPids = pids;
+			}
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes an ordered list of resource PIDs into a compact binary form, used by
+ * {@link DatabaseBlockSearchResultCacheSvcImpl} to store a block of search results
+ * in a single row.
+ * <p>
+ * Search results keep the order they were returned in (e.g. when a <code>_sort</code>
+ * is applied), so the PIDs are not necessarily ascending. Each PID is therefore stored
+ * as the zigzag-encoded difference from the previous one, written as a variable length
+ * integer. Results matched by a typical unsorted search are close to ascending, so most
+ * values only need one or two bytes instead of eight.
+ * </p>
+ * <p>
+ * The format is a single version byte, followed by the number of PIDs and then the
+ * deltas, all as unsigned varints.
+ * </p>
+ */
+public final class SearchResultPidBlockCodec {
+
+	private static final int FORMAT_VERSION = 1;
+
+	private SearchResultPidBlockCodec() {
+		// nothing
+	}
+
+	public static byte[] encode(List<Long> thePids) {
+		ByteArrayOutputStream retVal = new ByteArrayOutputStream(thePids.size() * 2 + 8);
+		retVal.write(FORMAT_VERSION);
+		writeVarLong(retVal, thePids.size());
+
+		long previous = 0;
+		for (Long next : thePids) {
+			long delta = next - previous;
+			writeVarLong(retVal, (delta << 1) ^ (delta >> 63));
+			previous = next;
+		}
+
+		return retVal.toByteArray();
+	}
+
+	public static List<Long> decode(byte[] theBytes) {
+		Reader reader = new Reader(theBytes);
+		int version = theBytes.length > 0 ? theBytes[reader.myPos++] : -1;
+		if (version != FORMAT_VERSION) {
+			throw new InternalErrorException(Msg.code(2448) + "Unknown search result block format: " + version);
+		}
+
+		int count = (int) reader.readVarLong();
+		List<Long> retVal = new ArrayList<>(count);
+		long previous = 0;
+		for (int i = 0; i < count; i++) {
+			long zigzag = reader.readVarLong();
+			long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+			previous = previous + delta;
+			retVal.add(previous);
+		}
+
+		return retVal;
+	}
+
+	private static void writeVarLong(ByteArrayOutputStream theOutput, long theValue) {
+		long value = theValue;
+		while ((value & ~0x7FL) != 0) {
+			theOutput.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		theOutput.write((int) value);
+	}
+
+	private static class Reader {
+		private final byte[] myBytes;
+		private int myPos;
+
+		private Reader(byte[] theBytes) {
+			myBytes = theBytes;
+		}
+
+		private long readVarLong() {
+			long retVal = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if (myPos >= myBytes.length) {
+					throw new InternalErrorException(Msg.code(2449) + "Truncated search result block");
+				}
+				byte next = myBytes[myPos++];
+				retVal |= (long) (next & 0x7F) << shift;
+				if ((next & 0x80) == 0) {
+					return retVal;
+				}
+			}
+			throw new InternalErrorException(Msg.code(2450) + "Malformed search result block");
+		}
+	}
+}
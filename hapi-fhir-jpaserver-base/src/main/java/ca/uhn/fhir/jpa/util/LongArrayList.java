@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.i18n.Msg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable list of primitive <code>long</code> values, used for resource PIDs in places
+ * where large numbers of them are processed and boxing each one as a {@link Long} or
+ * {@link ca.uhn.fhir.jpa.model.dao.JpaPid} would create a lot of garbage.
+ *
+ * @since 7.0.0
+ */
+public class LongArrayList {
+	private long[] myValues;
+	private int mySize;
+
+	public LongArrayList() {
+		this(16);
+	}
+
+	public LongArrayList(int theInitialCapacity) {
+		myValues = new long[Math.max(theInitialCapacity, 1)];
+	}
+
+	public void add(long theValue) {
+		if (mySize == myValues.length) {
+			myValues = Arrays.copyOf(myValues, myValues.length + (myValues.length >> 1) + 1);
+		}
+		myValues[mySize++] = theValue;
+	}
+
+	public long get(int theIndex) {
+		if (theIndex < 0 || theIndex >= mySize) {
+			throw new IndexOutOfBoundsException(
+					Msg.code(2473) + "Index " + theIndex + " out of bounds for size " + mySize);
+		}
+		return myValues[theIndex];
+	}
+
+	public int size() {
+		return mySize;
+	}
+
+	public boolean isEmpty() {
+		return mySize == 0;
+	}
+
+	public void clear() {
+		mySize = 0;
+	}
+
+	/**
+	 * Returns a range of this list as boxed values, e.g. for use as a query parameter
+	 *
+	 * @param theFrom The starting index (inclusive)
+	 * @param theTo   The ending index (exclusive)
+	 */
+	public List<Long> toLongList(int theFrom, int theTo) {
+		if (theFrom < 0 || theTo > mySize || theFrom > theTo) {
+			throw new IndexOutOfBoundsException(
+					Msg.code(2474) + "Range " + theFrom + "-" + theTo + " out of bounds for size " + mySize);
+		}
+		List<Long> retVal = new ArrayList<>(theTo - theFrom);
+		for (int i = theFrom; i < theTo; i++) {
+			retVal.add(myValues[i]);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Splits this list into boxed lists of at most <code>theMaximumSize</code> values each
+	 */
+	public List<List<Long>> partition(int theMaximumSize) {
+		List<List<Long>> retVal = new ArrayList<>();
+		for (int from = 0; from < mySize; from += theMaximumSize) {
+			retVal.add(toLongList(from, Math.min(mySize, from + theMaximumSize)));
+		}
+		return retVal;
+	}
+}
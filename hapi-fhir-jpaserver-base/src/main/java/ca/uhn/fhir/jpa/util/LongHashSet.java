@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+/**
+ * A set of primitive <code>long</code> values, using open addressing with linear probing so that
+ * no objects are allocated per entry. Used for tracking resource PIDs in places where large
+ * numbers of them are processed, such as <code>_include</code> and <code>_revinclude</code>
+ * loading.
+ *
+ * @since 7.0.0
+ */
+public class LongHashSet {
+	private static final long FREE = 0;
+
+	private long[] myKeys;
+	private int mySize;
+	private boolean myContainsFree;
+
+	public LongHashSet() {
+		this(16);
+	}
+
+	public LongHashSet(int theExpectedSize) {
+		myKeys = new long[LongHashing.tableSizeFor(theExpectedSize)];
+	}
+
+	/**
+	 * @return Returns <code>true</code> if the value was not already present
+	 */
+	public boolean add(long theValue) {
+		if (theValue == FREE) {
+			if (myContainsFree) {
+				return false;
+			}
+			myContainsFree = true;
+			mySize++;
+			return true;
+		}
+
+		int mask = myKeys.length - 1;
+		int index = LongHashing.hash(theValue) & mask;
+		while (myKeys[index] != FREE) {
+			if (myKeys[index] == theValue) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+
+		myKeys[index] = theValue;
+		mySize++;
+		if (LongHashing.needsResize(mySize, myKeys.length)) {
+			resize();
+		}
+		return true;
+	}
+
+	public boolean contains(long theValue) {
+		if (theValue == FREE) {
+			return myContainsFree;
+		}
+
+		int mask = myKeys.length - 1;
+		int index = LongHashing.hash(theValue) & mask;
+		while (myKeys[index] != FREE) {
+			if (myKeys[index] == theValue) {
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return mySize;
+	}
+
+	public boolean isEmpty() {
+		return mySize == 0;
+	}
+
+	private void resize() {
+		long[] oldKeys = myKeys;
+		myKeys = new long[oldKeys.length * 2];
+		int mask = myKeys.length - 1;
+		for (long next : oldKeys) {
+			if (next != FREE) {
+				int index = LongHashing.hash(next) & mask;
+				while (myKeys[index] != FREE) {
+					index = (index + 1) & mask;
+				}
+				myKeys[index] = next;
+			}
+		}
+	}
+}
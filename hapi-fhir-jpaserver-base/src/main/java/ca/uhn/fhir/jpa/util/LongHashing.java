@@ -0,0 +1,52 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+/**
+ * Shared sizing and hashing for {@link LongHashSet} and {@link LongIntHashMap}
+ */
+final class LongHashing {
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	private LongHashing() {}
+
+	/**
+	 * Spreads the bits of sequential values (which PIDs usually are) across the table
+	 */
+	static int hash(long theValue) {
+		long h = theValue * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Returns a power of two table size which keeps the load factor below 0.5 for the given number of entries
+	 */
+	static int tableSizeFor(int theExpectedSize) {
+		int capacity = 16;
+		while (capacity < MAXIMUM_CAPACITY && capacity < theExpectedSize * 2L) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	static boolean needsResize(int theSize, int theCapacity) {
+		return theSize * 2L > theCapacity && theCapacity < MAXIMUM_CAPACITY;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+/**
+ * A map from primitive <code>long</code> keys to primitive <code>int</code> values, using open
+ * addressing with linear probing so that no objects are allocated per entry. Used for example
+ * to track the position of each resource PID in a page of search results.
+ *
+ * @since 7.0.0
+ */
+public class LongIntHashMap {
+	private static final long FREE = 0;
+
+	private long[] myKeys;
+	private int[] myValues;
+	private int mySize;
+	private boolean myContainsFree;
+	private int myFreeValue;
+
+	public LongIntHashMap() {
+		this(16);
+	}
+
+	public LongIntHashMap(int theExpectedSize) {
+		int capacity = LongHashing.tableSizeFor(theExpectedSize);
+		myKeys = new long[capacity];
+		myValues = new int[capacity];
+	}
+
+	public void put(long theKey, int theValue) {
+		if (theKey == FREE) {
+			if (!myContainsFree) {
+				myContainsFree = true;
+				mySize++;
+			}
+			myFreeValue = theValue;
+			return;
+		}
+
+		int mask = myKeys.length - 1;
+		int index = LongHashing.hash(theKey) & mask;
+		while (myKeys[index] != FREE) {
+			if (myKeys[index] == theKey) {
+				myValues[index] = theValue;
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+
+		myKeys[index] = theKey;
+		myValues[index] = theValue;
+		mySize++;
+		if (LongHashing.needsResize(mySize, myKeys.length)) {
+			resize();
+		}
+	}
+
+	/**
+	 * @return Returns the value for the given key, or <code>theDefaultValue</code> if the key is not present
+	 */
+	public int getOrDefault(long theKey, int theDefaultValue) {
+		if (theKey == FREE) {
+			return myContainsFree ? myFreeValue : theDefaultValue;
+		}
+
+		int mask = myKeys.length - 1;
+		int index = LongHashing.hash(theKey) & mask;
+		while (myKeys[index] != FREE) {
+			if (myKeys[index] == theKey) {
+				return myValues[index];
+			}
+			index = (index + 1) & mask;
+		}
+		return theDefaultValue;
+	}
+
+	public int size() {
+		return mySize;
+	}
+
+	private void resize() {
+		long[] oldKeys = myKeys;
+		int[] oldValues = myValues;
+		myKeys = new long[oldKeys.length * 2];
+		myValues = new int[oldKeys.length * 2];
+		int mask = myKeys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE) {
+				int index = LongHashing.hash(oldKeys[i]) & mask;
+				while (myKeys[index] != FREE) {
+					index = (index + 1) & mask;
+				}
+				myKeys[index] = oldKeys[i];
+				myValues[index] = oldValues[i];
+			}
+		}
+	}
+}
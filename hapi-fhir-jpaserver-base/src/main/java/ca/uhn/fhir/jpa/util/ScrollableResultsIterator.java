@@ -61,6 +61,16 @@ public class ScrollableResultsIterator<T extends Object> extends BaseIterator<T>
 		return next;
 	}
 
+	/**
+	 * Returns all columns of the row most recently returned by {@link #next()}. Must be
+	 * called before {@link #hasNext()} is called again, since that advances the cursor.
+	 *
+	 * @since 7.0.0
+	 */
+	public Object[] getCurrentRow() {
+		return myScroll.get();
+	}
+
 	@Override
 	public void close() {
 		if (myScroll != null) {
@@ -0,0 +1,80 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParsedResourceCacheTest {
+
+	private final FhirContext myFhirContext = FhirContext.forR4Cached();
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private ParsedResourceCache mySvc;
+
+	@BeforeEach
+	public void before() {
+		myStorageSettings.setParsedResourceCacheSize(100);
+		mySvc = new ParsedResourceCache();
+		mySvc.setFhirContextForUnitTest(myFhirContext);
+		mySvc.setStorageSettingsForUnitTest(myStorageSettings);
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		mySvc.setStorageSettingsForUnitTest(new JpaStorageSettings());
+		assertFalse(mySvc.isEnabled());
+	}
+
+	@Test
+	public void testGetReturnsCopy() {
+		assertTrue(mySvc.isEnabled());
+
+		ParsedResourceCache.Key key = new ParsedResourceCache.Key(1L, 1L, 1000L, Patient.class);
+		assertNull(mySvc.get(key, Patient.class));
+
+		Patient patient = new Patient();
+		patient.addName().setFamily("Simpson");
+		mySvc.put(key, patient);
+
+		// Modifying the original must not affect the cached copy
+		patient.getNameFirstRep().setFamily("Flanders");
+
+		Patient cached = mySvc.get(new ParsedResourceCache.Key(1L, 1L, 1000L, Patient.class), Patient.class);
+		assertNotNull(cached);
+		assertEquals("Simpson", cached.getNameFirstRep().getFamily());
+
+		// Modifying a returned copy must not affect subsequent reads either
+		cached.getNameFirstRep().setFamily("Flanders");
+		Patient cached2 = mySvc.get(key, Patient.class);
+		assertNotSame(cached, cached2);
+		assertEquals("Simpson", cached2.getNameFirstRep().getFamily());
+
+		assertEquals(2, mySvc.getHitCount());
+		assertEquals(1, mySvc.getMissCount());
+		assertEquals(1, mySvc.getEstimatedSize());
+	}
+
+	@Test
+	public void testNewVersionOrUpdateIsMiss() {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		mySvc.put(new ParsedResourceCache.Key(1L, 1L, 1000L, Patient.class), patient);
+
+		assertNull(mySvc.get(new ParsedResourceCache.Key(1L, 2L, 1000L, Patient.class), Patient.class));
+		assertNull(mySvc.get(new ParsedResourceCache.Key(1L, 1L, 2000L, Patient.class), Patient.class));
+		assertNull(mySvc.get(new ParsedResourceCache.Key(2L, 1L, 1000L, Patient.class), Patient.class));
+		assertEquals(0, mySvc.getHitCount());
+		assertEquals(3, mySvc.getMissCount());
+
+		mySvc.invalidateAll();
+		assertNull(mySvc.get(new ParsedResourceCache.Key(1L, 1L, 1000L, Patient.class), Patient.class));
+	}
+}
@@ -3,12 +3,15 @@ package ca.uhn.fhir.jpa.dao.index;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.entity.BaseResourceIndex;
 import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamNumber;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.util.AddRemoveCount;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -17,6 +20,7 @@ import java.math.BigDecimal;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -74,4 +78,32 @@ public class DaoSearchParamSynchronizerTest {
 		verify(entityManager, never()).remove(any(BaseResourceIndex.class));
 		verify(entityManager, times(1)).merge(THE_SEARCH_PARAM_NUMBER);
 	}
+
+	@Test
+	void synchronizeSearchParamsNewRowsArePersistedByTable() {
+		final ResourceTable resourceTable = new ResourceTable();
+		resourceTable.setId(2L);
+		ResourceIndexedSearchParamNumber number1 = new ResourceIndexedSearchParamNumber(new PartitionSettings(), "Patient", GRITTSCORE, BigDecimal.valueOf(1));
+		ResourceIndexedSearchParamNumber number2 = new ResourceIndexedSearchParamNumber(new PartitionSettings(), "Patient", GRITTSCORE, BigDecimal.valueOf(2));
+		ResourceIndexedSearchParamString string = new ResourceIndexedSearchParamString(new PartitionSettings(), new StorageSettings(), "Patient", "name", "SMITH", "Smith");
+		number1.setResource(resourceTable);
+		number2.setResource(resourceTable);
+		string.setResource(resourceTable);
+
+		ResourceIndexedSearchParams newParams = new ResourceIndexedSearchParams();
+		newParams.myNumberParams.add(number1);
+		newParams.myStringParams.add(string);
+		newParams.myNumberParams.add(number2);
+
+		final AddRemoveCount addRemoveCount = subject.synchronizeSearchParamsToDatabase(newParams, theEntity, new ResourceIndexedSearchParams());
+
+		assertEquals(0, addRemoveCount.getRemoveCount());
+		assertEquals(3, addRemoveCount.getAddCount());
+
+		InOrder inOrder = inOrder(entityManager);
+		inOrder.verify(entityManager).persist(string);
+		inOrder.verify(entityManager, times(2)).persist(any(ResourceIndexedSearchParamNumber.class));
+		verify(entityManager, never()).merge(any());
+		verify(entityManager, never()).remove(any());
+	}
 }
@@ -0,0 +1,85 @@
+package ca.uhn.fhir.jpa.search;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StreamingSynchronousBundleProviderTest {
+
+	@Mock
+	private SynchronousSearchSvcImpl mySynchronousSearchSvc;
+
+	@Mock
+	private ISearchBuilder<JpaPid> mySearchBuilder;
+
+	private final SearchParameterMap myParams = new SearchParameterMap().setCount(5);
+	private final RequestDetails myRequestDetails = new ServletRequestDetails();
+	private final RequestPartitionId myRequestPartitionId = RequestPartitionId.allPartitions();
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testResourcesLoadedPerPage() {
+		StreamingSynchronousBundleProvider provider = newProvider(12);
+		provider.setSize(12);
+
+		List<IBaseResource> page = List.of(new Patient());
+		when(mySynchronousSearchSvc.loadPage(
+						eq(mySearchBuilder), eq(myParams), any(), eq(myRequestDetails), eq(myRequestPartitionId)))
+				.thenReturn(page);
+
+		assertEquals(page, provider.getResources(10, 15));
+
+		ArgumentCaptor<List<JpaPid>> captor = ArgumentCaptor.forClass(List.class);
+		verify(mySynchronousSearchSvc)
+				.loadPage(any(), any(), captor.capture(), any(), any());
+		List<Long> pids = captor.getValue().stream().map(JpaPid::getId).collect(Collectors.toList());
+		assertThat(pids, contains(110L, 111L));
+
+		assertEquals(12, provider.size());
+		assertEquals(5, provider.preferredPageSize());
+		assertNull(provider.getUuid());
+	}
+
+	@Test
+	public void testPageBeyondEnd() {
+		StreamingSynchronousBundleProvider provider = newProvider(3);
+
+		assertTrue(provider.getResources(3, 10).isEmpty());
+		assertNull(provider.size());
+		verifyNoInteractions(mySynchronousSearchSvc);
+	}
+
+	private StreamingSynchronousBundleProvider newProvider(int theCount) {
+		List<JpaPid> pids = LongStream.range(100, 100 + theCount)
+				.mapToObj(JpaPid::fromId)
+				.collect(Collectors.toList());
+		return new StreamingSynchronousBundleProvider(
+				mySynchronousSearchSvc, mySearchBuilder, myParams, myRequestDetails, myRequestPartitionId, pids);
+	}
+}
@@ -0,0 +1,116 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.tx.NonTransactionalHapiTransactionService;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import javax.persistence.EntityManager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class IncludeLoadingExecutorTest {
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private final IncludeLoadingExecutor mySvc = new IncludeLoadingExecutor();
+	private final EntityManager myCallerEntityManager = mock(EntityManager.class);
+
+	@BeforeEach
+	public void before() {
+		mySvc.setStorageSettingsForUnitTest(myStorageSettings);
+		mySvc.setTransactionServiceForUnitTest(new NonTransactionalHapiTransactionService());
+	}
+
+	@AfterEach
+	public void after() {
+		mySvc.stop();
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	public void testResultsAreInQueryOrder(int theThreadCount) {
+		myStorageSettings.setIncludeLoadingThreadCount(theThreadCount);
+		Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+		List<Function<EntityManager, Integer>> queries = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			int value = i;
+			queries.add(em -> {
+				threadNames.add(Thread.currentThread().getName());
+				sleep(20 - value);
+				return value;
+			});
+		}
+
+		List<Integer> results = mySvc.execute(null, RequestPartitionId.allPartitions(), myCallerEntityManager, queries);
+
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			expected.add(i);
+		}
+		assertEquals(expected, results);
+		if (theThreadCount == 1) {
+			assertEquals(Set.of(Thread.currentThread().getName()), threadNames);
+		} else {
+			assertTrue(threadNames.stream().allMatch(t -> t.startsWith("include-loading-")), threadNames.toString());
+		}
+	}
+
+	@Test
+	public void testSerialQueriesUseCallerEntityManager() {
+		List<Function<EntityManager, EntityManager>> queries = List.of(em -> em, em -> em);
+
+		List<EntityManager> results = mySvc.execute(null, RequestPartitionId.allPartitions(), myCallerEntityManager, queries);
+
+		assertEquals(List.of(myCallerEntityManager, myCallerEntityManager), results);
+	}
+
+	@Test
+	public void testReadWriteTransactionUsesCallerEntityManager() {
+		myStorageSettings.setIncludeLoadingThreadCount(4);
+		List<Function<EntityManager, EntityManager>> queries = List.of(em -> em, em -> em);
+
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		try {
+			List<EntityManager> results = mySvc.execute(null, RequestPartitionId.allPartitions(), myCallerEntityManager, queries);
+			assertEquals(List.of(myCallerEntityManager, myCallerEntityManager), results);
+		} finally {
+			TransactionSynchronizationManager.setActualTransactionActive(false);
+		}
+	}
+
+	@Test
+	public void testFailureIsPropagated() {
+		myStorageSettings.setIncludeLoadingThreadCount(4);
+		List<Function<EntityManager, Integer>> queries = List.of(em -> 1, em -> {
+			throw new IllegalStateException("FAILED");
+		});
+
+		InternalErrorException e = assertThrows(InternalErrorException.class, () -> mySvc.execute(null, RequestPartitionId.allPartitions(), myCallerEntityManager, queries));
+		assertThat(e.getMessage(), containsString("FAILED"));
+	}
+
+	private static void sleep(long theMillis) {
+		try {
+			Thread.sleep(theMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
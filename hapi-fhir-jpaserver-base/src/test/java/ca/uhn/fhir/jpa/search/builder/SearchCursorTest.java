@@ -0,0 +1,50 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchCursorTest {
+
+	@Test
+	public void testEncodeAndDecode() {
+		Timestamp updated = Timestamp.from(Instant.parse("2023-01-02T03:04:05.678Z"));
+		SearchCursor cursor = new SearchCursor("-_lastUpdated", new Object[] {updated, null, "smith", 123});
+
+		String encoded = cursor.encode();
+		assertThat(encoded, matchesPattern("[A-Za-z0-9_-]+"));
+
+		SearchCursor decoded = SearchCursor.decode(encoded);
+		assertEquals("-_lastUpdated", decoded.getSort());
+		assertThat(decoded.getValues(), contains("2023-01-02T03:04:05.678Z", null, "smith", "123"));
+	}
+
+	@Test
+	public void testDecodeInvalid() {
+		InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> SearchCursor.decode("!!!"));
+		assertThat(e.getMessage(), startsWith("HAPI-2455: "));
+
+		e = assertThrows(InvalidRequestException.class, () -> SearchCursor.decode("e30"));
+		assertThat(e.getMessage(), startsWith("HAPI-2455: "));
+	}
+
+	@Test
+	public void testToSortString() {
+		assertEquals("", SearchCursor.toSortString(null));
+		assertEquals("name", SearchCursor.toSortString(new SortSpec("name")));
+		assertEquals(
+				"-birthdate,_id",
+				SearchCursor.toSortString(new SortSpec("birthdate", SortOrderEnum.DESC, new SortSpec("_id"))));
+	}
+}
@@ -0,0 +1,193 @@
+package ca.uhn.fhir.jpa.search.builder.sql;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.NumberParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.TokenParamModifier;
+import ca.uhn.fhir.rest.server.util.FhirContextSearchParamRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SearchQueryTemplateCacheTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private SearchQueryTemplateCache mySvc;
+	private JpaStorageSettings myStorageSettings;
+	private PartitionSettings myPartitionSettings;
+
+	@BeforeEach
+	public void before() {
+		myStorageSettings = new JpaStorageSettings();
+		myStorageSettings.setSearchSqlTemplateCacheSize(100);
+		mySvc = new SearchQueryTemplateCache();
+		mySvc.setStorageSettingsForUnitTest(myStorageSettings);
+		myPartitionSettings = new PartitionSettings();
+		mySvc.setPartitionSettingsForUnitTest(myPartitionSettings);
+		mySvc.setSearchParamRegistryForUnitTest(new FhirContextSearchParamRegistry(ourCtx) {
+			@Override
+			public List<RuntimeSearchParam> getActiveComboSearchParams(
+					String theResourceName, Set<String> theParamNames) {
+				return Collections.emptyList();
+			}
+		});
+	}
+
+	@Test
+	public void testKeyIgnoresValues() {
+		SearchParameterMap map1 = SearchParameterMap.newSynchronous()
+				.add("code", new TokenParam("http://loinc.org", "1234-5"))
+				.add("date", new DateParam("ge2020-01-01"));
+		SearchParameterMap map2 = SearchParameterMap.newSynchronous()
+				.add("code", new TokenParam("http://snomed.info/sct", "999"))
+				.add("date", new DateParam("ge2021-06-30"));
+
+		String key1 = createKey(map1, null);
+		assertNotNull(key1);
+		assertEquals(key1, createKey(map2, null));
+	}
+
+	@Test
+	public void testKeyReflectsShape() {
+		String withSystem = createKey(
+				SearchParameterMap.newSynchronous().add("code", new TokenParam("http://loinc.org", "1234-5")), null);
+		String withoutSystem =
+				createKey(SearchParameterMap.newSynchronous().add("code", new TokenParam(null, "1234-5")), null);
+		String twoValues = createKey(
+				SearchParameterMap.newSynchronous()
+						.add("code", new TokenOrListParam().add(null, "1").add(null, "2")),
+				null);
+		String datePrefix =
+				createKey(SearchParameterMap.newSynchronous().add("date", new DateParam("lt2020-01-01")), null);
+		String datePrecision =
+				createKey(SearchParameterMap.newSynchronous().add("date", new DateParam("lt2020-01-01T10:00:00Z")), null);
+
+		assertNotEquals(withSystem, withoutSystem);
+		assertNotEquals(withoutSystem, twoValues);
+		assertNotEquals(datePrefix, datePrecision);
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous().add("code", new TokenParam(null, "1"));
+		assertNotEquals(createKey(map, null), createKey(map, new SortSpec("date", SortOrderEnum.DESC)));
+		assertNotEquals(
+				createKey(map, null),
+				mySvc.createKey("Observation", map, null, RequestPartitionId.allPartitions(), 10, 20, false));
+	}
+
+	@Test
+	public void testKeyReflectsSettings() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+				.add("name", new StringParam("foo").setContains(true))
+				.add("birthdate", new DateParam("2020-01-01"));
+		String initial = createKey(map, null);
+
+		myStorageSettings.setAllowContainsSearches(!myStorageSettings.isAllowContainsSearches());
+		String allowContains = createKey(map, null);
+		assertNotEquals(initial, allowContains);
+
+		myStorageSettings.setUseOrdinalDatesForDayPrecisionSearches(
+				!myStorageSettings.getUseOrdinalDatesForDayPrecisionSearches());
+		String ordinalDates = createKey(map, null);
+		assertNotEquals(allowContains, ordinalDates);
+
+		myPartitionSettings.setPartitioningEnabled(true);
+		String partitioning = createKey(map, null);
+		assertNotEquals(ordinalDates, partitioning);
+
+		myPartitionSettings.setDefaultPartitionId(0);
+		assertNotEquals(partitioning, createKey(map, null));
+	}
+
+	@Test
+	public void testKeyNotCreatedForUnsupportedSearches() {
+		// Modifier
+		assertNull(createKey(
+				SearchParameterMap.newSynchronous()
+						.add("code", new TokenParam(null, "1").setModifier(TokenParamModifier.NOT)),
+				null));
+		// Mixed OR values
+		assertNull(createKey(
+				SearchParameterMap.newSynchronous()
+						.add("code", new TokenOrListParam().add("http://foo", "1").add(null, "2")),
+				null));
+		// Missing
+		assertNull(createKey(
+				SearchParameterMap.newSynchronous().add("code", new TokenParam().setMissing(true)), null));
+		// Unsupported parameter types
+		assertNull(createKey(SearchParameterMap.newSynchronous().add("subject", new ReferenceParam("Patient/1")), null));
+		assertNull(createKey(SearchParameterMap.newSynchronous().add("value-quantity", new NumberParam(1)), null));
+		// Special parameters
+		assertNull(createKey(SearchParameterMap.newSynchronous().add("_id", new TokenParam("1")), null));
+		// Keyset paging cursor
+		SearchParameterMap map = SearchParameterMap.newSynchronous().add("name", new StringParam("foo"));
+		assertNotNull(createKey(map, null));
+		map.setCursor("abc");
+		assertNull(createKey(map, null));
+	}
+
+	@Test
+	public void testTemplateBindsCurrentValues() {
+		List<Object> placeholderValues = Arrays.asList(123L, "Observation");
+		List<Object> bindTemplate = Arrays.asList(
+				new SearchQueryTemplateCache.PlaceholderRef(1), new SearchQueryTemplateCache.PlaceholderRef(0), 10);
+		SearchQueryTemplateCache.SqlTemplate template =
+				new SearchQueryTemplateCache.SqlTemplate("SELECT ? ? LIMIT ?", bindTemplate, placeholderValues, "t0:A");
+
+		assertEquals(Arrays.asList("Patient", 456L, 10), template.bind(Arrays.asList(456L, "Patient")));
+		assertTrue(template.isCompatible("t0:A", Arrays.asList(456L, "Patient")));
+		assertFalse(template.isCompatible("t0:A", Arrays.asList("456", "Patient")));
+		assertFalse(template.isCompatible("t0:A", Arrays.asList(456L, "Patient", 1L)));
+		assertFalse(template.isCompatible("t0:A,t1:B", Arrays.asList(456L, "Patient")));
+	}
+
+	@Test
+	public void testHitAndMissCounts() {
+		SearchQueryTemplateCache.SqlTemplate template =
+				new SearchQueryTemplateCache.SqlTemplate("SELECT 1", List.of(), List.of(), "");
+
+		assertNull(mySvc.get("key"));
+		mySvc.put("key", template);
+		assertSame(template, mySvc.get("key"));
+
+		assertEquals(1, mySvc.getHitCount());
+		assertEquals(1, mySvc.getMissCount());
+		assertEquals(1, mySvc.getEstimatedSize());
+
+		mySvc.invalidateAll();
+		assertNull(mySvc.get("key"));
+	}
+
+	@Test
+	public void testEnabled() {
+		assertTrue(mySvc.isEnabled());
+		myStorageSettings.setSearchSqlTemplateCacheSize(0);
+		assertFalse(mySvc.isEnabled());
+	}
+
+	private String createKey(SearchParameterMap theMap, SortSpec theSort) {
+		String resourceType = theMap.containsKey("name") ? "Patient" : "Observation";
+		return mySvc.createKey(resourceType, theMap, theSort, RequestPartitionId.allPartitions(), null, 20, false);
+	}
+}
@@ -0,0 +1,152 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.dao.data.ISearchResultBlockDao;
+import ca.uhn.fhir.jpa.dao.tx.NonTransactionalHapiTransactionService;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchResultBlock;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class DatabaseBlockSearchResultCacheSvcImplTest {
+
+	private final List<SearchResultBlock> myBlocks = new ArrayList<>();
+	private final DatabaseBlockSearchResultCacheSvcImpl mySvc = new DatabaseBlockSearchResultCacheSvcImpl();
+
+	@Mock
+	private ISearchResultBlockDao myDao;
+	@Mock
+	private Search mySearch;
+
+	@BeforeEach
+	public void before() {
+		lenient().when(mySearch.getId()).thenReturn(1L);
+		mySvc.setSearchResultBlockDaoForUnitTest(myDao);
+		mySvc.setTransactionServiceForUnitTest(new NonTransactionalHapiTransactionService());
+		mySvc.setBlockSizeForUnitTest(10);
+
+		// Simulate the database using a list of blocks
+		lenient().when(myDao.save(any())).thenAnswer(t -> {
+			SearchResultBlock block = t.getArgument(0);
+			if (!myBlocks.contains(block)) {
+				myBlocks.add(block);
+			}
+			return block;
+		});
+		lenient().when(myDao.updateBlock(anyLong(), anyInt(), anyInt(), any(), anyInt())).thenAnswer(t -> {
+			Optional<SearchResultBlock> block = myBlocks.stream()
+					.filter(b -> b.getBlockIndex() == (int) t.getArgument(1))
+					.filter(b -> b.getResultCount() == (int) t.getArgument(2))
+					.findFirst();
+			block.ifPresent(b -> {
+				b.setResultPids(t.getArgument(3));
+				b.setResultCount(t.getArgument(4));
+			});
+			return block.isPresent() ? 1 : 0;
+		});
+		lenient().when(myDao.findBlocks(anyLong(), anyInt(), anyInt())).thenAnswer(t -> myBlocks.stream()
+				.filter(b -> b.getBlockIndex() >= (int) t.getArgument(1) && b.getBlockIndex() <= (int) t.getArgument(2))
+				.sorted(Comparator.comparing(SearchResultBlock::getBlockIndex))
+				.collect(Collectors.toList()));
+		lenient().when(myDao.findAllBlocks(anyLong())).thenAnswer(t -> myBlocks.stream()
+				.sorted(Comparator.comparing(SearchResultBlock::getBlockIndex))
+				.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testStoreAndFetchInSeveralPasses() {
+		List<JpaPid> stored = new ArrayList<>();
+		storeResults(stored, 7);
+		storeResults(stored, 16);
+		storeResults(stored, 1);
+
+		assertEquals(3, myBlocks.size());
+		assertEquals(10, myBlocks.get(0).getResultCount());
+		assertEquals(10, myBlocks.get(1).getResultCount());
+		assertEquals(4, myBlocks.get(2).getResultCount());
+
+		assertEquals(toIds(stored), toIds(mySvc.fetchAllResultPids(mySearch, null, RequestPartitionId.allPartitions())));
+		assertEquals(toIds(stored.subList(0, 5)), toIds(fetch(0, 5)));
+		assertEquals(toIds(stored.subList(8, 23)), toIds(fetch(8, 23)));
+		assertEquals(toIds(stored.subList(20, 24)), toIds(fetch(20, 40)));
+		assertEquals(0, fetch(24, 30).size());
+		assertEquals(0, fetch(5, 5).size());
+	}
+
+	@Test
+	public void testStoreExactBlockSize() {
+		List<JpaPid> stored = new ArrayList<>();
+		storeResults(stored, 10);
+		storeResults(stored, 10);
+
+		assertEquals(2, myBlocks.size());
+		assertEquals(toIds(stored.subList(5, 15)), toIds(fetch(5, 15)));
+	}
+
+	@Test
+	public void testStoreNeverReadsBackPartialBlock() {
+		List<JpaPid> stored = new ArrayList<>();
+		storeResults(stored, 3);
+		storeResults(stored, 4);
+		storeResults(stored, 5);
+
+		verify(myDao, times(2)).updateBlock(anyLong(), anyInt(), anyInt(), any(), anyInt());
+		verify(myDao, never()).findBlocks(anyLong(), anyInt(), anyInt());
+		verify(myDao, never()).findAllBlocks(anyLong());
+		assertEquals(toIds(stored), toIds(fetch(0, 12)));
+	}
+
+	@Test
+	public void testStoreFailsIfPartialBlockDoesNotMatch() {
+		List<JpaPid> stored = new ArrayList<>();
+		storeResults(stored, 3);
+
+		// The caller claims more results were stored than the block contains
+		stored.add(JpaPid.fromId(999L));
+		InternalErrorException e = assertThrows(InternalErrorException.class, () -> storeResults(stored, 1));
+		assertThat(e.getMessage(), containsString("HAPI-2451: Search result block 0 for search 1 is missing or does not contain 4 results"));
+	}
+
+	private List<JpaPid> fetch(int theFrom, int theTo) {
+		return mySvc.fetchResultPids(mySearch, theFrom, theTo, null, RequestPartitionId.allPartitions());
+	}
+
+	private void storeResults(List<JpaPid> theStored, int theCount) {
+		List<JpaPid> newPids = new ArrayList<>();
+		for (int i = 0; i < theCount; i++) {
+			// Not in ascending order, since results can be sorted
+			newPids.add(JpaPid.fromId((long) ((theStored.size() + i) * 7919 % 1000)));
+		}
+		mySvc.storeResults(
+				mySearch, new ArrayList<>(theStored), newPids, null, RequestPartitionId.allPartitions());
+		theStored.addAll(newPids);
+	}
+
+	private static List<Long> toIds(List<JpaPid> thePids) {
+		return thePids.stream().map(JpaPid::getId).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,232 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchTypeEnum;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MemorySearchCacheSvcImplTest {
+
+	private static final RequestPartitionId ourPartition = RequestPartitionId.allPartitions();
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private final MemorySearchCacheSvcImpl mySearchCacheSvc = new MemorySearchCacheSvcImpl();
+	private final MemorySearchResultCacheSvcImpl myResultCacheSvc = new MemorySearchResultCacheSvcImpl();
+	private long myNow;
+
+	@BeforeEach
+	public void before() {
+		myNow = System.currentTimeMillis();
+		mySearchCacheSvc.setStorageSettingsForUnitTest(myStorageSettings);
+		mySearchCacheSvc.setNowForUnitTest(myNow);
+		myResultCacheSvc.setSearchCacheSvcForUnitTest(mySearchCacheSvc);
+		myResultCacheSvc.setNowForUnitTest(myNow);
+	}
+
+	@Test
+	public void testSaveAndFetch() {
+		Search search = newSearch("Patient?name=smith");
+		Search saved = mySearchCacheSvc.save(search, ourPartition);
+		assertNotNull(saved.getId());
+
+		Search fetched = mySearchCacheSvc.fetchByUuid(search.getUuid(), ourPartition).orElseThrow();
+		assertNotSame(search, fetched);
+		assertEquals(search.getId(), fetched.getId());
+		assertEquals(SearchStatusEnum.PASSCMPLET, fetched.getStatus());
+
+		// Changes are not visible until saved
+		fetched.setStatus(SearchStatusEnum.FINISHED);
+		assertEquals(SearchStatusEnum.PASSCMPLET, mySearchCacheSvc.fetchByUuid(search.getUuid(), ourPartition).orElseThrow().getStatus());
+		mySearchCacheSvc.save(fetched, ourPartition);
+		assertEquals(SearchStatusEnum.FINISHED, mySearchCacheSvc.fetchByUuid(search.getUuid(), ourPartition).orElseThrow().getStatus());
+	}
+
+	@Test
+	public void testTryToMarkSearchAsInProgress() {
+		Search search = mySearchCacheSvc.save(newSearch("Patient?name=smith"), ourPartition);
+
+		assertEquals(SearchStatusEnum.LOADING, mySearchCacheSvc.tryToMarkSearchAsInProgress(search, ourPartition).orElseThrow().getStatus());
+		assertFalse(mySearchCacheSvc.tryToMarkSearchAsInProgress(search, ourPartition).isPresent());
+	}
+
+	@Test
+	public void testUpdateTotalCountIfNotSet() {
+		Search search = mySearchCacheSvc.save(newSearch("Patient?name=smith"), ourPartition);
+
+		mySearchCacheSvc.updateTotalCountIfNotSet(search.getUuid(), 10, ourPartition);
+		assertEquals(10, mySearchCacheSvc.fetchByUuid(search.getUuid(), ourPartition).orElseThrow().getTotalCount());
+
+		// An existing total is not replaced
+		mySearchCacheSvc.updateTotalCountIfNotSet(search.getUuid(), 20, ourPartition);
+		assertEquals(10, mySearchCacheSvc.fetchByUuid(search.getUuid(), ourPartition).orElseThrow().getTotalCount());
+
+		// Unknown searches are ignored
+		mySearchCacheSvc.updateTotalCountIfNotSet(UUID.randomUUID().toString(), 20, ourPartition);
+	}
+
+	@Test
+	public void testFindCandidatesForReuse() {
+		Search search = mySearchCacheSvc.save(newSearch("Patient?name=smith"), ourPartition);
+		Instant cutoff = Instant.ofEpochMilli(myNow - DateUtils.MILLIS_PER_MINUTE);
+
+		assertEquals(search.getId(), mySearchCacheSvc.findCandidatesForReuse("Patient", "Patient?name=smith", cutoff, ourPartition).orElseThrow().getId());
+		assertFalse(mySearchCacheSvc.findCandidatesForReuse("Patient", "Patient?name=jones", cutoff, ourPartition).isPresent());
+		assertFalse(mySearchCacheSvc.findCandidatesForReuse("Observation", "Patient?name=smith", cutoff, ourPartition).isPresent());
+		assertFalse(mySearchCacheSvc.findCandidatesForReuse("Patient", "Patient?name=smith", Instant.ofEpochMilli(myNow + 1), ourPartition).isPresent());
+
+		search.setCannotBeReused();
+		mySearchCacheSvc.save(search, ourPartition);
+		assertFalse(mySearchCacheSvc.findCandidatesForReuse("Patient", "Patient?name=smith", cutoff, ourPartition).isPresent());
+	}
+
+	@Test
+	public void testMaximumSearchCount() {
+		mySearchCacheSvc.setMaximumSearchCount(2);
+		Search search0 = mySearchCacheSvc.save(newSearch("Patient?name=0"), ourPartition);
+		Search search1 = mySearchCacheSvc.save(newSearch("Patient?name=1"), ourPartition);
+		mySearchCacheSvc.fetchByUuid(search0.getUuid(), ourPartition);
+		mySearchCacheSvc.save(newSearch("Patient?name=2"), ourPartition);
+
+		assertEquals(2, mySearchCacheSvc.getSearchCount());
+		assertTrue(mySearchCacheSvc.fetchByUuid(search0.getUuid(), ourPartition).isPresent());
+		assertFalse(mySearchCacheSvc.fetchByUuid(search1.getUuid(), ourPartition).isPresent());
+	}
+
+	@Test
+	public void testPollForStaleSearches() {
+		Search stale = newSearch("Patient?name=0");
+		stale.setCreated(new Date(myNow - myStorageSettings.getExpireSearchResultsAfterMillis() - myStorageSettings.getReuseCachedSearchResultsForMillis() - 1000));
+		mySearchCacheSvc.save(stale, ourPartition);
+		Search fresh = mySearchCacheSvc.save(newSearch("Patient?name=1"), ourPartition);
+
+		mySearchCacheSvc.pollForStaleSearchesAndDeleteThem(ourPartition);
+
+		assertFalse(mySearchCacheSvc.fetchByUuid(stale.getUuid(), ourPartition).isPresent());
+		assertTrue(mySearchCacheSvc.fetchByUuid(fresh.getUuid(), ourPartition).isPresent());
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void testStoreAndFetchResults(boolean theOffHeap) {
+		myResultCacheSvc.setOffHeap(theOffHeap);
+		Search search = mySearchCacheSvc.save(newSearch("Patient?name=smith"), ourPartition);
+
+		List<JpaPid> first = pids(0, 100);
+		myResultCacheSvc.storeResults(search, List.of(), first, null, ourPartition);
+		myResultCacheSvc.storeResults(search, first, pids(100, 250), null, ourPartition);
+
+		assertEquals(LongStream.range(10, 20).boxed().collect(Collectors.toList()), ids(myResultCacheSvc.fetchResultPids(search, 10, 20, null, ourPartition)));
+		assertEquals(LongStream.range(240, 250).boxed().collect(Collectors.toList()), ids(myResultCacheSvc.fetchResultPids(search, 240, 300, null, ourPartition)));
+		assertEquals(0, myResultCacheSvc.fetchResultPids(search, 300, 310, null, ourPartition).size());
+		assertEquals(250, myResultCacheSvc.fetchAllResultPids(search, null, ourPartition).size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedResultsAreDiscarded() {
+		myResultCacheSvc.setMaximumStoredPidCount(250);
+		Search search0 = mySearchCacheSvc.save(newSearch("Patient?name=0"), ourPartition);
+		Search search1 = mySearchCacheSvc.save(newSearch("Patient?name=1"), ourPartition);
+		Search search2 = mySearchCacheSvc.save(newSearch("Patient?name=2"), ourPartition);
+		search0.setNumFound(100);
+		search1.setNumFound(100);
+
+		myResultCacheSvc.storeResults(search0, List.of(), pids(0, 100), null, ourPartition);
+		myResultCacheSvc.storeResults(search1, List.of(), pids(0, 100), null, ourPartition);
+		myResultCacheSvc.fetchResultPids(search0, 0, 10, null, ourPartition);
+		myResultCacheSvc.storeResults(search2, List.of(), pids(0, 100), null, ourPartition);
+
+		assertEquals(200, myResultCacheSvc.getStoredPidCount());
+		assertEquals(10, myResultCacheSvc.fetchResultPids(search0, 0, 10, null, ourPartition).size());
+		assertNull(myResultCacheSvc.fetchResultPids(search1, 0, 10, null, ourPartition));
+
+		// The search is discarded too, so that it is not reused
+		assertFalse(mySearchCacheSvc.fetchByUuid(search1.getUuid(), ourPartition).isPresent());
+		assertTrue(mySearchCacheSvc.fetchByUuid(search0.getUuid(), ourPartition).isPresent());
+
+		// Further results for the discarded search are ignored
+		myResultCacheSvc.storeResults(search1, pids(0, 100), pids(100, 110), null, ourPartition);
+		assertNull(myResultCacheSvc.fetchResultPids(search1, 0, 10, null, ourPartition));
+	}
+
+	@Test
+	public void testExpiredResultsAreDiscarded() {
+		myResultCacheSvc.setTimeToLiveMillis(DateUtils.MILLIS_PER_MINUTE);
+		Search search0 = mySearchCacheSvc.save(newSearch("Patient?name=0"), ourPartition);
+		Search search1 = mySearchCacheSvc.save(newSearch("Patient?name=1"), ourPartition);
+		search0.setNumFound(100);
+
+		myResultCacheSvc.storeResults(search0, List.of(), pids(0, 100), null, ourPartition);
+		myResultCacheSvc.setNowForUnitTest(myNow + 2 * DateUtils.MILLIS_PER_MINUTE);
+		myResultCacheSvc.storeResults(search1, List.of(), pids(0, 100), null, ourPartition);
+
+		assertEquals(100, myResultCacheSvc.getStoredPidCount());
+		assertNull(myResultCacheSvc.fetchResultPids(search0, 0, 10, null, ourPartition));
+		assertEquals(10, myResultCacheSvc.fetchResultPids(search1, 0, 10, null, ourPartition).size());
+	}
+
+	@Test
+	public void testFetchResultsForSearchWithNoResults() {
+		Search search = mySearchCacheSvc.save(newSearch("Patient?name=smith"), ourPartition);
+		assertEquals(0, myResultCacheSvc.fetchResultPids(search, 0, 10, null, ourPartition).size());
+	}
+
+	@Test
+	public void testNewCapacity() {
+		assertEquals(16, MemorySearchResultCacheSvcImpl.newCapacity(0, 1, 1000));
+		assertEquals(150, MemorySearchResultCacheSvcImpl.newCapacity(100, 101, 1000));
+		assertEquals(500, MemorySearchResultCacheSvcImpl.newCapacity(100, 500, 1000));
+
+		// Growing by half would overflow an int, so the maximum is used instead
+		int maximum = Integer.MAX_VALUE / Long.BYTES;
+		assertEquals(maximum, MemorySearchResultCacheSvcImpl.newCapacity(maximum - 10, maximum - 9L, maximum));
+		assertEquals(Integer.MAX_VALUE, MemorySearchResultCacheSvcImpl.newCapacity(Integer.MAX_VALUE - 10, Integer.MAX_VALUE, Integer.MAX_VALUE));
+
+		InternalErrorException e = assertThrows(InternalErrorException.class, () -> MemorySearchResultCacheSvcImpl.newCapacity(maximum, maximum + 1L, maximum));
+		assertThat(e.getMessage(), containsString(Msg.code(2486)));
+	}
+
+	private static Search newSearch(String theQueryString) {
+		Search search = new Search();
+		search.setUuid(UUID.randomUUID().toString());
+		search.setCreated(new Date());
+		search.setResourceType("Patient");
+		search.setSearchType(SearchTypeEnum.SEARCH);
+		search.setStatus(SearchStatusEnum.PASSCMPLET);
+		search.setDeleted(false);
+		search.setSearchQueryString(theQueryString, ourPartition);
+		return search;
+	}
+
+	private static List<JpaPid> pids(long theFrom, long theTo) {
+		return LongStream.range(theFrom, theTo).mapToObj(JpaPid::fromId).collect(Collectors.toList());
+	}
+
+	private static List<Long> ids(List<JpaPid> thePids) {
+		return thePids.stream().map(JpaPid::getId).collect(Collectors.toList());
+	}
+}
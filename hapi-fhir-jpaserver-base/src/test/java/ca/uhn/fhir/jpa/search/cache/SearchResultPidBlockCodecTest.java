@@ -0,0 +1,64 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SearchResultPidBlockCodecTest {
+
+	@Test
+	public void testRoundTrip() {
+		List<Long> pids = Arrays.asList(5L, 3L, 1000L, 0L, Long.MAX_VALUE, 1L, Long.MAX_VALUE - 1, 12345678901L);
+		assertEquals(pids, SearchResultPidBlockCodec.decode(SearchResultPidBlockCodec.encode(pids)));
+	}
+
+	@Test
+	public void testRoundTripEmpty() {
+		List<Long> pids = Collections.emptyList();
+		assertEquals(pids, SearchResultPidBlockCodec.decode(SearchResultPidBlockCodec.encode(pids)));
+	}
+
+	@Test
+	public void testRoundTripRandom() {
+		Random random = new Random(123);
+		List<Long> pids = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			pids.add((long) random.nextInt(Integer.MAX_VALUE));
+		}
+		assertEquals(pids, SearchResultPidBlockCodec.decode(SearchResultPidBlockCodec.encode(pids)));
+	}
+
+	@Test
+	public void testAscendingPidsAreCompact() {
+		List<Long> pids = new ArrayList<>();
+		for (long i = 0; i < 10000; i++) {
+			pids.add(1000000L + i * 3);
+		}
+
+		byte[] encoded = SearchResultPidBlockCodec.encode(pids);
+		assertThat(encoded.length, lessThan(pids.size() + 10));
+		assertEquals(pids, SearchResultPidBlockCodec.decode(encoded));
+	}
+
+	@Test
+	public void testInvalidInput() {
+		InternalErrorException e =
+				assertThrows(InternalErrorException.class, () -> SearchResultPidBlockCodec.decode(new byte[] {9, 1}));
+		assertThat(e.getMessage(), containsString(Msg.code(2448)));
+
+		e = assertThrows(InternalErrorException.class, () -> SearchResultPidBlockCodec.decode(new byte[] {1, 2, 2}));
+		assertThat(e.getMessage(), containsString(Msg.code(2449)));
+	}
+}
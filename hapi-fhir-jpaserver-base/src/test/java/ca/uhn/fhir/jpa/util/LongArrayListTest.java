@@ -0,0 +1,39 @@
+package ca.uhn.fhir.jpa.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongArrayListTest {
+
+	@Test
+	public void testAddAndGet() {
+		LongArrayList list = new LongArrayList(1);
+		for (long i = 0; i < 100; i++) {
+			list.add(i * 2);
+		}
+
+		assertEquals(100, list.size());
+		assertEquals(198L, list.get(99));
+		assertEquals(List.of(10L, 12L, 14L), list.toLongList(5, 8));
+		assertThrows(IndexOutOfBoundsException.class, () -> list.get(100));
+
+		list.clear();
+		assertTrue(list.isEmpty());
+	}
+
+	@Test
+	public void testPartition() {
+		LongArrayList list = new LongArrayList();
+		for (long i = 0; i < 7; i++) {
+			list.add(i);
+		}
+
+		assertEquals(List.of(List.of(0L, 1L, 2L), List.of(3L, 4L, 5L), List.of(6L)), list.partition(3));
+		assertEquals(List.of(), new LongArrayList().partition(3));
+	}
+}
@@ -0,0 +1,53 @@
+package ca.uhn.fhir.jpa.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongHashSetTest {
+
+	@Test
+	public void testAddAndContains() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.isEmpty());
+
+		assertTrue(set.add(1L));
+		assertTrue(set.add(0L));
+		assertTrue(set.add(-5L));
+		assertFalse(set.add(1L));
+		assertFalse(set.add(0L));
+
+		assertEquals(3, set.size());
+		assertTrue(set.contains(0L));
+		assertTrue(set.contains(1L));
+		assertTrue(set.contains(-5L));
+		assertFalse(set.contains(2L));
+	}
+
+	@Test
+	public void testMatchesHashSet() {
+		Random random = new Random(123);
+		LongHashSet set = new LongHashSet(4);
+		Set<Long> expected = new HashSet<>();
+
+		for (int i = 0; i < 100000; i++) {
+			// Mix of sequential and random values, with plenty of duplicates
+			long value = i % 3 == 0 ? random.nextLong() : random.nextInt(50000);
+			assertEquals(expected.add(value), set.add(value));
+		}
+
+		assertEquals(expected.size(), set.size());
+		for (Long next : expected) {
+			assertTrue(set.contains(next));
+		}
+		for (long i = 50000; i < 60000; i++) {
+			assertEquals(expected.contains(i), set.contains(i));
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package ca.uhn.fhir.jpa.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LongIntHashMapTest {
+
+	@Test
+	public void testPutAndGet() {
+		LongIntHashMap map = new LongIntHashMap();
+		map.put(10L, 1);
+		map.put(0L, 2);
+		map.put(10L, 3);
+
+		assertEquals(2, map.size());
+		assertEquals(3, map.getOrDefault(10L, -1));
+		assertEquals(2, map.getOrDefault(0L, -1));
+		assertEquals(-1, map.getOrDefault(11L, -1));
+	}
+
+	@Test
+	public void testMatchesHashMap() {
+		Random random = new Random(123);
+		LongIntHashMap map = new LongIntHashMap(4);
+		Map<Long, Integer> expected = new HashMap<>();
+
+		for (int i = 0; i < 100000; i++) {
+			long key = random.nextInt(50000);
+			map.put(key, i);
+			expected.put(key, i);
+		}
+
+		assertEquals(expected.size(), map.size());
+		for (long i = 0; i < 60000; i++) {
+			assertEquals(expected.getOrDefault(i, -1), map.getOrDefault(i, -1));
+		}
+	}
+}
@@ -43,6 +43,7 @@ public class HapiFhirH2Dialect extends H2Dialect {
 		 */
 		registerColumnType(Types.LONGVARCHAR, "character varying");
 		registerColumnType(Types.BINARY, "binary($l)");
+		registerColumnType(Types.VARBINARY, "varbinary($l)");
 	}
 
 	/**
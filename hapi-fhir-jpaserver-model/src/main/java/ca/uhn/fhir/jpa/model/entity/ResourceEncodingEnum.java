@@ -40,6 +40,14 @@ public enum ResourceEncodingEnum {
 	 */
 	JSONC,
 
+	/**
+	 * Smile - A binary equivalent of Json, which is read directly into the resource model
+	 * without parsing any Json text
+	 *
+	 * @since 7.0.0
+	 */
+	SMILE,
+
 	/**
 	 * Resource was deleted - No contents expected
 	 */
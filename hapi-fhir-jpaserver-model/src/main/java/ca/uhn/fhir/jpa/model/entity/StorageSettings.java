@@ -146,6 +146,16 @@ public class StorageSettings {
 	 */
 	private boolean myLanguageSearchParameterEnabled = false;
 
+	/**
+	 * Update setter javadoc if default changes.
+	 */
+	private int mySearchParamExtractionThreadCount = 1;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private boolean mySubscriptionCriteriaIndexEnabled = false;
+
 	/**
 	 * If set to true, the server will prevent the creation of Subscriptions which cannot be evaluated IN-MEMORY. This can improve
 	 * overall server performance.
@@ -1319,6 +1329,76 @@ public class StorageSettings {
 		myLanguageSearchParameterEnabled = theLanguageSearchParameterEnabled;
 	}
 
+	/**
+	 * Returns the maximum number of threads which will be used to extract the search parameter
+	 * indexes for a single resource.
+	 *
+	 * @see #setSearchParamExtractionThreadCount(int)
+	 * @since 7.0.0
+	 */
+	public int getSearchParamExtractionThreadCount() {
+		return mySearchParamExtractionThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than 1, the search parameter indexes for large resources are
+	 * extracted concurrently using a shared pool with (at most) the given number of threads. The
+	 * active search parameters for the resource are split into groups by type (and large groups
+	 * are split further), each group is extracted on the pool, and the results are then combined in
+	 * the same order that serial extraction would have produced. The indexes which are stored are
+	 * identical either way.
+	 * <p>
+	 * This can reduce the latency of writing resources with many active search parameters (e.g. when
+	 * many custom search parameters are defined), at the cost of using more CPU cores per request.
+	 * The pool is created the first time it is needed, so changes to this setting after that point
+	 * have no effect.
+	 * </p>
+	 * <p>
+	 * Default is <code>1</code>, meaning that extraction is performed entirely on the calling thread.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setSearchParamExtractionThreadCount(int theSearchParamExtractionThreadCount) {
+		Validate.isTrue(theSearchParamExtractionThreadCount >= 1, "Thread count must be at least 1");
+		mySearchParamExtractionThreadCount = theSearchParamExtractionThreadCount;
+	}
+
+	/**
+	 * If enabled, the active subscriptions are indexed by their criteria, so that each modified
+	 * resource is only matched against the subscriptions which could apply to it.
+	 *
+	 * @see #setSubscriptionCriteriaIndexEnabled(boolean)
+	 * @since 7.0.0
+	 */
+	public boolean isSubscriptionCriteriaIndexEnabled() {
+		return mySubscriptionCriteriaIndexEnabled;
+	}
+
+	/**
+	 * If enabled, the active subscriptions are indexed by their criteria, so that each modified
+	 * resource is only matched against the subscriptions which could apply to it.
+	 * <p>
+	 * Subscriptions whose criteria is a search on a single resource type with an equality
+	 * <code>reference</code> or <code>token</code> parameter (e.g. <code>Observation?patient=Patient/123</code>
+	 * or <code>Observation?code=http://loinc.org|1234-5</code>) are indexed by the referenced ID or
+	 * code. When a resource is modified, only the values of the indexed parameters are extracted from
+	 * it, and only the subscriptions indexed by one of those values (along with any subscriptions which
+	 * can not be indexed) are passed to the subscription matcher. This can greatly reduce the cost of
+	 * matching when there are many subscriptions which each apply to a small number of resources,
+	 * such as one subscription per patient.
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>, meaning that every active subscription is matched against every
+	 * modified resource.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setSubscriptionCriteriaIndexEnabled(boolean theSubscriptionCriteriaIndexEnabled) {
+		mySubscriptionCriteriaIndexEnabled = theSubscriptionCriteriaIndexEnabled;
+	}
+
 	private static void validateTreatBaseUrlsAsLocal(String theUrl) {
 		Validate.notBlank(theUrl, "Base URL must not be null or empty");
 
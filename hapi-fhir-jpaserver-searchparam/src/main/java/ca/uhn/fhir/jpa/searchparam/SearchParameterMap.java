@@ -71,6 +71,7 @@ public class SearchParameterMap implements Serializable {
 	private final HashMap<String, List<List<IQueryParameterType>>> mySearchParameterMap = new LinkedHashMap<>();
 	private Integer myCount;
 	private Integer myOffset;
+	private String myCursor;
 	private EverythingModeEnum myEverythingMode = null;
 	private Set<Include> myIncludes;
 	private DateRangeParam myLastUpdated;
@@ -122,6 +123,7 @@ public class SearchParameterMap implements Serializable {
 		map.setNearDistanceParam(getNearDistanceParam());
 		map.setLoadSynchronousUpTo(getLoadSynchronousUpTo());
 		map.setOffset(getOffset());
+		map.setCursor(getCursor());
 		map.setSearchContainedMode(getSearchContainedMode());
 
 		for (Map.Entry<String, List<List<IQueryParameterType>>> entry : mySearchParameterMap.entrySet()) {
@@ -277,6 +279,26 @@ public class SearchParameterMap implements Serializable {
 		myOffset = theOffset;
 	}
 
+	/**
+	 * Returns the keyset pagination cursor (the <code>_cursor</code> parameter) identifying the
+	 * position after which results should be returned, or <code>null</code>
+	 *
+	 * @since 7.0.0
+	 */
+	public String getCursor() {
+		return myCursor;
+	}
+
+	/**
+	 * Sets the keyset pagination cursor (the <code>_cursor</code> parameter) identifying the
+	 * position after which results should be returned
+	 *
+	 * @since 7.0.0
+	 */
+	public void setCursor(String theCursor) {
+		myCursor = theCursor;
+	}
+
 	public EverythingModeEnum getEverythingMode() {
 		return myEverythingMode;
 	}
@@ -544,6 +566,13 @@ public class SearchParameterMap implements Serializable {
 			b.append(getOffset());
 		}
 
+		if (getCursor() != null) {
+			addUrlParamSeparator(b);
+			b.append(Constants.PARAM_CURSOR);
+			b.append('=');
+			b.append(UrlUtil.escapeUrlParam(getCursor()));
+		}
+
 		// Summary mode (_summary)
 		if (getSummaryMode() != null) {
 			addUrlParamSeparator(b);
@@ -161,6 +161,7 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 	private BaseRuntimeChildDefinition myPatientCommunicationLanguageValueChild;
 	private BaseRuntimeChildDefinition myCodeableReferenceConcept;
 	private BaseRuntimeChildDefinition myCodeableReferenceReference;
+	private SearchParamPathCompiler myPathCompiler;
 
 	/**
 	 * Constructor
@@ -914,9 +915,15 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 				}
 
 				nextPath = trim(nextPath);
-				IValueExtractor allValuesFunc = getPathValueExtractor(theResource, nextPath);
 				try {
-					allValues = allValuesFunc.get();
+					allValues = null;
+					if (myPathCompiler != null) {
+						allValues = myPathCompiler.evaluate(theResource, nextPath);
+					}
+					if (allValues == null) {
+						IValueExtractor allValuesFunc = getPathValueExtractor(theResource, nextPath);
+						allValues = allValuesFunc.get();
+					}
 				} catch (Exception e) {
 					String msg = getContext()
 							.getLocalizer()
@@ -1624,6 +1631,13 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 				.anyMatch(path -> path.contains("resolve"));
 	}
 
+	@Override
+	public void prepareForConcurrentExtraction(
+			IBaseResource theResource, Collection<RuntimeSearchParam> theSearchParams) {
+		// No specific type, so that parameters of every type are considered
+		cleanUpContainedResourceReferences(theResource, null, theSearchParams);
+	}
+
 	/**
 	 * HAPI FHIR Reference objects (e.g. {@link org.hl7.fhir.r4.model.Reference}) can hold references either by text
 	 * (e.g. "#3") or by resource (e.g. "new Reference(patientInstance)"). The FHIRPath evaluator only understands the
@@ -1874,6 +1888,17 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 		addIgnoredType(getContext(), "SampledData", myIgnoredForSearchDatatypes);
 		addIgnoredType(getContext(), "Signature", myIgnoredForSearchDatatypes);
 
+		/*
+		 * Simple paths are evaluated directly against the model instead of using FHIRPath. This
+		 * is only done for R4+, since the compiled paths mirror the FHIRPath host services used
+		 * by those versions (DSTU2 uses the terser, and DSTU3 has no resolve() support).
+		 */
+		if (getContext().getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.R4)) {
+			myPathCompiler = new SearchParamPathCompiler(getContext());
+		} else {
+			myPathCompiler = null;
+		}
+
 		/*
 		 * This is building up an internal map of all the various field accessors we'll need in order to work
 		 * with the model. This is kind of ugly, but we want to be as efficient as possible since
@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * HAPI FHIR Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Runs the extraction of the search parameter indexes for a single resource on a
+ * thread pool.
+ * <p>
+ * The search parameters are grouped by type (and groups with more than
+ * {@link #MAX_PARAMS_PER_TASK} parameters are split further), and each group is
+ * extracted as a separate task. The results for a given type are combined by
+ * adding the results of each task in turn, in the same order in which the
+ * parameters appear in the original collection. Since this is also the order in
+ * which serial extraction processes them, the combined {@link ISearchParamExtractor.SearchParamSet}
+ * (including its warnings) is identical to the one that serial extraction
+ * would have produced.
+ * </p>
+ */
+class ConcurrentSearchParamExtraction {
+
+	static final int MAX_PARAMS_PER_TASK = 10;
+
+	private final ExecutorService myExecutor;
+	private final IBaseResource myResource;
+	private final Map<RestSearchParameterTypeEnum, List<List<RuntimeSearchParam>>> myTaskParams =
+			new EnumMap<>(RestSearchParameterTypeEnum.class);
+	private int myTaskCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theExecutor     The pool to run the tasks on
+	 * @param theResource     The resource to index. It must already have been
+	 *                        {@link ISearchParamExtractor#prepareForConcurrentExtraction(IBaseResource, Collection) prepared}.
+	 * @param theSearchParams The (already filtered) search parameters to extract
+	 */
+	ConcurrentSearchParamExtraction(
+			ExecutorService theExecutor, IBaseResource theResource, Collection<RuntimeSearchParam> theSearchParams) {
+		myExecutor = theExecutor;
+		myResource = theResource;
+
+		for (RuntimeSearchParam next : theSearchParams) {
+			List<List<RuntimeSearchParam>> chunks =
+					myTaskParams.computeIfAbsent(next.getParamType(), t -> new ArrayList<>());
+			if (chunks.isEmpty() || chunks.get(chunks.size() - 1).size() >= MAX_PARAMS_PER_TASK) {
+				chunks.add(new ArrayList<>());
+				myTaskCount++;
+			}
+			chunks.get(chunks.size() - 1).add(next);
+		}
+	}
+
+	/**
+	 * Returns the number of tasks that {@link #fork(RestSearchParameterTypeEnum, BiFunction)} would
+	 * submit if it was called for every type
+	 */
+	int getTaskCount() {
+		return myTaskCount;
+	}
+
+	/**
+	 * Submits the extraction of all search parameters of the given type
+	 *
+	 * @param theType      The search parameter type
+	 * @param theExtractor The extraction function, which will be invoked once per task with a filter
+	 *                     that selects the parameters for that task
+	 * @return A supplier which waits for the tasks to complete and returns the combined result
+	 */
+	<T> Supplier<ISearchParamExtractor.SearchParamSet<T>> fork(
+			RestSearchParameterTypeEnum theType,
+			BiFunction<IBaseResource, ISearchParamExtractor.ISearchParamFilter, ISearchParamExtractor.SearchParamSet<T>>
+					theExtractor) {
+		List<List<RuntimeSearchParam>> chunks = myTaskParams.getOrDefault(theType, List.of());
+
+		List<Future<ISearchParamExtractor.SearchParamSet<T>>> futures = new ArrayList<>(chunks.size());
+		for (List<RuntimeSearchParam> nextChunk : chunks) {
+			futures.add(myExecutor.submit(() -> theExtractor.apply(myResource, t -> nextChunk)));
+		}
+
+		return () -> {
+			ISearchParamExtractor.SearchParamSet<T> retVal = new ISearchParamExtractor.SearchParamSet<>();
+			for (Future<ISearchParamExtractor.SearchParamSet<T>> nextFuture : futures) {
+				ISearchParamExtractor.SearchParamSet<T> next = await(nextFuture);
+				retVal.addAll(next);
+				next.getWarnings().forEach(retVal::addWarning);
+			}
+			return retVal;
+		};
+	}
+
+	private static <T> T await(Future<T> theFuture) {
+		try {
+			return theFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2446) + "Interrupted while extracting search parameters", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(Msg.code(2447) + e.getCause().getMessage(), e.getCause());
+		}
+	}
+}
@@ -142,6 +142,21 @@ public interface ISearchParamExtractor {
 
 	String getDisplayTextFromCodeableConcept(IBase theValue);
 
+	/**
+	 * Extraction can modify the resource being indexed as a side effect (e.g. by assigning
+	 * local IDs to contained resources). This method performs any such modifications up front,
+	 * so that the <code>extractSearchParamXXX</code> methods can subsequently be invoked for
+	 * the same resource from several threads at once.
+	 *
+	 * @param theResource     The resource which will be indexed
+	 * @param theSearchParams The search parameters which will be extracted
+	 * @since 7.0.0
+	 */
+	default void prepareForConcurrentExtraction(
+			IBaseResource theResource, Collection<RuntimeSearchParam> theSearchParams) {
+		// nothing by default
+	}
+
 	@FunctionalInterface
 	interface ISearchParamFilter {
 
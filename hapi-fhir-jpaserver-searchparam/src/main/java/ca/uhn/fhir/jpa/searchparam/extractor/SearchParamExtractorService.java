@@ -51,6 +51,7 @@ import ca.uhn.fhir.jpa.model.entity.SearchParamPresentEntity;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
@@ -76,9 +77,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -86,6 +93,12 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 public class SearchParamExtractorService {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractorService.class);
 
+	/**
+	 * Resources with fewer active search parameters than this are always extracted on the calling
+	 * thread, since they are too cheap to be worth splitting up
+	 */
+	static final int MIN_PARAMS_FOR_CONCURRENT_EXTRACTION = 2 * ConcurrentSearchParamExtraction.MAX_PARAMS_PER_TASK;
+
 	@Autowired
 	private ISearchParamExtractor mySearchParamExtractor;
 
@@ -107,6 +120,8 @@ public class SearchParamExtractorService {
 	@Autowired(required = false)
 	private IResourceLinkResolver myResourceLinkResolver;
 
+	private ExecutorService myExtractionExecutor;
+
 	@VisibleForTesting
 	public void setSearchParamExtractor(ISearchParamExtractor theSearchParamExtractor) {
 		mySearchParamExtractor = theSearchParamExtractor;
@@ -496,52 +511,111 @@ public class SearchParamExtractorService {
 			IBaseResource theResource,
 			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
 
+		ConcurrentSearchParamExtraction concurrent = startConcurrentExtraction(theResource, theSearchParamFilter);
+
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamString>> stringsSupplier = extract(
+				concurrent,
+				RestSearchParameterTypeEnum.STRING,
+				this::extractSearchParamStrings,
+				theResource,
+				theSearchParamFilter);
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamNumber>> numbersSupplier = extract(
+				concurrent,
+				RestSearchParameterTypeEnum.NUMBER,
+				this::extractSearchParamNumber,
+				theResource,
+				theSearchParamFilter);
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantity>> quantitiesSupplier = extract(
+				concurrent,
+				RestSearchParameterTypeEnum.QUANTITY,
+				this::extractSearchParamQuantity,
+				theResource,
+				theSearchParamFilter);
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantityNormalized>>
+				quantitiesNormalizedSupplier = null;
+		if (myStorageSettings
+						.getNormalizedQuantitySearchLevel()
+						.equals(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_STORAGE_SUPPORTED)
+				|| myStorageSettings
+						.getNormalizedQuantitySearchLevel()
+						.equals(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_SUPPORTED)) {
+			quantitiesNormalizedSupplier = extract(
+					concurrent,
+					RestSearchParameterTypeEnum.QUANTITY,
+					this::extractSearchParamQuantityNormalized,
+					theResource,
+					theSearchParamFilter);
+		}
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamDate>> datesSupplier = extract(
+				concurrent,
+				RestSearchParameterTypeEnum.DATE,
+				this::extractSearchParamDates,
+				theResource,
+				theSearchParamFilter);
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamUri>> urisSupplier = extract(
+				concurrent,
+				RestSearchParameterTypeEnum.URI,
+				this::extractSearchParamUri,
+				theResource,
+				theSearchParamFilter);
+		Supplier<ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam>> tokensSupplier = extract(
+				concurrent,
+				RestSearchParameterTypeEnum.TOKEN,
+				this::extractSearchParamTokens,
+				theResource,
+				theSearchParamFilter);
+		// dst2 composites use stuff like value[x] , and we don't support them.
+		Supplier<ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamComposite>> compositesSupplier = null;
+		if (myContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
+			compositesSupplier = extract(
+					concurrent,
+					RestSearchParameterTypeEnum.COMPOSITE,
+					this::extractSearchParamComposites,
+					theResource,
+					theSearchParamFilter);
+		}
+		Supplier<ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam>> specialsSupplier = extract(
+				concurrent,
+				RestSearchParameterTypeEnum.SPECIAL,
+				this::extractSearchParamSpecial,
+				theResource,
+				theSearchParamFilter);
+
 		// Strings
-		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamString> strings =
-				extractSearchParamStrings(theResource, theSearchParamFilter);
+		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamString> strings = stringsSupplier.get();
 		handleWarnings(theRequestDetails, myInterceptorBroadcaster, strings);
 		theParams.myStringParams.addAll(strings);
 
 		// Numbers
-		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamNumber> numbers =
-				extractSearchParamNumber(theResource, theSearchParamFilter);
+		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamNumber> numbers = numbersSupplier.get();
 		handleWarnings(theRequestDetails, myInterceptorBroadcaster, numbers);
 		theParams.myNumberParams.addAll(numbers);
 
 		// Quantities
-		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantity> quantities =
-				extractSearchParamQuantity(theResource, theSearchParamFilter);
+		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantity> quantities = quantitiesSupplier.get();
 		handleWarnings(theRequestDetails, myInterceptorBroadcaster, quantities);
 		theParams.myQuantityParams.addAll(quantities);
 
-		if (myStorageSettings
-						.getNormalizedQuantitySearchLevel()
-						.equals(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_STORAGE_SUPPORTED)
-				|| myStorageSettings
-						.getNormalizedQuantitySearchLevel()
-						.equals(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_SUPPORTED)) {
+		if (quantitiesNormalizedSupplier != null) {
 			ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamQuantityNormalized> quantitiesNormalized =
-					extractSearchParamQuantityNormalized(theResource, theSearchParamFilter);
+					quantitiesNormalizedSupplier.get();
 			handleWarnings(theRequestDetails, myInterceptorBroadcaster, quantitiesNormalized);
 			theParams.myQuantityNormalizedParams.addAll(quantitiesNormalized);
 		}
 
 		// Dates
-		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamDate> dates =
-				extractSearchParamDates(theResource, theSearchParamFilter);
+		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamDate> dates = datesSupplier.get();
 		handleWarnings(theRequestDetails, myInterceptorBroadcaster, dates);
 		theParams.myDateParams.addAll(dates);
 
 		// URIs
-		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamUri> uris =
-				extractSearchParamUri(theResource, theSearchParamFilter);
+		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamUri> uris = urisSupplier.get();
 		handleWarnings(theRequestDetails, myInterceptorBroadcaster, uris);
 		theParams.myUriParams.addAll(uris);
 
 		// Tokens (can result in both Token and String, as we index the display name for
 		// the types: Coding, CodeableConcept)
-		ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam> tokens =
-				extractSearchParamTokens(theResource, theSearchParamFilter);
+		ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam> tokens = tokensSupplier.get();
 		for (BaseResourceIndexedSearchParam next : tokens) {
 			if (next instanceof ResourceIndexedSearchParamToken) {
 				theParams.myTokenParams.add((ResourceIndexedSearchParamToken) next);
@@ -553,17 +627,15 @@ public class SearchParamExtractorService {
 		}
 
 		// Composites
-		// dst2 composites use stuff like value[x] , and we don't support them.
-		if (myContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.DSTU3)) {
+		if (compositesSupplier != null) {
 			ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamComposite> composites =
-					extractSearchParamComposites(theResource, theSearchParamFilter);
+					compositesSupplier.get();
 			handleWarnings(theRequestDetails, myInterceptorBroadcaster, composites);
 			theParams.myCompositeParams.addAll(composites);
 		}
 
 		// Specials
-		ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam> specials =
-				extractSearchParamSpecial(theResource, theSearchParamFilter);
+		ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam> specials = specialsSupplier.get();
 		for (BaseResourceIndexedSearchParam next : specials) {
 			if (next instanceof ResourceIndexedSearchParamCoords) {
 				theParams.myCoordsParams.add((ResourceIndexedSearchParamCoords) next);
@@ -571,6 +643,74 @@ public class SearchParamExtractorService {
 		}
 	}
 
+	/**
+	 * If concurrent extraction is enabled and worthwhile for the given resource, prepares the
+	 * resource for it and returns a {@link ConcurrentSearchParamExtraction}. Otherwise returns
+	 * <code>null</code>.
+	 *
+	 * @see StorageSettings#setSearchParamExtractionThreadCount(int)
+	 */
+	@Nullable
+	private ConcurrentSearchParamExtraction startConcurrentExtraction(
+			IBaseResource theResource, ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
+		if (myStorageSettings.getSearchParamExtractionThreadCount() <= 1) {
+			return null;
+		}
+
+		String resourceType = myContext.getResourceType(theResource);
+		Collection<RuntimeSearchParam> searchParams = theSearchParamFilter.filterSearchParams(
+				mySearchParamRegistry.getActiveSearchParams(resourceType).values());
+		if (searchParams.size() < MIN_PARAMS_FOR_CONCURRENT_EXTRACTION) {
+			return null;
+		}
+
+		mySearchParamExtractor.prepareForConcurrentExtraction(theResource, searchParams);
+		return new ConcurrentSearchParamExtraction(getExtractionExecutor(), theResource, searchParams);
+	}
+
+	/**
+	 * Starts extracting the indexes for the given search parameter type. If concurrent extraction
+	 * is in use the work is submitted to the pool immediately, otherwise it is performed when
+	 * the result is requested.
+	 */
+	private static <T> Supplier<ISearchParamExtractor.SearchParamSet<T>> extract(
+			@Nullable ConcurrentSearchParamExtraction theConcurrentExtraction,
+			RestSearchParameterTypeEnum theType,
+			BiFunction<IBaseResource, ISearchParamExtractor.ISearchParamFilter, ISearchParamExtractor.SearchParamSet<T>>
+					theExtractor,
+			IBaseResource theResource,
+			ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
+		if (theConcurrentExtraction != null) {
+			return theConcurrentExtraction.fork(theType, theExtractor);
+		}
+		return () -> theExtractor.apply(theResource, theSearchParamFilter);
+	}
+
+	private synchronized ExecutorService getExtractionExecutor() {
+		if (myExtractionExecutor == null) {
+			int threadCount = myStorageSettings.getSearchParamExtractionThreadCount();
+			ourLog.info("Starting search parameter extraction pool with {} threads", threadCount);
+			myExtractionExecutor = new ForkJoinPool(
+					threadCount,
+					pool -> {
+						ForkJoinWorkerThread retVal = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+						retVal.setName("search-param-extraction-" + retVal.getPoolIndex());
+						return retVal;
+					},
+					null,
+					false);
+		}
+		return myExtractionExecutor;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExtractionExecutor != null) {
+			myExtractionExecutor.shutdown();
+			myExtractionExecutor = null;
+		}
+	}
+
 	private void populateResourceTables(ResourceIndexedSearchParams theParams, ResourceTable theEntity) {
 
 		populateResourceTable(theParams.myNumberParams, theEntity);
@@ -588,6 +728,11 @@ public class SearchParamExtractorService {
 		myContext = theContext;
 	}
 
+	@VisibleForTesting
+	void setSearchParamRegistryForUnitTest(ISearchParamRegistry theSearchParamRegistry) {
+		mySearchParamRegistry = theSearchParamRegistry;
+	}
+
 	private void extractResourceLinks(
 			RequestPartitionId theRequestPartitionId,
 			ResourceIndexedSearchParams theParams,
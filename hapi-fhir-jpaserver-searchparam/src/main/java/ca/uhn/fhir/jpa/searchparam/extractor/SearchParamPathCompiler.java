@@ -0,0 +1,359 @@
+/*-
+ * #%L
+ * HAPI FHIR Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeChildAny;
+import ca.uhn.fhir.context.RuntimeChildChoiceDefinition;
+import ca.uhn.fhir.context.RuntimeChildContainedResources;
+import ca.uhn.fhir.context.RuntimeChildDirectResource;
+import ca.uhn.fhir.context.RuntimeChildExt;
+import ca.uhn.fhir.context.RuntimeChildExtension;
+import ca.uhn.fhir.context.RuntimeChildResourceDefinition;
+import ca.uhn.fhir.context.RuntimeChildUndeclaredExtensionDefinition;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseReference;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Evaluates simple search parameter paths by walking the model definitions directly
+ * instead of going through the FHIRPath engine.
+ * <p>
+ * Most search parameter paths are plain navigation (e.g. <code>Patient.name</code>,
+ * <code>Observation.code</code>) and don't need a FHIRPath engine at all. The first time
+ * a given path is seen for a given resource type it is compiled into a chain of
+ * {@link BaseRuntimeChildDefinition#getAccessor() child accessors}, and the chain is cached.
+ * The following expressions are supported:
+ * </p>
+ * <ul>
+ *    <li>Dotted navigation, starting with the resource type, e.g. <code>Patient.name.family</code></li>
+ *    <li>Choice types, e.g. <code>Observation.value</code>, optionally narrowed using
+ *    <code>Observation.value.as(Quantity)</code>, <code>Observation.value.ofType(Quantity)</code>
+ *    or <code>(Observation.value as Quantity)</code></li>
+ *    <li>Reference target types, e.g. <code>Observation.subject.where(resolve() is Patient)</code></li>
+ * </ul>
+ * <p>
+ * Anything else is not compiled, and {@link #evaluate(IBase, String)} returns <code>null</code>
+ * so that the caller can fall back to FHIRPath. This also happens at evaluation time if the
+ * resource contains something that the compiled path can't evaluate with exactly the same
+ * result as FHIRPath would (e.g. a reference to a contained resource, which FHIRPath resolves).
+ * </p>
+ */
+final class SearchParamPathCompiler {
+
+	private static final Pattern NAME = Pattern.compile("[a-zA-Z][a-zA-Z0-9_]*");
+	private static final Pattern RESOLVE_IS = Pattern.compile("where\\(\\s*resolve\\(\\)\\s+is\\s+([a-zA-Z]+)\\s*\\)");
+	private static final Pattern AS_FUNCTION = Pattern.compile("(as|ofType)\\(\\s*([a-zA-Z]+)\\s*\\)");
+	private static final Pattern AS_OPERATOR = Pattern.compile("(.*)\\s+as\\s+([a-zA-Z]+)");
+
+	/**
+	 * Names which FHIRPath treats differently than the model does
+	 */
+	private static final Set<String> UNSUPPORTED_NAMES = Set.of("id", "extension", "modifierExtension");
+
+	private final FhirContext myContext;
+	private final Map<RuntimeResourceDefinition, Map<String, Optional<CompiledPath>>> myCompiledPaths =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor
+	 */
+	SearchParamPathCompiler(FhirContext theContext) {
+		myContext = theContext;
+	}
+
+	/**
+	 * Evaluates a single path (i.e. one which has already been split on any
+	 * <code>|</code> or <code>or</code>) against a resource.
+	 *
+	 * @return The matching values, or <code>null</code> if the path must be evaluated using FHIRPath instead
+	 */
+	@Nullable
+	List<IBase> evaluate(IBase theResource, String thePath) {
+		if (!(theResource instanceof IBaseResource)) {
+			return null;
+		}
+
+		RuntimeResourceDefinition resourceDef = myContext.getResourceDefinition((IBaseResource) theResource);
+		CompiledPath compiledPath = myCompiledPaths
+				.computeIfAbsent(resourceDef, t -> new ConcurrentHashMap<>())
+				.computeIfAbsent(thePath, t -> Optional.ofNullable(compile(resourceDef, t)))
+				.orElse(null);
+		if (compiledPath == null) {
+			return null;
+		}
+
+		return compiledPath.evaluate(theResource);
+	}
+
+	@Nullable
+	private CompiledPath compile(RuntimeResourceDefinition theResourceDef, String thePath) {
+		String path = thePath.trim();
+		if (path.startsWith("(") && path.endsWith(")")) {
+			path = path.substring(1, path.length() - 1).trim();
+		}
+
+		String trailingAsType = null;
+		Matcher asOperator = AS_OPERATOR.matcher(path);
+		if (asOperator.matches()) {
+			path = asOperator.group(1).trim();
+			trailingAsType = asOperator.group(2);
+		}
+
+		String[] segments = path.split("\\.");
+		if (!segments[0].equals(theResourceDef.getName())) {
+			return null;
+		}
+
+		List<IStep> steps = new ArrayList<>();
+		BaseRuntimeElementDefinition<?> currentDef = theResourceDef;
+		RuntimeChildChoiceDefinition currentChoice = null;
+		boolean currentIsReference = false;
+
+		for (int i = 1; i < segments.length; i++) {
+			String segment = segments[i].trim();
+
+			Matcher resolveIs = RESOLVE_IS.matcher(segment);
+			Matcher asFunction = AS_FUNCTION.matcher(segment);
+			if (resolveIs.matches()) {
+				String resourceType = resolveIs.group(1);
+				if (!currentIsReference || !myContext.getResourceTypes().contains(resourceType)) {
+					return null;
+				}
+				steps.add(new ResolveIsStep(resourceType));
+
+			} else if (asFunction.matches()) {
+				TypeStep step = createTypeStep(currentChoice, asFunction.group(2), "as".equals(asFunction.group(1)));
+				if (step == null) {
+					return null;
+				}
+				steps.add(step);
+				currentDef = myContext.getElementDefinition(step.myType);
+				currentChoice = null;
+				currentIsReference = false;
+
+			} else if (NAME.matcher(segment).matches() && !UNSUPPORTED_NAMES.contains(segment)) {
+				if (currentChoice != null || !(currentDef instanceof BaseRuntimeElementCompositeDefinition)) {
+					return null;
+				}
+
+				BaseRuntimeElementCompositeDefinition<?> compositeDef =
+						(BaseRuntimeElementCompositeDefinition<?>) currentDef;
+				BaseRuntimeChildDefinition child = compositeDef.getChildByName(segment);
+				if (child != null && segment.equals(child.getElementName()) && isNavigable(child)) {
+					currentDef = child.getChildByName(segment);
+					currentIsReference = child instanceof RuntimeChildResourceDefinition;
+				} else {
+					child = compositeDef.getChildByName(segment + "[x]");
+					if (!(child instanceof RuntimeChildChoiceDefinition) || !isNavigable(child)) {
+						return null;
+					}
+					currentDef = null;
+					currentChoice = (RuntimeChildChoiceDefinition) child;
+					currentIsReference = false;
+				}
+				steps.add(new ChildStep(compositeDef.getImplementingClass(), child));
+
+			} else {
+				return null;
+			}
+		}
+
+		if (trailingAsType != null) {
+			TypeStep step = createTypeStep(currentChoice, trailingAsType, true);
+			if (step == null) {
+				return null;
+			}
+			steps.add(step);
+		}
+
+		return new CompiledPath(steps);
+	}
+
+	@Nullable
+	private TypeStep createTypeStep(RuntimeChildChoiceDefinition theChoice, String theTypeName, boolean theAs) {
+		if (theChoice == null) {
+			return null;
+		}
+		for (Class<? extends IBase> next : theChoice.getValidChildTypes()) {
+			if (theTypeName.equals(myContext.getElementDefinition(next).getName())) {
+				return new TypeStep(next, theChoice.getValidChildTypes(), theAs);
+			}
+		}
+		return null;
+	}
+
+	private static boolean isNavigable(BaseRuntimeChildDefinition theChild) {
+		return !(theChild instanceof RuntimeChildUndeclaredExtensionDefinition
+				|| theChild instanceof RuntimeChildExtension
+				|| theChild instanceof RuntimeChildExt
+				|| theChild instanceof RuntimeChildContainedResources
+				|| theChild instanceof RuntimeChildDirectResource
+				|| theChild instanceof RuntimeChildAny);
+	}
+
+	private static class CompiledPath {
+
+		private final List<IStep> mySteps;
+
+		private CompiledPath(List<IStep> theSteps) {
+			mySteps = theSteps;
+		}
+
+		@Nullable
+		private List<IBase> evaluate(IBase theResource) {
+			List<IBase> values = Collections.singletonList(theResource);
+			for (IStep next : mySteps) {
+				values = next.apply(theResource, values);
+				if (values == null) {
+					return null;
+				}
+				if (values.isEmpty()) {
+					break;
+				}
+			}
+			return values;
+		}
+	}
+
+	private interface IStep {
+
+		/**
+		 * @return The output values, or <code>null</code> if FHIRPath needs to be used for these values
+		 */
+		@Nullable
+		List<IBase> apply(IBase theResource, List<IBase> theValues);
+	}
+
+	private static class ChildStep implements IStep {
+
+		private final Class<?> myParentType;
+		private final BaseRuntimeChildDefinition.IAccessor myAccessor;
+
+		private ChildStep(Class<?> theParentType, BaseRuntimeChildDefinition theChild) {
+			myParentType = theParentType;
+			myAccessor = theChild.getAccessor();
+		}
+
+		@Override
+		public List<IBase> apply(IBase theResource, List<IBase> theValues) {
+			List<IBase> retVal = new ArrayList<>();
+			for (IBase nextValue : theValues) {
+				if (!myParentType.isInstance(nextValue)) {
+					return null;
+				}
+				for (IBase nextChild : myAccessor.getValues(nextValue)) {
+					if (nextChild != null) {
+						retVal.add(nextChild);
+					}
+				}
+			}
+			return retVal;
+		}
+	}
+
+	private static class TypeStep implements IStep {
+
+		private final Class<? extends IBase> myType;
+		private final Set<Class<? extends IBase>> myValidTypes;
+		private final boolean myAs;
+
+		private TypeStep(Class<? extends IBase> theType, Set<Class<? extends IBase>> theValidTypes, boolean theAs) {
+			myType = theType;
+			myValidTypes = theValidTypes;
+			myAs = theAs;
+		}
+
+		@Override
+		public List<IBase> apply(IBase theResource, List<IBase> theValues) {
+			// Some FHIRPath versions reject "as" on a collection, so leave that to FHIRPath
+			if (myAs && theValues.size() > 1) {
+				return null;
+			}
+
+			List<IBase> retVal = new ArrayList<>();
+			for (IBase nextValue : theValues) {
+				if (nextValue.getClass() == myType) {
+					retVal.add(nextValue);
+				} else if (!myValidTypes.contains(nextValue.getClass())) {
+					// A subclass of a declared type, which FHIRPath may or may not match
+					return null;
+				}
+			}
+			return retVal;
+		}
+	}
+
+	/**
+	 * Mirrors the <code>resolve()</code> implementation in the FHIRPath host services
+	 * of the extractors, which resolves a reference to a stub of the type named in the
+	 * reference. References which the host services would resolve to an actual resource
+	 * (references to contained resources, or references within a Bundle) are left to FHIRPath.
+	 */
+	private static class ResolveIsStep implements IStep {
+
+		private final String myResourceType;
+
+		private ResolveIsStep(String theResourceType) {
+			myResourceType = theResourceType;
+		}
+
+		@Override
+		public List<IBase> apply(IBase theResource, List<IBase> theValues) {
+			if (theResource instanceof IBaseBundle) {
+				return null;
+			}
+
+			List<IBase> retVal = new ArrayList<>();
+			for (IBase nextValue : theValues) {
+				if (!(nextValue instanceof IBaseReference)) {
+					return null;
+				}
+				IIdType reference = ((IBaseReference) nextValue).getReferenceElement();
+				if (reference.getValue() != null && reference.getValue().startsWith("#")) {
+					return null;
+				}
+				if (!isBlank(reference.getValue()) && myResourceType.equals(reference.getResourceType())) {
+					retVal.add(nextValue);
+				}
+			}
+			return retVal;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.NormalizedQuantitySearchLevel;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.rest.server.util.FhirContextSearchParamRegistry;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Basic;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class SearchParamExtractorServiceConcurrencyTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private final ISearchParamRegistry mySearchParamRegistry = new FhirContextSearchParamRegistry(ourCtx);
+	private StorageSettings myStorageSettings;
+	private SearchParamExtractorService mySvc;
+
+	@BeforeEach
+	public void before() {
+		myStorageSettings = new StorageSettings();
+		myStorageSettings.setNormalizedQuantitySearchLevel(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_SUPPORTED);
+
+		mySvc = new SearchParamExtractorService();
+		mySvc.setContext(ourCtx);
+		mySvc.setStorageSettings(myStorageSettings);
+		mySvc.setSearchParamRegistryForUnitTest(mySearchParamRegistry);
+		mySvc.setInterceptorBroadcasterForUnitTest(mock(IInterceptorBroadcaster.class));
+		mySvc.setSearchParamExtractor(new SearchParamExtractorR4(myStorageSettings, new PartitionSettings(), ourCtx, mySearchParamRegistry));
+	}
+
+	@AfterEach
+	public void after() {
+		mySvc.stop();
+	}
+
+	@Test
+	public void testConcurrentExtractionMatchesSerial() {
+		assertThat(mySearchParamRegistry.getActiveSearchParams("Observation").size(), greaterThanOrEqualTo(SearchParamExtractorService.MIN_PARAMS_FOR_CONCURRENT_EXTRACTION));
+
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("8867-4").setDisplay("Heart rate");
+		obs.addCategory().addCoding().setSystem("http://terminology.hl7.org/CodeSystem/observation-category").setCode("vital-signs");
+		obs.setSubject(new Reference("Patient/123"));
+		obs.setEffective(new DateTimeType("2023-10-01T10:11:12Z"));
+		obs.setValue(new Quantity().setValue(72).setSystem("http://unitsofmeasure.org").setCode("/min"));
+		for (int i = 0; i < 5; i++) {
+			Observation.ObservationComponentComponent component = obs.addComponent();
+			component.getCode().addCoding().setSystem("http://loinc.org").setCode("code" + i);
+			component.setValue(new Quantity().setValue(i).setSystem("http://unitsofmeasure.org").setCode("mm[Hg]"));
+		}
+		obs.addIdentifier().setSystem("http://foo").setValue("bar");
+		obs.addPerformer(new Reference("Practitioner/1"));
+
+		ResourceIndexedSearchParams serial = extract(obs);
+
+		myStorageSettings.setSearchParamExtractionThreadCount(4);
+		for (int i = 0; i < 20; i++) {
+			assertParamsEqual(serial, extract(obs));
+		}
+	}
+
+	@Test
+	public void testSmallResourceExtractedSerially() {
+		assertThat(mySearchParamRegistry.getActiveSearchParams("Basic").size(), lessThan(SearchParamExtractorService.MIN_PARAMS_FOR_CONCURRENT_EXTRACTION));
+
+		Basic basic = new Basic();
+		basic.getCode().addCoding().setSystem("http://foo").setCode("bar");
+		basic.addIdentifier().setSystem("http://foo").setValue("bar");
+		ResourceIndexedSearchParams serial = extract(basic);
+
+		myStorageSettings.setSearchParamExtractionThreadCount(4);
+		assertParamsEqual(serial, extract(basic));
+	}
+
+	private ResourceIndexedSearchParams extract(IBaseResource theResource) {
+		ResourceIndexedSearchParams retVal = new ResourceIndexedSearchParams();
+		mySvc.extractSearchIndexParameters(null, retVal, theResource, ISearchParamExtractor.ALL_PARAMS);
+		return retVal;
+	}
+
+	private static void assertParamsEqual(ResourceIndexedSearchParams theExpected, ResourceIndexedSearchParams theActual) {
+		assertListEquals(theExpected.myStringParams, theActual.myStringParams);
+		assertListEquals(theExpected.myTokenParams, theActual.myTokenParams);
+		assertListEquals(theExpected.myNumberParams, theActual.myNumberParams);
+		assertListEquals(theExpected.myQuantityParams, theActual.myQuantityParams);
+		assertListEquals(theExpected.myQuantityNormalizedParams, theActual.myQuantityNormalizedParams);
+		assertListEquals(theExpected.myDateParams, theActual.myDateParams);
+		assertListEquals(theExpected.myUriParams, theActual.myUriParams);
+		assertListEquals(theExpected.myCoordsParams, theActual.myCoordsParams);
+		assertListEquals(theExpected.myCompositeParams, theActual.myCompositeParams);
+	}
+
+	private static void assertListEquals(Collection<?> theExpected, Collection<?> theActual) {
+		List<String> expected = new ArrayList<>();
+		theExpected.forEach(t -> expected.add(t.toString()));
+		List<String> actual = new ArrayList<>();
+		theActual.forEach(t -> actual.add(t.toString()));
+		assertEquals(expected, actual);
+	}
+}
@@ -0,0 +1,189 @@
+package ca.uhn.fhir.jpa.searchparam.extractor;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.rest.server.util.FhirContextSearchParamRegistry;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Age;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Medication;
+import org.hl7.fhir.r4.model.MedicationRequest;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Period;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SearchParamPathCompilerTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private final SearchParamExtractorR4 myExtractor = new SearchParamExtractorR4(new StorageSettings(), new PartitionSettings(), ourCtx, new FhirContextSearchParamRegistry(ourCtx));
+	private final SearchParamPathCompiler myCompiler = new SearchParamPathCompiler(ourCtx);
+
+	@Test
+	public void testCompiledPathsMatchFhirPath() {
+		int compiledCount = 0;
+		for (IBaseResource next : createResources()) {
+			for (RuntimeSearchParam nextParam : ourCtx.getResourceDefinition(next).getSearchParams()) {
+				for (String nextPath : myExtractor.split(nextParam.getPath())) {
+					nextPath = nextPath.trim();
+					List<IBase> actual = myCompiler.evaluate(next, nextPath);
+					if (actual != null) {
+						compiledCount++;
+						List<? extends IBase> expected = myExtractor.getPathValueExtractor(next, nextPath).get();
+						assertEquals(toStrings(expected), toStrings(actual), nextPath);
+					}
+				}
+			}
+		}
+
+		assertThat(compiledCount, greaterThan(50));
+	}
+
+	@Test
+	public void testSimplePaths() {
+		Observation obs = new Observation();
+		obs.setValue(new Quantity(123));
+		obs.setSubject(new Reference("Patient/123"));
+		obs.setSpecimen(new Reference("Specimen/123"));
+
+		assertSame(obs.getValue(), myCompiler.evaluate(obs, "Observation.value").get(0));
+		assertSame(obs.getValue(), myCompiler.evaluate(obs, "(Observation.value as Quantity)").get(0));
+		assertSame(obs.getValue(), myCompiler.evaluate(obs, "Observation.value.as(Quantity)").get(0));
+		assertSame(obs.getValue(), myCompiler.evaluate(obs, "Observation.value.ofType(Quantity)").get(0));
+		assertEquals(0, myCompiler.evaluate(obs, "Observation.value.as(CodeableConcept)").size());
+		assertSame(obs.getSubject(), myCompiler.evaluate(obs, "Observation.subject.where(resolve() is Patient)").get(0));
+		assertEquals(0, myCompiler.evaluate(obs, "Observation.subject.where(resolve() is Group)").size());
+		assertEquals(0, myCompiler.evaluate(obs, "Observation.code.coding").size());
+	}
+
+	@Test
+	public void testUnsupportedPaths() {
+		Observation obs = new Observation();
+
+		assertNull(myCompiler.evaluate(obs, "Observation.extension('http://foo')"));
+		assertNull(myCompiler.evaluate(obs, "Observation.extension"));
+		assertNull(myCompiler.evaluate(obs, "Observation.value.exists()"));
+		assertNull(myCompiler.evaluate(obs, "Observation.component[0].code"));
+		assertNull(myCompiler.evaluate(obs, "Patient.name"));
+		assertNull(myCompiler.evaluate(obs, "Resource.meta.profile"));
+		assertNull(myCompiler.evaluate(obs, "Observation.foo"));
+		assertNull(myCompiler.evaluate(obs, "Observation.code.as(Quantity)"));
+		assertNull(myCompiler.evaluate(obs, "Observation.value.code"));
+		assertNull(myCompiler.evaluate(obs, "Observation.code.where(resolve() is Patient)"));
+		assertNull(myCompiler.evaluate(new Quantity(), "Quantity.value"));
+	}
+
+	@Test
+	public void testFallBackWhenResolvingContainedResource() {
+		MedicationRequest medicationRequest = new MedicationRequest();
+		medicationRequest.setSubject(new Reference("Patient/123"));
+		String path = "MedicationRequest.subject.where(resolve() is Patient)";
+		assertNotNull(myCompiler.evaluate(medicationRequest, path));
+
+		medicationRequest.setSubject(new Reference("#pat"));
+		assertNull(myCompiler.evaluate(medicationRequest, path));
+	}
+
+	private List<IBaseResource> createResources() {
+		List<IBaseResource> retVal = new ArrayList<>();
+
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.addName().setFamily("Simpson").addGiven("Homer").addGiven("Jay");
+		patient.addName().setText("Homer");
+		patient.addIdentifier().setSystem("http://mrn").setValue("123");
+		patient.setGender(Enumerations.AdministrativeGender.MALE);
+		patient.setBirthDateElement(new DateType("1956-05-12"));
+		patient.addTelecom().setValue("555-1212");
+		patient.addAddress().setCity("Springfield").addLine("742 Evergreen Terrace");
+		patient.setDeceased(new DateTimeType("2020-01-01"));
+		patient.addGeneralPractitioner(new Reference("Practitioner/1"));
+		patient.addGeneralPractitioner(new Reference("Organization/1"));
+		patient.setManagingOrganization(new Reference("http://example.com/fhir/Organization/2"));
+		patient.addLink().setOther(new Reference("Patient/999"));
+		patient.getMeta().addProfile("http://profile").addTag("http://tags", "tag", null);
+		retVal.add(patient);
+
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("789-8");
+		obs.addCategory().addCoding().setSystem("http://cat").setCode("vital-signs");
+		obs.setSubject(new Reference("Patient/123"));
+		obs.setEncounter(new Reference("Encounter/5"));
+		obs.addPerformer(new Reference("Practitioner/1"));
+		obs.addPerformer(new Reference("PractitionerRole/1"));
+		obs.setEffective(new Period().setStartElement(new DateTimeType("2020-01-01")));
+		obs.setValue(new Quantity().setValue(12.3).setSystem("http://unitsofmeasure.org").setCode("mg"));
+		obs.addComponent().setValue(new CodeableConcept().setText("Text")).getCode().setText("Code");
+		obs.addComponent().setValue(new StringType("Hello")).getCode().setText("Code2");
+		obs.addComponent().setValue(new Quantity(4));
+		obs.addDerivedFrom(new Reference("Observation/2"));
+		obs.addHasMember(new Reference("QuestionnaireResponse/3"));
+		retVal.add(obs);
+
+		Observation obs2 = new Observation();
+		obs2.setSubject(new Reference("Group/1"));
+		obs2.setValue(new CodeableConcept().addCoding(new org.hl7.fhir.r4.model.Coding("http://foo", "bar", null)));
+		obs2.setEffective(new DateTimeType("2021-01-01"));
+		retVal.add(obs2);
+
+		Condition condition = new Condition();
+		condition.setSubject(new Reference("Patient/1"));
+		condition.setOnset(new Age().setValue(10));
+		condition.setAbatement(new StringType("Later"));
+		condition.addEvidence().addDetail(new Reference("Observation/1"));
+		retVal.add(condition);
+
+		Encounter encounter = new Encounter();
+		encounter.setSubject(new Reference("Patient/1"));
+		encounter.addParticipant().setIndividual(new Reference("Practitioner/1"));
+		encounter.addParticipant().setIndividual(new Reference("RelatedPerson/1"));
+		encounter.getPeriod().setStartElement(new DateTimeType("2020-01-01"));
+		encounter.addLocation().setLocation(new Reference("Location/1"));
+		retVal.add(encounter);
+
+		MedicationRequest medicationRequest = new MedicationRequest();
+		medicationRequest.setSubject(new Reference("Patient/1"));
+		medicationRequest.setMedication(new Reference("Medication/1"));
+		medicationRequest.setRequester(new Reference("Practitioner/1"));
+		retVal.add(medicationRequest);
+
+		MedicationRequest medicationRequest2 = new MedicationRequest();
+		medicationRequest2.setMedication(new CodeableConcept().setText("Aspirin"));
+		medicationRequest2.setSubject(new Reference(""));
+		retVal.add(medicationRequest2);
+
+		retVal.add(new Medication());
+
+		return retVal;
+	}
+
+	private static List<String> toStrings(List<? extends IBase> theValues) {
+		List<String> retVal = new ArrayList<>();
+		for (IBase next : theValues) {
+			retVal.add(next.getClass().getSimpleName() + ":" + System.identityHashCode(next));
+		}
+		return retVal;
+	}
+}
@@ -27,6 +27,8 @@ public abstract class BaseChannelParameters {
 
 	private ChannelRetryConfiguration myRetryConfiguration;
 
+	private Integer myConcurrentConsumers;
+
 	/**
 	 * Constructor
 	 */
@@ -45,4 +47,15 @@ public abstract class BaseChannelParameters {
 	public ChannelRetryConfiguration getRetryConfiguration() {
 		return myRetryConfiguration;
 	}
+
+	/**
+	 * The number of concurrent consumers for the channel, or <code>null</code> to use the default
+	 */
+	public Integer getConcurrentConsumers() {
+		return myConcurrentConsumers;
+	}
+
+	public void setConcurrentConsumers(Integer theConcurrentConsumers) {
+		myConcurrentConsumers = theConcurrentConsumers;
+	}
 }
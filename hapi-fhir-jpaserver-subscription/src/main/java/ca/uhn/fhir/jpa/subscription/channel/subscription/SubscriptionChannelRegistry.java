@@ -25,9 +25,13 @@ import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
 import ca.uhn.fhir.jpa.subscription.channel.models.ProducingChannelParameters;
 import ca.uhn.fhir.jpa.subscription.channel.models.ReceivingChannelParameters;
+import ca.uhn.fhir.jpa.subscription.match.deliver.resthook.RestHookDeliveryBatcher;
 import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
 import ca.uhn.fhir.jpa.subscription.match.registry.SubscriptionRegistry;
+import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
+import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscriptionChannelType;
 import ca.uhn.fhir.jpa.subscription.model.ChannelRetryConfiguration;
+import ca.uhn.fhir.subscription.SubscriptionConstants;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
@@ -40,6 +44,7 @@ import org.springframework.messaging.MessageHandler;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
 
 public class SubscriptionChannelRegistry {
 	private static final Logger ourLog = LoggerFactory.getLogger(SubscriptionRegistry.class);
@@ -71,6 +76,7 @@ public class SubscriptionChannelRegistry {
 		// we get the retry configurations from the cannonicalized subscriber
 		// these will be provided to both the producer and receiver channel
 		ChannelRetryConfiguration retryConfigParameters = theActiveSubscription.getRetryConfigurationParameters();
+		Integer concurrentConsumers = getDeliveryChannelConcurrentConsumers(theActiveSubscription);
 
 		/*
 		 * When we create a subscription, we create both
@@ -88,6 +94,7 @@ public class SubscriptionChannelRegistry {
 		// this sends to the hook (resthook/message/email/whatever)
 		ReceivingChannelParameters receivingParameters = new ReceivingChannelParameters(channelName);
 		receivingParameters.setRetryConfiguration(retryConfigParameters);
+		receivingParameters.setConcurrentConsumers(concurrentConsumers);
 
 		IChannelReceiver channelReceiver = newReceivingChannel(receivingParameters);
 		Optional<MessageHandler> deliveryHandler =
@@ -102,14 +109,42 @@ public class SubscriptionChannelRegistry {
 		// channel used for sending to subscription matcher
 		ProducingChannelParameters producingChannelParameters = new ProducingChannelParameters(channelName);
 		producingChannelParameters.setRetryConfiguration(retryConfigParameters);
+		producingChannelParameters.setConcurrentConsumers(concurrentConsumers);
 
 		IChannelProducer sendingChannel = newSendingChannel(producingChannelParameters);
 		myChannelNameToSender.put(channelName, sendingChannel);
 	}
 
+	/**
+	 * Each thread delivering a batched REST HOOK subscription blocks until the batch containing
+	 * its delivery has been sent (see {@link RestHookDeliveryBatcher}), so with the default number
+	 * of consumers a batch could never hold more deliveries than there are threads. Batched
+	 * subscriptions therefore get enough consumers for one batch to fill up while the previous
+	 * one is being sent, up to {@link SubscriptionConstants#MAX_BATCH_DELIVERY_CHANNEL_CONCURRENT_CONSUMERS}.
+	 * The channel is only created once, so a later change to the batch size of the subscription
+	 * does not change the number of consumers.
+	 *
+	 * @return The number of consumers, or <code>null</code> to use the default
+	 */
+	@Nullable
+	private Integer getDeliveryChannelConcurrentConsumers(ActiveSubscription theActiveSubscription) {
+		CanonicalSubscription subscription = theActiveSubscription.getSubscription();
+		if (subscription.getChannelType() != CanonicalSubscriptionChannelType.RESTHOOK
+				|| !subscription.getRestHookDetails().isBatchDelivery()) {
+			return null;
+		}
+		int batchMaxSize = subscription.getRestHookDetails().getBatchMaxSize();
+		int concurrentConsumers = (int)
+				Math.min(2L * batchMaxSize, SubscriptionConstants.MAX_BATCH_DELIVERY_CHANNEL_CONCURRENT_CONSUMERS);
+		return Math.max(concurrentConsumers, SubscriptionConstants.DELIVERY_CHANNEL_CONCURRENT_CONSUMERS);
+	}
+
 	protected IChannelReceiver newReceivingChannel(ReceivingChannelParameters theParameters) {
 		ChannelConsumerSettings settings = new ChannelConsumerSettings();
 		settings.setRetryConfiguration(theParameters.getRetryConfiguration());
+		if (theParameters.getConcurrentConsumers() != null) {
+			settings.setConcurrentConsumers(theParameters.getConcurrentConsumers());
+		}
 		return mySubscriptionDeliveryChannelFactory.newDeliveryReceivingChannel(
 				theParameters.getChannelName(), settings);
 	}
@@ -117,6 +152,9 @@ public class SubscriptionChannelRegistry {
 	protected IChannelProducer newSendingChannel(ProducingChannelParameters theParameters) {
 		ChannelProducerSettings settings = new ChannelProducerSettings();
 		settings.setRetryConfiguration(theParameters.getRetryConfiguration());
+		if (theParameters.getConcurrentConsumers() != null) {
+			settings.setConcurrentConsumers(theParameters.getConcurrentConsumers());
+		}
 		return mySubscriptionDeliveryChannelFactory.newDeliverySendingChannel(theParameters.getChannelName(), settings);
 	}
 
@@ -0,0 +1,319 @@
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.match.deliver.resthook;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.subscription.model.ResourceDeliveryMessage;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Combines REST HOOK deliveries which are headed for the same endpoint into batches.
+ * <p>
+ * Each delivery thread calls {@link #deliver(String, int, long, Delivery, IBatchSender)} and blocks
+ * until its own delivery has either succeeded or failed. The first thread to arrive for an endpoint
+ * waits for up to the batch window (or until the batch is full) for other deliveries to join, and
+ * then sends the whole batch on behalf of every thread in it. Because each thread only returns once
+ * its own delivery is complete, and a failed delivery is rethrown to the thread which submitted it,
+ * the existing retry handling of the delivery channel continues to apply to individual deliveries.
+ * </p>
+ * <p>
+ * The number of batches which may be in flight at the same time for a single endpoint is bounded,
+ * so that a slow endpoint does not tie up every delivery thread with concurrent requests.
+ * </p>
+ * <p>
+ * Since a batch can never hold more deliveries than there are threads waiting on it, the delivery
+ * channel of a batched subscription is given more consumers than usual (see
+ * <code>SubscriptionChannelRegistry</code>).
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public class RestHookDeliveryBatcher {
+
+	public static final long DEFAULT_BATCH_WINDOW_MILLIS = 100;
+	public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES_PER_ENDPOINT = 4;
+	private static final Logger ourLog = LoggerFactory.getLogger(RestHookDeliveryBatcher.class);
+
+	private final ConcurrentHashMap<String, Endpoint> myEndpoints = new ConcurrentHashMap<>();
+	private int myMaxInFlightBatchesPerEndpoint = DEFAULT_MAX_IN_FLIGHT_BATCHES_PER_ENDPOINT;
+
+	/**
+	 * Constructor
+	 */
+	public RestHookDeliveryBatcher() {
+		super();
+	}
+
+	/**
+	 * The maximum number of batches that may be sent to a single endpoint at the same time.
+	 * Defaults to {@link #DEFAULT_MAX_IN_FLIGHT_BATCHES_PER_ENDPOINT}. Changes only apply to
+	 * endpoints which have not yet received a delivery.
+	 */
+	public int getMaxInFlightBatchesPerEndpoint() {
+		return myMaxInFlightBatchesPerEndpoint;
+	}
+
+	/**
+	 * The maximum number of batches that may be sent to a single endpoint at the same time.
+	 * Defaults to {@link #DEFAULT_MAX_IN_FLIGHT_BATCHES_PER_ENDPOINT}. Changes only apply to
+	 * endpoints which have not yet received a delivery.
+	 */
+	public void setMaxInFlightBatchesPerEndpoint(int theMaxInFlightBatchesPerEndpoint) {
+		Validate.isTrue(theMaxInFlightBatchesPerEndpoint > 0, "theMaxInFlightBatchesPerEndpoint must be positive");
+		myMaxInFlightBatchesPerEndpoint = theMaxInFlightBatchesPerEndpoint;
+	}
+
+	/**
+	 * Adds a delivery to the current batch for the given endpoint, and blocks until the batch
+	 * containing it has been sent.
+	 *
+	 * @param theEndpointKey   Deliveries with the same key are combined. This should identify the
+	 *                         endpoint URL, encoding and headers used to send the delivery.
+	 * @param theMaxBatchSize  The maximum number of deliveries in a single batch
+	 * @param theBatchWindowMillis The maximum time to wait for other deliveries to join the batch
+	 * @param theDelivery      The delivery
+	 * @param theSender        Sends the batch if this thread ends up sending it
+	 * @throws RuntimeException If the delivery failed
+	 */
+	public void deliver(
+			@Nonnull String theEndpointKey,
+			int theMaxBatchSize,
+			long theBatchWindowMillis,
+			@Nonnull Delivery theDelivery,
+			@Nonnull IBatchSender theSender) {
+		Endpoint endpoint =
+				myEndpoints.computeIfAbsent(theEndpointKey, k -> new Endpoint(myMaxInFlightBatchesPerEndpoint));
+		long windowMillis = theBatchWindowMillis > 0 ? theBatchWindowMillis : DEFAULT_BATCH_WINDOW_MILLIS;
+
+		PendingBatch batch = null;
+		synchronized (endpoint) {
+			PendingBatch openBatch = endpoint.myOpenBatch;
+			if (openBatch != null && openBatch.canAccept(theDelivery, theMaxBatchSize)) {
+				openBatch.add(theDelivery);
+				if (openBatch.size() >= theMaxBatchSize) {
+					endpoint.closeOpenBatch();
+				}
+			} else {
+				// The current batch can't accept this delivery, so send it now and start a new one
+				if (openBatch != null) {
+					endpoint.closeOpenBatch();
+				}
+				batch = new PendingBatch();
+				batch.add(theDelivery);
+				endpoint.myOpenBatch = batch;
+			}
+		}
+
+		if (batch != null) {
+			waitForBatchToFill(endpoint, batch, windowMillis);
+			sendBatch(endpoint, batch, theSender);
+		}
+
+		awaitResult(theDelivery);
+	}
+
+	private void waitForBatchToFill(Endpoint theEndpoint, PendingBatch theBatch, long theWindowMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(theWindowMillis);
+		synchronized (theEndpoint) {
+			try {
+				while (!theBatch.myClosed) {
+					long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if (remainingMillis <= 0) {
+						break;
+					}
+					theEndpoint.wait(remainingMillis);
+				}
+			} catch (InterruptedException e) {
+				// The deliveries which already joined the batch still need to be sent
+				Thread.currentThread().interrupt();
+			}
+			if (theEndpoint.myOpenBatch == theBatch) {
+				theEndpoint.closeOpenBatch();
+			}
+		}
+	}
+
+	private void sendBatch(Endpoint theEndpoint, PendingBatch theBatch, IBatchSender theSender) {
+		List<Delivery> deliveries = Collections.unmodifiableList(theBatch.myDeliveries);
+		theEndpoint.myInFlight.acquireUninterruptibly();
+		try {
+			ourLog.debug("Sending batch of {} rest-hook deliveries", deliveries.size());
+			theSender.send(deliveries);
+			for (Delivery next : deliveries) {
+				next.succeeded();
+			}
+		} catch (RuntimeException e) {
+			for (Delivery next : deliveries) {
+				next.failed(e);
+			}
+		} catch (Error e) {
+			// Make sure that the other threads in the batch don't wait forever
+			InternalErrorException failure =
+					new InternalErrorException(Msg.code(2459) + "Failed to deliver rest-hook batch: " + e, e);
+			for (Delivery next : deliveries) {
+				next.failed(failure);
+			}
+			throw e;
+		} finally {
+			theEndpoint.myInFlight.release();
+		}
+	}
+
+	private void awaitResult(Delivery theDelivery) {
+		try {
+			theDelivery.myResult.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2458) + "Interrupted while waiting for rest-hook delivery", e);
+		} catch (ExecutionException e) {
+			// Deliveries are only ever failed with a RuntimeException
+			throw (RuntimeException) e.getCause();
+		}
+	}
+
+	/**
+	 * Sends a batch of deliveries
+	 */
+	@FunctionalInterface
+	public interface IBatchSender {
+
+		/**
+		 * Sends the given deliveries. Implementations may mark individual deliveries as failed using
+		 * {@link Delivery#failed(RuntimeException)}. Any deliveries which have not been marked as failed
+		 * are treated as successful if this method returns normally, and as failed if it throws an
+		 * exception.
+		 */
+		void send(List<Delivery> theDeliveries);
+	}
+
+	/**
+	 * A single delivery which is waiting to be sent as a part of a batch
+	 */
+	public static class Delivery {
+		private final ResourceDeliveryMessage myMessage;
+		private final IBaseResource myPayload;
+		private final CompletableFuture<Void> myResult = new CompletableFuture<>();
+
+		/**
+		 * Constructor
+		 *
+		 * @param theMessage The delivery message
+		 * @param thePayload The payload to deliver, or <code>null</code> for a delete
+		 */
+		public Delivery(@Nonnull ResourceDeliveryMessage theMessage, @Nullable IBaseResource thePayload) {
+			myMessage = theMessage;
+			myPayload = thePayload;
+		}
+
+		@Nonnull
+		public ResourceDeliveryMessage getMessage() {
+			return myMessage;
+		}
+
+		@Nullable
+		public IBaseResource getPayload() {
+			return myPayload;
+		}
+
+		@Nullable
+		String getResourceKey() {
+			String payloadId = myMessage.getPayloadId();
+			return payloadId != null ? StringUtils.substringBefore(payloadId, "/_history") : null;
+		}
+
+		/**
+		 * Marks this delivery as failed. The exception is rethrown to the thread which submitted
+		 * the delivery.
+		 */
+		public void failed(@Nonnull RuntimeException theException) {
+			myResult.completeExceptionally(theException);
+		}
+
+		void succeeded() {
+			myResult.complete(null);
+		}
+	}
+
+	private static class Endpoint {
+		private final Semaphore myInFlight;
+		private PendingBatch myOpenBatch;
+
+		private Endpoint(int theMaxInFlight) {
+			myInFlight = new Semaphore(theMaxInFlight);
+		}
+
+		/**
+		 * Must be called while holding the monitor for this endpoint
+		 */
+		private void closeOpenBatch() {
+			myOpenBatch.myClosed = true;
+			myOpenBatch = null;
+			notifyAll();
+		}
+	}
+
+	private static class PendingBatch {
+		private final List<Delivery> myDeliveries = new ArrayList<>();
+		private final Set<String> myResourceKeys = new HashSet<>();
+		private boolean myClosed;
+
+		/**
+		 * Two deliveries for the same resource are never placed in the same batch, since
+		 * the receiving server may process the entries of a batch in any order
+		 */
+		private boolean canAccept(Delivery theDelivery, int theMaxBatchSize) {
+			if (myDeliveries.size() >= theMaxBatchSize) {
+				return false;
+			}
+			String resourceKey = theDelivery.getResourceKey();
+			return resourceKey == null || !myResourceKeys.contains(resourceKey);
+		}
+
+		private void add(Delivery theDelivery) {
+			myDeliveries.add(theDelivery);
+			String resourceKey = theDelivery.getResourceKey();
+			if (resourceKey != null) {
+				myResourceKeys.add(resourceKey);
+			}
+		}
+
+		private int size() {
+			return myDeliveries.size();
+		}
+	}
+}
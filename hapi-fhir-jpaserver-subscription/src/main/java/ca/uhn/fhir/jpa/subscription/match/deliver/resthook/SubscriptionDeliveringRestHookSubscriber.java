@@ -40,12 +40,17 @@ import ca.uhn.fhir.rest.client.api.IHttpResponse;
 import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
 import ca.uhn.fhir.rest.client.interceptor.SimpleRequestHeaderInterceptor;
 import ca.uhn.fhir.rest.gclient.IClientExecutable;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.messaging.BaseResourceModifiedMessage;
+import ca.uhn.fhir.util.BundleBuilder;
 import ca.uhn.fhir.util.BundleUtil;
+import ca.uhn.fhir.util.FhirTerser;
 import ca.uhn.fhir.util.Logs;
 import ca.uhn.fhir.util.StopWatch;
+import com.google.common.annotations.VisibleForTesting;
+import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
@@ -72,6 +77,9 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 	@Autowired
 	private DaoRegistry myDaoRegistry;
 
+	@Autowired(required = false)
+	private RestHookDeliveryBatcher myDeliveryBatcher;
+
 	/**
 	 * Constructor
 	 */
@@ -103,6 +111,10 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 		} else if (isNotBlank(theSubscription.getPayloadSearchCriteria())) {
 			operation = createDeliveryRequestTransaction(theSubscription, theClient, thePayloadResource);
 		} else if (thePayloadType != null) {
+			if (isBatchDelivery(theMsg, theSubscription, thePayloadResource)) {
+				doBatchDelivery(theMsg, theSubscription, thePayloadType, theClient, thePayloadResource);
+				return;
+			}
 			operation = createDeliveryRequestNormal(theMsg, theClient, thePayloadResource);
 		} else {
 			sendNotification(theMsg);
@@ -139,6 +151,115 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 		}
 	}
 
+	private boolean isBatchDelivery(
+			ResourceDeliveryMessage theMsg, CanonicalSubscription theSubscription, IBaseResource thePayloadResource) {
+		if (myDeliveryBatcher == null || !theSubscription.getRestHookDetails().isBatchDelivery()) {
+			return false;
+		}
+		switch (theMsg.getOperationType()) {
+			case CREATE:
+			case UPDATE:
+				return thePayloadResource != null;
+			case DELETE:
+				return theMsg.getPayloadId() != null;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Hands the delivery to the {@link RestHookDeliveryBatcher}, which may combine it with other
+	 * deliveries to the same endpoint. This method blocks until the delivery has completed, and
+	 * throws an exception if it failed, so that the message is retried as it would be otherwise.
+	 */
+	private void doBatchDelivery(
+			ResourceDeliveryMessage theMsg,
+			CanonicalSubscription theSubscription,
+			EncodingEnum thePayloadType,
+			IGenericClient theClient,
+			IBaseResource thePayloadResource) {
+		CanonicalSubscription.RestHookDetails restHookDetails = theSubscription.getRestHookDetails();
+		String endpointKey =
+				theSubscription.getEndpointUrl() + " " + thePayloadType + " " + theSubscription.getHeaders();
+		StopWatch sw = new StopWatch();
+
+		myDeliveryBatcher.deliver(
+				endpointKey,
+				restHookDetails.getBatchMaxSize(),
+				restHookDetails.getBatchWindowMillis(),
+				new RestHookDeliveryBatcher.Delivery(theMsg, thePayloadResource),
+				deliveries -> sendBatch(deliveries, thePayloadType, theClient));
+
+		Logs.getSubscriptionTroubleshootingLog()
+				.debug(
+						"Delivered {} rest-hook payload {} for {} in a batch in {}",
+						theMsg.getOperationType(),
+						theMsg.getPayloadId(),
+						theSubscription
+								.getIdElement(myFhirContext)
+								.toUnqualifiedVersionless()
+								.getValue(),
+						sw);
+	}
+
+	/**
+	 * Sends a batch of deliveries as a single <code>batch</code> Bundle, or as a normal request if
+	 * the batch contains only one delivery. Entries which were not processed successfully by the
+	 * endpoint are marked as failed individually.
+	 */
+	private void sendBatch(
+			List<RestHookDeliveryBatcher.Delivery> theDeliveries,
+			EncodingEnum thePayloadType,
+			IGenericClient theClient) {
+		if (theDeliveries.size() == 1) {
+			RestHookDeliveryBatcher.Delivery delivery = theDeliveries.get(0);
+			IClientExecutable<?, ?> operation =
+					createDeliveryRequestNormal(delivery.getMessage(), theClient, delivery.getPayload());
+			operation.encoded(thePayloadType);
+			operation.execute();
+			return;
+		}
+
+		BundleBuilder bundleBuilder = new BundleBuilder(myFhirContext);
+		for (RestHookDeliveryBatcher.Delivery next : theDeliveries) {
+			if (next.getMessage().getOperationType() == BaseResourceModifiedMessage.OperationTypeEnum.DELETE) {
+				bundleBuilder.addTransactionDeleteEntry(next.getMessage().getPayloadId(myFhirContext));
+			} else {
+				bundleBuilder.addTransactionUpdateEntry(next.getPayload());
+			}
+		}
+		// Adding entries sets the type to "transaction", so this has to come afterward
+		bundleBuilder.setType("batch");
+
+		IClientExecutable<?, IBaseBundle> operation = theClient.transaction().withBundle(bundleBuilder.getBundle());
+		operation.encoded(thePayloadType);
+		IBaseBundle response;
+		try {
+			response = operation.execute();
+		} catch (ResourceNotFoundException e) {
+			ourLog.error(
+					"Cannot reach {} ",
+					theDeliveries.get(0).getMessage().getSubscription().getEndpointUrl());
+			ourLog.error("Exception: ", e);
+			throw e;
+		}
+
+		FhirTerser terser = myFhirContext.newTerser();
+		List<IBase> responseEntries = terser.getValues(response, "Bundle.entry");
+		if (responseEntries.size() != theDeliveries.size()) {
+			throw new InternalErrorException(Msg.code(2460) + "Expected " + theDeliveries.size()
+					+ " entries in batch response, found " + responseEntries.size());
+		}
+		for (int i = 0; i < theDeliveries.size(); i++) {
+			String status = terser.getSinglePrimitiveValueOrNull(responseEntries.get(i), "response.status");
+			if (status == null || !status.startsWith("2")) {
+				RestHookDeliveryBatcher.Delivery delivery = theDeliveries.get(i);
+				delivery.failed(new InternalErrorException(Msg.code(2461) + "Failed to deliver "
+						+ delivery.getMessage().getPayloadId() + " in batch, response status: " + status));
+			}
+		}
+	}
+
 	@Nullable
 	private IClientExecutable<?, ?> createDeliveryRequestNormal(
 			ResourceDeliveryMessage theMsg, IGenericClient theClient, IBaseResource thePayloadResource) {
@@ -169,6 +290,11 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 		return theClient.transaction().withBundle(theBundle);
 	}
 
+	@VisibleForTesting
+	public void setDeliveryBatcherForUnitTest(RestHookDeliveryBatcher theDeliveryBatcher) {
+		myDeliveryBatcher = theDeliveryBatcher;
+	}
+
 	public IBaseResource getResource(IIdType thePayloadId, RequestPartitionId thePartitionId, boolean theDeletedOK)
 			throws ResourceGoneException {
 		RuntimeResourceDefinition resourceDef = myFhirContext.getResourceDefinition(thePayloadId.getResourceType());
@@ -20,27 +20,39 @@
 package ca.uhn.fhir.jpa.subscription.match.matcher.subscriber;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.subscription.match.matcher.matching.ISubscriptionMatcher;
 import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
+import ca.uhn.fhir.jpa.subscription.match.registry.SubscriptionCriteriaIndex;
 import ca.uhn.fhir.jpa.subscription.match.registry.SubscriptionRegistry;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedJsonMessage;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessagingException;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import static ca.uhn.fhir.rest.server.messaging.BaseResourceMessage.OperationTypeEnum.DELETE;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -64,6 +76,18 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 	@Autowired
 	private SubscriptionMatchDeliverer mySubscriptionMatchDeliverer;
 
+	@Autowired(required = false)
+	private StorageSettings myStorageSettings;
+
+	/*
+	 * Only needed when the subscription criteria index is enabled
+	 */
+	@Autowired
+	private ObjectProvider<ISearchParamRegistry> mySearchParamRegistryProvider;
+
+	@Autowired
+	private ObjectProvider<ISearchParamExtractor> mySearchParamExtractorProvider;
+
 	/**
 	 * Constructor
 	 */
@@ -114,7 +138,7 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 	private void doMatchActiveSubscriptionsAndDeliver(ResourceModifiedMessage theMsg) {
 		IIdType resourceId = theMsg.getPayloadId(myFhirContext);
 
-		Collection<ActiveSubscription> subscriptions = mySubscriptionRegistry.getAllNonTopicSubscriptions();
+		Collection<ActiveSubscription> subscriptions = getSubscriptionsToTest(theMsg, resourceId);
 
 		ourLog.trace("Testing {} subscriptions for applicability", subscriptions.size());
 		boolean anySubscriptionsMatchedResource = false;
@@ -130,6 +154,56 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 		}
 	}
 
+	private Collection<ActiveSubscription> getSubscriptionsToTest(
+			ResourceModifiedMessage theMsg, IIdType theResourceId) {
+		if (myStorageSettings != null && myStorageSettings.isSubscriptionCriteriaIndexEnabled()) {
+			String resourceType = theResourceId.getResourceType();
+			IBaseResource payload = theMsg.getNewPayload(myFhirContext);
+			if (isNotBlank(resourceType) && payload != null) {
+				ISearchParamRegistry searchParamRegistry = mySearchParamRegistryProvider.getObject();
+				ISearchParamExtractor searchParamExtractor = mySearchParamExtractorProvider.getObject();
+				SubscriptionCriteriaIndex index = mySubscriptionRegistry.getNonTopicSubscriptionCriteriaIndex();
+				return index.getCandidates(
+						resourceType,
+						(paramName, paramType) -> extractIndexedValues(
+								searchParamRegistry,
+								searchParamExtractor,
+								payload,
+								resourceType,
+								paramName,
+								paramType));
+			}
+		}
+		return mySubscriptionRegistry.getAllNonTopicSubscriptions();
+	}
+
+	@Nullable
+	private static Collection<String> extractIndexedValues(
+			ISearchParamRegistry theSearchParamRegistry,
+			ISearchParamExtractor theSearchParamExtractor,
+			IBaseResource theResource,
+			String theResourceType,
+			String theParamName,
+			RestSearchParameterTypeEnum theParamType) {
+		RuntimeSearchParam searchParam = theSearchParamRegistry.getActiveSearchParam(theResourceType, theParamName);
+		if (searchParam == null || searchParam.getParamType() != theParamType) {
+			return null;
+		}
+
+		if (theParamType == RestSearchParameterTypeEnum.REFERENCE) {
+			return theSearchParamExtractor.extractParamValuesAsStrings(searchParam, theResource);
+		}
+
+		List<String> retVal = new ArrayList<>();
+		for (BaseResourceIndexedSearchParam next :
+				theSearchParamExtractor.extractSearchParamTokens(theResource, searchParam)) {
+			if (next instanceof ResourceIndexedSearchParamToken) {
+				retVal.add(((ResourceIndexedSearchParamToken) next).getValue());
+			}
+		}
+		return retVal;
+	}
+
 	/**
 	 * Returns true if subscription matched, and processing completed successfully, and the message was sent to the delivery channel. False otherwise.
 	 *
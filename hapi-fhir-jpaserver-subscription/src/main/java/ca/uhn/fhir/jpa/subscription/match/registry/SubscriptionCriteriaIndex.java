@@ -0,0 +1,317 @@
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.match.registry;
+
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.subscription.match.matcher.subscriber.SubscriptionCriteriaParser;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import ca.uhn.fhir.util.UrlUtil;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * An immutable index over the criteria of a set of active (non-topic) subscriptions, which
+ * is used to find the subscriptions that could possibly match a given resource without
+ * testing every subscription.
+ * <p>
+ * Subscriptions whose criteria is a search expression for a single resource type, with at least
+ * one equality parameter of type <code>reference</code> or <code>token</code> (e.g.
+ * <code>Observation?patient=Patient/123</code> or <code>Observation?code=http://loinc.org|1234-5</code>),
+ * are indexed by the resource type, the parameter name and the ID part of the reference or the
+ * token code. All other subscriptions are always returned as candidates for their resource type
+ * (or for every resource type, if they apply to several types).
+ * </p>
+ * <p>
+ * The candidates are a superset of the subscriptions that match: for example, the system of a token
+ * and the type of a reference are not indexed, and keys are compared case-insensitively. The
+ * candidates therefore still need to be tested by the subscription matcher.
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public class SubscriptionCriteriaIndex {
+
+	private static final Pattern ID_PART_PATTERN = Pattern.compile("[a-zA-Z0-9\\-.]{1,64}");
+
+	private final List<ActiveSubscription> mySubscriptions;
+	private final Map<String, Map<IndexedParam, ListMultimap<String, Integer>>> myIndexedSubscriptions =
+			new HashMap<>();
+	private final ListMultimap<String, Integer> myUnindexedSubscriptionsByResourceType = ArrayListMultimap.create();
+	private final List<Integer> myUnindexedSubscriptionsForAllResourceTypes = new ArrayList<>();
+	private final int myIndexedCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theSubscriptions The subscriptions to index. When more than one subscription is a candidate
+	 *                         for a resource, the candidates are returned in the same order as this list.
+	 */
+	public SubscriptionCriteriaIndex(
+			@Nonnull List<ActiveSubscription> theSubscriptions, @Nonnull ISearchParamRegistry theSearchParamRegistry) {
+		mySubscriptions = Collections.unmodifiableList(new ArrayList<>(theSubscriptions));
+
+		int indexedCount = 0;
+		for (int i = 0; i < mySubscriptions.size(); i++) {
+			ActiveSubscription next = mySubscriptions.get(i);
+			SubscriptionCriteriaParser.SubscriptionCriteria criteria = next.getCriteria();
+			if (criteria == null
+					|| criteria.getType() != SubscriptionCriteriaParser.TypeEnum.SEARCH_EXPRESSION
+					|| criteria.getApplicableResourceTypes().size() != 1) {
+				myUnindexedSubscriptionsForAllResourceTypes.add(i);
+				continue;
+			}
+
+			String resourceType =
+					criteria.getApplicableResourceTypes().iterator().next();
+			if (indexSubscription(i, resourceType, criteria.getCriteria(), theSearchParamRegistry)) {
+				indexedCount++;
+			} else {
+				myUnindexedSubscriptionsByResourceType.put(resourceType, i);
+			}
+		}
+		myIndexedCount = indexedCount;
+	}
+
+	private boolean indexSubscription(
+			int theOrdinal, String theResourceType, String theCriteria, ISearchParamRegistry theSearchParamRegistry) {
+		int questionMarkIdx = theCriteria.indexOf('?');
+		if (questionMarkIdx == -1) {
+			return false;
+		}
+
+		IndexedParam bestParam = null;
+		List<String> bestKeys = null;
+
+		// Sorted so that the choice of parameter is deterministic
+		Map<String, String[]> parameters =
+				new TreeMap<>(UrlUtil.parseQueryString(theCriteria.substring(questionMarkIdx + 1)));
+		for (Map.Entry<String, String[]> nextEntry : parameters.entrySet()) {
+			String paramName = nextEntry.getKey();
+			if (isBlank(paramName) || StringUtils.containsAny(paramName, '_', ':', '.')) {
+				continue;
+			}
+
+			RuntimeSearchParam searchParam = theSearchParamRegistry.getActiveSearchParam(theResourceType, paramName);
+			if (searchParam == null) {
+				continue;
+			}
+			RestSearchParameterTypeEnum paramType = searchParam.getParamType();
+			if (paramType != RestSearchParameterTypeEnum.REFERENCE && paramType != RestSearchParameterTypeEnum.TOKEN) {
+				continue;
+			}
+
+			// Each repetition of the parameter is ANDed, so any one of them can be indexed
+			for (String nextValue : nextEntry.getValue()) {
+				List<String> keys = toCriteriaKeys(paramType, nextValue);
+				if (keys != null && (bestKeys == null || keys.size() < bestKeys.size())) {
+					bestParam = new IndexedParam(paramName, paramType);
+					bestKeys = keys;
+				}
+			}
+		}
+
+		if (bestParam == null) {
+			return false;
+		}
+
+		ListMultimap<String, Integer> keyToSubscriptions = myIndexedSubscriptions
+				.computeIfAbsent(theResourceType, t -> new HashMap<>())
+				.computeIfAbsent(bestParam, t -> ArrayListMultimap.create());
+		for (String nextKey : bestKeys) {
+			keyToSubscriptions.put(nextKey, theOrdinal);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the index keys for a single (possibly comma separated) criteria value,
+	 * or <code>null</code> if the value can't be indexed.
+	 */
+	@Nullable
+	private static List<String> toCriteriaKeys(RestSearchParameterTypeEnum theParamType, String theValue) {
+		if (isBlank(theValue) || theValue.indexOf('\\') != -1) {
+			return null;
+		}
+
+		List<String> retVal = new ArrayList<>();
+		for (String nextValue : StringUtils.split(theValue, ',')) {
+			String key;
+			if (theParamType == RestSearchParameterTypeEnum.TOKEN) {
+				int pipeIdx = nextValue.indexOf('|');
+				key = toKey(pipeIdx == -1 ? nextValue : nextValue.substring(pipeIdx + 1));
+			} else {
+				key = toReferenceKey(nextValue);
+			}
+			if (key == null) {
+				return null;
+			}
+			retVal.add(key);
+		}
+		return retVal.isEmpty() ? null : retVal;
+	}
+
+	@Nullable
+	private static String toReferenceKey(String theValue) {
+		if (isBlank(theValue) || StringUtils.containsAny(theValue, '|', '#', '?') || theValue.contains("/_history")) {
+			return null;
+		}
+		String idPart = theValue.substring(theValue.lastIndexOf('/') + 1);
+		if (!ID_PART_PATTERN.matcher(idPart).matches()) {
+			return null;
+		}
+		return toKey(idPart);
+	}
+
+	/**
+	 * Folds the case of the given value the same way as {@link String#equalsIgnoreCase(String)},
+	 * which is how token values are compared by the in-memory matcher.
+	 */
+	@Nullable
+	private static String toKey(String theValue) {
+		if (isBlank(theValue)) {
+			return null;
+		}
+		char[] chars = theValue.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Returns all of the subscriptions in this index
+	 */
+	public List<ActiveSubscription> getAll() {
+		return mySubscriptions;
+	}
+
+	/**
+	 * Returns the number of subscriptions which are indexed by one of their criteria parameters
+	 */
+	public int getIndexedCount() {
+		return myIndexedCount;
+	}
+
+	/**
+	 * Returns the subscriptions which could match a resource of the given type. The values of any
+	 * indexed parameters are requested from the given extractor.
+	 */
+	public List<ActiveSubscription> getCandidates(
+			@Nonnull String theResourceType, @Nonnull IResourceValueExtractor theValueExtractor) {
+		BitSet candidates = new BitSet(mySubscriptions.size());
+		myUnindexedSubscriptionsForAllResourceTypes.forEach(candidates::set);
+		myUnindexedSubscriptionsByResourceType.get(theResourceType).forEach(candidates::set);
+
+		Map<IndexedParam, ListMultimap<String, Integer>> indexedParams =
+				myIndexedSubscriptions.getOrDefault(theResourceType, Collections.emptyMap());
+		for (Map.Entry<IndexedParam, ListMultimap<String, Integer>> nextEntry : indexedParams.entrySet()) {
+			IndexedParam param = nextEntry.getKey();
+			ListMultimap<String, Integer> keyToSubscriptions = nextEntry.getValue();
+
+			Collection<String> values = theValueExtractor.extractValues(param.myName, param.myType);
+			if (values == null) {
+				keyToSubscriptions.values().forEach(candidates::set);
+				continue;
+			}
+
+			for (String nextValue : values) {
+				String key = param.myType == RestSearchParameterTypeEnum.TOKEN
+						? toKey(nextValue)
+						: toReferenceKey(nextValue);
+				if (key == null) {
+					if (isBlank(nextValue)) {
+						continue;
+					}
+					// We can't tell which subscriptions this value would match, so test them all
+					keyToSubscriptions.values().forEach(candidates::set);
+					break;
+				}
+				keyToSubscriptions.get(key).forEach(candidates::set);
+			}
+		}
+
+		List<ActiveSubscription> retVal = new ArrayList<>(candidates.cardinality());
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+			retVal.add(mySubscriptions.get(i));
+		}
+		return retVal;
+	}
+
+	/**
+	 * Supplies the values of a search parameter in the resource being matched
+	 */
+	@FunctionalInterface
+	public interface IResourceValueExtractor {
+
+		/**
+		 * Returns the values of the given search parameter in the resource being matched. For
+		 * <code>reference</code> parameters these are the referenced resource IDs (e.g. <code>Patient/123</code>)
+		 * and for <code>token</code> parameters they are the codes, without the system.
+		 *
+		 * @return The values, or <code>null</code> if they can't be determined (in which case every
+		 * 		subscription indexed by the parameter is treated as a candidate)
+		 */
+		@Nullable
+		Collection<String> extractValues(String theParamName, RestSearchParameterTypeEnum theParamType);
+	}
+
+	private static class IndexedParam {
+		private final String myName;
+		private final RestSearchParameterTypeEnum myType;
+
+		private IndexedParam(String theName, RestSearchParameterTypeEnum theType) {
+			myName = theName;
+			myType = theType;
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+			if (!(theO instanceof IndexedParam)) {
+				return false;
+			}
+			IndexedParam that = (IndexedParam) theO;
+			return myName.equals(that.myName) && myType == that.myType;
+		}
+
+		@Override
+		public int hashCode() {
+			return myName.hashCode() * 31 + myType.hashCode();
+		}
+	}
+}
@@ -26,6 +26,7 @@ import ca.uhn.fhir.jpa.subscription.channel.subscription.ISubscriptionDeliveryCh
 import ca.uhn.fhir.jpa.subscription.channel.subscription.SubscriptionChannelRegistry;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ChannelRetryConfiguration;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
 import ca.uhn.fhir.util.HapiExtensions;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -33,6 +34,7 @@ import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Collection;
@@ -62,6 +64,11 @@ public class SubscriptionRegistry {
 	@Autowired
 	private IInterceptorBroadcaster myInterceptorBroadcaster;
 
+	@Autowired
+	private ObjectProvider<ISearchParamRegistry> mySearchParamRegistryProvider;
+
+	private SubscriptionCriteriaIndex myNonTopicSubscriptionCriteriaIndex;
+
 	/**
 	 * Constructor
 	 */
@@ -132,6 +139,7 @@ public class SubscriptionRegistry {
 		// add to our registries
 		mySubscriptionChannelRegistry.add(activeSubscription);
 		myActiveSubscriptionCache.put(subscriptionId, activeSubscription);
+		myNonTopicSubscriptionCriteriaIndex = null;
 
 		ourLog.info(
 				"Registered active subscription Subscription/{} - Have {} registered",
@@ -149,6 +157,7 @@ public class SubscriptionRegistry {
 		ActiveSubscription activeSubscription = myActiveSubscriptionCache.remove(theSubscriptionId);
 		if (activeSubscription != null) {
 			mySubscriptionChannelRegistry.remove(activeSubscription);
+			myNonTopicSubscriptionCriteriaIndex = null;
 			ourLog.info(
 					"Unregistered active subscription {} - Have {} registered",
 					theSubscriptionId,
@@ -214,6 +223,7 @@ public class SubscriptionRegistry {
 		Validate.notNull(activeSubscription);
 		CanonicalSubscription canonicalized = mySubscriptionCanonicalizer.canonicalize(theSubscription);
 		activeSubscription.setSubscription(canonicalized);
+		myNonTopicSubscriptionCriteriaIndex = null;
 
 		// Interceptor call: SUBSCRIPTION_AFTER_ACTIVE_SUBSCRIPTION_REGISTERED
 		HookParams params = new HookParams().add(CanonicalSubscription.class, canonicalized);
@@ -232,4 +242,24 @@ public class SubscriptionRegistry {
 	public synchronized List<ActiveSubscription> getAllNonTopicSubscriptions() {
 		return myActiveSubscriptionCache.getAllNonTopicSubscriptions();
 	}
+
+	/**
+	 * Returns an index over the criteria of all non-topic subscriptions, which can be used to
+	 * find the subscriptions that could match a given resource. The index is built the first time
+	 * it is requested after the registered subscriptions change, and is not modified after that.
+	 * The search parameter registry is only looked up when this method is first called.
+	 *
+	 * @since 7.0.0
+	 */
+	public synchronized SubscriptionCriteriaIndex getNonTopicSubscriptionCriteriaIndex() {
+		if (myNonTopicSubscriptionCriteriaIndex == null) {
+			myNonTopicSubscriptionCriteriaIndex = new SubscriptionCriteriaIndex(
+					getAllNonTopicSubscriptions(), mySearchParamRegistryProvider.getObject());
+			ourLog.debug(
+					"Indexed {} of {} non-topic subscriptions by criteria",
+					myNonTopicSubscriptionCriteriaIndex.getIndexedCount(),
+					myNonTopicSubscriptionCriteriaIndex.getAll().size());
+		}
+		return myNonTopicSubscriptionCriteriaIndex;
+	}
 }
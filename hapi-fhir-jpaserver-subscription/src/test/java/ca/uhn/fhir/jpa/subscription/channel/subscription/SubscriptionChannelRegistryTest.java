@@ -12,6 +12,8 @@ import ca.uhn.fhir.jpa.subscription.model.ChannelRetryConfiguration;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -99,6 +101,32 @@ public class SubscriptionChannelRegistryTest {
 		verifySettingsHaveRetryConfig(producerCaptor.getValue(), retryCount);
 	}
 
+	@ParameterizedTest
+	@CsvSource({
+		"0,   2",
+		"10,  20",
+		"100, 50"
+	})
+	public void add_batchedRestHookSubscription_scalesConsumersWithBatchSize(int theBatchMaxSize, int theExpectedConsumers) {
+		ActiveSubscription activeSubscription = createActiveSubscription("test", 5);
+		activeSubscription.getSubscription().getRestHookDetails().setBatchMaxSize(theBatchMaxSize);
+
+		when(mySubscriptionChannelFactory.newDeliveryReceivingChannel(anyString(), any(ChannelConsumerSettings.class)))
+			.thenReturn(mock(IChannelReceiver.class));
+		when(mySubscriptionChannelFactory.newDeliverySendingChannel(anyString(), any(ChannelProducerSettings.class)))
+			.thenReturn(mock(IChannelProducer.class));
+
+		mySubscriptionChannelRegistry.add(activeSubscription);
+
+		ArgumentCaptor<ChannelConsumerSettings> consumerCaptor = ArgumentCaptor.forClass(ChannelConsumerSettings.class);
+		verify(mySubscriptionChannelFactory).newDeliveryReceivingChannel(anyString(), consumerCaptor.capture());
+		Assertions.assertEquals(theExpectedConsumers, consumerCaptor.getValue().getConcurrentConsumers());
+
+		ArgumentCaptor<ChannelProducerSettings> producerCaptor = ArgumentCaptor.forClass(ChannelProducerSettings.class);
+		verify(mySubscriptionChannelFactory).newDeliverySendingChannel(anyString(), producerCaptor.capture());
+		Assertions.assertEquals(theExpectedConsumers, producerCaptor.getValue().getConcurrentConsumers());
+	}
+
 	/**
 	 * Verifies the retry configs for the channel
 	 * @param theSettings
@@ -13,6 +13,7 @@ import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
 import ca.uhn.fhir.jpa.subscription.match.deliver.message.SubscriptionDeliveringMessageSubscriber;
+import ca.uhn.fhir.jpa.subscription.match.deliver.resthook.RestHookDeliveryBatcher;
 import ca.uhn.fhir.jpa.subscription.match.deliver.resthook.SubscriptionDeliveringRestHookSubscriber;
 import ca.uhn.fhir.jpa.subscription.match.registry.SubscriptionRegistry;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
@@ -24,9 +25,12 @@ import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import ca.uhn.fhir.rest.client.api.IRestfulClientFactory;
+import ca.uhn.fhir.rest.gclient.ITransaction;
+import ca.uhn.fhir.rest.gclient.ITransactionTyped;
 import ca.uhn.fhir.rest.server.SimpleBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.Patient;
@@ -47,20 +51,30 @@ import org.springframework.messaging.support.GenericMessage;
 import javax.annotation.Nonnull;
 import java.net.URISyntaxException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -147,6 +161,135 @@ public class BaseSubscriptionDeliverySubscriberTest {
 		verify(myGenericClient, times(1)).update();
 	}
 
+	@Test
+	public void testRestHookDeliveryWithBatchingEnabled() {
+		when(myInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
+		mySubscriber.setDeliveryBatcherForUnitTest(new RestHookDeliveryBatcher());
+
+		CanonicalSubscription subscription = generateSubscription();
+		subscription.getRestHookDetails().setBatchMaxSize(10);
+		subscription.getRestHookDetails().setBatchWindowMillis(1);
+
+		ResourceDeliveryMessage payload = new ResourceDeliveryMessage();
+		payload.setSubscription(subscription);
+		payload.setPayload(myCtx, generatePatient().setId("Patient/1"), EncodingEnum.JSON);
+		payload.setOperationType(ResourceModifiedMessage.OperationTypeEnum.CREATE);
+
+		mySubscriber.handleMessage(new ResourceDeliveryJsonMessage(payload));
+
+		// A batch containing a single delivery is sent as a normal update
+		verify(myGenericClient, times(1)).update();
+		verify(myGenericClient, times(0)).transaction();
+	}
+
+	@Test
+	public void testRestHookDeliveryWithBatchingEnabled_MultipleDeliveries() throws Exception {
+		when(myInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
+		mySubscriber.setDeliveryBatcherForUnitTest(new RestHookDeliveryBatcher());
+
+		// The endpoint rejects the entry for Patient/2 only
+		List<Bundle> sentBundles = new ArrayList<>();
+		mockBatchTransaction(sentBundles, request -> {
+			Bundle response = new Bundle();
+			response.setType(Bundle.BundleType.BATCHRESPONSE);
+			for (Bundle.BundleEntryComponent next : request.getEntry()) {
+				boolean reject = next.getRequest().getUrl().startsWith("Patient/2");
+				response.addEntry().getResponse().setStatus(reject ? "400 Bad Request" : "200 OK");
+			}
+			return response;
+		});
+
+		List<Future<?>> futures = deliverInOneBatch(List.of(
+			newDeliveryMessage(ResourceModifiedMessage.OperationTypeEnum.CREATE, "Patient/1"),
+			newDeliveryMessage(ResourceModifiedMessage.OperationTypeEnum.UPDATE, "Patient/2"),
+			newDeliveryMessage(ResourceModifiedMessage.OperationTypeEnum.DELETE, "Patient/3")));
+
+		// Only the thread which delivered Patient/2 sees the failure
+		futures.get(0).get();
+		ExecutionException e = assertThrows(ExecutionException.class, () -> futures.get(1).get());
+		assertThat(e.getCause(), instanceOf(MessagingException.class));
+		assertThat(e.getCause().getMessage(), containsString(Msg.code(2461) + "Failed to deliver Patient/2 in batch, response status: 400 Bad Request"));
+		futures.get(2).get();
+
+		verify(myGenericClient, times(0)).update();
+		verify(myGenericClient, times(0)).delete();
+		assertThat(sentBundles, hasSize(1));
+		Bundle sent = sentBundles.get(0);
+		assertEquals(Bundle.BundleType.BATCH, sent.getType());
+		assertThat(sent.getEntry(), hasSize(3));
+		for (Bundle.BundleEntryComponent next : sent.getEntry()) {
+			if (next.getRequest().getUrl().startsWith("Patient/3")) {
+				assertEquals(Bundle.HTTPVerb.DELETE, next.getRequest().getMethod());
+				assertNull(next.getResource());
+			} else {
+				assertEquals(Bundle.HTTPVerb.PUT, next.getRequest().getMethod());
+				assertEquals(next.getRequest().getUrl(), next.getResource().getIdElement().toUnqualifiedVersionless().getValue());
+			}
+		}
+	}
+
+	@Test
+	public void testRestHookDeliveryWithBatchingEnabled_UnexpectedResponseEntryCount() throws Exception {
+		when(myInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
+		mySubscriber.setDeliveryBatcherForUnitTest(new RestHookDeliveryBatcher());
+
+		mockBatchTransaction(new ArrayList<>(), request -> {
+			Bundle response = new Bundle();
+			response.setType(Bundle.BundleType.BATCHRESPONSE);
+			response.addEntry().getResponse().setStatus("200 OK");
+			return response;
+		});
+
+		List<Future<?>> futures = deliverInOneBatch(List.of(
+			newDeliveryMessage(ResourceModifiedMessage.OperationTypeEnum.CREATE, "Patient/1"),
+			newDeliveryMessage(ResourceModifiedMessage.OperationTypeEnum.CREATE, "Patient/2")));
+
+		// The response can't be matched up with the deliveries, so they all fail
+		for (Future<?> next : futures) {
+			ExecutionException e = assertThrows(ExecutionException.class, next::get);
+			assertThat(e.getCause().getMessage(), containsString(Msg.code(2460) + "Expected 2 entries in batch response, found 1"));
+		}
+	}
+
+	/**
+	 * Delivers each message on its own thread, using a batch size equal to the number of
+	 * messages and a long batch window so that they are all sent in the same batch
+	 */
+	private List<Future<?>> deliverInOneBatch(List<ResourceDeliveryMessage> theMessages) {
+		ExecutorService executor = Executors.newFixedThreadPool(theMessages.size());
+		try {
+			List<Future<?>> retVal = new ArrayList<>();
+			for (ResourceDeliveryMessage next : theMessages) {
+				next.getSubscription().getRestHookDetails().setBatchMaxSize(theMessages.size());
+				next.getSubscription().getRestHookDetails().setBatchWindowMillis(60000);
+				retVal.add(executor.submit(() -> mySubscriber.handleMessage(new ResourceDeliveryJsonMessage(next))));
+			}
+			return retVal;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void mockBatchTransaction(List<Bundle> theSentBundles, Function<Bundle, Bundle> theResponseFunction) {
+		ITransaction transaction = mock(ITransaction.class);
+		ITransactionTyped<IBaseBundle> transactionTyped = mock(ITransactionTyped.class);
+		when(myGenericClient.transaction()).thenReturn(transaction);
+		when(transaction.withBundle(any(IBaseBundle.class))).thenAnswer(t -> {
+			theSentBundles.add(t.getArgument(0));
+			return transactionTyped;
+		});
+		when(transactionTyped.execute()).thenAnswer(t -> theResponseFunction.apply(theSentBundles.get(theSentBundles.size() - 1)));
+	}
+
+	private ResourceDeliveryMessage newDeliveryMessage(ResourceModifiedMessage.OperationTypeEnum theOperationType, String theId) {
+		ResourceDeliveryMessage retVal = new ResourceDeliveryMessage();
+		retVal.setSubscription(generateSubscription());
+		retVal.setPayload(myCtx, generatePatient().setId(theId), EncodingEnum.JSON);
+		retVal.setOperationType(theOperationType);
+		return retVal;
+	}
+
 	@Test
 	public void testRestHookDeliveryFails_ShouldRollBack() {
 		when(myInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
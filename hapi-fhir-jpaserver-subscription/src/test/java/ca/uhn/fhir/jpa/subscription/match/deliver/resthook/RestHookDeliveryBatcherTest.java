@@ -0,0 +1,117 @@
+package ca.uhn.fhir.jpa.subscription.match.deliver.resthook;
+
+import ca.uhn.fhir.jpa.subscription.model.ResourceDeliveryMessage;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.hl7.fhir.r4.model.IdType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RestHookDeliveryBatcherTest {
+
+	private final RestHookDeliveryBatcher myBatcher = new RestHookDeliveryBatcher();
+	private final ExecutorService myExecutor = Executors.newFixedThreadPool(10);
+	private final List<List<String>> mySentBatches = Collections.synchronizedList(new ArrayList<>());
+
+	@AfterEach
+	public void after() {
+		myExecutor.shutdownNow();
+	}
+
+	@Test
+	public void testConcurrentDeliveriesAreCombined() throws Exception {
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			futures.add(deliverAsync("Patient/" + i, 5, 10000, this::recordBatch));
+		}
+		for (Future<?> next : futures) {
+			next.get();
+		}
+
+		// The batch is full after 5 deliveries, so it is sent without waiting for the window to expire
+		assertThat(mySentBatches, hasSize(1));
+		assertThat(mySentBatches.get(0), containsInAnyOrder("Patient/0", "Patient/1", "Patient/2", "Patient/3", "Patient/4"));
+	}
+
+	@Test
+	public void testDeliveriesForSameResourceAreNotCombined() throws Exception {
+		Future<?> first = deliverAsync("Patient/1", 10, 10000, this::recordBatch);
+		waitForOpenBatch();
+		Future<?> second = deliverAsync("Patient/1/_history/2", 10, 10000, this::recordBatch);
+		first.get();
+
+		myBatcher.deliver("http://foo", 2, 10000, newDelivery("Patient/2"), this::recordBatch);
+		second.get();
+
+		assertEquals(List.of("Patient/1"), mySentBatches.get(0));
+		assertThat(mySentBatches.get(1), containsInAnyOrder("Patient/1/_history/2", "Patient/2"));
+	}
+
+	@Test
+	public void testFailuresAreReportedPerDelivery() throws Exception {
+		RestHookDeliveryBatcher.IBatchSender sender = deliveries -> {
+			recordBatch(deliveries);
+			for (RestHookDeliveryBatcher.Delivery next : deliveries) {
+				if (next.getMessage().getPayloadId().equals("Patient/1")) {
+					next.failed(new InternalErrorException("FAILED"));
+				}
+			}
+		};
+
+		Future<?> first = deliverAsync("Patient/0", 3, 10000, sender);
+		Future<?> second = deliverAsync("Patient/1", 3, 10000, sender);
+		Future<?> third = deliverAsync("Patient/2", 3, 10000, sender);
+
+		first.get();
+		third.get();
+		ExecutionException e = assertThrows(ExecutionException.class, second::get);
+		assertInstanceOf(InternalErrorException.class, e.getCause());
+		assertEquals("FAILED", e.getCause().getMessage());
+		assertThat(mySentBatches, hasSize(1));
+	}
+
+	@Test
+	public void testSenderExceptionFailsWholeBatch() {
+		RestHookDeliveryBatcher.IBatchSender sender = deliveries -> {
+			throw new InternalErrorException("FAILED");
+		};
+
+		InternalErrorException e = assertThrows(InternalErrorException.class, () -> myBatcher.deliver("http://foo", 10, 1, newDelivery("Patient/1"), sender));
+		assertEquals("FAILED", e.getMessage());
+	}
+
+	private Future<?> deliverAsync(String thePayloadId, int theMaxSize, long theWindowMillis, RestHookDeliveryBatcher.IBatchSender theSender) {
+		return myExecutor.submit(() -> myBatcher.deliver("http://foo", theMaxSize, theWindowMillis, newDelivery(thePayloadId), theSender));
+	}
+
+	private void waitForOpenBatch() throws InterruptedException {
+		// The first delivery is waiting for the window to expire, so a sent batch would mean it has already gone
+		Thread.sleep(200);
+		assertThat(mySentBatches, hasSize(0));
+	}
+
+	private void recordBatch(List<RestHookDeliveryBatcher.Delivery> theDeliveries) {
+		mySentBatches.add(theDeliveries.stream().map(t -> t.getMessage().getPayloadId()).collect(Collectors.toList()));
+	}
+
+	private static RestHookDeliveryBatcher.Delivery newDelivery(String thePayloadId) {
+		ResourceDeliveryMessage message = new ResourceDeliveryMessage();
+		message.setPayloadId(new IdType(thePayloadId));
+		return new RestHookDeliveryBatcher.Delivery(message, null);
+	}
+}
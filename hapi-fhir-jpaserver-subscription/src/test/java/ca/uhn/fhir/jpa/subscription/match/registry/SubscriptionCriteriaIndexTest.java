@@ -0,0 +1,94 @@
+package ca.uhn.fhir.jpa.subscription.match.registry;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.server.util.FhirContextSearchParamRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SubscriptionCriteriaIndexTest {
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private final FhirContextSearchParamRegistry mySearchParamRegistry = new FhirContextSearchParamRegistry(ourCtx);
+
+	@Test
+	public void testCandidatesByReference() {
+		SubscriptionCriteriaIndex index = buildIndex(
+			"Observation?patient=Patient/123",
+			"Observation?subject=456&date=gt2020",
+			"Observation?patient=Patient/123,Patient/789",
+			"Observation?date=gt2020",
+			"Patient?_id=123");
+		assertEquals(3, index.getIndexedCount());
+
+		assertThat(getCandidates(index, "Observation", Map.of("patient", List.of("Patient/123"), "subject", List.of("Patient/123"))), contains("0", "2", "3"));
+		assertThat(getCandidates(index, "Observation", Map.of("patient", List.of("Patient/456"), "subject", List.of("Patient/456"))), contains("1", "3"));
+		assertThat(getCandidates(index, "Observation", Map.of("patient", List.of("Patient/789"), "subject", List.of("Patient/789"))), contains("2", "3"));
+		assertThat(getCandidates(index, "Observation", Map.of()), contains("3"));
+		assertThat(getCandidates(index, "Patient", Map.of()), contains("4"));
+		assertThat(getCandidates(index, "Encounter", Map.of()), empty());
+	}
+
+	@Test
+	public void testCandidatesByToken() {
+		SubscriptionCriteriaIndex index = buildIndex(
+			"Observation?code=http://loinc.org|1234-5",
+			"Observation?code=1234-5",
+			"Observation?code=http://loinc.org|",
+			"Observation?code:not=1234-5",
+			"Observation?code=ABC");
+
+		// Codes are compared case-insensitively, and the system is ignored by the index
+		assertThat(getCandidates(index, "Observation", Map.of("code", List.of("1234-5"))), contains("0", "1", "2", "3"));
+		assertThat(getCandidates(index, "Observation", Map.of("code", List.of("abc"))), contains("2", "3", "4"));
+		assertThat(getCandidates(index, "Observation", Map.of("code", List.of("other"))), contains("2", "3"));
+	}
+
+	@Test
+	public void testUnknownValuesMatchAllIndexedSubscriptions() {
+		SubscriptionCriteriaIndex index = buildIndex(
+			"Observation?patient=Patient/123",
+			"Observation?patient=Patient/456",
+			"[*]",
+			"[Observation,Patient]");
+
+		// Values which can't be mapped to a key, or which can't be extracted at all
+		assertThat(getCandidates(index, "Observation", Map.of("patient", List.of("#contained"))), contains("0", "1", "2", "3"));
+		assertThat(getCandidates(index, "Observation", new HashMap<>()), contains("2", "3"));
+		assertThat(index.getCandidates("Observation", (name, type) -> null).stream().map(ActiveSubscription::getId).collect(Collectors.toList()), contains("0", "1", "2", "3"));
+	}
+
+	private List<String> getCandidates(SubscriptionCriteriaIndex theIndex, String theResourceType, Map<String, List<String>> theValues) {
+		return theIndex.getCandidates(theResourceType, (name, type) -> extract(theValues, name, type))
+			.stream()
+			.map(ActiveSubscription::getId)
+			.collect(Collectors.toList());
+	}
+
+	private static Collection<String> extract(Map<String, List<String>> theValues, String theName, RestSearchParameterTypeEnum theType) {
+		return theValues.getOrDefault(theName, List.of());
+	}
+
+	private SubscriptionCriteriaIndex buildIndex(String... theCriteria) {
+		List<ActiveSubscription> subscriptions = new ArrayList<>();
+		for (int i = 0; i < theCriteria.length; i++) {
+			CanonicalSubscription subscription = new CanonicalSubscription();
+			subscription.setIdElement(new IdDt("Subscription/" + i));
+			subscription.setCriteriaString(theCriteria[i]);
+			subscriptions.add(new ActiveSubscription(subscription, null));
+		}
+		return new SubscriptionCriteriaIndex(subscriptions, mySearchParamRegistry);
+	}
+}
@@ -58,6 +58,7 @@ public class SubscriptionMatchingSubscriberTest extends BaseBlockingQueueSubscri
 	@AfterEach
 	public void afterEach() {
 		myStorageSettings.setCrossPartitionSubscriptionEnabled(new JpaStorageSettings().isCrossPartitionSubscriptionEnabled());
+		myStorageSettings.setSubscriptionCriteriaIndexEnabled(new JpaStorageSettings().isSubscriptionCriteriaIndexEnabled());
 	}
 
 	@Test
@@ -110,6 +111,33 @@ public class SubscriptionMatchingSubscriberTest extends BaseBlockingQueueSubscri
 		assertEquals(Constants.CT_FHIR_XML_NEW, ourContentTypes.get(0));
 	}
 
+	@Test
+	public void testRestHookSubscriptionWithCriteriaIndex() throws Exception {
+		myStorageSettings.setSubscriptionCriteriaIndexEnabled(true);
+		String payload = "application/fhir+json";
+
+		String code = "1000000050";
+		String criteria1 = "Observation?code=SNOMED-CT|" + code;
+		String criteria2 = "Observation?code=SNOMED-CT|" + code + "111";
+		String criteria3 = "Observation?status=final,corrected";
+
+		Subscription subscription1 = makeActiveSubscription(criteria1, payload, ourListenerServerBase);
+		sendSubscription(subscription1, null, false);
+		Subscription subscription2 = makeActiveSubscription(criteria2, payload, ourListenerServerBase);
+		sendSubscription(subscription2, null, false);
+		Subscription subscription3 = makeActiveSubscription(criteria3, payload, ourListenerServerBase);
+		sendSubscription(subscription3, null, false);
+
+		assertEquals(3, mySubscriptionRegistry.size());
+		assertEquals(3, mySubscriptionRegistry.getNonTopicSubscriptionCriteriaIndex().getIndexedCount());
+
+		ourObservationListener.setExpectedCount(2);
+		mySubscriptionResourceMatched.setExpectedCount(2);
+		sendObservation(code, "SNOMED-CT");
+		mySubscriptionResourceMatched.awaitExpected();
+		ourObservationListener.awaitExpected();
+	}
+
 	@Test
 	public void testRestHookSubscription_NoResourceTypeInPayloadId() throws Exception {
 		Observation observation = new Observation();
@@ -2,6 +2,8 @@ package ca.uhn.fhir.jpa.batch2;
 
 import ca.uhn.fhir.batch2.api.IJobPersistence;
 import ca.uhn.fhir.batch2.api.JobOperationResultJson;
+import ca.uhn.fhir.batch2.jobs.chunk.ResourceIdListWorkChunkJson;
+import ca.uhn.fhir.batch2.jobs.chunk.TypedPidJson;
 import ca.uhn.fhir.batch2.jobs.imprt.NdJsonFileJson;
 import ca.uhn.fhir.batch2.model.JobInstance;
 import ca.uhn.fhir.batch2.model.StatusEnum;
@@ -11,6 +13,9 @@ import ca.uhn.fhir.batch2.model.WorkChunkCreateEvent;
 import ca.uhn.fhir.batch2.model.WorkChunkErrorEvent;
 import ca.uhn.fhir.batch2.model.WorkChunkStatusEnum;
 import ca.uhn.fhir.batch2.models.JobInstanceFetchRequest;
+import ca.uhn.fhir.batch2.util.WorkChunkDataCodec;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.dao.data.IBatch2JobInstanceRepository;
 import ca.uhn.fhir.jpa.dao.data.IBatch2WorkChunkRepository;
 import ca.uhn.fhir.jpa.entity.Batch2JobInstanceEntity;
@@ -20,12 +25,14 @@ import ca.uhn.fhir.util.JsonUtil;
 import ca.uhn.hapi.fhir.batch2.test.AbstractIJobPersistenceSpecificationTest;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -75,6 +82,11 @@ public class JpaJobPersistenceImplTest extends BaseJpaR4Test {
 	@Autowired
 	private IBatch2JobInstanceRepository myJobInstanceRepository;
 
+	@AfterEach
+	public void after() {
+		myStorageSettings.setBatch2WorkChunkDataFormat(new JpaStorageSettings().getBatch2WorkChunkDataFormat());
+	}
+
 	@Test
 	public void testDeleteInstance() {
 		// Setup
@@ -365,6 +377,33 @@ public class JpaJobPersistenceImplTest extends BaseJpaR4Test {
 		assertNull(chunk.getData());
 	}
 
+	@ParameterizedTest
+	@EnumSource(JpaStorageSettings.Batch2WorkChunkDataFormatEnum.class)
+	public void testStoreAndFetchWorkChunk_DataFormat(JpaStorageSettings.Batch2WorkChunkDataFormatEnum theFormat) {
+		myStorageSettings.setBatch2WorkChunkDataFormat(theFormat);
+		JobInstance instance = createInstance();
+		String instanceId = mySvc.storeNewInstance(instance);
+
+		List<TypedPidJson> typedPids = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			typedPids.add(new TypedPidJson(i % 2 == 0 ? "Patient" : "Observation", Integer.toString(1000 + i)));
+		}
+		String data = JsonUtil.serialize(new ResourceIdListWorkChunkJson(typedPids, RequestPartitionId.allPartitions()), false);
+		String id = storeWorkChunk(JOB_DEFINITION_ID, TARGET_STEP_ID, instanceId, 0, data);
+
+		runInTransaction(() -> {
+			String storedData = myWorkChunkRepository.findById(id).orElseThrow().getSerializedData();
+			assertEquals(theFormat != JpaStorageSettings.Batch2WorkChunkDataFormatEnum.JSON, WorkChunkDataCodec.isCompact(storedData));
+		});
+
+		// Chunks are always returned as JSON, regardless of how they were stored
+		WorkChunk chunk = mySvc.onWorkChunkDequeue(id).orElseThrow(IllegalArgumentException::new);
+		ResourceIdListWorkChunkJson fetched = chunk.getData(ResourceIdListWorkChunkJson.class);
+		assertEquals(500, fetched.size());
+		assertEquals("Observation", fetched.getResourceType(499));
+		assertEquals(data, JsonUtil.serialize(fetched, false));
+	}
+
 	@Test
 	void testStoreAndFetchChunksForInstance_NoData() {
 	    // given
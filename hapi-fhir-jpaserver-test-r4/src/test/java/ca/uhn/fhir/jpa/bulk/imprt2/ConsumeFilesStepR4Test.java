@@ -1,7 +1,13 @@
 package ca.uhn.fhir.jpa.bulk.imprt2;
 
+import ca.uhn.fhir.batch2.api.IJobDataSink;
 import ca.uhn.fhir.batch2.api.JobExecutionFailedException;
+import ca.uhn.fhir.batch2.api.RunOutcome;
+import ca.uhn.fhir.batch2.api.StepExecutionDetails;
+import ca.uhn.fhir.batch2.jobs.imprt.BulkImportJobParameters;
 import ca.uhn.fhir.batch2.jobs.imprt.ConsumeFilesStep;
+import ca.uhn.fhir.batch2.jobs.imprt.NdJsonFileJson;
+import ca.uhn.fhir.batch2.model.JobInstance;
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.dao.r4.BasePartitioningR4Test;
@@ -28,6 +34,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
 
 @TestMethodOrder(MethodOrderer.MethodName.class)
 public class ConsumeFilesStepR4Test extends BasePartitioningR4Test {
@@ -49,6 +56,8 @@ public class ConsumeFilesStepR4Test extends BasePartitioningR4Test {
 	public void after() {
 		super.after();
 		myStorageSettings.setInlineResourceTextBelowSize(new JpaStorageSettings().getInlineResourceTextBelowSize());
+		myStorageSettings.setBulkImportCommitBatchSize(new JpaStorageSettings().getBulkImportCommitBatchSize());
+		myStorageSettings.setBulkImportThreadCount(new JpaStorageSettings().getBulkImportThreadCount());
 	}
 
 	@Test
@@ -206,6 +215,40 @@ public class ConsumeFilesStepR4Test extends BasePartitioningR4Test {
 
 	}
 
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	public void testRun_CommitInBatches(int theThreadCount) {
+		// Setup
+		myStorageSettings.setBulkImportCommitBatchSize(3);
+		myStorageSettings.setBulkImportThreadCount(theThreadCount);
+
+		StringBuilder ndjson = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/P" + i);
+			patient.setActive(true);
+			ndjson.append(myFhirContext.newJsonParser().encodeResourceToString(patient)).append("\n\n");
+		}
+		NdJsonFileJson data = new NdJsonFileJson();
+		data.setNdJsonText(ndjson.toString());
+		data.setSourceName("test");
+		StepExecutionDetails<BulkImportJobParameters, NdJsonFileJson> details = new StepExecutionDetails<>(new BulkImportJobParameters(), data, JobInstance.fromInstanceId("instance-id"), "chunk-id");
+
+		// Execute
+		myCaptureQueriesListener.clear();
+		RunOutcome outcome = mySvc.run(details, mock(IJobDataSink.class));
+
+		// Validate
+		assertEquals(10, outcome.getRecordsProcessed());
+		if (theThreadCount == 1) {
+			// One transaction per batch of 3 resources
+			assertEquals(4, myCaptureQueriesListener.countCommits());
+		}
+		for (int i = 0; i < 10; i++) {
+			assertTrue(myPatientDao.read(new IdType("Patient/P" + i), mySrd).getActive());
+		}
+	}
+
 	@Test
 	public void testNotAlreadyExisting_InvalidIdForStorage() {
 		// Setup
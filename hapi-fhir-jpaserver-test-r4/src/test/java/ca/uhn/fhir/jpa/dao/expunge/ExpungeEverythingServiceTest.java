@@ -1,11 +1,14 @@
 package ca.uhn.fhir.jpa.dao.expunge;
 
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.ParsedResourceCache;
 import ca.uhn.fhir.jpa.entity.PartitionEntity;
 import ca.uhn.fhir.jpa.partition.IPartitionLookupSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -19,6 +22,13 @@ class ExpungeEverythingServiceTest extends BaseJpaR4Test {
 	private ExpungeEverythingService myExpungeEverythingService;
 	@Autowired
 	private IPartitionLookupSvc myPartitionLookupSvc;
+	@Autowired
+	private ParsedResourceCache myParsedResourceCache;
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setParsedResourceCacheSize(new JpaStorageSettings().getParsedResourceCacheSize());
+	}
 
 	@Test
 	public void testExpungeEverythingInvalidatesPartitionCache() {
@@ -55,4 +65,16 @@ class ExpungeEverythingServiceTest extends BaseJpaR4Test {
 		}
 		assertDoesntExist(p1);
 	}
+
+	@Test
+	public void testExpungeEverythingInvalidatesParsedResourceCache() {
+		myStorageSettings.setParsedResourceCacheSize(100);
+		IIdType id = createPatient(withActiveTrue());
+		myPatientDao.read(id, mySrd);
+		assertEquals(1, myParsedResourceCache.getEstimatedSize());
+
+		myExpungeEverythingService.expungeEverything(mySrd);
+
+		assertEquals(0, myParsedResourceCache.getEstimatedSize());
+	}
 }
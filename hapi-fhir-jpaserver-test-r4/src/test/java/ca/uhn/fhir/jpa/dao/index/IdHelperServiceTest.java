@@ -7,6 +7,8 @@ import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.cross.IResourceLookup;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -30,8 +32,12 @@ import java.util.stream.Collectors;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -172,6 +178,29 @@ public class IdHelperServiceTest {
 		assertEquals(forcedIdView[3], result.getDeleted());
 	}
 
+	@Test
+	public void testResolveResourceIdentities_resolvesInBatch() {
+		RequestPartitionId partitionId = RequestPartitionId.allPartitions();
+
+		Object[] redView = new Object[] {"Patient", 123L, "RED", null};
+		Object[] blueView = new Object[] {"Patient", 456L, "BLUE", null};
+
+		when(myStorageSettings.isDeleteEnabled()).thenReturn(true);
+		when(myForcedIdDao.findAndResolveByForcedIdWithNoType(eq("Patient"), Mockito.anyList(), eq(true)))
+			.thenReturn(Arrays.asList(redView, blueView));
+
+		List<IIdType> ids = Arrays.asList(new IdType("Patient/RED"), new IdType("Patient/BLUE/_history/2"), new IdType("Patient/GREEN"));
+		Map<IIdType, IResourceLookup> result = myHelperService.resolveResourceIdentities(partitionId, ids, true);
+
+		// All IDs of the same type are resolved using a single query
+		verify(myForcedIdDao, times(1)).findAndResolveByForcedIdWithNoType(any(), any(), anyBoolean());
+		assertThat(result.keySet(), hasSize(2));
+		assertEquals(123L, result.get(new IdType("Patient/RED")).getPersistentId().getId());
+		assertEquals(456L, result.get(new IdType("Patient/BLUE")).getPersistentId().getId());
+		assertFalse(result.containsKey(new IdType("Patient/GREEN")));
+		verify(myMemoryCacheService, times(2)).putAfterCommit(eq(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID), any(), any());
+	}
+
 	@Test
 	public void testResolveResourcePersistentIds_mapDefaultFunctionality(){
 		RequestPartitionId partitionId = RequestPartitionId.fromPartitionIdAndName(1, "partition");
@@ -2,8 +2,10 @@ package ca.uhn.fhir.jpa.dao.r4;
 
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.search.PersistedJpaSearchFirstPageBundleProvider;
+import ca.uhn.fhir.jpa.search.builder.SearchBuilder;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.jpa.util.SqlQuery;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.DateParam;
@@ -11,6 +13,7 @@ import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ParamPrefixEnum;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.apache.commons.lang3.StringUtils;
 import org.hamcrest.Matcher;
 import org.hamcrest.Matchers;
 import org.hamcrest.collection.IsIterableContainingInAnyOrder;
@@ -21,16 +24,22 @@ import org.hl7.fhir.r4.model.Enumerations;
 import org.hl7.fhir.r4.model.EpisodeOfCare;
 import org.hl7.fhir.r4.model.Organization;
 import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
 import org.hl7.fhir.r4.model.Procedure;
+import org.hl7.fhir.r4.model.Questionnaire;
+import org.hl7.fhir.r4.model.QuestionnaireResponse;
 import org.hl7.fhir.r4.model.Reference;
 import org.hl7.fhir.r4.model.SearchParameter;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.Date;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -39,7 +48,9 @@ import java.util.stream.IntStream;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 @SuppressWarnings({"unchecked", "Duplicates"})
@@ -49,6 +60,124 @@ public class FhirResourceDaoR4SearchIncludeTest extends BaseJpaR4Test {
 	@AfterEach
 	public void afterEach() {
 		myStorageSettings.setMaximumIncludesToLoadPerPage(JpaStorageSettings.DEFAULT_MAXIMUM_INCLUDES_TO_LOAD_PER_PAGE);
+		myStorageSettings.setCombineIncludeQueries(new JpaStorageSettings().isCombineIncludeQueries());
+		myStorageSettings.setIncludeLoadingThreadCount(new JpaStorageSettings().getIncludeLoadingThreadCount());
+		SearchBuilder.setMaxPageSize50ForTest(false);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+		"false, 1",
+		"true,  1",
+		"false, 4",
+		"true,  4"
+	})
+	public void testIncludes_CombinedAndConcurrent(boolean theCombine, int theThreadCount) {
+		createQuestionnaireResponsesWithReferences(60);
+		myStorageSettings.setCombineIncludeQueries(theCombine);
+		myStorageSettings.setIncludeLoadingThreadCount(theThreadCount);
+		// Queries are only combined if there is no maximum
+		myStorageSettings.setMaximumIncludesToLoadPerPage(null);
+		// More resources than fit in a single partition, so several queries are needed per round
+		SearchBuilder.setMaxPageSize50ForTest(true);
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+			.addInclude(QuestionnaireResponse.INCLUDE_QUESTIONNAIRE)
+			.addInclude(new Include("QuestionnaireResponse:subject:Patient"))
+			.addInclude(new Include("QuestionnaireResponse:author:Practitioner"))
+			.addInclude(Patient.INCLUDE_ORGANIZATION.asRecursive())
+			.addInclude(Organization.INCLUDE_PARTOF.asRecursive());
+		myCaptureQueriesListener.clear();
+		List<String> ids = toUnqualifiedVersionlessIdValues(myQuestionnaireResponseDao.search(map, mySrd));
+
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 60; i++) {
+			expected.add("QuestionnaireResponse/QR-" + i);
+			expected.add("Patient/PAT-" + i);
+		}
+		// Q-1 is only referenced by canonical URL
+		expected.addAll(List.of("Questionnaire/Q-1", "Practitioner/PR-1", "Organization/ORG-0", "Organization/ORG-1", "Organization/ORG-2", "Organization/ORG-P"));
+		assertThat(ids, containsInAnyOrder(expected.toArray()));
+		assertIncludeQueriesWithinBindParameterLimit(theCombine);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+		"false, 1",
+		"true,  1",
+		"false, 4",
+		"true,  4"
+	})
+	public void testRevIncludes_CombinedAndConcurrent(boolean theCombine, int theThreadCount) {
+		createQuestionnaireResponsesWithReferences(60);
+		myStorageSettings.setCombineIncludeQueries(theCombine);
+		myStorageSettings.setIncludeLoadingThreadCount(theThreadCount);
+		// Queries are only combined if there is no maximum
+		myStorageSettings.setMaximumIncludesToLoadPerPage(null);
+		SearchBuilder.setMaxPageSize50ForTest(true);
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+			.add("_id", new TokenParam("ORG-P"))
+			.addRevInclude(Organization.INCLUDE_PARTOF.asRecursive())
+			.addRevInclude(Patient.INCLUDE_ORGANIZATION.asRecursive())
+			.addRevInclude(new Include("QuestionnaireResponse:subject:Patient", true));
+		myCaptureQueriesListener.clear();
+		List<String> ids = toUnqualifiedVersionlessIdValues(myOrganizationDao.search(map, mySrd));
+
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 60; i++) {
+			expected.add("QuestionnaireResponse/QR-" + i);
+			expected.add("Patient/PAT-" + i);
+		}
+		expected.addAll(List.of("Organization/ORG-0", "Organization/ORG-1", "Organization/ORG-2", "Organization/ORG-P"));
+		assertThat(ids, containsInAnyOrder(expected.toArray()));
+		assertIncludeQueriesWithinBindParameterLimit(theCombine);
+	}
+
+	@Test
+	public void testIncludes_CombineWithMaximumIncludes() {
+		createQuestionnaireResponsesWithReferences(60);
+		myStorageSettings.setCombineIncludeQueries(true);
+		SearchBuilder.setMaxPageSize50ForTest(true);
+
+		SearchParameterMap map = SearchParameterMap.newSynchronous()
+			.addInclude(QuestionnaireResponse.INCLUDE_QUESTIONNAIRE)
+			.addInclude(new Include("QuestionnaireResponse:subject:Patient"))
+			.addInclude(new Include("QuestionnaireResponse:author:Practitioner"));
+		myCaptureQueriesListener.clear();
+		List<String> ids = toUnqualifiedVersionlessIdValues(myQuestionnaireResponseDao.search(map, mySrd));
+		assertEquals(122, ids.size(), ids.toString());
+
+		// The maximum applies per path, so the queries are not combined
+		List<SqlQuery> includeQueries = myCaptureQueriesListener.getSelectQueries()
+			.stream()
+			.filter(t -> StringUtils.containsIgnoreCase(t.getSql(false, false), "from hfj_res_link r"))
+			.collect(Collectors.toList());
+		assertThat(includeQueries.size(), Matchers.greaterThan(0));
+		for (SqlQuery next : includeQueries) {
+			assertEquals(1, StringUtils.countMatches(next.getSql(false, false).toUpperCase(), "UNION"), next.getSql(false, false));
+		}
+	}
+
+	/**
+	 * Combined queries repeat the list of PIDs once per sub-query, so they must use smaller
+	 * partitions in order to stay within the bind parameter limits of some databases
+	 */
+	private void assertIncludeQueriesWithinBindParameterLimit(boolean theCombine) {
+		myCaptureQueriesListener.logSelectQueries();
+		List<SqlQuery> includeQueries = myCaptureQueriesListener.getSelectQueries()
+			.stream()
+			.filter(t -> StringUtils.containsIgnoreCase(t.getSql(false, false), "from hfj_res_link r"))
+			.collect(Collectors.toList());
+		assertThat(includeQueries.size(), Matchers.greaterThan(0));
+		if (theCombine) {
+			// Uncombined queries have a single UNION between the local and canonical reference lookups
+			assertTrue(includeQueries.stream().anyMatch(t -> StringUtils.countMatches(t.getSql(false, false).toUpperCase(), "UNION") > 1));
+			for (SqlQuery next : includeQueries) {
+				int bindParameterCount = StringUtils.countMatches(next.getSql(false, false), '?');
+				assertThat(next.getSql(false, false), bindParameterCount, lessThanOrEqualTo(2 * SearchBuilder.getMaximumPageSize()));
+			}
+		}
 	}
 
 	@Test
@@ -259,6 +388,41 @@ public class FhirResourceDaoR4SearchIncludeTest extends BaseJpaR4Test {
 		}
 	}
 
+	private void createQuestionnaireResponsesWithReferences(int theCount) {
+		Organization org = new Organization();
+		org.setId("Organization/ORG-P");
+		myOrganizationDao.update(org, mySrd);
+		for (int i = 0; i < 3; i++) {
+			org = new Organization();
+			org.setId("Organization/ORG-" + i);
+			org.setPartOf(new Reference("Organization/ORG-P"));
+			myOrganizationDao.update(org, mySrd);
+		}
+
+		Practitioner practitioner = new Practitioner();
+		practitioner.setId("Practitioner/PR-1");
+		myPractitionerDao.update(practitioner, mySrd);
+
+		Questionnaire questionnaire = new Questionnaire();
+		questionnaire.setId("Questionnaire/Q-1");
+		questionnaire.setUrl("http://example.com/Questionnaire/q1");
+		myQuestionnaireDao.update(questionnaire, mySrd);
+
+		for (int i = 0; i < theCount; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/PAT-" + i);
+			patient.setManagingOrganization(new Reference("Organization/ORG-" + (i % 3)));
+			myPatientDao.update(patient, mySrd);
+
+			QuestionnaireResponse response = new QuestionnaireResponse();
+			response.setId("QuestionnaireResponse/QR-" + i);
+			response.setQuestionnaire(questionnaire.getUrl());
+			response.setSubject(new Reference("Patient/PAT-" + i));
+			response.setAuthor(new Reference("Practitioner/PR-1"));
+			myQuestionnaireResponseDao.update(response, mySrd);
+		}
+	}
+
 	private void createPatientWithReferencingCarePlan(int theCount) {
 		org.hl7.fhir.r4.model.Patient patient = new Patient();
 		patient.setId("Patient/PAT-1");
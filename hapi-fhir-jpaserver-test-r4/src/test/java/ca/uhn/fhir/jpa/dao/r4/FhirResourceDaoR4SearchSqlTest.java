@@ -1,10 +1,13 @@
 package ca.uhn.fhir.jpa.dao.r4;
 
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryTemplateCache;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.param.UriParam;
@@ -28,11 +31,15 @@ import java.util.stream.IntStream;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 public class FhirResourceDaoR4SearchSqlTest extends BaseJpaR4Test {
 
 	private static final Logger ourLog = LoggerFactory.getLogger(FhirResourceDaoR4SearchSqlTest.class);
 
+	@Autowired
+	private SearchQueryTemplateCache mySearchQueryTemplateCache;
+
 	@Override
 	@BeforeEach
 	public void before() throws Exception {
@@ -43,6 +50,10 @@ public class FhirResourceDaoR4SearchSqlTest extends BaseJpaR4Test {
 	@AfterEach
 	public void after() {
 		myStorageSettings.setTagStorageMode(JpaStorageSettings.DEFAULT_TAG_STORAGE_MODE);
+		myStorageSettings.setSearchSqlTemplateCacheSize(new JpaStorageSettings().getSearchSqlTemplateCacheSize());
+		myStorageSettings.setUseOrdinalDatesForDayPrecisionSearches(
+				new StorageSettings().getUseOrdinalDatesForDayPrecisionSearches());
+		mySearchQueryTemplateCache.invalidateAll();
 	}
 
 	/**
@@ -145,5 +156,32 @@ public class FhirResourceDaoR4SearchSqlTest extends BaseJpaR4Test {
 		myStorageSettings.setMarkResourcesForReindexingUponSearchParameterChange(reindexParamCache);
 	}
 
+	@Test
+	public void testSqlTemplateCache() {
+		myStorageSettings.setSearchSqlTemplateCacheSize(100);
+		mySearchQueryTemplateCache.invalidateAll();
+		long initialHits = mySearchQueryTemplateCache.getHitCount();
+
+		// Same shape, different values - The second search reuses the SQL
+		String sql1 = searchForSql(SearchParameterMap.newSynchronous(Patient.SP_BIRTHDATE, new DateParam("2020-01-01")));
+		String sql2 = searchForSql(SearchParameterMap.newSynchronous(Patient.SP_BIRTHDATE, new DateParam("2021-06-30")));
+		assertEquals(sql1, sql2);
+		assertThat(sql1, containsString("ORDINAL"));
+		assertEquals(initialHits + 1, mySearchQueryTemplateCache.getHitCount());
+
+		// Changing a setting which affects the SQL must not reuse the cached statement
+		myStorageSettings.setUseOrdinalDatesForDayPrecisionSearches(false);
+		String sql3 = searchForSql(SearchParameterMap.newSynchronous(Patient.SP_BIRTHDATE, new DateParam("2020-01-01")));
+		assertNotEquals(sql1, sql3);
+		assertEquals(initialHits + 1, mySearchQueryTemplateCache.getHitCount());
+	}
+
+	private String searchForSql(SearchParameterMap theMap) {
+		myCaptureQueriesListener.clear();
+		myPatientDao.search(theMap);
+		assertEquals(1, myCaptureQueriesListener.countSelectQueries());
+		return myCaptureQueriesListener.getSelectQueriesForCurrentThread().get(0).getSql(false, false);
+	}
+
 
 }
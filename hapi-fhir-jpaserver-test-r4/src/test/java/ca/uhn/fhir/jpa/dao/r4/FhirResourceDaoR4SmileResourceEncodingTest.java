@@ -0,0 +1,123 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FhirResourceDaoR4SmileResourceEncodingTest extends BaseJpaR4Test {
+
+	@BeforeEach
+	public void beforeSetDao() {
+		myStorageSettings.setResourceEncoding(ResourceEncodingEnum.SMILE);
+	}
+
+	@AfterEach
+	public void afterResetDao() {
+		myStorageSettings.setResourceEncoding(new JpaStorageSettings().getResourceEncoding());
+		myStorageSettings.setInlineResourceTextBelowSize(new JpaStorageSettings().getInlineResourceTextBelowSize());
+	}
+
+	@Test
+	public void testCreateAndUpdate() {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.addName().setFamily("Ångström");
+		Long resourceId = myPatientDao.create(patient).getId().getIdPartAsLong();
+
+		patient = new Patient();
+		patient.setId("Patient/" + resourceId);
+		patient.setActive(false);
+		patient.addName().setFamily("Ångström");
+		myPatientDao.update(patient);
+
+		runInTransaction(() -> {
+			// Version 1
+			ResourceHistoryTable entity = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(resourceId, 1);
+			assertEquals(ResourceEncodingEnum.SMILE, entity.getEncoding());
+			assertNotNull(entity.getResource());
+			assertNull(entity.getResourceTextVc());
+			// Version 2
+			entity = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(resourceId, 2);
+			assertEquals(ResourceEncodingEnum.SMILE, entity.getEncoding());
+		});
+
+		patient = myPatientDao.read(new IdType("Patient/" + resourceId));
+		assertFalse(patient.getActive());
+		assertEquals("Ångström", patient.getNameFirstRep().getFamily());
+		assertEquals("2", patient.getIdElement().getVersionIdPart());
+
+		patient = myPatientDao.read(new IdType("Patient/" + resourceId + "/_history/1"));
+		assertTrue(patient.getActive());
+
+		patient = (Patient) myPatientDao.search(SearchParameterMap.newSynchronous()).getAllResources().get(0);
+		assertFalse(patient.getActive());
+
+		IBundleProvider history = myPatientDao.history(new IdType("Patient/" + resourceId), null, null, null, mySrd);
+		assertEquals(2, history.getAllResources().size());
+	}
+
+	@Test
+	public void testInlineTextStillUsedBelowThreshold() {
+		myStorageSettings.setInlineResourceTextBelowSize(5000);
+
+		Patient patient = new Patient();
+		patient.setActive(true);
+		Long resourceId = myPatientDao.create(patient).getId().getIdPartAsLong();
+
+		runInTransaction(() -> {
+			ResourceHistoryTable entity = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(resourceId, 1);
+			assertEquals(ResourceEncodingEnum.JSON, entity.getEncoding());
+			assertNull(entity.getResource());
+			assertNotNull(entity.getResourceTextVc());
+		});
+
+		patient = myPatientDao.read(new IdType("Patient/" + resourceId));
+		assertTrue(patient.getActive());
+	}
+
+	@Test
+	public void testNopOnUnchangedUpdate() {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		Long resourceId = myPatientDao.create(patient).getId().getIdPartAsLong();
+
+		patient = new Patient();
+		patient.setId("Patient/" + resourceId);
+		patient.setActive(true);
+		DaoMethodOutcome updateOutcome = myPatientDao.update(patient);
+		assertEquals("1", updateOutcome.getId().getVersionIdPart());
+		assertTrue(updateOutcome.isNop());
+	}
+
+	@Test
+	public void testReadResourceStoredWithOtherEncoding() {
+		myStorageSettings.setResourceEncoding(ResourceEncodingEnum.JSONC);
+		Patient patient = new Patient();
+		patient.setActive(true);
+		Long resourceId = myPatientDao.create(patient).getId().getIdPartAsLong();
+
+		myStorageSettings.setResourceEncoding(ResourceEncodingEnum.SMILE);
+		patient = new Patient();
+		patient.setId("Patient/" + resourceId);
+		patient.setActive(false);
+		myPatientDao.update(patient);
+
+		assertTrue(myPatientDao.read(new IdType("Patient/" + resourceId + "/_history/1")).getActive());
+		assertFalse(myPatientDao.read(new IdType("Patient/" + resourceId + "/_history/2")).getActive());
+	}
+}
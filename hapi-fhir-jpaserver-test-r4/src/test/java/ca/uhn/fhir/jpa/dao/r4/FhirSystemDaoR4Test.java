@@ -23,6 +23,7 @@ import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
@@ -104,6 +105,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -147,6 +149,7 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 		myStorageSettings.setPopulateIdentifierInAutoCreatedPlaceholderReferenceTargets(defaults.isPopulateIdentifierInAutoCreatedPlaceholderReferenceTargets());
 		myStorageSettings.setAutoVersionReferenceAtPaths(defaults.getAutoVersionReferenceAtPaths());
 		myStorageSettings.setAutoCreatePlaceholderReferenceTargets(defaults.isAutoCreatePlaceholderReferenceTargets());
+		myStorageSettings.setPreResolveTransactionReferences(defaults.isPreResolveTransactionReferences());
 
 		myFhirContext.getParserOptions().setAutoContainReferenceTargetsWithNoId(true);
 	}
@@ -837,6 +840,112 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 		assertEquals("http://profile/2", profiles.get(0).getValue());
 	}
 
+	@Test
+	public void testTransactionWithPreResolvedReferences() {
+		createPatientsForPreResolvedReferenceTests();
+
+		// Each reference target is looked up separately by default
+		myCaptureQueriesListener.clear();
+		mySystemDao.transaction(mySrd, createObservationsReferencingPatients());
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		assertEquals(5, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+
+		// With the setting enabled they are all resolved by a single query
+		myStorageSettings.setPreResolveTransactionReferences(true);
+		myCaptureQueriesListener.clear();
+		Bundle output = mySystemDao.transaction(mySrd, createObservationsReferencingPatients());
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		assertEquals(1, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+
+		for (int i = 0; i < 5; i++) {
+			IdType obsId = new IdType(output.getEntry().get(i).getResponse().getLocation());
+			Observation obs = myObservationDao.read(obsId, mySrd);
+			assertEquals("Patient/A" + i, obs.getSubject().getReference());
+		}
+	}
+
+	@Test
+	public void testTransactionWithPreResolvedReferences_TargetDeletedInTransaction() {
+		createPatientsForPreResolvedReferenceTests();
+
+		Supplier<Bundle> input = () -> {
+			Bundle retVal = new Bundle();
+			retVal.setType(BundleType.TRANSACTION);
+			retVal.addEntry().getRequest().setMethod(HTTPVerb.DELETE).setUrl("Patient/A0");
+			Observation obs = new Observation();
+			obs.getSubject().setReference("Patient/A0");
+			obs.addPerformer().setReference("Patient/A1");
+			retVal.addEntry().setResource(obs).getRequest().setMethod(HTTPVerb.POST).setUrl("Observation");
+			return retVal;
+		};
+
+		// The reference to the deleted resource must fail exactly as it does without the setting
+		BaseServerResponseException expected = assertThrows(BaseServerResponseException.class, () -> mySystemDao.transaction(mySrd, input.get()));
+		myStorageSettings.setPreResolveTransactionReferences(true);
+		BaseServerResponseException actual = assertThrows(BaseServerResponseException.class, () -> mySystemDao.transaction(mySrd, input.get()));
+		assertEquals(expected.getClass(), actual.getClass());
+		assertEquals(expected.getMessage(), actual.getMessage());
+
+		// Nothing was committed
+		assertTrue(myPatientDao.read(new IdType("Patient/A0"), mySrd).getActive());
+	}
+
+	@Test
+	public void testTransactionWithPreResolvedReferences_TargetCreatedOrUpdatedInTransaction() {
+		createPatientsForPreResolvedReferenceTests();
+		myStorageSettings.setPreResolveTransactionReferences(true);
+
+		Bundle input = new Bundle();
+		input.setType(BundleType.TRANSACTION);
+
+		Patient newPatient = new Patient();
+		newPatient.setId(IdType.newRandomUuid());
+		newPatient.setActive(true);
+		input.addEntry().setFullUrl(newPatient.getId()).setResource(newPatient).getRequest().setMethod(HTTPVerb.POST).setUrl("Patient");
+
+		Patient updatedPatient = new Patient();
+		updatedPatient.setId("Patient/A1");
+		updatedPatient.setActive(false);
+		input.addEntry().setFullUrl("Patient/A1").setResource(updatedPatient).getRequest().setMethod(HTTPVerb.PUT).setUrl("Patient/A1");
+
+		Observation obs = new Observation();
+		obs.getSubject().setReference(newPatient.getId());
+		obs.addPerformer().setReference("Patient/A1");
+		obs.addPerformer().setReference("Patient/A2");
+		input.addEntry().setResource(obs).getRequest().setMethod(HTTPVerb.POST).setUrl("Observation");
+
+		Bundle output = mySystemDao.transaction(mySrd, input);
+
+		IdType newPatientId = new IdType(output.getEntry().get(0).getResponse().getLocation());
+		assertEquals("2", new IdType(output.getEntry().get(1).getResponse().getLocation()).getVersionIdPart());
+		Observation actual = myObservationDao.read(new IdType(output.getEntry().get(2).getResponse().getLocation()), mySrd);
+		assertEquals(newPatientId.toUnqualifiedVersionless().getValue(), actual.getSubject().getReference());
+		assertEquals("Patient/A1", actual.getPerformer().get(0).getReference());
+		assertEquals("Patient/A2", actual.getPerformer().get(1).getReference());
+		assertFalse(myPatientDao.read(new IdType("Patient/A1"), mySrd).getActive());
+	}
+
+	private void createPatientsForPreResolvedReferenceTests() {
+		for (int i = 0; i < 5; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/A" + i);
+			patient.setActive(true);
+			myPatientDao.update(patient, mySrd);
+		}
+	}
+
+	private Bundle createObservationsReferencingPatients() {
+		Bundle retVal = new Bundle();
+		retVal.setType(BundleType.TRANSACTION);
+		for (int i = 0; i < 5; i++) {
+			Observation obs = new Observation();
+			obs.setStatus(ObservationStatus.FINAL);
+			obs.getSubject().setReference("Patient/A" + i);
+			retVal.addEntry().setResource(obs).getRequest().setMethod(HTTPVerb.POST).setUrl("Observation");
+		}
+		return retVal;
+	}
+
 	@Test
 	public void testTransaction1() throws IOException {
 		String inputBundleString = ClasspathUtil.loadResource("/david-bundle-error.json");
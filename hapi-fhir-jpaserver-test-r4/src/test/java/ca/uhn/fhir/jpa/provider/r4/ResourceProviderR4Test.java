@@ -193,6 +193,7 @@ import static ca.uhn.fhir.rest.param.BaseParamWithPrefix.MSG_PREFIX_INVALID_FORM
 import static ca.uhn.fhir.test.utilities.CustomMatchersUtil.assertDoesNotContainAnyOf;
 import static ca.uhn.fhir.util.TestUtil.sleepAtLeast;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
@@ -244,6 +245,7 @@ public class ResourceProviderR4Test extends BaseResourceProviderR4Test {
 		myStorageSettings.setAdvancedHSearchIndexing(new JpaStorageSettings().isAdvancedHSearchIndexing());
 
 		myStorageSettings.setIndexOnContainedResources(new JpaStorageSettings().isIndexOnContainedResources());
+		myStorageSettings.setSearchCountThreadCount(new JpaStorageSettings().getSearchCountThreadCount());
 
 		mySearchCoordinatorSvcRaw.setLoadingThrottleForUnitTests(null);
 		mySearchCoordinatorSvcRaw.setSyncSizeForUnitTests(QueryParameterUtils.DEFAULT_SYNC_SIZE);
@@ -592,6 +594,39 @@ public class ResourceProviderR4Test extends BaseResourceProviderR4Test {
 		assertEquals(null, nextPageBundle.getLink("next"));
 	}
 
+	@ParameterizedTest
+	@ValueSource(ints = {0, 5})
+	public void testSearchWithTotalAccurate_ConcurrentCount(int theLoadingThrottle) {
+		for (int i = 0; i < 30; i++) {
+			Organization o = new Organization();
+			o.setName("O" + i);
+			myOrganizationDao.create(o, mySrd);
+		}
+		myStorageSettings.setSearchCountThreadCount(2);
+		myStorageSettings.setReuseCachedSearchResultsForMillis(null);
+		mySearchCoordinatorSvcRaw.setLoadingThrottleForUnitTests(theLoadingThrottle > 0 ? theLoadingThrottle : null);
+
+		// The first page doesn't wait for the concurrent count, so it only has the
+		// total if the count finished first. Subsequent pages pick it up once known.
+		for (int i = 0; i < 10; i++) {
+			Bundle output = myClient
+				.search()
+				.forResource("Organization")
+				.count(5)
+				.totalMode(SearchTotalModeEnum.ACCURATE)
+				.returnBundle(Bundle.class)
+				.execute();
+			assertEquals(5, output.getEntry().size());
+			if (output.hasTotal()) {
+				assertEquals(30, output.getTotal());
+			}
+
+			await().until(() -> myClient.loadPage().next(output).execute().hasTotal());
+			Bundle nextPage = myClient.loadPage().next(output).execute();
+			assertEquals(30, nextPage.getTotal());
+		}
+	}
+
 	@Test
 	public void testSearchLinksWorkWithIncludes() {
 		for (int i = 0; i < 5; i++) {
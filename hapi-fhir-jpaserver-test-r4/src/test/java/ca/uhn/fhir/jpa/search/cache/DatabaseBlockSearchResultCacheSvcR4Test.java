@@ -0,0 +1,144 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.ISearchDao;
+import ca.uhn.fhir.jpa.dao.data.ISearchResultBlockDao;
+import ca.uhn.fhir.jpa.dao.data.ISearchResultDao;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchTypeEnum;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.AopTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static ca.uhn.fhir.jpa.search.cache.DatabaseSearchCacheSvcImpl.SEARCH_CLEANUP_JOB_INTERVAL_MILLIS;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Stores and expires real searches using {@link DatabaseBlockSearchResultCacheSvcImpl}, with
+ * a small block size so that each search spans several blocks
+ */
+@ContextConfiguration(classes = DatabaseBlockSearchResultCacheSvcR4Test.BlockSearchResultCacheConfig.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class DatabaseBlockSearchResultCacheSvcR4Test extends BaseJpaR4Test {
+
+	private static final int BLOCK_SIZE = 7;
+
+	@Autowired
+	private ISearchDao mySearchEntityDao;
+	@Autowired
+	private ISearchResultDao mySearchResultDao;
+	@Autowired
+	private ISearchResultBlockDao mySearchResultBlockDao;
+
+	@BeforeEach
+	public void beforeDisableResultReuse() {
+		myStorageSettings.setReuseCachedSearchResultsForMillis(null);
+		DatabaseSearchCacheSvcImpl staleSearchDeletingSvc = AopTestUtils.getTargetObject(mySearchCacheSvc);
+		staleSearchDeletingSvc.setCutoffSlackForUnitTest(0);
+	}
+
+	@AfterEach
+	public void after() {
+		myStorageSettings.setReuseCachedSearchResultsForMillis(new JpaStorageSettings().getReuseCachedSearchResultsForMillis());
+		DatabaseSearchCacheSvcImpl staleSearchDeletingSvc = AopTestUtils.getTargetObject(mySearchCacheSvc);
+		staleSearchDeletingSvc.setCutoffSlackForUnitTest(SEARCH_CLEANUP_JOB_INTERVAL_MILLIS);
+		DatabaseSearchCacheSvcImpl.setNowForUnitTests(null);
+	}
+
+	@Test
+	public void testStoreFetchAndExpireSearch() {
+		assertThat(AopTestUtils.getTargetObject(mySearchResultCacheSvc), instanceOf(DatabaseBlockSearchResultCacheSvcImpl.class));
+
+		List<IIdType> ids = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			Patient patient = new Patient();
+			patient.setActive(true);
+			ids.add(myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless());
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.setSort(new SortSpec("_id"));
+		IBundleProvider provider = myPatientDao.search(params, mySrd);
+		String uuid = provider.getUuid();
+
+		assertEquals(ids, toUnqualifiedVersionlessIds(provider.getResources(0, 30)));
+		assertEquals(ids.subList(10, 20), toUnqualifiedVersionlessIds(provider.getResources(10, 20)));
+
+		// 30 results in blocks of 7, and nothing in the one-row-per-result table
+		await().until(() -> runInTransaction(() -> mySearchResultBlockDao.count()), count -> count == 5L);
+		runInTransaction(() -> assertEquals(0, mySearchResultDao.count()));
+
+		// Once the search has expired, its blocks are deleted along with it
+		DatabaseSearchCacheSvcImpl.setNowForUnitTests(System.currentTimeMillis() + myStorageSettings.getExpireSearchResultsAfterMillis() + 1);
+		myStaleSearchDeletingSvc.pollForStaleSearchesAndDeleteThem();
+
+		runInTransaction(() -> {
+			assertFalse(mySearchEntityDao.findByUuidAndFetchIncludes(uuid).isPresent());
+			assertEquals(0, mySearchResultBlockDao.count());
+		});
+	}
+
+	@Test
+	public void testStoreInSeveralPasses() {
+		Search search = runInTransaction(() -> {
+			Search newSearch = new Search();
+			newSearch.setStatus(SearchStatusEnum.LOADING);
+			newSearch.setUuid(UUID.randomUUID().toString());
+			newSearch.setCreated(new Date());
+			newSearch.setSearchType(SearchTypeEnum.SEARCH);
+			newSearch.setResourceType("Patient");
+			return mySearchEntityDao.save(newSearch);
+		});
+
+		// Each pass after the first appends to the partly filled last block
+		List<JpaPid> stored = new ArrayList<>();
+		for (int count : new int[] {3, 5, 9}) {
+			List<JpaPid> newPids = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				newPids.add(JpaPid.fromId(1000L - (stored.size() + i) * 13L));
+			}
+			mySearchResultCacheSvc.storeResults(
+					search, new ArrayList<>(stored), newPids, mySrd, RequestPartitionId.allPartitions());
+			stored.addAll(newPids);
+		}
+
+		assertEquals(stored, mySearchResultCacheSvc.fetchAllResultPids(search, mySrd, RequestPartitionId.allPartitions()));
+		assertEquals(stored.subList(5, 16), mySearchResultCacheSvc.fetchResultPids(search, 5, 16, mySrd, RequestPartitionId.allPartitions()));
+		runInTransaction(() -> assertEquals(3, mySearchResultBlockDao.count()));
+	}
+
+	@Configuration
+	public static class BlockSearchResultCacheConfig {
+
+		@Bean
+		public ISearchResultCacheSvc searchResultCacheSvc() {
+			DatabaseBlockSearchResultCacheSvcImpl retVal = new DatabaseBlockSearchResultCacheSvcImpl();
+			retVal.setBlockSizeForUnitTest(BLOCK_SIZE);
+			return retVal;
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package ca.uhn.fhir.jpa.search.r4;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.provider.BaseResourceProviderR4Test;
+import ca.uhn.fhir.jpa.search.builder.SearchCursor;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeysetPagingProviderR4Test extends BaseResourceProviderR4Test {
+
+	private static final List<String> ALL_IDS = List.of(
+		"Patient/A0", "Patient/A1", "Patient/A2", "Patient/A3", "Patient/A4",
+		"Patient/A5", "Patient/A6", "Patient/A7", "Patient/A8", "Patient/A9");
+
+	@Override
+	@BeforeEach
+	public void before() throws Exception {
+		super.before();
+		myStorageSettings.setKeysetPagingEnabled(true);
+
+		// Some patients share a sort value, so that the resource ID tie-breaker is needed,
+		// and some have no value at all
+		createPatient(withId("A0"), withFamily("Jones"), withBirthdate("1990-01-01"));
+		createPatient(withId("A1"), withFamily("Smith"), withBirthdate("1980-01-01"));
+		createPatient(withId("A2"), withBirthdate("1990-01-01"));
+		createPatient(withId("A3"), withFamily("Jones"));
+		createPatient(withId("A4"), withFamily("Adams"), withBirthdate("2000-01-01"));
+		createPatient(withId("A5"));
+		createPatient(withId("A6"), withFamily("Jones"), withBirthdate("1990-01-01"));
+		createPatient(withId("A7"), withFamily("Brown"), withBirthdate("1970-01-01"));
+		createPatient(withId("A8"));
+		createPatient(withId("A9"), withFamily("Adams"), withBirthdate("1980-01-01"));
+	}
+
+	@Override
+	@AfterEach
+	public void after() throws Exception {
+		super.after();
+		myStorageSettings.setKeysetPagingEnabled(new JpaStorageSettings().isKeysetPagingEnabled());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"birthdate", "-birthdate", "family", "-family", "_id", "-_id", "_lastUpdated", "-_lastUpdated"})
+	public void testPageThroughSortedSearch(String theSort) {
+		// A single page holding every result gives the order that the pages should follow
+		Bundle singlePage = searchByUrl("Patient?_sort=" + theSort + "&_offset=0&_count=100");
+		List<String> expected = toUnqualifiedVersionlessIdValues(singlePage);
+		assertThat(expected, containsInAnyOrder(ALL_IDS.toArray()));
+		assertNull(singlePage.getLink(Constants.LINK_NEXT));
+
+		List<String> actual = new ArrayList<>();
+		Bundle page = searchByUrl("Patient?_sort=" + theSort + "&_offset=0&_count=3");
+		for (int pageIndex = 0; ; pageIndex++) {
+			assertTrue(pageIndex < 10, "Too many pages");
+			actual.addAll(toUnqualifiedVersionlessIdValues(page));
+			if (page.getLink(Constants.LINK_NEXT) == null) {
+				break;
+			}
+
+			String nextUrl = page.getLink(Constants.LINK_NEXT).getUrl();
+			assertThat(nextUrl, containsString(Constants.PARAM_CURSOR + "="));
+			assertThat(nextUrl, not(containsString(Constants.PARAM_OFFSET + "=3")));
+
+			myCaptureQueriesListener.clear();
+			page = myClient.loadPage().next(page).execute();
+			myCaptureQueriesListener.logSelectQueries();
+
+			// Keyset pages continue from the cursor instead of skipping rows
+			myCaptureQueriesListener.getSelectQueries().forEach(t -> assertThat(t.getSql(true, false), not(containsString("offset '"))));
+			assertNull(page.getLink(Constants.LINK_PREVIOUS));
+		}
+
+		assertEquals(expected, actual);
+		assertEquals(ALL_IDS.size(), new HashSet<>(actual).size());
+	}
+
+	@Test
+	public void testSortedSearchPlacesMissingValuesTogether() {
+		for (String sort : List.of("birthdate", "-birthdate")) {
+			List<String> ids = pageThrough("Patient?_sort=" + sort + "&_offset=0&_count=2");
+
+			// A3, A5 and A8 have no birth date, so they must be next to each other in either direction
+			String joined = String.join(",", ids);
+			assertTrue(
+				joined.startsWith("Patient/A3,Patient/A5,Patient/A8") || joined.endsWith("Patient/A3,Patient/A5,Patient/A8"),
+				sort + ": " + joined);
+		}
+	}
+
+	@Test
+	public void testTamperedCursor() {
+		Bundle page = searchByUrl("Patient?_sort=birthdate&_offset=0&_count=3");
+		String nextUrl = page.getLink(Constants.LINK_NEXT).getUrl();
+		String cursor = StringUtils.substringBefore(StringUtils.substringAfter(nextUrl, Constants.PARAM_CURSOR + "="), "&");
+		assertNotNull(StringUtils.trimToNull(cursor));
+
+		InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> searchByUrl(nextUrl.replace(cursor, "not-a-cursor!")));
+		assertThat(e.getMessage(), containsString("HAPI-2455: Invalid _cursor parameter value"));
+	}
+
+	@Test
+	public void testCursorFromDifferentSort() {
+		Bundle page = searchByUrl("Patient?_sort=birthdate&_offset=0&_count=3");
+		String nextUrl = page.getLink(Constants.LINK_NEXT).getUrl();
+
+		InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> searchByUrl(nextUrl.replace("_sort=birthdate", "_sort=-birthdate")));
+		assertThat(e.getMessage(), containsString("HAPI-2456: The _cursor parameter does not match the sort of this search"));
+	}
+
+	@Test
+	public void testCursorWithWrongNumberOfValues() {
+		String cursor = new SearchCursor("birthdate", new Object[]{"2000-01-01T00:00:00Z"}).encode();
+
+		InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> searchByUrl("Patient?_sort=birthdate&_count=3&_cursor=" + cursor));
+		assertThat(e.getMessage(), containsString("HAPI-2481: The _cursor parameter does not match the sort of this search"));
+	}
+
+	@Test
+	public void testCursorWithInvalidValues() {
+		String missingId = new SearchCursor("birthdate", new Object[]{null, null}).encode();
+		InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> searchByUrl("Patient?_sort=birthdate&_count=3&_cursor=" + missingId));
+		assertThat(e.getMessage(), containsString("HAPI-2479: Invalid _cursor parameter value"));
+
+		String invalidDate = new SearchCursor("birthdate", new Object[]{"yesterday", 1L}).encode();
+		e = assertThrows(InvalidRequestException.class, () -> searchByUrl("Patient?_sort=birthdate&_count=3&_cursor=" + invalidDate));
+		assertThat(e.getMessage(), containsString("HAPI-2480: Invalid _cursor parameter value: yesterday"));
+	}
+
+	@Test
+	public void testCursorNotAllowedWhenDisabled() {
+		Bundle page = searchByUrl("Patient?_sort=birthdate&_offset=0&_count=3");
+		String nextUrl = page.getLink(Constants.LINK_NEXT).getUrl();
+		myStorageSettings.setKeysetPagingEnabled(false);
+
+		InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> searchByUrl(nextUrl));
+		assertThat(e.getMessage(), containsString("HAPI-2457: The _cursor parameter is not supported on this server"));
+	}
+
+	private List<String> pageThrough(String theUrl) {
+		List<String> retVal = new ArrayList<>();
+		Bundle page = searchByUrl(theUrl);
+		retVal.addAll(toUnqualifiedVersionlessIdValues(page));
+		while (page.getLink(Constants.LINK_NEXT) != null) {
+			page = myClient.loadPage().next(page).execute();
+			retVal.addAll(toUnqualifiedVersionlessIdValues(page));
+		}
+		return retVal;
+	}
+
+	private Bundle searchByUrl(String theUrl) {
+		String url = theUrl.startsWith("http") ? theUrl : myServerBase + "/" + theUrl;
+		return myClient.search().byUrl(url).returnBundle(Bundle.class).execute();
+	}
+}
@@ -107,6 +107,19 @@ public interface IBundleProvider {
 		return null;
 	}
 
+	/**
+	 * If the results in this bundle were produced using keyset pagination and more results may
+	 * be available, this method returns an opaque cursor identifying the position after the last
+	 * result on the current page. The server will then form a next link which passes this cursor
+	 * in the <code>_cursor</code> parameter instead of using <code>_offset</code>, and no previous
+	 * link since keyset pages can only be traversed forwards.
+	 *
+	 * @since 7.0.0
+	 */
+	default String getNextPageCursor() {
+		return null;
+	}
+
 	/**
 	 * Returns the instant as of which this result was created. The
 	 * result of this value is used to populate the <code>lastUpdated</code>
@@ -0,0 +1,326 @@
+/*-
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.method.BaseMethodBinding;
+import ca.uhn.fhir.rest.server.method.MethodMatchEnum;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.apache.commons.lang3.StringUtils.defaultString;
+
+/**
+ * An immutable index over the method bindings of a {@link ResourceBinding}, used to
+ * avoid testing every binding against every incoming request.
+ * <p>
+ * Bindings are grouped ahead of time by the request type, operation and compartment
+ * they can possibly match (see {@link BaseMethodBinding#getDispatchRequestTypes()} and
+ * friends), so that at request time only the handful of candidates in the matching
+ * group need to be tested. Candidates keep their original registration order, so the
+ * binding which is selected is always the same one a linear scan would select.
+ * </p>
+ * <p>
+ * Resource types with many search methods are common, and choosing between them means
+ * comparing the request parameters against the parameters of each method. When a group
+ * has more than one {@link BaseMethodBinding#isDispatchResultCacheable() cacheable}
+ * candidate, the best match among those candidates is also remembered for requests with
+ * the same shape. Any other candidates in the group (e.g. a read method, which shares the
+ * group used by plain searches) are still tested on every request. Since the request shape
+ * includes parameter names chosen by the client, each group only remembers the most
+ * recently used shapes.
+ * </p>
+ */
+class MethodDispatchIndex {
+
+	/**
+	 * Stands in for any operation or compartment name which no binding declared
+	 */
+	private static final String UNKNOWN = "\u0000";
+
+	@VisibleForTesting
+	static final int MAX_CACHED_RESULTS_PER_GROUP = 1000;
+
+	private final List<BaseMethodBinding> myBindings;
+	private final Map<RequestTypeEnum, Map<String, Map<String, CandidateGroup>>> myGroups =
+			new EnumMap<>(RequestTypeEnum.class);
+
+	/**
+	 * Constructor
+	 *
+	 * @param theBindings The bindings, in the order in which they should be tested
+	 */
+	MethodDispatchIndex(List<BaseMethodBinding> theBindings) {
+		myBindings = Collections.unmodifiableList(new ArrayList<>(theBindings));
+
+		Set<String> operations = new HashSet<>();
+		Set<String> compartments = new HashSet<>();
+		operations.add(UNKNOWN);
+		compartments.add(UNKNOWN);
+		for (BaseMethodBinding next : myBindings) {
+			if (next.getDispatchOperations() != null) {
+				operations.addAll(next.getDispatchOperations());
+			}
+			if (next.getDispatchCompartmentNames() != null) {
+				compartments.addAll(next.getDispatchCompartmentNames());
+			}
+		}
+
+		for (RequestTypeEnum nextRequestType : RequestTypeEnum.values()) {
+			Map<String, Map<String, CandidateGroup>> byOperation = new HashMap<>();
+			for (String nextOperation : operations) {
+				Map<String, CandidateGroup> byCompartment = new HashMap<>();
+				for (String nextCompartment : compartments) {
+					List<BaseMethodBinding> candidates = new ArrayList<>();
+					for (BaseMethodBinding next : myBindings) {
+						if (couldMatch(next, nextRequestType, nextOperation, nextCompartment)) {
+							candidates.add(next);
+						}
+					}
+					byCompartment.put(nextCompartment, new CandidateGroup(candidates));
+				}
+				byOperation.put(nextOperation, byCompartment);
+			}
+			myGroups.put(nextRequestType, byOperation);
+		}
+	}
+
+	BaseMethodBinding getMethod(RequestDetails theRequest) {
+		CandidateGroup group = findGroup(theRequest);
+		if (group == null) {
+			return selectBestMatch(myBindings, theRequest);
+		}
+		return group.getMethod(theRequest);
+	}
+
+	private CandidateGroup findGroup(RequestDetails theRequest) {
+		Map<String, Map<String, CandidateGroup>> byOperation = myGroups.get(theRequest.getRequestType());
+		if (byOperation == null) {
+			return null;
+		}
+		Map<String, CandidateGroup> byCompartment = byOperation.get(defaultString(theRequest.getOperation()));
+		if (byCompartment == null) {
+			byCompartment = byOperation.get(UNKNOWN);
+		}
+		CandidateGroup retVal = byCompartment.get(defaultString(theRequest.getCompartmentName()));
+		if (retVal == null) {
+			retVal = byCompartment.get(UNKNOWN);
+		}
+		return retVal;
+	}
+
+	private static boolean couldMatch(
+			BaseMethodBinding theBinding, RequestTypeEnum theRequestType, String theOperation, String theCompartment) {
+		Set<RequestTypeEnum> requestTypes = theBinding.getDispatchRequestTypes();
+		if (requestTypes != null && !requestTypes.contains(theRequestType)) {
+			return false;
+		}
+		Set<String> operations = theBinding.getDispatchOperations();
+		if (operations != null && !operations.contains(theOperation)) {
+			return false;
+		}
+		Set<String> compartments = theBinding.getDispatchCompartmentNames();
+		return compartments == null || compartments.contains(theCompartment);
+	}
+
+	/**
+	 * Look for the method with the highest match strength
+	 */
+	static BaseMethodBinding selectBestMatch(List<BaseMethodBinding> theCandidates, RequestDetails theRequest) {
+		BaseMethodBinding matchedMethod = null;
+		MethodMatchEnum matchedMethodStrength = null;
+
+		for (BaseMethodBinding rm : theCandidates) {
+			MethodMatchEnum nextMethodMatch = rm.incomingServerRequestMatchesMethod(theRequest);
+			if (nextMethodMatch != MethodMatchEnum.NONE) {
+				if (matchedMethodStrength == null || matchedMethodStrength.ordinal() < nextMethodMatch.ordinal()) {
+					matchedMethod = rm;
+					matchedMethodStrength = nextMethodMatch;
+				}
+				if (matchedMethodStrength == MethodMatchEnum.EXACT) {
+					break;
+				}
+			}
+		}
+
+		return matchedMethod;
+	}
+
+	@VisibleForTesting
+	long getCachedResultCount() {
+		long retVal = 0;
+		for (Map<String, Map<String, CandidateGroup>> byOperation : myGroups.values()) {
+			for (Map<String, CandidateGroup> byCompartment : byOperation.values()) {
+				for (CandidateGroup next : byCompartment.values()) {
+					if (next.myResultCache != null) {
+						next.myResultCache.cleanUp();
+						retVal += next.myResultCache.size();
+					}
+				}
+			}
+		}
+		return retVal;
+	}
+
+	private static class CandidateGroup {
+
+		private final List<BaseMethodBinding> myCandidates;
+		private final boolean[] myCacheable;
+		private final Cache<String, CachedMatch> myResultCache;
+
+		private CandidateGroup(List<BaseMethodBinding> theCandidates) {
+			myCandidates = theCandidates;
+			myCacheable = new boolean[theCandidates.size()];
+
+			int cacheableCount = 0;
+			for (int i = 0; i < theCandidates.size(); i++) {
+				myCacheable[i] = theCandidates.get(i).isDispatchResultCacheable();
+				if (myCacheable[i]) {
+					cacheableCount++;
+				}
+			}
+			myResultCache = cacheableCount > 1
+					? CacheBuilder.newBuilder()
+							.maximumSize(MAX_CACHED_RESULTS_PER_GROUP)
+							.build()
+					: null;
+		}
+
+		private BaseMethodBinding getMethod(RequestDetails theRequest) {
+			if (myResultCache == null) {
+				return selectBestMatch(myCandidates, theRequest);
+			}
+
+			String key = createResultCacheKey(theRequest);
+			CachedMatch cached = myResultCache.getIfPresent(key);
+			if (cached == null) {
+				cached = selectBestCacheableMatch(theRequest);
+				myResultCache.put(key, cached);
+			}
+
+			/*
+			 * Same as selectBestMatch(..), except that the cacheable candidates are represented
+			 * by the best match among them. The others can never be selected over it, since they
+			 * either match less strongly or come later in the list.
+			 */
+			BaseMethodBinding matchedMethod = null;
+			MethodMatchEnum matchedMethodStrength = null;
+			for (int i = 0; i < myCandidates.size(); i++) {
+				MethodMatchEnum nextMethodMatch;
+				if (myCacheable[i]) {
+					if (i != cached.myIndex) {
+						continue;
+					}
+					nextMethodMatch = cached.myMatch;
+				} else {
+					nextMethodMatch = myCandidates.get(i).incomingServerRequestMatchesMethod(theRequest);
+				}
+				if (nextMethodMatch != MethodMatchEnum.NONE) {
+					if (matchedMethodStrength == null || matchedMethodStrength.ordinal() < nextMethodMatch.ordinal()) {
+						matchedMethod = myCandidates.get(i);
+						matchedMethodStrength = nextMethodMatch;
+					}
+					if (matchedMethodStrength == MethodMatchEnum.EXACT) {
+						break;
+					}
+				}
+			}
+			return matchedMethod;
+		}
+
+		private CachedMatch selectBestCacheableMatch(RequestDetails theRequest) {
+			CachedMatch retVal = CachedMatch.NONE;
+			for (int i = 0; i < myCandidates.size(); i++) {
+				if (!myCacheable[i]) {
+					continue;
+				}
+				MethodMatchEnum nextMethodMatch = myCandidates.get(i).incomingServerRequestMatchesMethod(theRequest);
+				if (nextMethodMatch != MethodMatchEnum.NONE && retVal.myMatch.ordinal() < nextMethodMatch.ordinal()) {
+					retVal = new CachedMatch(i, nextMethodMatch);
+				}
+				if (retVal.myMatch == MethodMatchEnum.EXACT) {
+					break;
+				}
+			}
+			return retVal;
+		}
+
+		/**
+		 * Builds a key from everything a cacheable binding is allowed to consider
+		 *
+		 * @see BaseMethodBinding#isDispatchResultCacheable()
+		 */
+		private static String createResultCacheKey(RequestDetails theRequest) {
+			StringBuilder b = new StringBuilder();
+			appendKeyPart(b, theRequest.getResourceName());
+			appendKeyPart(b, theRequest.getRequestType().name());
+			appendKeyPart(b, theRequest.getOperation());
+			appendKeyPart(b, theRequest.getCompartmentName());
+			appendKeyPart(b, theRequest.getId() != null ? "id" : null);
+
+			Map<String, String[]> parameters = theRequest.getParameters();
+			String[] queryName = parameters.get(Constants.PARAM_QUERY);
+			appendKeyPart(b, queryName != null && queryName.length > 0 ? queryName[0] : null);
+
+			for (Map.Entry<String, String[]> next : new TreeMap<>(parameters).entrySet()) {
+				appendKeyPart(b, next.getKey());
+				b.append(next.getValue().length > 1 ? '*' : '1');
+			}
+			return b.toString();
+		}
+
+		private static void appendKeyPart(StringBuilder theBuilder, String thePart) {
+			if (thePart == null) {
+				theBuilder.append('\u0000');
+			} else {
+				theBuilder.append(thePart.length()).append(':').append(thePart);
+			}
+		}
+	}
+
+	/**
+	 * The best match among the cacheable candidates of a group, by position in the group
+	 */
+	private static class CachedMatch {
+
+		private static final CachedMatch NONE = new CachedMatch(-1, MethodMatchEnum.NONE);
+
+		private final int myIndex;
+		private final MethodMatchEnum myMatch;
+
+		private CachedMatch(int theIndex, MethodMatchEnum theMatch) {
+			myIndex = theIndex;
+			myMatch = theMatch;
+		}
+	}
+}
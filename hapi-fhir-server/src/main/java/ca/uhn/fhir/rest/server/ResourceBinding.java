@@ -21,7 +21,6 @@ package ca.uhn.fhir.rest.server;
 
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.method.BaseMethodBinding;
-import ca.uhn.fhir.rest.server.method.MethodMatchEnum;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -35,6 +34,7 @@ public class ResourceBinding {
 
 	private String resourceName;
 	private LinkedList<BaseMethodBinding> myMethodBindings = new LinkedList<>();
+	private volatile MethodDispatchIndex myDispatchIndex;
 
 	/**
 	 * Constructor
@@ -51,27 +51,32 @@ public class ResourceBinding {
 
 		ourLog.debug("Looking for a handler for {}", theRequest);
 
-		/*
-		 * Look for the method with the highest match strength
-		 */
-
-		BaseMethodBinding matchedMethod = null;
-		MethodMatchEnum matchedMethodStrength = null;
-
-		for (BaseMethodBinding rm : myMethodBindings) {
-			MethodMatchEnum nextMethodMatch = rm.incomingServerRequestMatchesMethod(theRequest);
-			if (nextMethodMatch != MethodMatchEnum.NONE) {
-				if (matchedMethodStrength == null || matchedMethodStrength.ordinal() < nextMethodMatch.ordinal()) {
-					matchedMethod = rm;
-					matchedMethodStrength = nextMethodMatch;
-				}
-				if (matchedMethodStrength == MethodMatchEnum.EXACT) {
-					break;
-				}
-			}
+		MethodDispatchIndex dispatchIndex = myDispatchIndex;
+		if (dispatchIndex == null) {
+			dispatchIndex = rebuildDispatchIndex();
 		}
+		return dispatchIndex.getMethod(theRequest);
+	}
+
+	private synchronized MethodDispatchIndex rebuildDispatchIndex() {
+		MethodDispatchIndex retVal = myDispatchIndex;
+		if (retVal == null) {
+			retVal = new MethodDispatchIndex(myMethodBindings);
+			myDispatchIndex = retVal;
+		}
+		return retVal;
+	}
 
-		return matchedMethod;
+	/**
+	 * Discards the index used by {@link #getMethod(RequestDetails)} to find candidate methods, so
+	 * that it is rebuilt the next time it is needed. This happens automatically when methods are added
+	 * using {@link #addMethod(BaseMethodBinding)}, but must be done manually if the list returned by
+	 * {@link #getMethodBindings()} is modified directly.
+	 *
+	 * @since 7.0.0
+	 */
+	public synchronized void invalidateDispatchIndex() {
+		myDispatchIndex = null;
 	}
 
 	public String getResourceName() {
@@ -82,12 +87,17 @@ public class ResourceBinding {
 		this.resourceName = resourceName;
 	}
 
+	/**
+	 * Returns the method bindings for this resource type. If the returned list is modified,
+	 * {@link #invalidateDispatchIndex()} must be called afterward.
+	 */
 	public List<BaseMethodBinding> getMethodBindings() {
 		return myMethodBindings;
 	}
 
 	public void addMethod(BaseMethodBinding method) {
 		this.myMethodBindings.push(method);
+		invalidateDispatchIndex();
 	}
 
 	@Override
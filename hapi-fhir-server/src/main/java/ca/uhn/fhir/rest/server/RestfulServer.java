@@ -1829,6 +1829,8 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 				}
 			}
 
+			resourceBinding.invalidateDispatchIndex();
+
 			if (resourceBinding.getMethodBindings().isEmpty()) {
 				myResourceNameToBinding.remove(resourceName);
 			}
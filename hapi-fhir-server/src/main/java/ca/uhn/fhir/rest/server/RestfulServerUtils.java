@@ -222,6 +222,37 @@ public class RestfulServerUtils {
 			Integer theOffset,
 			Integer theCount,
 			Map<String, String[]> theRequestParameters) {
+		Map<String, String[]> params = Maps.newLinkedHashMap(theRequestParameters);
+		params.remove(Constants.PARAM_CURSOR);
+		params.put(Constants.PARAM_OFFSET, new String[] {String.valueOf(theOffset)});
+		params.put(Constants.PARAM_COUNT, new String[] {String.valueOf(theCount)});
+
+		return createPagingLinkWithParameters(theBundleLinks, requestPath, tenantId, params);
+	}
+
+	/**
+	 * Creates a link to the next page of a search which uses keyset pagination, i.e. a link which
+	 * repeats the original request parameters but passes the given cursor instead of an offset
+	 *
+	 * @since 7.0.0
+	 */
+	public static String createCursorPagingLink(
+			BundleLinks theBundleLinks,
+			String requestPath,
+			String tenantId,
+			String theCursor,
+			Integer theCount,
+			Map<String, String[]> theRequestParameters) {
+		Map<String, String[]> params = Maps.newLinkedHashMap(theRequestParameters);
+		params.remove(Constants.PARAM_OFFSET);
+		params.put(Constants.PARAM_CURSOR, new String[] {theCursor});
+		params.put(Constants.PARAM_COUNT, new String[] {String.valueOf(theCount)});
+
+		return createPagingLinkWithParameters(theBundleLinks, requestPath, tenantId, params);
+	}
+
+	private static String createPagingLinkWithParameters(
+			BundleLinks theBundleLinks, String requestPath, String tenantId, Map<String, String[]> params) {
 		StringBuilder b = new StringBuilder();
 		b.append(theBundleLinks.serverBase);
 
@@ -234,10 +265,6 @@ public class RestfulServerUtils {
 			}
 		}
 
-		Map<String, String[]> params = Maps.newLinkedHashMap(theRequestParameters);
-		params.put(Constants.PARAM_OFFSET, new String[] {String.valueOf(theOffset)});
-		params.put(Constants.PARAM_COUNT, new String[] {String.valueOf(theCount)});
-
 		boolean first = true;
 		for (String nextParamName : new TreeSet<>(params.keySet())) {
 			for (String nextParamValue : params.get(nextParamName)) {
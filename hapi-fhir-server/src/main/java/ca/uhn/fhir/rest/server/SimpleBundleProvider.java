@@ -41,6 +41,7 @@ public class SimpleBundleProvider implements IBundleProvider {
 	private IPrimitiveType<Date> myPublished = InstantDt.withCurrentTime();
 	private Integer myCurrentPageOffset;
 	private Integer myCurrentPageSize;
+	private String myNextPageCursor;
 	private ResponsePage.ResponsePageBuilder myPageBuilder;
 
 	/**
@@ -118,6 +119,21 @@ public class SimpleBundleProvider implements IBundleProvider {
 		myCurrentPageSize = theCurrentPageSize;
 	}
 
+	/**
+	 * @since 7.0.0
+	 */
+	@Override
+	public String getNextPageCursor() {
+		return myNextPageCursor;
+	}
+
+	/**
+	 * @since 7.0.0
+	 */
+	public void setNextPageCursor(String theNextPageCursor) {
+		myNextPageCursor = theNextPageCursor;
+	}
+
 	/**
 	 * Returns the results stored in this provider
 	 */
@@ -41,6 +41,7 @@ import ca.uhn.fhir.rest.annotation.Transaction;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.annotation.Validate;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.IRestfulServer;
@@ -65,6 +66,7 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
@@ -244,6 +246,57 @@ public abstract class BaseMethodBinding {
 
 	public abstract MethodMatchEnum incomingServerRequestMatchesMethod(RequestDetails theRequest);
 
+	/**
+	 * Returns the request types which {@link #incomingServerRequestMatchesMethod(RequestDetails)} could
+	 * possibly match, or <code>null</code> (the default) if this can not be determined ahead of time.
+	 * <p>
+	 * This is used to build the dispatch index in {@link ca.uhn.fhir.rest.server.ResourceBinding}, so
+	 * implementations may return request types which will not match, but must never leave out a request
+	 * type which could.
+	 * </p>
+	 */
+	@Nullable
+	public Set<RequestTypeEnum> getDispatchRequestTypes() {
+		return null;
+	}
+
+	/**
+	 * Returns the values of {@link RequestDetails#getOperation()} which {@link #incomingServerRequestMatchesMethod(RequestDetails)}
+	 * could possibly match (a blank operation is represented by an empty string), or <code>null</code> (the default)
+	 * if this can not be determined ahead of time.
+	 * <p>
+	 * See {@link #getDispatchRequestTypes()} for the rules implementations must follow.
+	 * </p>
+	 */
+	@Nullable
+	public Set<String> getDispatchOperations() {
+		return null;
+	}
+
+	/**
+	 * Returns the values of {@link RequestDetails#getCompartmentName()} which {@link #incomingServerRequestMatchesMethod(RequestDetails)}
+	 * could possibly match (no compartment is represented by an empty string), or <code>null</code> (the default)
+	 * if this can not be determined ahead of time.
+	 * <p>
+	 * See {@link #getDispatchRequestTypes()} for the rules implementations must follow.
+	 * </p>
+	 */
+	@Nullable
+	public Set<String> getDispatchCompartmentNames() {
+		return null;
+	}
+
+	/**
+	 * Returns <code>true</code> if the result of {@link #incomingServerRequestMatchesMethod(RequestDetails)} depends
+	 * only on the request type, operation, compartment, the presence of a resource ID, the <code>_query</code>
+	 * parameter value, and the names (and repetition counts) of the request parameters, and the method has no side
+	 * effects. If all of the candidate bindings for a request meet these criteria, the selected binding can be cached
+	 * and reused for structurally identical requests. Defaults to <code>false</code>.
+	 */
+	public boolean isDispatchResultCacheable() {
+		return false;
+	}
+
 	public abstract Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest)
 			throws BaseServerResponseException, IOException;
 
@@ -122,6 +122,16 @@ abstract class BaseOutcomeReturningMethodBinding extends BaseMethodBinding {
 		}
 	}
 
+	@Override
+	public Set<RequestTypeEnum> getDispatchRequestTypes() {
+		return provideAllowableRequestTypes();
+	}
+
+	@Override
+	public Set<String> getDispatchOperations() {
+		return Collections.singleton(StringUtils.defaultString(getMatchingOperation()));
+	}
+
 	@Override
 	public MethodMatchEnum incomingServerRequestMatchesMethod(RequestDetails theRequest) {
 		Set<RequestTypeEnum> allowableRequestTypes = provideAllowableRequestTypes();
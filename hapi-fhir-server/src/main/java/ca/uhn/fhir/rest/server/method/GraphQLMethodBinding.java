@@ -111,6 +111,16 @@ public class GraphQLMethodBinding extends OperationMethodBinding {
 		return myIdParamIndex != null;
 	}
 
+	@Override
+	public Set<RequestTypeEnum> getDispatchRequestTypes() {
+		return Collections.singleton(myMethodRequestType);
+	}
+
+	@Override
+	public Set<String> getDispatchOperations() {
+		return Collections.singleton(Constants.OPERATION_NAME_GRAPHQL);
+	}
+
 	@Override
 	public MethodMatchEnum incomingServerRequestMatchesMethod(RequestDetails theRequest) {
 		if (Constants.OPERATION_NAME_GRAPHQL.equals(theRequest.getOperation())
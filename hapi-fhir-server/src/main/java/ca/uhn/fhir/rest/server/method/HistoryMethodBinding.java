@@ -41,8 +41,10 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import javax.annotation.Nonnull;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -108,6 +110,11 @@ public class HistoryMethodBinding extends BaseResourceReturningMethodBinding {
 	}
 
 	// ObjectUtils.equals is replaced by a JDK7 method..
+	@Override
+	public Set<String> getDispatchOperations() {
+		return Collections.singleton(Constants.PARAM_HISTORY);
+	}
+
 	@Override
 	public MethodMatchEnum incomingServerRequestMatchesMethod(RequestDetails theRequest) {
 		if (!Constants.PARAM_HISTORY.equals(theRequest.getOperation())) {
@@ -48,7 +48,9 @@ import org.hl7.fhir.instance.model.api.IIdType;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import javax.annotation.Nonnull;
@@ -57,6 +59,9 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class ReadMethodBinding extends BaseResourceReturningMethodBinding {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ReadMethodBinding.class);
+	private static final Set<RequestTypeEnum> DISPATCH_REQUEST_TYPES =
+			Collections.unmodifiableSet(EnumSet.of(RequestTypeEnum.GET, RequestTypeEnum.HEAD));
+	private static final Set<String> DISPATCH_OPERATIONS = Set.of("", Constants.PARAM_HISTORY);
 
 	private Integer myIdIndex;
 	private boolean mySupportsVersion;
@@ -120,6 +125,21 @@ public class ReadMethodBinding extends BaseResourceReturningMethodBinding {
 		return ReturnTypeEnum.RESOURCE;
 	}
 
+	@Override
+	public Set<RequestTypeEnum> getDispatchRequestTypes() {
+		return DISPATCH_REQUEST_TYPES;
+	}
+
+	@Override
+	public Set<String> getDispatchOperations() {
+		return DISPATCH_OPERATIONS;
+	}
+
+	@Override
+	public Set<String> getDispatchCompartmentNames() {
+		return Collections.singleton("");
+	}
+
 	@Override
 	public MethodMatchEnum incomingServerRequestMatchesMethod(RequestDetails theRequest) {
 		if (!theRequest.getResourceName().equals(getResourceName())) {
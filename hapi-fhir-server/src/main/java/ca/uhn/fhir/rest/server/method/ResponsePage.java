@@ -20,6 +20,7 @@
 package ca.uhn.fhir.rest.server.method;
 
 import ca.uhn.fhir.rest.api.BundleLinks;
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.RestfulServerUtils;
 import org.apache.commons.lang3.ObjectUtils;
@@ -143,13 +144,24 @@ public class ResponsePage {
 		return false;
 	}
 
+	private boolean isBundleProviderCursorPaging() {
+		if (myBundleProvider != null && StringUtils.isNotBlank(myBundleProvider.getNextPageCursor())) {
+			return true;
+		}
+		// A keyset page without a next cursor is the last page, even if no total is known
+		return myResponseBundleRequest != null
+				&& myResponseBundleRequest.getRequestParameters().containsKey(Constants.PARAM_CURSOR);
+	}
+
 	private void determinePagingStyle() {
 		if (myPagingStyle != null) {
 			// already assigned
 			return;
 		}
 
-		if (isBundleProviderOffsetPaging()) {
+		if (isBundleProviderCursorPaging()) {
+			myPagingStyle = PagingStyle.BUNDLE_PROVIDER_CURSOR;
+		} else if (isBundleProviderOffsetPaging()) {
 			myPagingStyle = PagingStyle.BUNDLE_PROVIDER_OFFSETS;
 		} else if (myIsUsingOffsetPages) {
 			myPagingStyle = PagingStyle.NONCACHED_OFFSET;
@@ -185,6 +197,8 @@ public class ResponsePage {
 	private boolean hasNextPage() {
 		determinePagingStyle();
 		switch (myPagingStyle) {
+			case BUNDLE_PROVIDER_CURSOR:
+				return StringUtils.isNotBlank(myBundleProvider.getNextPageCursor());
 			case BUNDLE_PROVIDER_OFFSETS:
 			case BUNDLE_PROVIDER_PAGE_IDS:
 				return StringUtils.isNotBlank(myBundleProvider.getNextPageId());
@@ -224,6 +238,15 @@ public class ResponsePage {
 		if (hasNextPage()) {
 			String next;
 			switch (myPagingStyle) {
+				case BUNDLE_PROVIDER_CURSOR:
+					next = RestfulServerUtils.createCursorPagingLink(
+							theLinks,
+							myResponseBundleRequest.requestDetails.getRequestPath(),
+							myResponseBundleRequest.requestDetails.getTenantId(),
+							myBundleProvider.getNextPageCursor(),
+							myNumToReturn,
+							myResponseBundleRequest.getRequestParameters());
+					break;
 				case BUNDLE_PROVIDER_OFFSETS:
 					next = RestfulServerUtils.createOffsetPagingLink(
 							theLinks,
@@ -276,6 +299,7 @@ public class ResponsePage {
 			case BUNDLE_PROVIDER_OFFSETS:
 			case BUNDLE_PROVIDER_PAGE_IDS:
 				return StringUtils.isNotBlank(myBundleProvider.getPreviousPageId());
+			case BUNDLE_PROVIDER_CURSOR:
 			case NONCACHED_OFFSET:
 				if (myRequestedPage != null && myRequestedPage.offset != null && myRequestedPage.offset > 0) {
 					return true;
@@ -302,6 +326,7 @@ public class ResponsePage {
 							myRequestedPage.limit,
 							myResponseBundleRequest.getRequestParameters());
 					break;
+				case BUNDLE_PROVIDER_CURSOR:
 				case NONCACHED_OFFSET:
 					{
 						int start = Math.max(0, ObjectUtils.defaultIfNull(myRequestedPage.offset, 0) - myPageSize);
@@ -420,12 +445,21 @@ public class ResponsePage {
 	 * 							provide them. bundle provider will have a currentPageId
 	 * * Saved Search			- the server has a saved search object with an id that it
 	 * 							uses to page through results.
+	 * * Bundle Provider Cursor - the bundle provider uses keyset pagination and provides
+	 * 							an opaque cursor for the next page. Pages can only be
+	 * 							traversed forwards, so a previous link is only created
+	 * 							for a page that was itself requested using an offset.
 	 */
 	private enum PagingStyle {
 		/**
 		 * Paging is done by offsets; pages are not cached
 		 */
 		NONCACHED_OFFSET,
+		/**
+		 * Paging is done using keyset cursors
+		 * provided by the bundle provider
+		 */
+		BUNDLE_PROVIDER_CURSOR,
 		/**
 		 * Paging is done by offsets, but
 		 * the bundle provider provides the offsets
@@ -41,6 +41,7 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.lang.reflect.Method;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -54,6 +55,9 @@ public class SearchMethodBinding extends BaseResourceReturningMethodBinding {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchMethodBinding.class);
 
 	private static final Set<String> SPECIAL_SEARCH_PARAMS;
+	private static final Set<RequestTypeEnum> DISPATCH_REQUEST_TYPES =
+			Collections.unmodifiableSet(EnumSet.of(RequestTypeEnum.GET, RequestTypeEnum.POST));
+	private static final Set<String> DISPATCH_OPERATIONS = Set.of("", Constants.PARAM_SEARCH);
 
 	static {
 		HashSet<String> specialSearchParams = new HashSet<>();
@@ -265,6 +269,26 @@ public class SearchMethodBinding extends BaseResourceReturningMethodBinding {
 		return retVal;
 	}
 
+	@Override
+	public Set<RequestTypeEnum> getDispatchRequestTypes() {
+		return DISPATCH_REQUEST_TYPES;
+	}
+
+	@Override
+	public Set<String> getDispatchOperations() {
+		return DISPATCH_OPERATIONS;
+	}
+
+	@Override
+	public Set<String> getDispatchCompartmentNames() {
+		return Collections.singleton(StringUtils.defaultString(myCompartmentName));
+	}
+
+	@Override
+	public boolean isDispatchResultCacheable() {
+		return true;
+	}
+
 	/**
 	 * Is this request a request for a normal search - Ie. not a named search, nor a compartment
 	 * search, just a plain old search.
@@ -28,6 +28,12 @@ public class SubscriptionConstants {
 
 	public static final int DELIVERY_CHANNEL_CONCURRENT_CONSUMERS = 2;
 
+	/**
+	 * The maximum number of threads used to deliver a single REST HOOK subscription which uses
+	 * batched delivery. Batched subscriptions otherwise use twice the maximum batch size.
+	 */
+	public static final int MAX_BATCH_DELIVERY_CHANNEL_CONCURRENT_CONSUMERS = 50;
+
 	/**
 	 * The maximum number of subscriptions that can be active at once
 	 */
@@ -1,7 +1,10 @@
 package ca.uhn.fhir.rest.server;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.server.method.BaseMethodBinding;
+import ca.uhn.fhir.rest.server.method.MethodMatchEnum;
 import ca.uhn.fhir.rest.server.method.PageMethodBinding;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,10 +12,21 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.lang.reflect.Method;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class ResourceBindingTest {
@@ -38,4 +52,89 @@ class ResourceBindingTest {
 		assertEquals(second, list.get(0));
 		assertEquals(first, list.get(1));
 	}
+
+	@Test
+	public void testGetMethodOnlyTestsCandidates() {
+		BaseMethodBinding read = newBinding(Set.of(RequestTypeEnum.GET), Set.of(""), MethodMatchEnum.EXACT);
+		BaseMethodBinding operation = newBinding(null, Set.of("$everything"), MethodMatchEnum.EXACT);
+		BaseMethodBinding wildcard = newBinding(null, null, MethodMatchEnum.APPROXIMATE);
+		myResourceBinding.addMethod(wildcard);
+		myResourceBinding.addMethod(operation);
+		myResourceBinding.addMethod(read);
+
+		assertEquals(read, myResourceBinding.getMethod(newRequest(RequestTypeEnum.GET, null)));
+		verify(operation, never()).incomingServerRequestMatchesMethod(any());
+		verify(wildcard, never()).incomingServerRequestMatchesMethod(any());
+
+		assertEquals(operation, myResourceBinding.getMethod(newRequest(RequestTypeEnum.POST, "$everything")));
+		verify(read, times(1)).incomingServerRequestMatchesMethod(any());
+
+		assertEquals(wildcard, myResourceBinding.getMethod(newRequest(RequestTypeEnum.POST, "$unknown")));
+		verify(operation, times(1)).incomingServerRequestMatchesMethod(any());
+	}
+
+	@Test
+	public void testGetMethodPrefersStrongestMatchInRegistrationOrder() {
+		BaseMethodBinding approximate = newBinding(null, null, MethodMatchEnum.APPROXIMATE);
+		BaseMethodBinding exact1 = newBinding(null, null, MethodMatchEnum.EXACT);
+		BaseMethodBinding exact2 = newBinding(null, null, MethodMatchEnum.EXACT);
+		myResourceBinding.addMethod(exact2);
+		myResourceBinding.addMethod(exact1);
+		myResourceBinding.addMethod(approximate);
+
+		assertEquals(exact1, myResourceBinding.getMethod(newRequest(RequestTypeEnum.GET, null)));
+		verify(exact2, never()).incomingServerRequestMatchesMethod(any());
+	}
+
+	@Test
+	public void testGetMethodCachesCacheableResults() {
+		BaseMethodBinding search1 = newBinding(null, null, MethodMatchEnum.NONE);
+		BaseMethodBinding search2 = newBinding(null, null, MethodMatchEnum.APPROXIMATE);
+		when(search1.isDispatchResultCacheable()).thenReturn(true);
+		when(search2.isDispatchResultCacheable()).thenReturn(true);
+		myResourceBinding.addMethod(search2);
+		myResourceBinding.addMethod(search1);
+
+		SystemRequestDetails request = newRequest(RequestTypeEnum.GET, null);
+		request.setParameters(Map.of("name", new String[] {"smith"}));
+		assertEquals(search2, myResourceBinding.getMethod(request));
+		request.setParameters(Map.of("name", new String[] {"jones"}));
+		assertEquals(search2, myResourceBinding.getMethod(request));
+		verify(search1, times(1)).incomingServerRequestMatchesMethod(any());
+		verify(search2, times(1)).incomingServerRequestMatchesMethod(any());
+
+		request.setParameters(Map.of("name", new String[] {"smith", "jones"}));
+		assertEquals(search2, myResourceBinding.getMethod(request));
+		verify(search1, times(2)).incomingServerRequestMatchesMethod(any());
+	}
+
+	@Test
+	public void testGetMethodAfterDirectModification() {
+		BaseMethodBinding binding = newBinding(null, null, MethodMatchEnum.EXACT);
+		myResourceBinding.addMethod(binding);
+		assertEquals(binding, myResourceBinding.getMethod(newRequest(RequestTypeEnum.GET, null)));
+
+		myResourceBinding.getMethodBindings().remove(binding);
+		myResourceBinding.invalidateDispatchIndex();
+		assertNull(myResourceBinding.getMethod(newRequest(RequestTypeEnum.GET, null)));
+	}
+
+	private static BaseMethodBinding newBinding(
+			Set<RequestTypeEnum> theRequestTypes, Set<String> theOperations, MethodMatchEnum theMatch) {
+		BaseMethodBinding retVal = mock(BaseMethodBinding.class);
+		lenient().when(retVal.getDispatchRequestTypes()).thenReturn(theRequestTypes);
+		lenient().when(retVal.getDispatchOperations()).thenReturn(theOperations);
+		lenient().when(retVal.getDispatchCompartmentNames()).thenReturn(null);
+		lenient().when(retVal.incomingServerRequestMatchesMethod(any())).thenReturn(theMatch);
+		return retVal;
+	}
+
+	private static SystemRequestDetails newRequest(RequestTypeEnum theRequestType, String theOperation) {
+		SystemRequestDetails retVal = new SystemRequestDetails();
+		retVal.setResourceName("Patient");
+		retVal.setRequestType(theRequestType);
+		retVal.setOperation(theOperation);
+		retVal.setParameters(new HashMap<>());
+		return retVal;
+	}
 }
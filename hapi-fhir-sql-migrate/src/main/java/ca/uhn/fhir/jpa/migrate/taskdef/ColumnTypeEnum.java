@@ -29,6 +29,7 @@ public enum ColumnTypeEnum {
 	INT,
 	TINYINT,
 	BLOB,
+	BINARY,
 	CLOB,
 	DOUBLE,
 	TEXT;
@@ -28,6 +28,7 @@ import ca.uhn.fhir.batch2.api.VoidModel;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.dao.IFhirSystemDao;
@@ -41,19 +42,26 @@ import ca.uhn.fhir.rest.api.server.storage.IResourcePersistentId;
 import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
+import ca.uhn.fhir.util.ThreadPoolUtil;
 import org.apache.commons.io.LineIterator;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nonnull;
+import javax.annotation.PreDestroy;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
@@ -76,6 +84,11 @@ public class ConsumeFilesStep implements ILastJobStepWorker<BulkImportJobParamet
 	@Autowired
 	private IFhirSystemDao<?, ?> mySystemDao;
 
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	private ThreadPoolTaskExecutor myExecutor;
+
 	@Nonnull
 	@Override
 	public RunOutcome run(
@@ -84,30 +97,151 @@ public class ConsumeFilesStep implements ILastJobStepWorker<BulkImportJobParamet
 
 		String ndjson = theStepExecutionDetails.getData().getNdJsonText();
 		String sourceName = theStepExecutionDetails.getData().getSourceName();
+		RequestPartitionId partitionId = theStepExecutionDetails.getParameters().getPartitionId();
 
-		IParser jsonParser = myCtx.newJsonParser();
 		LineIterator lineIter = new LineIterator(new StringReader(ndjson));
+		int commitBatchSize = myStorageSettings.getBulkImportCommitBatchSize();
+		if (commitBatchSize > 0) {
+			int count = storeResourcesInBatches(lineIter, commitBatchSize, partitionId, sourceName);
+			return new RunOutcome(count);
+		}
+
+		IParser jsonParser = myCtx.newJsonParser();
 		List<IBaseResource> resources = new ArrayList<>();
 		while (lineIter.hasNext()) {
 			String next = lineIter.next();
 			if (isNotBlank(next)) {
-				IBaseResource parsed;
-				try {
-					parsed = jsonParser.parseResource(next);
-				} catch (DataFormatException e) {
-					throw new JobExecutionFailedException(Msg.code(2052) + "Failed to parse resource: " + e, e);
-				}
-				resources.add(parsed);
+				resources.add(parseResource(jsonParser, next));
 			}
 		}
 
 		ourLog.info("Bulk loading {} resources from source {}", resources.size(), sourceName);
 
-		storeResources(resources, theStepExecutionDetails.getParameters().getPartitionId());
+		storeResources(resources, partitionId);
 
 		return new RunOutcome(resources.size());
 	}
 
+	/**
+	 * Parses and stores the NDJSON lines in batches of (at most) the given size, each in its own
+	 * transaction. If {@link JpaStorageSettings#getBulkImportThreadCount()} is greater than 1, the
+	 * batches are parsed and stored concurrently, with no more batches in progress at a time than
+	 * there are threads.
+	 *
+	 * @return The number of resources which were stored
+	 */
+	private int storeResourcesInBatches(
+			LineIterator theLineIter, int theBatchSize, RequestPartitionId thePartitionId, String theSourceName) {
+		ourLog.info("Bulk loading resources from source {} in batches of {}", theSourceName, theBatchSize);
+
+		int threadCount = myStorageSettings.getBulkImportThreadCount();
+		int retVal = 0;
+		if (threadCount < 2) {
+			IParser jsonParser = myCtx.newJsonParser();
+			for (List<String> batch = nextBatch(theLineIter, theBatchSize);
+					!batch.isEmpty();
+					batch = nextBatch(theLineIter, theBatchSize)) {
+				retVal += parseAndStoreResources(jsonParser, batch, thePartitionId);
+			}
+		} else {
+			retVal = storeResourcesInBatchesConcurrently(theLineIter, theBatchSize, thePartitionId, threadCount);
+		}
+
+		ourLog.info("Bulk loaded {} resources from source {}", retVal, theSourceName);
+		return retVal;
+	}
+
+	private int storeResourcesInBatchesConcurrently(
+			LineIterator theLineIter, int theBatchSize, RequestPartitionId thePartitionId, int theThreadCount) {
+		ThreadPoolTaskExecutor executor = getExecutor();
+		Semaphore permits = new Semaphore(theThreadCount);
+		AtomicBoolean failed = new AtomicBoolean();
+		List<Future<Integer>> futures = new ArrayList<>();
+
+		try {
+			for (List<String> batch = nextBatch(theLineIter, theBatchSize);
+					!batch.isEmpty() && !failed.get();
+					batch = nextBatch(theLineIter, theBatchSize)) {
+				// Bounds the number of batches (and therefore parsed resources) held in memory
+				permits.acquire();
+				List<String> lines = batch;
+				futures.add(executor.submit(() -> {
+					try {
+						return parseAndStoreResources(myCtx.newJsonParser(), lines, thePartitionId);
+					} catch (RuntimeException e) {
+						failed.set(true);
+						throw e;
+					} finally {
+						permits.release();
+					}
+				}));
+			}
+
+			int retVal = 0;
+			for (Future<Integer> next : futures) {
+				retVal += next.get();
+			}
+			return retVal;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			futures.forEach(t -> t.cancel(true));
+			throw new JobExecutionFailedException(
+					Msg.code(2464) + "Interrupted while storing bulk import resources", e);
+		} catch (ExecutionException e) {
+			futures.forEach(t -> t.cancel(true));
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new JobExecutionFailedException(
+					Msg.code(2465) + "Failed to store bulk import resources: " + e.getCause(), e);
+		}
+	}
+
+	private int parseAndStoreResources(
+			IParser theJsonParser, List<String> theLines, RequestPartitionId thePartitionId) {
+		List<IBaseResource> resources = new ArrayList<>(theLines.size());
+		for (String next : theLines) {
+			resources.add(parseResource(theJsonParser, next));
+		}
+		storeResources(resources, thePartitionId);
+		return resources.size();
+	}
+
+	private static List<String> nextBatch(LineIterator theLineIter, int theBatchSize) {
+		List<String> retVal = new ArrayList<>();
+		while (retVal.size() < theBatchSize && theLineIter.hasNext()) {
+			String next = theLineIter.next();
+			if (isNotBlank(next)) {
+				retVal.add(next);
+			}
+		}
+		return retVal;
+	}
+
+	private static IBaseResource parseResource(IParser theJsonParser, String theLine) {
+		try {
+			return theJsonParser.parseResource(theLine);
+		} catch (DataFormatException e) {
+			throw new JobExecutionFailedException(Msg.code(2052) + "Failed to parse resource: " + e, e);
+		}
+	}
+
+	private synchronized ThreadPoolTaskExecutor getExecutor() {
+		if (myExecutor == null) {
+			int threadCount = myStorageSettings.getBulkImportThreadCount();
+			myExecutor = ThreadPoolUtil.newThreadPool(threadCount, threadCount, "bulk-import-");
+		}
+		return myExecutor;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+	}
+
 	public void storeResources(List<IBaseResource> resources, RequestPartitionId thePartitionId) {
 		SystemRequestDetails requestDetails = new SystemRequestDetails();
 		if (thePartitionId == null) {
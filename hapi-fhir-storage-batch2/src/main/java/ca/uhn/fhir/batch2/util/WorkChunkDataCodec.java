@@ -0,0 +1,307 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Batch2 Task Processor
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.batch2.util;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Converts Batch2 work chunk data between its JSON form and a compact form which is
+ * cheaper to store.
+ * <p>
+ * In the compact form, each top-level array of typed resource PIDs in the JSON (i.e. an
+ * array of <code>{"type": "Patient", "id": "123"}</code> objects, as used by
+ * {@link ca.uhn.fhir.batch2.jobs.chunk.ResourceIdListWorkChunkJson}) is stored in binary,
+ * with each distinct resource type written once and each PID written as a variable-length
+ * difference from the previous one. The rest of the JSON is kept as-is, and the result can
+ * optionally be compressed. Since work chunk data is stored in a text column, the binary
+ * form is Base64 encoded and marked with {@link #COMPACT_PREFIX}.
+ * </p>
+ * <p>
+ * {@link #decode(String)} accepts data in either form, so chunks which were stored as JSON
+ * remain readable. Decoded JSON is equivalent to the original, but the arrays of typed PIDs
+ * are moved after the other properties of the object.
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public final class WorkChunkDataCodec {
+
+	/**
+	 * Marks data in the compact form. This can never be the start of a JSON document.
+	 */
+	public static final String COMPACT_PREFIX = "~wc1:";
+
+	private static final int FLAG_COMPRESSED = 1;
+	private static final String TYPE_PROPERTY = "type";
+	private static final String ID_PROPERTY = "id";
+	private static final ObjectMapper ourMapper;
+
+	static {
+		ourMapper = new ObjectMapper();
+		ourMapper.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+		ourMapper.setNodeFactory(JsonNodeFactory.withExactBigDecimals(true));
+	}
+
+	/**
+	 * Non instantiable
+	 */
+	private WorkChunkDataCodec() {
+		// nothing
+	}
+
+	/**
+	 * Converts work chunk JSON to the compact form. If the compact form would not be
+	 * smaller than the JSON, the JSON is returned unchanged.
+	 *
+	 * @param theJson     The work chunk data, as JSON
+	 * @param theCompress Should the compact form be compressed
+	 */
+	@Nullable
+	public static String encode(@Nullable String theJson, boolean theCompress) {
+		if (theJson == null || isCompact(theJson)) {
+			return theJson;
+		}
+
+		try {
+			JsonNode root = ourMapper.readTree(theJson);
+			if (!(root instanceof ObjectNode)) {
+				return theJson;
+			}
+
+			ObjectNode remainder = (ObjectNode) root;
+			Map<String, ArrayNode> typedPidLists = new LinkedHashMap<>();
+			for (Iterator<Map.Entry<String, JsonNode>> iter = remainder.fields(); iter.hasNext(); ) {
+				Map.Entry<String, JsonNode> next = iter.next();
+				if (isTypedPidList(next.getValue())) {
+					typedPidLists.put(next.getKey(), (ArrayNode) next.getValue());
+				}
+			}
+			if (typedPidLists.isEmpty() && !theCompress) {
+				return theJson;
+			}
+			remainder.remove(typedPidLists.keySet());
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(theJson.length() / 4);
+			bytes.write(theCompress ? FLAG_COMPRESSED : 0);
+			try (OutputStream out = theCompress ? new DeflaterOutputStream(bytes) : bytes) {
+				writeString(out, ourMapper.writeValueAsString(remainder));
+				writeVarLong(out, typedPidLists.size());
+				for (Map.Entry<String, ArrayNode> next : typedPidLists.entrySet()) {
+					writeString(out, next.getKey());
+					writeTypedPidList(out, next.getValue());
+				}
+			}
+
+			String retVal = COMPACT_PREFIX + Base64.getEncoder().encodeToString(bytes.toByteArray());
+			return retVal.length() < theJson.length() ? retVal : theJson;
+		} catch (IOException e) {
+			throw new InternalErrorException(Msg.code(2466) + "Failed to encode work chunk data: " + e, e);
+		}
+	}
+
+	/**
+	 * Converts work chunk data to JSON. Data which is already JSON is returned unchanged.
+	 *
+	 * @param theData The work chunk data, in either the JSON or the compact form
+	 */
+	@Nullable
+	public static String decode(@Nullable String theData) {
+		if (!isCompact(theData)) {
+			return theData;
+		}
+
+		try {
+			byte[] bytes = Base64.getDecoder().decode(theData.substring(COMPACT_PREFIX.length()));
+			if (bytes.length == 0) {
+				throw new EOFException(Msg.code(2468) + "Work chunk data is empty");
+			}
+			InputStream in = new ByteArrayInputStream(bytes, 1, bytes.length - 1);
+			if ((bytes[0] & FLAG_COMPRESSED) != 0) {
+				in = new InflaterInputStream(in);
+			}
+
+			try (InputStream input = in) {
+				ObjectNode root = (ObjectNode) ourMapper.readTree(readString(input));
+				int typedPidListCount = readVarInt(input);
+				for (int i = 0; i < typedPidListCount; i++) {
+					String propertyName = readString(input);
+					readTypedPidList(input, root.putArray(propertyName));
+				}
+				return ourMapper.writeValueAsString(root);
+			}
+		} catch (IOException | IllegalArgumentException | IndexOutOfBoundsException | ClassCastException e) {
+			throw new InternalErrorException(Msg.code(2467) + "Failed to decode work chunk data: " + e, e);
+		}
+	}
+
+	/**
+	 * Is the given work chunk data in the compact form
+	 */
+	public static boolean isCompact(@Nullable String theData) {
+		return theData != null && theData.startsWith(COMPACT_PREFIX);
+	}
+
+	private static boolean isTypedPidList(JsonNode theNode) {
+		if (!theNode.isArray() || theNode.isEmpty()) {
+			return false;
+		}
+		for (JsonNode next : theNode) {
+			if (!next.isObject() || next.size() != 2) {
+				return false;
+			}
+			JsonNode type = next.get(TYPE_PROPERTY);
+			JsonNode id = next.get(ID_PROPERTY);
+			if (type == null || !type.isTextual() || id == null || !id.isTextual() || !isCanonicalLong(id.asText())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * PIDs are only stored as numbers if they come back out as exactly the same string
+	 */
+	private static boolean isCanonicalLong(String theId) {
+		try {
+			return Long.toString(Long.parseLong(theId)).equals(theId);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private static void writeTypedPidList(OutputStream theOut, ArrayNode theTypedPids) throws IOException {
+		Map<String, Integer> typeToIndex = new LinkedHashMap<>();
+		for (JsonNode next : theTypedPids) {
+			typeToIndex.putIfAbsent(next.get(TYPE_PROPERTY).asText(), typeToIndex.size());
+		}
+
+		writeVarLong(theOut, typeToIndex.size());
+		for (String next : typeToIndex.keySet()) {
+			writeString(theOut, next);
+		}
+
+		writeVarLong(theOut, theTypedPids.size());
+		long previousPid = 0;
+		for (JsonNode next : theTypedPids) {
+			long pid = Long.parseLong(next.get(ID_PROPERTY).asText());
+			writeVarLong(theOut, typeToIndex.get(next.get(TYPE_PROPERTY).asText()));
+			// PIDs are usually ascending, so the differences are small
+			writeVarLong(theOut, zigZagEncode(pid - previousPid));
+			previousPid = pid;
+		}
+	}
+
+	private static void readTypedPidList(InputStream theIn, ArrayNode theTypedPids) throws IOException {
+		int typeCount = readVarInt(theIn);
+		List<String> types = new ArrayList<>(typeCount);
+		for (int i = 0; i < typeCount; i++) {
+			types.add(readString(theIn));
+		}
+
+		int typedPidCount = readVarInt(theIn);
+		long pid = 0;
+		for (int i = 0; i < typedPidCount; i++) {
+			String type = types.get(readVarInt(theIn));
+			pid += zigZagDecode(readVarLong(theIn));
+			ObjectNode typedPid = theTypedPids.addObject();
+			typedPid.put(TYPE_PROPERTY, type);
+			typedPid.put(ID_PROPERTY, Long.toString(pid));
+		}
+	}
+
+	private static void writeString(OutputStream theOut, String theValue) throws IOException {
+		byte[] bytes = theValue.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(theOut, bytes.length);
+		theOut.write(bytes);
+	}
+
+	private static String readString(InputStream theIn) throws IOException {
+		int length = readVarInt(theIn);
+		byte[] bytes = theIn.readNBytes(length);
+		if (bytes.length != length) {
+			throw new EOFException(Msg.code(2469) + "Work chunk data ends in the middle of a string");
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarLong(OutputStream theOut, long theValue) throws IOException {
+		long value = theValue;
+		while ((value & ~0x7FL) != 0) {
+			theOut.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		theOut.write((int) value);
+	}
+
+	private static long readVarLong(InputStream theIn) throws IOException {
+		long retVal = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int next = theIn.read();
+			if (next == -1) {
+				throw new EOFException(Msg.code(2470) + "Work chunk data ends in the middle of a number");
+			}
+			retVal |= (long) (next & 0x7F) << shift;
+			if ((next & 0x80) == 0) {
+				return retVal;
+			}
+		}
+		throw new IOException(Msg.code(2471) + "Malformed variable length number");
+	}
+
+	private static int readVarInt(InputStream theIn) throws IOException {
+		long retVal = readVarLong(theIn);
+		if (retVal < 0 || retVal > Integer.MAX_VALUE) {
+			throw new IOException(Msg.code(2472) + "Invalid length: " + retVal);
+		}
+		return (int) retVal;
+	}
+
+	private static long zigZagEncode(long theValue) {
+		return (theValue << 1) ^ (theValue >> 63);
+	}
+
+	private static long zigZagDecode(long theValue) {
+		return (theValue >>> 1) ^ -(theValue & 1);
+	}
+}
@@ -0,0 +1,94 @@
+package ca.uhn.fhir.batch2.util;
+
+import ca.uhn.fhir.batch2.jobs.chunk.ResourceIdListWorkChunkJson;
+import ca.uhn.fhir.batch2.jobs.chunk.TypedPidJson;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.JsonUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WorkChunkDataCodecTest {
+
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testEncodeAndDecodeResourceIdList(boolean theCompress) {
+		List<TypedPidJson> typedPids = new ArrayList<>();
+		for (long i = 0; i < 1000; i++) {
+			// Mostly ascending, with a few out of order and negative PIDs
+			long pid = i % 100 == 0 ? -i : 1_000_000_000L + (i * 3);
+			typedPids.add(new TypedPidJson(i % 3 == 0 ? "Observation" : "Patient", Long.toString(pid)));
+		}
+		String json = JsonUtil.serialize(new ResourceIdListWorkChunkJson(typedPids, RequestPartitionId.fromPartitionId(1)));
+
+		String encoded = WorkChunkDataCodec.encode(json, theCompress);
+		assertThat(encoded, startsWith(WorkChunkDataCodec.COMPACT_PREFIX));
+		assertThat(encoded.length(), lessThan(json.length() / 3));
+
+		String decoded = WorkChunkDataCodec.decode(encoded);
+		assertEquals(JsonUtil.serialize(JsonUtil.deserialize(json, ResourceIdListWorkChunkJson.class)), JsonUtil.serialize(JsonUtil.deserialize(decoded, ResourceIdListWorkChunkJson.class)));
+	}
+
+	@Test
+	public void testEncodeKeepsNonNumericIdsAsJson() {
+		String json = "{\"ids\":[{\"type\":\"Patient\",\"id\":\"123\"},{\"type\":\"Patient\",\"id\":\"0123\"}],\"other\":\"value\"}";
+
+		// The second ID would not survive being stored as a number
+		assertSame(json, WorkChunkDataCodec.encode(json, false));
+	}
+
+	@Test
+	public void testEncodeKeepsSmallDataAsJson() {
+		String json = "{\"key\":\"value\"}";
+
+		assertSame(json, WorkChunkDataCodec.encode(json, true));
+	}
+
+	@Test
+	public void testDecodeJson() {
+		String json = "{\"key\":\"value\"}";
+
+		assertSame(json, WorkChunkDataCodec.decode(json));
+		assertFalse(WorkChunkDataCodec.isCompact(json));
+		assertNull(WorkChunkDataCodec.decode(null));
+		assertNull(WorkChunkDataCodec.encode(null, true));
+	}
+
+	@Test
+	public void testDecodePreservesOtherProperties() {
+		StringBuilder json = new StringBuilder("{\"ids\":[");
+		for (int i = 0; i < 50; i++) {
+			json.append(i > 0 ? "," : "").append("{\"type\":\"Patient\",\"id\":\"").append(i).append("\"}");
+		}
+		json.append("],\"nested\":{\"decimal\":1.10,\"list\":[1,2]},\"text\":\"\\u00e9\"}");
+
+		String encoded = WorkChunkDataCodec.encode(json.toString(), true);
+		assertTrue(WorkChunkDataCodec.isCompact(encoded));
+
+		String decoded = WorkChunkDataCodec.decode(encoded);
+		assertThat(decoded, startsWith("{\"nested\":{\"decimal\":1.10,\"list\":[1,2]},\"text\":\"é\",\"ids\":[{\"type\":\"Patient\",\"id\":\"0\"},"));
+	}
+
+	@Test
+	public void testDecodeInvalid() {
+		InternalErrorException e = assertThrows(InternalErrorException.class, () -> WorkChunkDataCodec.decode(WorkChunkDataCodec.COMPACT_PREFIX + "AAE="));
+		assertThat(e.getMessage(), startsWith("HAPI-2467: Failed to decode work chunk data"));
+		// The data claims to hold a 1 byte string, but ends before it
+		assertThat(e.getMessage(), containsString("HAPI-2469: Work chunk data ends in the middle of a string"));
+	}
+}
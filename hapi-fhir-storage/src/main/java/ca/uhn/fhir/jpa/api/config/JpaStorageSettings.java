@@ -342,6 +342,61 @@ public class JpaStorageSettings extends StorageSettings {
 	private IValidationSupport.IssueSeverity myIssueSeverityForCodeDisplayMismatch =
 			IValidationSupport.IssueSeverity.WARNING;
 
+	/**
+	 * @since 7.0.0
+	 */
+	private int myIncludeLoadingThreadCount = 1;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private boolean myCombineIncludeQueries = false;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private int myParsedResourceCacheSize = 0;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private boolean myKeysetPagingEnabled = false;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private boolean myStreamingSynchronousSearchEnabled = false;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private int mySearchSqlTemplateCacheSize = 0;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private int mySearchCountThreadCount = 0;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private boolean myPreResolveTransactionReferences = false;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private int myBulkImportCommitBatchSize = 0;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private int myBulkImportThreadCount = 1;
+
+	/**
+	 * @since 7.0.0
+	 */
+	private Batch2WorkChunkDataFormatEnum myBatch2WorkChunkDataFormat = Batch2WorkChunkDataFormatEnum.JSON;
+
 	/**
 	 * This setting allows preventing a conditional update to invalidate the match criteria.
 	 * <p/>
@@ -992,6 +1047,21 @@ public class JpaStorageSettings extends StorageSettings {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * Sets the encoding used to store the body of newly written resource versions. Existing
+	 * versions are always read back using the encoding they were stored with, so this
+	 * setting can be changed at any time.
+	 * <p>
+	 * {@link ResourceEncodingEnum#SMILE} stores resources in a binary form of JSON which is
+	 * written from and read back into the resource model without producing or parsing JSON
+	 * text, so it is faster to read and write than the default. Since it is not compressed,
+	 * it generally uses more space than the default. Versions written with it can not be
+	 * read by HAPI FHIR versions prior to 7.0.0.
+	 * </p>
+	 * <p>
+	 * The default value for this setting is {@link ResourceEncodingEnum#JSONC}.
+	 * </p>
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
 		myResourceEncoding = theResourceEncoding;
 	}
@@ -2372,6 +2442,329 @@ public class JpaStorageSettings extends StorageSettings {
 		myResourceHistoryDbEnabled = theResourceHistoryEnabled;
 	}
 
+	/**
+	 * If set to a value greater than 0 (default is <code>0</code>), resources parsed from their
+	 * stored text are kept in a bounded in-memory cache holding up to the given number of resource
+	 * versions. Subsequent reads of the same resource version then skip decoding and parsing the
+	 * stored text, which is useful when the same resources are repeatedly returned by searches or
+	 * loaded as includes.
+	 *
+	 * @see #setParsedResourceCacheSize(int)
+	 * @since 7.0.0
+	 */
+	public int getParsedResourceCacheSize() {
+		return myParsedResourceCacheSize;
+	}
+
+	/**
+	 * If set to a value greater than 0 (default is <code>0</code>), resources parsed from their
+	 * stored text are kept in a bounded in-memory cache holding up to the given number of resource
+	 * versions. Subsequent reads of the same resource version then skip decoding and parsing the
+	 * stored text, which is useful when the same resources are repeatedly returned by searches or
+	 * loaded as includes.
+	 * <p>
+	 * Entries are keyed by the resource PID, version and last updated timestamp, so a new version
+	 * of a resource is never served from a stale entry. A copy of the cached resource is returned
+	 * for every read, and resource metadata (tags, source, partition) is always populated from the
+	 * database row. Setting this to <code>0</code> disables the cache.
+	 * </p>
+	 * <p>
+	 * The cache is created the first time it is needed, so changes to this setting after that
+	 * point will not take effect until the server is restarted.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setParsedResourceCacheSize(int theParsedResourceCacheSize) {
+		Validate.isTrue(theParsedResourceCacheSize >= 0, "theParsedResourceCacheSize must not be negative");
+		myParsedResourceCacheSize = theParsedResourceCacheSize;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), offset searches (i.e. searches using
+	 * <code>_offset</code>, or all searches when the {@link ca.uhn.fhir.jpa.interceptor.ForceOffsetSearchModeInterceptor}
+	 * is registered) use keyset pagination for their next links.
+	 *
+	 * @see #setKeysetPagingEnabled(boolean)
+	 * @since 7.0.0
+	 */
+	public boolean isKeysetPagingEnabled() {
+		return myKeysetPagingEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), offset searches (i.e. searches using
+	 * <code>_offset</code>, or all searches when the {@link ca.uhn.fhir.jpa.interceptor.ForceOffsetSearchModeInterceptor}
+	 * is registered) use keyset pagination for their next links.
+	 * <p>
+	 * Instead of an <code>_offset</code>, the next link carries an opaque <code>_cursor</code>
+	 * parameter which encodes the sort values and resource ID of the last result on the current page.
+	 * The next page is then fetched by seeking past that position in the generated SQL, so the cost of
+	 * fetching a page does not grow with its depth. Keyset pagination is used when the search has no
+	 * <code>_sort</code>, or is sorted on a single <code>_id</code>, <code>_lastUpdated</code>, or
+	 * date, string or token search parameter. Other searches continue to use <code>_offset</code> links.
+	 * </p>
+	 * <p>
+	 * Keyset pages can only be traversed forwards, so keyset pages do not include a previous link.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setKeysetPagingEnabled(boolean theKeysetPagingEnabled) {
+		myKeysetPagingEnabled = theKeysetPagingEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), synchronous searches (e.g. searches using
+	 * <code>Cache-Control: no-store</code>) only hold on to the resource IDs of their results,
+	 * and the resources for a page are loaded (along with their includes) when that page is
+	 * requested, instead of all matching resources being loaded before the response is built.
+	 *
+	 * @see #setStreamingSynchronousSearchEnabled(boolean)
+	 * @since 7.0.0
+	 */
+	public boolean isStreamingSynchronousSearchEnabled() {
+		return myStreamingSynchronousSearchEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), synchronous searches (e.g. searches using
+	 * <code>Cache-Control: no-store</code>) only hold on to the resource IDs of their results,
+	 * and the resources for a page are loaded (along with their includes) when that page is
+	 * requested, instead of all matching resources being loaded before the response is built.
+	 * <p>
+	 * This keeps memory use proportional to the page size rather than the number of results.
+	 * Offset searches and <code>$everything</code> operations are not affected.
+	 * </p>
+	 * <p>
+	 * With this mode enabled, synchronous searches behave differently in the following ways:
+	 * </p>
+	 * <ul>
+	 * <li>The resources are read in a separate transaction from the one which found the matching IDs.</li>
+	 * <li>{@link #setMaximumIncludesToLoadPerPage(Integer) The maximum number of includes} applies to each
+	 * page rather than to the whole search.</li>
+	 * <li>The total (<code>Bundle.total</code>) counts only the matching resources, and not the
+	 * <code>_include</code> and <code>_revinclude</code> targets.</li>
+	 * <li>The search keeps a reference to the request which started it, and uses it (for example when invoking
+	 * interceptors) while loading later pages, including pages fetched by subsequent paging requests.</li>
+	 * </ul>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setStreamingSynchronousSearchEnabled(boolean theStreamingSynchronousSearchEnabled) {
+		myStreamingSynchronousSearchEnabled = theStreamingSynchronousSearchEnabled;
+	}
+
+	/**
+	 * If set to a value greater than 0 (default is <code>0</code>), the SQL generated for searches is
+	 * kept in a bounded in-memory cache holding up to the given number of statements, keyed by the
+	 * shape of the search (i.e. the resource type, the parameters and modifiers used, the number of
+	 * values supplied for each parameter, the sort and the paging) rather than its values. Later
+	 * searches with the same shape reuse the cached statement and only bind their own values.
+	 *
+	 * @see #setSearchSqlTemplateCacheSize(int)
+	 * @since 7.0.0
+	 */
+	public int getSearchSqlTemplateCacheSize() {
+		return mySearchSqlTemplateCacheSize;
+	}
+
+	/**
+	 * If set to a value greater than 0 (default is <code>0</code>), the SQL generated for searches is
+	 * kept in a bounded in-memory cache holding up to the given number of statements, keyed by the
+	 * shape of the search (i.e. the resource type, the parameters and modifiers used, the number of
+	 * values supplied for each parameter, the sort and the paging) rather than its values. Later
+	 * searches with the same shape reuse the cached statement and only bind their own values.
+	 * This only saves the cost of rendering the SQL: the query is still built in full for every
+	 * search in order to calculate the values to bind.
+	 * <p>
+	 * Only searches using plain token, string and date search parameters (plus <code>_sort</code>,
+	 * <code>_lastUpdated</code> and paging) are cached, since the SQL for these is fully determined by
+	 * their shape. All other searches are always generated from scratch. Setting this to <code>0</code>
+	 * disables the cache.
+	 * </p>
+	 * <p>
+	 * The cache is created the first time it is needed, so changes to this setting after that
+	 * point will not take effect until the server is restarted.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setSearchSqlTemplateCacheSize(int theSearchSqlTemplateCacheSize) {
+		Validate.isTrue(theSearchSqlTemplateCacheSize >= 0, "theSearchSqlTemplateCacheSize must not be negative");
+		mySearchSqlTemplateCacheSize = theSearchSqlTemplateCacheSize;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>), the count query for
+	 * searches which need an accurate total (i.e. searches using <code>_total=accurate</code>, or all
+	 * searches if {@link #setDefaultTotalMode(SearchTotalModeEnum)} is set to
+	 * {@link SearchTotalModeEnum#ACCURATE}) is executed concurrently with the search itself, using a
+	 * shared pool with (at most) the given number of threads.
+	 *
+	 * @see #setSearchCountThreadCount(int)
+	 * @since 7.0.0
+	 */
+	public int getSearchCountThreadCount() {
+		return mySearchCountThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>), the count query for
+	 * searches which need an accurate total (i.e. searches using <code>_total=accurate</code>, or all
+	 * searches if {@link #setDefaultTotalMode(SearchTotalModeEnum)} is set to
+	 * {@link SearchTotalModeEnum#ACCURATE}) is executed concurrently with the search itself, using a
+	 * shared pool with (at most) the given number of threads.
+	 * <p>
+	 * By default the count query is executed before the search, so the first page of results is not
+	 * returned until the count has finished. When this setting is enabled, the first page is returned
+	 * as soon as it has been loaded. It includes the total if the count has already finished, and
+	 * otherwise the total is stored with the search once it is known so that it is included in
+	 * subsequent pages. Each count query is executed in its own read-only transaction.
+	 * </p>
+	 * <p>
+	 * Note that this means that the first page of a search using <code>_total=accurate</code> may not
+	 * include <code>Bundle.total</code>, even though it was requested. Clients which need the total
+	 * must be prepared to read it from a subsequent page instead. For this reason, this setting is
+	 * disabled by default.
+	 * </p>
+	 * <p>
+	 * The pool is created the first time it is needed, so changes to the number of threads after that
+	 * point will not take effect until the server is restarted.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setSearchCountThreadCount(int theSearchCountThreadCount) {
+		Validate.isTrue(theSearchCountThreadCount >= 0, "theSearchCountThreadCount must not be negative");
+		mySearchCountThreadCount = theSearchCountThreadCount;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), FHIR transactions resolve the resource IDs of all
+	 * relative references found in the resources being created and updated before any entry is
+	 * processed, using a small number of batched queries instead of one query per reference.
+	 *
+	 * @see #setPreResolveTransactionReferences(boolean)
+	 * @since 7.0.0
+	 */
+	public boolean isPreResolveTransactionReferences() {
+		return myPreResolveTransactionReferences;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), FHIR transactions resolve the resource IDs of all
+	 * relative references found in the resources being created and updated before any entry is
+	 * processed, using a small number of batched queries instead of one query per reference.
+	 * <p>
+	 * This is mostly useful for large transactions which reference many existing resources (e.g.
+	 * a bundle of observations which all reference patients that are already on the server). References
+	 * to resources which do not exist, or which are created, updated or deleted by the transaction itself,
+	 * are left to be resolved as they are encountered, exactly as they are when this setting is disabled.
+	 * When partitioning is enabled, references are only pre-resolved for transactions whose entries
+	 * all belong to a single partition, and only references to resources stored in that partition are
+	 * pre-resolved. Any other references are resolved normally.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setPreResolveTransactionReferences(boolean thePreResolveTransactionReferences) {
+		myPreResolveTransactionReferences = thePreResolveTransactionReferences;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>), bulk import stores the
+	 * resources in each work chunk in separate database transactions of (at most) this many resources,
+	 * instead of in a single transaction for the whole chunk.
+	 *
+	 * @see #setBulkImportCommitBatchSize(int)
+	 * @since 7.0.0
+	 */
+	public int getBulkImportCommitBatchSize() {
+		return myBulkImportCommitBatchSize;
+	}
+
+	/**
+	 * If set to a value greater than <code>0</code> (default is <code>0</code>), bulk import stores the
+	 * resources in each work chunk in separate database transactions of (at most) this many resources,
+	 * instead of in a single transaction for the whole chunk.
+	 * <p>
+	 * The NDJSON lines of the chunk are only parsed as each batch is stored, so the number of parsed
+	 * resources held in memory is bounded by this size (multiplied by the
+	 * {@link #setBulkImportThreadCount(int) thread count}) rather than by the size of the chunk. If a
+	 * batch fails, the batches which have already been committed are not rolled back, but since bulk
+	 * import stores resources using update-with-ID the chunk can safely be retried.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setBulkImportCommitBatchSize(int theBulkImportCommitBatchSize) {
+		Validate.isTrue(theBulkImportCommitBatchSize >= 0, "theBulkImportCommitBatchSize must not be negative");
+		myBulkImportCommitBatchSize = theBulkImportCommitBatchSize;
+	}
+
+	/**
+	 * The number of threads that bulk import uses to parse and store the resources in each work chunk
+	 * (default is <code>1</code>). Values greater than <code>1</code> only have an effect if
+	 * {@link #getBulkImportCommitBatchSize()} is also set.
+	 *
+	 * @see #setBulkImportThreadCount(int)
+	 * @since 7.0.0
+	 */
+	public int getBulkImportThreadCount() {
+		return myBulkImportThreadCount;
+	}
+
+	/**
+	 * The number of threads that bulk import uses to parse and store the resources in each work chunk
+	 * (default is <code>1</code>). Values greater than <code>1</code> only have an effect if
+	 * {@link #getBulkImportCommitBatchSize()} is also set.
+	 * <p>
+	 * When enabled, the batches of a chunk are parsed, indexed and committed concurrently on a shared
+	 * pool, each in its own transaction. Batches are not committed in file order, so this should
+	 * only be used if the resources within a single NDJSON file do not reference each other and
+	 * each resource ID appears only once per file.
+	 * </p>
+	 * <p>
+	 * The pool is created the first time it is needed, so changes to the number of threads after that
+	 * point will not take effect until the server is restarted.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setBulkImportThreadCount(int theBulkImportThreadCount) {
+		Validate.isTrue(theBulkImportThreadCount > 0, "theBulkImportThreadCount must be positive");
+		myBulkImportThreadCount = theBulkImportThreadCount;
+	}
+
+	/**
+	 * Controls how the data for new Batch2 work chunks is stored in the database (default is
+	 * {@link Batch2WorkChunkDataFormatEnum#JSON}).
+	 *
+	 * @see #setBatch2WorkChunkDataFormat(Batch2WorkChunkDataFormatEnum)
+	 * @since 7.0.0
+	 */
+	public Batch2WorkChunkDataFormatEnum getBatch2WorkChunkDataFormat() {
+		return myBatch2WorkChunkDataFormat;
+	}
+
+	/**
+	 * Controls how the data for new Batch2 work chunks is stored in the database (default is
+	 * {@link Batch2WorkChunkDataFormatEnum#JSON}).
+	 * <p>
+	 * The compact formats mostly benefit jobs such as bulk export and reindex, whose work chunks
+	 * hold long lists of resource PIDs. Chunks are always read back as JSON, and chunks stored in
+	 * any format can be read regardless of this setting, so it can be changed at any time
+	 * (including while jobs are running).
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setBatch2WorkChunkDataFormat(@Nonnull Batch2WorkChunkDataFormatEnum theBatch2WorkChunkDataFormat) {
+		Validate.notNull(theBatch2WorkChunkDataFormat, "theBatch2WorkChunkDataFormat must not be null");
+		myBatch2WorkChunkDataFormat = theBatch2WorkChunkDataFormat;
+	}
+
 	/**
 	 * This setting controls whether MdmLink and other non-resource DB history is enabled.
 	 * <p/>
@@ -2419,6 +2812,82 @@ public class JpaStorageSettings extends StorageSettings {
 		myIssueSeverityForCodeDisplayMismatch = theIssueSeverityForCodeDisplayMismatch;
 	}
 
+	/**
+	 * The maximum number of threads used to load <code>_include</code> and <code>_revinclude</code>
+	 * results. The default is <code>1</code>, meaning that the queries for each include are
+	 * executed one after another on the thread performing the search.
+	 *
+	 * @see #setIncludeLoadingThreadCount(int)
+	 * @since 7.0.0
+	 */
+	public int getIncludeLoadingThreadCount() {
+		return myIncludeLoadingThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than <code>1</code> (default is <code>1</code>), the independent
+	 * queries for each round of <code>_include</code> and <code>_revinclude</code> loading are
+	 * executed concurrently using a shared pool with (at most) the given number of threads, each
+	 * query in its own read-only transaction. Results are always merged in the order of the
+	 * includes in the request, so the loaded resources are the same as when loading serially.
+	 * <p>
+	 * Searches performed within a read-write transaction (e.g. a search within a transaction
+	 * Bundle) always load their includes serially, since the other transactions could not see
+	 * any uncommitted changes.
+	 * </p>
+	 * <p>
+	 * Each concurrent query uses its own database connection while the search waits for it, still
+	 * holding its own connection. The database connection pool should therefore allow for up to
+	 * this many additional connections.
+	 * </p>
+	 * <p>
+	 * The pool is created the first time it is needed, so changes to this setting after that
+	 * point will not take effect until the server is restarted.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setIncludeLoadingThreadCount(int theIncludeLoadingThreadCount) {
+		Validate.isTrue(theIncludeLoadingThreadCount > 0, "theIncludeLoadingThreadCount must be greater than 0");
+		myIncludeLoadingThreadCount = theIncludeLoadingThreadCount;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the queries for all of the <code>_include</code>
+	 * or <code>_revinclude</code> parameters in a single round of include loading are combined into
+	 * a single <code>UNION ALL</code> query, instead of one query per search parameter path.
+	 *
+	 * @see #setCombineIncludeQueries(boolean)
+	 * @since 7.0.0
+	 */
+	public boolean isCombineIncludeQueries() {
+		return myCombineIncludeQueries;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the queries for all of the <code>_include</code>
+	 * or <code>_revinclude</code> parameters in a single round of include loading are combined into
+	 * a single <code>UNION ALL</code> query, instead of one query per search parameter path. This
+	 * reduces the number of database round trips for requests with several includes.
+	 * <p>
+	 * Queries are only combined when no maximum number of includes applies (i.e.
+	 * {@link #setMaximumIncludesToLoadPerPage(Integer)} is set to <code>null</code>), since the
+	 * maximum is applied to the query for each path and could not be applied the same way to a
+	 * combined query. Includes using a wildcard (e.g. <code>_include=*</code>) are never combined.
+	 * </p>
+	 * <p>
+	 * Since the combined query repeats the list of resources being searched from for every path,
+	 * each combined query covers fewer resources than a single uncombined one so that it does not
+	 * exceed the bind parameter limits of databases such as MS SQL Server. If that would require
+	 * more queries than not combining at all, the queries are not combined.
+	 * </p>
+	 *
+	 * @since 7.0.0
+	 */
+	public void setCombineIncludeQueries(boolean theCombineIncludeQueries) {
+		myCombineIncludeQueries = theCombineIncludeQueries;
+	}
+
 	/**
 	 * This setting controls whether MdmLink and other non-resource DB history is enabled.
 	 * <p/>
@@ -2510,6 +2979,29 @@ public class JpaStorageSettings extends StorageSettings {
 		ANY
 	}
 
+	/**
+	 * This enum provides allowable options for {@link #setBatch2WorkChunkDataFormat(Batch2WorkChunkDataFormatEnum)}
+	 */
+	public enum Batch2WorkChunkDataFormatEnum {
+
+		/**
+		 * Work chunk data is stored as JSON
+		 */
+		JSON,
+
+		/**
+		 * Lists of resource PIDs in the work chunk data are stored in a compact binary form,
+		 * with each resource type stored once and each PID stored as the difference from the
+		 * previous one. Chunks which are not smaller in this form are stored as JSON.
+		 */
+		COMPACT,
+
+		/**
+		 * Like {@link #COMPACT}, but the binary form is also compressed
+		 */
+		COMPACT_COMPRESSED
+	}
+
 	public enum TagStorageModeEnum {
 
 		/**
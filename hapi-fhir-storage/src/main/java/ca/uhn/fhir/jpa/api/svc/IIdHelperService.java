@@ -30,7 +30,9 @@ import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -131,6 +133,41 @@ public interface IIdHelperService<T extends IResourcePersistentId> {
 			boolean theExcludeDeleted)
 			throws ResourceNotFoundException;
 
+	/**
+	 * Resolves a collection of resource IDs to their persistent identities using as few
+	 * database queries as possible. This is the bulk equivalent of
+	 * {@link #resolveResourceIdentity(RequestPartitionId, String, String, boolean)}, except
+	 * that IDs which can not be resolved (or which resolve ambiguously) are simply omitted
+	 * from the returned map instead of causing an exception to be thrown.
+	 *
+	 * <p>
+	 * The default implementation simply calls
+	 * {@link #resolveResourceIdentity(RequestPartitionId, String, String, boolean)} for each ID,
+	 * skipping IDs which are not found. Implementations should override it to resolve the IDs in bulk.
+	 * </p>
+	 *
+	 * @param theIds The IDs to resolve. Each ID must have a resource type and an ID part.
+	 * @return A map whose keys are the unqualified versionless forms of the resolved IDs
+	 * @since 7.0.0
+	 */
+	@Nonnull
+	default Map<IIdType, IResourceLookup> resolveResourceIdentities(
+			@Nonnull RequestPartitionId theRequestPartitionId,
+			@Nonnull Collection<IIdType> theIds,
+			boolean theExcludeDeleted) {
+		Map<IIdType, IResourceLookup> retVal = new HashMap<>();
+		for (IIdType next : theIds) {
+			try {
+				IResourceLookup lookup = resolveResourceIdentity(
+						theRequestPartitionId, next.getResourceType(), next.getIdPart(), theExcludeDeleted);
+				retVal.put(next.toUnqualifiedVersionless(), lookup);
+			} catch (ResourceNotFoundException e) {
+				// Omitted from the results
+			}
+		}
+		return retVal;
+	}
+
 	/**
 	 * Returns true if the given resource ID should be stored in a forced ID. Under default config
 	 * (meaning client ID strategy is {@link JpaStorageSettings.ClientIdStrategyEnum#ALPHANUMERIC})
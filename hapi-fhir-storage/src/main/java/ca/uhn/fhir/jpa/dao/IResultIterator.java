@@ -32,4 +32,14 @@ public interface IResultIterator<T extends IResourcePersistentId> extends Iterat
 	int getNonSkippedCount();
 
 	Collection<T> getNextResultBatch(long theBatchSize);
+
+	/**
+	 * If the query is using keyset pagination, returns an opaque cursor identifying the position
+	 * after the last result returned by this iterator, or <code>null</code> otherwise.
+	 *
+	 * @since 7.0.0
+	 */
+	default String getNextPageCursor() {
+		return null;
+	}
 }
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.JsonParser;
+import ca.uhn.fhir.parser.json.jackson.JacksonTokenReader;
+import ca.uhn.fhir.parser.json.jackson.JacksonWriter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodes resources using <a href="https://github.com/FasterXML/smile-format-specification">Smile</a>,
+ * a binary equivalent of JSON. The structure is exactly the same as FHIR JSON, but repeated
+ * property names (and short repeated values such as code systems) are written as back-references,
+ * and numbers and string lengths are stored in binary form.
+ * <p>
+ * Resources are written from the model and read back into the model directly, without
+ * producing or parsing JSON text in between.
+ * </p>
+ *
+ * @see GZipUtil
+ * @since 7.0.0
+ */
+public class SmileUtil {
+
+	private static final SmileFactory ourSmileFactory = createSmileFactory();
+	private static final JsonFactory ourJsonFactory = new JsonFactory();
+
+	/**
+	 * Non instantiable
+	 */
+	private SmileUtil() {
+		super();
+	}
+
+	/**
+	 * Encodes a resource. Settings of the parser such as
+	 * {@link JsonParser#setDontEncodeElements(java.util.Collection) elements not to encode}
+	 * are respected, but pretty printing has no effect.
+	 */
+	public static byte[] encode(JsonParser theParser, IBaseResource theResource) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try (JsonGenerator generator = ourSmileFactory.createGenerator(os)) {
+			theParser.encodeResourceToJsonLikeWriter(theResource, new JacksonWriter(generator));
+		} catch (IOException e) {
+			throw new DataFormatException(Msg.code(2482) + "Failed to encode resource", e);
+		}
+		return os.toByteArray();
+	}
+
+	/**
+	 * Parses a resource previously encoded using {@link #encode(JsonParser, IBaseResource)}
+	 */
+	public static <T extends IBaseResource> T parse(JsonParser theParser, Class<T> theResourceType, byte[] theEncoded) {
+		try (com.fasterxml.jackson.core.JsonParser parser = ourSmileFactory.createParser(theEncoded)) {
+			return theParser.parseResource(theResourceType, new JacksonTokenReader(parser));
+		} catch (IOException e) {
+			throw new DataFormatException(Msg.code(2483) + "Failed to parse contents", e);
+		}
+	}
+
+	/**
+	 * Converts content encoded using {@link #encode(JsonParser, IBaseResource)} into JSON
+	 * text, for the (uncommon) cases where the text itself is needed
+	 */
+	public static String toJson(byte[] theEncoded) {
+		StringBuilderWriter writer = new StringBuilderWriter();
+		try (com.fasterxml.jackson.core.JsonParser parser = ourSmileFactory.createParser(theEncoded);
+				JsonGenerator generator = ourJsonFactory.createGenerator(writer)) {
+			while (parser.nextToken() != null) {
+				generator.copyCurrentEvent(parser);
+			}
+		} catch (IOException e) {
+			throw new DataFormatException(Msg.code(2484) + "Failed to convert contents to JSON", e);
+		}
+		return writer.toString();
+	}
+
+	private static SmileFactory createSmileFactory() {
+		SmileFactory retVal = SmileFactory.builder()
+				.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+				.streamReadConstraints(StreamReadConstraints.builder()
+						.maxStringLength(Integer.MAX_VALUE)
+						.build())
+				.build();
+		return retVal;
+	}
+}
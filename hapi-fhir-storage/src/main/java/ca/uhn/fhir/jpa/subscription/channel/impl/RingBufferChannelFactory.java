@@ -0,0 +1,172 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelSettings;
+import ca.uhn.fhir.jpa.subscription.channel.subscription.IChannelNamer;
+import ca.uhn.fhir.subscription.SubscriptionConstants;
+import org.apache.commons.lang3.Validate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+
+/**
+ * An in-process {@link IChannelFactory} which is an alternative to {@link LinkedBlockingChannelFactory}
+ * for single-node deployments with a high message rate. Channels are dispatched by a
+ * {@link RingBufferExecutor} instead of a thread pool with a lock-based queue.
+ * <p>
+ * To use this factory, declare it as a <code>@Primary</code> {@link IChannelFactory} bean.
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public class RingBufferChannelFactory implements IChannelFactory {
+
+	public static final int DEFAULT_RING_BUFFER_SIZE = SubscriptionConstants.DELIVERY_EXECUTOR_QUEUE_SIZE;
+	public static final int DEFAULT_BATCH_SIZE = 8;
+
+	private final IChannelNamer myChannelNamer;
+	private final Map<String, LinkedBlockingChannel> myChannels = Collections.synchronizedMap(new HashMap<>());
+	private final Map<String, RingBufferExecutor> myExecutors = Collections.synchronizedMap(new HashMap<>());
+	private int myRingBufferSize = DEFAULT_RING_BUFFER_SIZE;
+	private int myBatchSize = DEFAULT_BATCH_SIZE;
+	private RingBufferExecutor.WaitStrategyEnum myWaitStrategy = RingBufferExecutor.WaitStrategyEnum.BLOCKING;
+
+	public RingBufferChannelFactory(IChannelNamer theChannelNamer) {
+		myChannelNamer = theChannelNamer;
+	}
+
+	/**
+	 * The number of slots in the ring buffer for each channel (rounded up to a power of 2).
+	 * Producers wait when the ring is full. Only applies to channels created after it is set.
+	 */
+	public int getRingBufferSize() {
+		return myRingBufferSize;
+	}
+
+	/**
+	 * The number of slots in the ring buffer for each channel (rounded up to a power of 2).
+	 * Producers wait when the ring is full. Only applies to channels created after it is set.
+	 */
+	public void setRingBufferSize(int theRingBufferSize) {
+		Validate.isTrue(theRingBufferSize > 0, "theRingBufferSize must be positive");
+		myRingBufferSize = theRingBufferSize;
+	}
+
+	/**
+	 * The maximum number of messages a consumer thread claims from the ring at a time. Claimed
+	 * messages are processed one after the other by the same thread, so a large batch size
+	 * reduces contention but can delay messages behind a slow one. Only applies to channels
+	 * created after it is set.
+	 */
+	public int getBatchSize() {
+		return myBatchSize;
+	}
+
+	/**
+	 * The maximum number of messages a consumer thread claims from the ring at a time. Claimed
+	 * messages are processed one after the other by the same thread, so a large batch size
+	 * reduces contention but can delay messages behind a slow one. Only applies to channels
+	 * created after it is set.
+	 */
+	public void setBatchSize(int theBatchSize) {
+		Validate.isTrue(theBatchSize > 0, "theBatchSize must be positive");
+		myBatchSize = theBatchSize;
+	}
+
+	/**
+	 * How consumer threads wait when their channel is empty. Defaults to
+	 * {@link RingBufferExecutor.WaitStrategyEnum#BLOCKING}. Only applies to channels created after it is set.
+	 */
+	public RingBufferExecutor.WaitStrategyEnum getWaitStrategy() {
+		return myWaitStrategy;
+	}
+
+	/**
+	 * How consumer threads wait when their channel is empty. Defaults to
+	 * {@link RingBufferExecutor.WaitStrategyEnum#BLOCKING}. Only applies to channels created after it is set.
+	 */
+	public void setWaitStrategy(@Nonnull RingBufferExecutor.WaitStrategyEnum theWaitStrategy) {
+		Validate.notNull(theWaitStrategy, "theWaitStrategy must not be null");
+		myWaitStrategy = theWaitStrategy;
+	}
+
+	@Override
+	public IChannelReceiver getOrCreateReceiver(
+			String theChannelName, Class<?> theMessageType, ChannelConsumerSettings theChannelSettings) {
+		return getOrCreateChannel(theChannelName, theChannelSettings.getConcurrentConsumers(), theChannelSettings);
+	}
+
+	@Override
+	public IChannelProducer getOrCreateProducer(
+			String theChannelName, Class<?> theMessageType, ChannelProducerSettings theChannelSettings) {
+		return getOrCreateChannel(theChannelName, theChannelSettings.getConcurrentConsumers(), theChannelSettings);
+	}
+
+	@Override
+	public IChannelNamer getChannelNamer() {
+		return myChannelNamer;
+	}
+
+	/**
+	 * Returns the executor for the given channel, which provides the queue depth and
+	 * queue latency metrics for the channel
+	 *
+	 * @param theChannelName The channel name, as returned by the {@link IChannelNamer}
+	 * @return The executor, or <code>null</code> if the channel has not been created
+	 */
+	@Nullable
+	public RingBufferExecutor getExecutor(String theChannelName) {
+		return myExecutors.get(theChannelName);
+	}
+
+	private LinkedBlockingChannel getOrCreateChannel(
+			String theChannelName, int theConcurrentConsumers, IChannelSettings theChannelSettings) {
+		final String channelName = myChannelNamer.getChannelName(theChannelName, theChannelSettings);
+
+		return myChannels.computeIfAbsent(channelName, t -> buildChannel(theConcurrentConsumers, channelName));
+	}
+
+	@Nonnull
+	private LinkedBlockingChannel buildChannel(int theConcurrentConsumers, String theChannelName) {
+		RingBufferExecutor executor = new RingBufferExecutor(
+				theChannelName, myRingBufferSize, theConcurrentConsumers, myBatchSize, myWaitStrategy);
+		myExecutors.put(theChannelName, executor);
+		return new LinkedBlockingChannel(theChannelName, executor, executor::getQueueSize);
+	}
+
+	@PreDestroy
+	public void stop() {
+		synchronized (myExecutors) {
+			myExecutors.values().forEach(RingBufferExecutor::stop);
+			myExecutors.clear();
+		}
+		myChannels.clear();
+	}
+}
@@ -0,0 +1,350 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2023 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.i18n.Msg;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+
+/**
+ * An {@link Executor} which hands tasks to a fixed set of consumer threads through a preallocated,
+ * bounded ring buffer instead of a lock-based queue.
+ * <p>
+ * Producers and consumers claim slots in the ring using compare-and-set on a sequence counter,
+ * so neither side takes a lock on the hot path. Each consumer claims up to a configurable number
+ * of tasks at a time, which reduces contention between consumers when the ring is busy. When the
+ * ring is full, producers wait until a slot becomes available (the same back-pressure as the
+ * blocking policy used by the default channel thread pools). When the ring is empty, consumers
+ * wait according to the configured {@link WaitStrategyEnum}.
+ * </p>
+ *
+ * @since 7.0.0
+ */
+public class RingBufferExecutor implements Executor {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(RingBufferExecutor.class);
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final String myName;
+	private final int myMask;
+	private final int myBatchSize;
+	private final WaitStrategyEnum myWaitStrategy;
+	private final Runnable[] mySlots;
+	private final long[] myPublishedNanos;
+	private final AtomicLongArray mySequences;
+	private final AtomicLong myTail = new AtomicLong();
+	private final AtomicLong myHead = new AtomicLong();
+	private final AtomicLong myStartedCount = new AtomicLong();
+	private final LongAdder myCompletedCount = new LongAdder();
+	private final LongAdder myTotalLatencyNanos = new LongAdder();
+	private final AtomicLong myMaxLatencyNanos = new AtomicLong();
+	private final ReentrantLock myLock = new ReentrantLock();
+	private final Condition myNotEmpty = myLock.newCondition();
+	private final AtomicInteger myWaitingConsumers = new AtomicInteger();
+	private volatile boolean myRunning = true;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theName         The name, used as the prefix for consumer thread names
+	 * @param theCapacity     The number of slots in the ring. Will be rounded up to a power of 2.
+	 * @param theConsumers    The number of consumer threads
+	 * @param theBatchSize    The maximum number of tasks a consumer claims at a time
+	 * @param theWaitStrategy How consumers wait when the ring is empty
+	 */
+	public RingBufferExecutor(
+			@Nonnull String theName,
+			int theCapacity,
+			int theConsumers,
+			int theBatchSize,
+			@Nonnull WaitStrategyEnum theWaitStrategy) {
+		Validate.isTrue(theCapacity > 0, "theCapacity must be positive");
+		Validate.isTrue(theConsumers > 0, "theConsumers must be positive");
+		Validate.isTrue(theBatchSize > 0, "theBatchSize must be positive");
+		Validate.notNull(theWaitStrategy, "theWaitStrategy must not be null");
+
+		int capacity = Integer.highestOneBit(theCapacity);
+		if (capacity < theCapacity) {
+			capacity <<= 1;
+		}
+
+		myName = theName;
+		myMask = capacity - 1;
+		myBatchSize = Math.min(theBatchSize, capacity);
+		myWaitStrategy = theWaitStrategy;
+		mySlots = new Runnable[capacity];
+		myPublishedNanos = new long[capacity];
+		mySequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			// A slot may be written by the producer claiming sequence N when it holds N
+			mySequences.set(i, i);
+		}
+
+		ThreadFactory threadFactory = new BasicThreadFactory.Builder()
+				.namingPattern(theName + "-%d")
+				.daemon(true)
+				.build();
+		for (int i = 0; i < theConsumers; i++) {
+			threadFactory.newThread(this::consume).start();
+		}
+	}
+
+	@Override
+	public void execute(@Nonnull Runnable theTask) {
+		Validate.notNull(theTask, "theTask must not be null");
+		while (true) {
+			if (!myRunning) {
+				throw new RejectedExecutionException(Msg.code(2462) + "Executor " + myName + " has been stopped");
+			}
+
+			long tail = myTail.get();
+			int slot = (int) (tail & myMask);
+			long sequence = mySequences.get(slot);
+			if (sequence == tail) {
+				if (myTail.compareAndSet(tail, tail + 1)) {
+					mySlots[slot] = theTask;
+					myPublishedNanos[slot] = System.nanoTime();
+					// Publishes the task to the consumers
+					mySequences.set(slot, tail + 1);
+					if (myWaitingConsumers.get() > 0) {
+						signalConsumers();
+					}
+					return;
+				}
+			} else if (sequence < tail) {
+				// The ring is full, so wait for a consumer to free up the slot
+				LockSupport.parkNanos(PARK_NANOS);
+				if (Thread.interrupted()) {
+					Thread.currentThread().interrupt();
+					throw new RejectedExecutionException(
+							Msg.code(2463) + "Interrupted while waiting for space in executor " + myName);
+				}
+			}
+			// Otherwise another producer claimed this sequence first, so try again
+		}
+	}
+
+	private void consume() {
+		Runnable[] batch = new Runnable[myBatchSize];
+		int idleCount = 0;
+		while (myRunning) {
+			long head = myHead.get();
+			int count = 0;
+			while (count < myBatchSize && mySequences.get((int) ((head + count) & myMask)) == head + count + 1) {
+				count++;
+			}
+
+			if (count == 0) {
+				idle(idleCount);
+				idleCount = Math.min(idleCount + 1, SPIN_TRIES + YIELD_TRIES);
+				continue;
+			}
+			if (!myHead.compareAndSet(head, head + count)) {
+				// Another consumer claimed some of these tasks first
+				continue;
+			}
+			idleCount = 0;
+
+			long now = System.nanoTime();
+			long maxLatency = 0;
+			for (int i = 0; i < count; i++) {
+				long sequence = head + i;
+				int slot = (int) (sequence & myMask);
+				batch[i] = mySlots[slot];
+				long latency = now - myPublishedNanos[slot];
+				myTotalLatencyNanos.add(latency);
+				maxLatency = Math.max(maxLatency, latency);
+				mySlots[slot] = null;
+				// Frees up the slot for the producer which will claim it next time around the ring
+				mySequences.set(slot, sequence + myMask + 1);
+			}
+			myMaxLatencyNanos.accumulateAndGet(maxLatency, Math::max);
+
+			for (int i = 0; i < count; i++) {
+				Runnable task = batch[i];
+				batch[i] = null;
+				myStartedCount.incrementAndGet();
+				try {
+					task.run();
+				} catch (Throwable t) {
+					ourLog.error("Failure executing task in executor {}", myName, t);
+				} finally {
+					myCompletedCount.increment();
+				}
+			}
+		}
+	}
+
+	private boolean hasAvailable() {
+		long head = myHead.get();
+		return mySequences.get((int) (head & myMask)) == head + 1;
+	}
+
+	private void idle(int theIdleCount) {
+		switch (myWaitStrategy) {
+			case BUSY_SPIN:
+				Thread.onSpinWait();
+				break;
+			case YIELDING:
+				if (theIdleCount < SPIN_TRIES) {
+					Thread.onSpinWait();
+				} else {
+					Thread.yield();
+				}
+				break;
+			case SLEEPING:
+				if (theIdleCount < SPIN_TRIES) {
+					Thread.onSpinWait();
+				} else if (theIdleCount < SPIN_TRIES + YIELD_TRIES) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+				break;
+			case BLOCKING:
+			default:
+				if (theIdleCount < SPIN_TRIES) {
+					Thread.onSpinWait();
+				} else {
+					awaitNotEmpty();
+				}
+				break;
+		}
+	}
+
+	private void awaitNotEmpty() {
+		myLock.lock();
+		myWaitingConsumers.incrementAndGet();
+		try {
+			if (myRunning && !hasAvailable()) {
+				myNotEmpty.await(1, TimeUnit.SECONDS);
+			}
+		} catch (InterruptedException e) {
+			// Consumers only exit when the executor is stopped, which is checked by the caller
+			ourLog.debug("Consumer interrupted in executor {}", myName);
+		} finally {
+			myWaitingConsumers.decrementAndGet();
+			myLock.unlock();
+		}
+	}
+
+	private void signalConsumers() {
+		myLock.lock();
+		try {
+			myNotEmpty.signalAll();
+		} finally {
+			myLock.unlock();
+		}
+	}
+
+	/**
+	 * Stops the consumer threads once they have finished the tasks they have already claimed.
+	 * Tasks which have not been claimed yet are discarded, and new tasks are rejected.
+	 */
+	public void stop() {
+		myRunning = false;
+		signalConsumers();
+	}
+
+	/**
+	 * Returns the number of slots in the ring
+	 */
+	public int getCapacity() {
+		return myMask + 1;
+	}
+
+	/**
+	 * Returns the number of tasks which have been submitted but have not yet started executing
+	 */
+	public int getQueueSize() {
+		return (int) Math.max(0, myTail.get() - myStartedCount.get());
+	}
+
+	/**
+	 * Returns the number of tasks which have finished executing (successfully or not)
+	 */
+	public long getCompletedCount() {
+		return myCompletedCount.sum();
+	}
+
+	/**
+	 * Returns the mean time between a task being submitted and being claimed by a consumer,
+	 * in milliseconds
+	 */
+	public double getMeanQueueLatencyMillis() {
+		long claimed = myHead.get();
+		if (claimed == 0) {
+			return 0;
+		}
+		return myTotalLatencyNanos.sum() / (double) claimed / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * Returns the longest time between a task being submitted and being claimed by a consumer,
+	 * in milliseconds
+	 */
+	public double getMaxQueueLatencyMillis() {
+		return myMaxLatencyNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * How consumer threads wait for new tasks when the ring is empty
+	 */
+	public enum WaitStrategyEnum {
+
+		/**
+		 * Spin briefly and then block until a task is submitted. Uses the least CPU, at the
+		 * cost of a lock acquisition on the producer side while consumers are blocked.
+		 */
+		BLOCKING,
+
+		/**
+		 * Spin, then yield, then park for short periods. Producers never take a lock.
+		 */
+		SLEEPING,
+
+		/**
+		 * Spin and then yield. Lower latency than {@link #SLEEPING}, but keeps consumer threads busy.
+		 */
+		YIELDING,
+
+		/**
+		 * Spin continuously. Lowest latency, but each consumer thread uses a full CPU core.
+		 */
+		BUSY_SPIN
+	}
+}
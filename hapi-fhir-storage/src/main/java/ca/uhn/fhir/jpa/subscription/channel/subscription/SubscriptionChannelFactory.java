@@ -71,7 +71,8 @@ public class SubscriptionChannelFactory {
 
 	protected ChannelProducerSettings newProducerConfigForDeliveryChannel(ChannelProducerSettings theOptions) {
 		ChannelProducerSettings config = new ChannelProducerSettings();
-		config.setConcurrentConsumers(getDeliveryChannelConcurrentConsumers());
+		config.setConcurrentConsumers(
+				Math.max(getDeliveryChannelConcurrentConsumers(), theOptions.getConcurrentConsumers()));
 		config.setRetryConfiguration(theOptions.getRetryConfigurationParameters());
 		return config;
 	}
@@ -80,6 +81,9 @@ public class SubscriptionChannelFactory {
 		ChannelConsumerSettings config = new ChannelConsumerSettings();
 		config.setConcurrentConsumers(getDeliveryChannelConcurrentConsumers());
 		if (theOptions != null) {
+			// Some subscriptions (e.g. batched REST HOOK deliveries) need more consumers than the default
+			config.setConcurrentConsumers(
+					Math.max(getDeliveryChannelConcurrentConsumers(), theOptions.getConcurrentConsumers()));
 			config.setRetryConfiguration(theOptions.getRetryConfigurationParameters());
 		}
 		return config;
@@ -38,6 +38,7 @@ import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import ca.uhn.fhir.subscription.SubscriptionConstants;
 import ca.uhn.fhir.util.HapiExtensions;
 import ca.uhn.fhir.util.SubscriptionUtil;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.instance.model.api.IBaseHasExtensions;
 import org.hl7.fhir.instance.model.api.IBaseMetaType;
@@ -181,17 +182,24 @@ public class SubscriptionCanonicalizer {
 
 				String stripVersionIds;
 				String deliverLatestVersion;
+				String batchMaxSize;
+				String batchWindowMillis;
 				try {
 					stripVersionIds =
 							channel.getExtensionString(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_STRIP_VERSION_IDS);
 					deliverLatestVersion =
 							channel.getExtensionString(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_DELIVER_LATEST_VERSION);
+					batchMaxSize = channel.getExtensionString(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE);
+					batchWindowMillis =
+							channel.getExtensionString(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS);
 				} catch (FHIRException theE) {
 					throw new ConfigurationException(
 							Msg.code(559) + "Failed to extract subscription extension(s): " + theE.getMessage(), theE);
 				}
 				retVal.getRestHookDetails().setStripVersionId(Boolean.parseBoolean(stripVersionIds));
 				retVal.getRestHookDetails().setDeliverLatestVersion(Boolean.parseBoolean(deliverLatestVersion));
+				retVal.getRestHookDetails().setBatchMaxSize(NumberUtils.toInt(batchMaxSize));
+				retVal.getRestHookDetails().setBatchWindowMillis(NumberUtils.toLong(batchWindowMillis));
 			}
 			retVal.setSendDeleteMessages(extractSendDeletesDstu3(subscription));
 
@@ -368,17 +376,24 @@ public class SubscriptionCanonicalizer {
 		if (retVal.getChannelType() == CanonicalSubscriptionChannelType.RESTHOOK) {
 			String stripVersionIds;
 			String deliverLatestVersion;
+			String batchMaxSize;
+			String batchWindowMillis;
 			try {
 				stripVersionIds =
 						channel.getExtensionString(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_STRIP_VERSION_IDS);
 				deliverLatestVersion =
 						channel.getExtensionString(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_DELIVER_LATEST_VERSION);
+				batchMaxSize = channel.getExtensionString(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE);
+				batchWindowMillis =
+						channel.getExtensionString(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS);
 			} catch (FHIRException theE) {
 				throw new ConfigurationException(
 						Msg.code(562) + "Failed to extract subscription extension(s): " + theE.getMessage(), theE);
 			}
 			retVal.getRestHookDetails().setStripVersionId(Boolean.parseBoolean(stripVersionIds));
 			retVal.getRestHookDetails().setDeliverLatestVersion(Boolean.parseBoolean(deliverLatestVersion));
+			retVal.getRestHookDetails().setBatchMaxSize(NumberUtils.toInt(batchMaxSize));
+			retVal.getRestHookDetails().setBatchWindowMillis(NumberUtils.toLong(batchWindowMillis));
 		}
 
 		List<Extension> topicExts = subscription.getExtensionsByUrl("http://hl7.org/fhir/subscription/topics");
@@ -453,17 +468,24 @@ public class SubscriptionCanonicalizer {
 		if (retVal.getChannelType() == CanonicalSubscriptionChannelType.RESTHOOK) {
 			String stripVersionIds;
 			String deliverLatestVersion;
+			String batchMaxSize;
+			String batchWindowMillis;
 			try {
 				stripVersionIds =
 						getExtensionString(channel, HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_STRIP_VERSION_IDS);
 				deliverLatestVersion =
 						getExtensionString(channel, HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_DELIVER_LATEST_VERSION);
+				batchMaxSize = getExtensionString(channel, HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE);
+				batchWindowMillis =
+						getExtensionString(channel, HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS);
 			} catch (FHIRException theE) {
 				throw new ConfigurationException(
 						Msg.code(565) + "Failed to extract subscription extension(s): " + theE.getMessage(), theE);
 			}
 			retVal.getRestHookDetails().setStripVersionId(Boolean.parseBoolean(stripVersionIds));
 			retVal.getRestHookDetails().setDeliverLatestVersion(Boolean.parseBoolean(deliverLatestVersion));
+			retVal.getRestHookDetails().setBatchMaxSize(NumberUtils.toInt(batchMaxSize));
+			retVal.getRestHookDetails().setBatchWindowMillis(NumberUtils.toLong(batchWindowMillis));
 		}
 
 		List<org.hl7.fhir.r4b.model.Extension> topicExts =
@@ -566,17 +588,25 @@ public class SubscriptionCanonicalizer {
 		if (retVal.getChannelType() == CanonicalSubscriptionChannelType.RESTHOOK) {
 			String stripVersionIds;
 			String deliverLatestVersion;
+			String batchMaxSize;
+			String batchWindowMillis;
 			try {
 				stripVersionIds =
 						getExtensionString(subscription, HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_STRIP_VERSION_IDS);
 				deliverLatestVersion = getExtensionString(
 						subscription, HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_DELIVER_LATEST_VERSION);
+				batchMaxSize =
+						getExtensionString(subscription, HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE);
+				batchWindowMillis =
+						getExtensionString(subscription, HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS);
 			} catch (FHIRException theE) {
 				throw new ConfigurationException(
 						Msg.code(2324) + "Failed to extract subscription extension(s): " + theE.getMessage(), theE);
 			}
 			retVal.getRestHookDetails().setStripVersionId(Boolean.parseBoolean(stripVersionIds));
 			retVal.getRestHookDetails().setDeliverLatestVersion(Boolean.parseBoolean(deliverLatestVersion));
+			retVal.getRestHookDetails().setBatchMaxSize(NumberUtils.toInt(batchMaxSize));
+			retVal.getRestHookDetails().setBatchWindowMillis(NumberUtils.toLong(batchWindowMillis));
 		}
 	}
 
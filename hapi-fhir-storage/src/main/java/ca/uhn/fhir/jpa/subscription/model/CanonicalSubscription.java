@@ -493,6 +493,12 @@ public class CanonicalSubscription implements Serializable, Cloneable, IModelJso
 		@JsonProperty("deliverLatestVersion")
 		private boolean myDeliverLatestVersion;
 
+		@JsonProperty("batchMaxSize")
+		private int myBatchMaxSize;
+
+		@JsonProperty("batchWindowMillis")
+		private long myBatchWindowMillis;
+
 		/**
 		 * Constructor
 		 */
@@ -516,6 +522,57 @@ public class CanonicalSubscription implements Serializable, Cloneable, IModelJso
 			myStripVersionId = theStripVersionId;
 		}
 
+		/**
+		 * The maximum number of deliveries to the same endpoint which may be combined into a
+		 * single <code>batch</code> Bundle. Values of <code>1</code> or less disable batching.
+		 *
+		 * @since 7.0.0
+		 */
+		public int getBatchMaxSize() {
+			return myBatchMaxSize;
+		}
+
+		/**
+		 * The maximum number of deliveries to the same endpoint which may be combined into a
+		 * single <code>batch</code> Bundle. Values of <code>1</code> or less disable batching.
+		 *
+		 * @since 7.0.0
+		 */
+		public void setBatchMaxSize(int theBatchMaxSize) {
+			myBatchMaxSize = theBatchMaxSize;
+		}
+
+		/**
+		 * The maximum number of milliseconds that a delivery may be held back while waiting for
+		 * other deliveries to the same endpoint. Values of <code>0</code> or less mean that a
+		 * default window is used.
+		 *
+		 * @since 7.0.0
+		 */
+		public long getBatchWindowMillis() {
+			return myBatchWindowMillis;
+		}
+
+		/**
+		 * The maximum number of milliseconds that a delivery may be held back while waiting for
+		 * other deliveries to the same endpoint. Values of <code>0</code> or less mean that a
+		 * default window is used.
+		 *
+		 * @since 7.0.0
+		 */
+		public void setBatchWindowMillis(long theBatchWindowMillis) {
+			myBatchWindowMillis = theBatchWindowMillis;
+		}
+
+		/**
+		 * Returns <code>true</code> if deliveries for this subscription may be batched
+		 *
+		 * @since 7.0.0
+		 */
+		public boolean isBatchDelivery() {
+			return myBatchMaxSize > 1;
+		}
+
 		@Override
 		public boolean equals(Object theO) {
 			if (this == theO) return true;
@@ -527,6 +584,8 @@ public class CanonicalSubscription implements Serializable, Cloneable, IModelJso
 			return new EqualsBuilder()
 					.append(myStripVersionId, that.myStripVersionId)
 					.append(myDeliverLatestVersion, that.myDeliverLatestVersion)
+					.append(myBatchMaxSize, that.myBatchMaxSize)
+					.append(myBatchWindowMillis, that.myBatchWindowMillis)
 					.isEquals();
 		}
 
@@ -535,6 +594,8 @@ public class CanonicalSubscription implements Serializable, Cloneable, IModelJso
 			return new HashCodeBuilder(17, 37)
 					.append(myStripVersionId)
 					.append(myDeliverLatestVersion)
+					.append(myBatchMaxSize)
+					.append(myBatchWindowMillis)
 					.toHashCode();
 		}
 	}
@@ -0,0 +1,118 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.JsonParser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DecimalType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SmileUtilTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+
+	@Test
+	public void testRoundTrip() {
+		Patient patient = createPatient("123");
+
+		byte[] encoded = SmileUtil.encode(newParser(), patient);
+		Patient parsed = SmileUtil.parse(newParser(), Patient.class, encoded);
+
+		assertEquals(newParser().encodeResourceToString(patient), newParser().encodeResourceToString(parsed));
+		assertEquals("Ångström 日本", parsed.getNameFirstRep().getFamily());
+		assertEquals("<div xmlns=\"http://www.w3.org/1999/xhtml\">John Smith</div>", parsed.getText().getDivAsString());
+	}
+
+	@Test
+	public void testRoundTripPreservesDecimalPrecision() {
+		Observation obs = new Observation();
+		obs.setValue(new Quantity().setValueElement(new DecimalType("1.500")));
+
+		Observation parsed = SmileUtil.parse(newParser(), Observation.class, SmileUtil.encode(newParser(), obs));
+
+		assertEquals("1.500", parsed.getValueQuantity().getValueElement().getValueAsString());
+	}
+
+	@Test
+	public void testRoundTripBundle() {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.COLLECTION);
+		for (int i = 0; i < 100; i++) {
+			bundle.addEntry().setFullUrl("http://example.com/Patient/" + i).setResource(createPatient(Integer.toString(i)));
+		}
+
+		byte[] encoded = SmileUtil.encode(newParser(), bundle);
+		Bundle parsed = SmileUtil.parse(newParser(), Bundle.class, encoded);
+
+		assertEquals(100, parsed.getEntry().size());
+		assertEquals("Patient/57", parsed.getEntry().get(57).getResource().getIdElement().toUnqualifiedVersionless().getValue());
+
+		// Repeated property names and values are written as back-references
+		int jsonLength = newParser().encodeResourceToString(bundle).getBytes(StandardCharsets.UTF_8).length;
+		assertThat(encoded.length, lessThan(jsonLength / 2));
+	}
+
+	@Test
+	public void testDontEncodeElements() {
+		Patient patient = createPatient("123");
+		patient.getMeta().setVersionId("1");
+
+		JsonParser parser = newParser();
+		parser.setDontEncodeElements(Set.of("*.meta"));
+		Patient parsed = SmileUtil.parse(newParser(), Patient.class, SmileUtil.encode(parser, patient));
+
+		assertNull(parsed.getMeta().getVersionId());
+		assertEquals("John", parsed.getNameFirstRep().getGivenAsSingleString());
+		assertTrue(parsed.getActive());
+	}
+
+	@Test
+	public void testToJson() {
+		Patient patient = createPatient("123");
+
+		String json = SmileUtil.toJson(SmileUtil.encode(newParser(), patient));
+
+		assertEquals(newParser().encodeResourceToString(patient), json);
+	}
+
+	@Test
+	public void testParseInvalidContents() {
+		byte[] invalid = "not smile".getBytes(StandardCharsets.UTF_8);
+
+		DataFormatException e = assertThrows(
+				DataFormatException.class, () -> SmileUtil.parse(newParser(), Patient.class, invalid));
+		assertThat(e.getMessage(), containsString(Msg.code(2483)));
+	}
+
+	private static JsonParser newParser() {
+		return (JsonParser) ourCtx.newJsonParser();
+	}
+
+	private static Patient createPatient(String theId) {
+		Patient patient = new Patient();
+		patient.setId(theId);
+		patient.getText().setDivAsString("<div xmlns=\"http://www.w3.org/1999/xhtml\">John Smith</div>");
+		patient.addIdentifier().setSystem("http://example.com/mrn").setValue("ABC" + theId);
+		patient.addName().setFamily("Ångström 日本").addGiven("John");
+		patient.setGender(Enumerations.AdministrativeGender.MALE);
+		patient.setActive(true);
+		patient.addAddress().addLine("123 Main St").setCity("Springfield");
+		return patient;
+	}
+}
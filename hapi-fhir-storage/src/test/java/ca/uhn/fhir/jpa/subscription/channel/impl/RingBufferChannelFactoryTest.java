@@ -0,0 +1,149 @@
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.GenericMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferChannelFactoryTest {
+
+	private static final String TEST_CHANNEL_NAME = "test-channel-name";
+	private final RingBufferChannelFactory myChannelFactory = new RingBufferChannelFactory((name, settings) -> name);
+
+	@AfterEach
+	public void after() {
+		myChannelFactory.stop();
+	}
+
+	@ParameterizedTest
+	@EnumSource(RingBufferExecutor.WaitStrategyEnum.class)
+	void testConcurrentProducersAndConsumers(RingBufferExecutor.WaitStrategyEnum theWaitStrategy) throws Exception {
+		myChannelFactory.setWaitStrategy(theWaitStrategy);
+		// Smaller than the number of messages, so that producers have to wait for space
+		myChannelFactory.setRingBufferSize(64);
+
+		Set<String> received = ConcurrentHashMap.newKeySet();
+		CountDownLatch latch = new CountDownLatch(4000);
+		IChannelProducer producer = buildChannels(4, msg -> {
+			assertTrue(received.add((String) msg.getPayload()));
+			latch.countDown();
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				int producerIndex = i;
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < 1000; j++) {
+						producer.send(new GenericMessage<>(producerIndex + "-" + j));
+					}
+				}));
+			}
+			for (Future<?> next : futures) {
+				next.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertTrue(latch.await(20, TimeUnit.SECONDS));
+		assertEquals(4000, received.size());
+
+		RingBufferExecutor ringBuffer = myChannelFactory.getExecutor(TEST_CHANNEL_NAME);
+		assertNotNull(ringBuffer);
+		assertEquals(64, ringBuffer.getCapacity());
+		await().until(() -> ringBuffer.getCompletedCount() == 4000);
+		assertEquals(0, ringBuffer.getQueueSize());
+		assertThat(ringBuffer.getMaxQueueLatencyMillis(), greaterThanOrEqualTo(ringBuffer.getMeanQueueLatencyMillis()));
+	}
+
+	@Test
+	void testQueueSizeWhileHandlerIsBlocked() throws Exception {
+		CountDownLatch handlerCanProceed = new CountDownLatch(1);
+		AtomicInteger handled = new AtomicInteger();
+		IChannelProducer producer = buildChannels(1, msg -> {
+			try {
+				handlerCanProceed.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			handled.incrementAndGet();
+		});
+
+		producer.send(new GenericMessage<>("1"));
+		producer.send(new GenericMessage<>("2"));
+		producer.send(new GenericMessage<>("3"));
+
+		// The first message has started, the other two are still waiting
+		LinkedBlockingChannel channel = (LinkedBlockingChannel) producer;
+		await().until(() -> channel.getQueueSizeForUnitTest() == 2);
+		assertEquals(0, handled.get());
+
+		handlerCanProceed.countDown();
+		await().until(() -> handled.get() == 3);
+		assertEquals(0, channel.getQueueSizeForUnitTest());
+	}
+
+	@Test
+	void testDeliveryResumesAfterFailedMessages() throws InterruptedException {
+		CountDownLatch successfulProcessedLatch = new CountDownLatch(3);
+		AtomicInteger failCounter = new AtomicInteger();
+		IChannelProducer producer = buildChannels(1, msg -> {
+			if (failCounter.getAndIncrement() < 2) {
+				throw new RuntimeException("Expected Exception");
+			}
+			successfulProcessedLatch.countDown();
+		});
+
+		producer.send(new GenericMessage<>("1"));
+		producer.send(new GenericMessage<>("2"));
+		producer.send(new GenericMessage<>("3"));
+
+		// The failing message is retried by the channel, and the others are still delivered
+		assertTrue(successfulProcessedLatch.await(20, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testStoppedChannelRejectsMessages() {
+		IChannelProducer producer = buildChannels(1, msg -> {});
+		myChannelFactory.stop();
+
+		// Spring wraps the RejectedExecutionException
+		assertThrows(RuntimeException.class, () -> producer.send(new GenericMessage<>("1")));
+	}
+
+	private IChannelProducer buildChannels(int theConcurrentConsumers, MessageHandler theHandler) {
+		ChannelProducerSettings channelSettings = new ChannelProducerSettings();
+		channelSettings.setConcurrentConsumers(theConcurrentConsumers);
+		IChannelProducer producer = myChannelFactory.getOrCreateProducer(TEST_CHANNEL_NAME, String.class, channelSettings);
+		IChannelReceiver receiver = myChannelFactory.getOrCreateReceiver(TEST_CHANNEL_NAME, String.class, new ChannelConsumerSettings());
+		receiver.subscribe(theHandler);
+		return producer;
+	}
+}
@@ -7,8 +7,10 @@ import ca.uhn.fhir.jpa.subscription.model.CanonicalTopicSubscriptionFilter;
 import ca.uhn.fhir.model.api.ExtensionDt;
 import ca.uhn.fhir.model.primitive.BooleanDt;
 import ca.uhn.fhir.subscription.SubscriptionTestDataHelper;
+import ca.uhn.fhir.util.HapiExtensions;
 import org.hl7.fhir.r4.model.BooleanType;
 import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.IntegerType;
 import org.hl7.fhir.r4.model.Subscription;
 import org.hl7.fhir.r5.model.Coding;
 import org.hl7.fhir.r5.model.Enumerations;
@@ -66,6 +68,23 @@ class SubscriptionCanonicalizerTest {
 		assertTrue(canonicalSubscription.getSendDeleteMessages());
 	}
 
+	@Test
+	void testCanonicalizeR4RestHookBatchDelivery() {
+		Subscription subscription = new Subscription();
+		subscription.getChannel().setType(Subscription.SubscriptionChannelType.RESTHOOK);
+		subscription.getChannel().addExtension(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE, new IntegerType(50));
+		subscription.getChannel().addExtension(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS, new IntegerType(250));
+
+		CanonicalSubscription canonicalSubscription = testedSC.canonicalize(subscription);
+
+		assertTrue(canonicalSubscription.getRestHookDetails().isBatchDelivery());
+		assertEquals(50, canonicalSubscription.getRestHookDetails().getBatchMaxSize());
+		assertEquals(250, canonicalSubscription.getRestHookDetails().getBatchWindowMillis());
+
+		canonicalSubscription = testedSC.canonicalize(new Subscription().setChannel(new Subscription.SubscriptionChannelComponent().setType(Subscription.SubscriptionChannelType.RESTHOOK)));
+		assertFalse(canonicalSubscription.getRestHookDetails().isBatchDelivery());
+	}
+
 	@Test
 	public void testCanonicalizeDstu2SendDeleteMessages() {
 		//setup
@@ -3,6 +3,7 @@ package ca.uhn.fhir.rest.server.method;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.valueset.BundleTypeEnum;
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.IRestfulServer;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
@@ -282,6 +283,52 @@ class ResponseBundleBuilderTest {
 		assertPrevLink(bundle, max(0, CURRENT_PAGE_OFFSET - CURRENT_PAGE_SIZE));
 	}
 
+	@Test
+	void testOffsetWithNextPageCursor() {
+		// setup
+		SimpleBundleProvider bundleProvider = new SimpleBundleProvider(buildXPatientList(CURRENT_PAGE_SIZE));
+		bundleProvider.setCurrentPageOffset(0);
+		bundleProvider.setCurrentPageSize(CURRENT_PAGE_SIZE);
+		bundleProvider.setSize(null);
+		bundleProvider.setNextPageCursor("CURSOR");
+
+		ResponseBundleRequest responseBundleRequest = buildResponseBundleRequest(bundleProvider);
+		responseBundleRequest.requestDetails.addParameter(Constants.PARAM_OFFSET, new String[] {"0"});
+		ResponseBundleBuilder svc = new ResponseBundleBuilder(true);
+
+		// run
+		Bundle bundle = (Bundle) svc.buildResponseBundle(responseBundleRequest);
+
+		// verify
+		verifyBundle(bundle, null, CURRENT_PAGE_SIZE);
+		assertThat(bundle.getLink(), hasSize(2));
+		assertSelfLink(bundle);
+		Bundle.BundleLinkComponent link = bundle.getLink().get(1);
+		assertEquals(LINK_NEXT, link.getRelation());
+		assertEquals(TEST_SERVER_BASE + "/" + TEST_REQUEST_PATH + "?_count=" + CURRENT_PAGE_SIZE + "&_cursor=CURSOR", link.getUrl());
+	}
+
+	@Test
+	void testLastPageRequestedWithCursor() {
+		// setup
+		SimpleBundleProvider bundleProvider = new SimpleBundleProvider(buildXPatientList(3));
+		bundleProvider.setCurrentPageOffset(0);
+		bundleProvider.setCurrentPageSize(CURRENT_PAGE_SIZE);
+		bundleProvider.setSize(null);
+
+		ResponseBundleRequest responseBundleRequest = buildResponseBundleRequest(bundleProvider);
+		responseBundleRequest.requestDetails.addParameter(Constants.PARAM_CURSOR, new String[] {"CURSOR"});
+		ResponseBundleBuilder svc = new ResponseBundleBuilder(true);
+
+		// run
+		Bundle bundle = (Bundle) svc.buildResponseBundle(responseBundleRequest);
+
+		// verify
+		verifyBundle(bundle, null, 3);
+		assertThat(bundle.getLink(), hasSize(1));
+		assertSelfLink(bundle);
+	}
+
 	@ParameterizedTest
 	@ValueSource(booleans = {true, false})
 	void unknownBundleSize(boolean theCanStoreSearchResults) {
@@ -0,0 +1,46 @@
+package ca.uhn.fhir.context;
+
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ModelIndexTest {
+
+	@Test
+	public void testIndexIsSharedAcrossContexts() {
+		assertSame(ModelIndex.forVersion(FhirVersionEnum.R4), ModelIndex.forVersion(FhirVersionEnum.R4));
+	}
+
+	@Test
+	public void testResourceTypes() {
+		ModelIndex index = ModelIndex.forVersion(FhirVersionEnum.R4);
+
+		assertTrue(index.getResourceNames().contains("Patient"));
+		assertEquals(FhirContext.forR4Cached().getResourceTypes(), index.getResourceNames());
+		assertEquals(Patient.class.getName(), index.getResourceClassName("patient"));
+		assertSame(Patient.class, index.getResourceType("patient"));
+		assertNull(index.getResourceClassName("foo"));
+		assertNull(index.getResourceType("foo"));
+	}
+
+	@Test
+	public void testDatatypes() {
+		ModelIndex index = ModelIndex.forVersion(FhirVersionEnum.R4);
+
+		assertTrue(index.getDatatypes().contains(org.hl7.fhir.r4.model.HumanName.class));
+		assertTrue(index.getDatatypes().contains(org.hl7.fhir.r4.model.StringType.class));
+	}
+
+	@Test
+	public void testResourceDefinitionForOtherVersion() {
+		FhirContext ctx = FhirContext.forR4Cached();
+
+		RuntimeResourceDefinition def = ctx.getResourceDefinition(FhirVersionEnum.R4, "patient");
+		assertEquals("Patient", def.getName());
+		assertSame(Patient.class, def.getImplementingClass());
+	}
+}
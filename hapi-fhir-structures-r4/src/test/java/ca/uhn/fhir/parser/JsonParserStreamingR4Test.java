@@ -0,0 +1,126 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.test.BaseTest;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JsonParserStreamingR4Test extends BaseTest {
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private static final FhirContext ourStreamingCtx = FhirContext.forR4();
+
+	static {
+		ourStreamingCtx.getParserOptions().setStreamingJsonParsing(true);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"/bundle-circ-ref.json",
+		"/bundle-with-two-patient-resources.json",
+		"/multi-thread-parsing-issue-bundle.json"
+	})
+	public void testParseMatchesTreeParser(String theFile) throws IOException {
+		String input = loadResource(theFile);
+		assertParsesIdentically(input);
+	}
+
+	@Test
+	public void testPrimitiveAlternatesInAnyOrder() {
+		String input = "{" +
+			"\"resourceType\":\"Patient\"," +
+			"\"_active\":{\"extension\":[{\"url\":\"http://foo\",\"valueString\":\"ACTIVE\"}]}," +
+			"\"active\":true," +
+			"\"name\":[{\"given\":[\"A\",\"B\"],\"_given\":[null,{\"id\":\"b\"}]}]," +
+			"\"birthDate\":\"2020-01-01\"," +
+			"\"_birthDate\":{\"id\":\"bd\"}," +
+			"\"_gender\":{\"extension\":[{\"url\":\"http://bar\",\"valueString\":\"NO GENDER\"}]}" +
+			"}";
+
+		Patient patient = assertParsesIdentically(input);
+		assertEquals("ACTIVE", patient.getActiveElement().getExtensionString("http://foo"));
+		assertEquals("b", patient.getNameFirstRep().getGiven().get(1).getId());
+		assertEquals("bd", patient.getBirthDateElement().getId());
+		assertEquals("NO GENDER", patient.getGenderElement().getExtensionString("http://bar"));
+	}
+
+	@Test
+	public void testResourceTypeNotFirst() {
+		String input = "{" +
+			"\"type\":\"collection\"," +
+			"\"resourceType\":\"Bundle\"," +
+			"\"entry\":[" +
+			"{\"resource\":{\"id\":\"A\",\"resourceType\":\"Observation\",\"status\":\"final\"," +
+			"\"contained\":[{\"status\":\"active\",\"resourceType\":\"Medication\",\"id\":\"med\"}]}}," +
+			"{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"B\",\"active\":true}}" +
+			"]}";
+
+		Bundle bundle = assertParsesIdentically(input);
+		assertEquals(2, bundle.getEntry().size());
+		Observation obs = (Observation) bundle.getEntry().get(0).getResource();
+		assertEquals("final", obs.getStatusElement().getValueAsString());
+		assertEquals(1, obs.getContained().size());
+	}
+
+	@Test
+	public void testMissingResourceType() {
+		String input = "{\"id\":\"A\"}";
+		DataFormatException e = assertThrows(DataFormatException.class, () -> ourStreamingCtx.newJsonParser().parseResource(input));
+		assertThat(e.getMessage(), containsString(Msg.code(2440)));
+
+		String nested = "{\"resourceType\":\"Bundle\",\"entry\":[{\"resource\":{\"id\":\"A\"}}]}";
+		e = assertThrows(DataFormatException.class, () -> ourStreamingCtx.newJsonParser().parseResource(nested));
+		assertThat(e.getMessage(), containsString(Msg.code(2441)));
+	}
+
+	@Test
+	public void testTrailingContent() {
+		String input = "{\"resourceType\":\"Patient\",\"active\":true} {}";
+		DataFormatException e = assertThrows(DataFormatException.class, () -> ourStreamingCtx.newJsonParser().parseResource(input));
+		assertThat(e.getMessage(), containsString(Msg.code(2438)));
+	}
+
+	@Test
+	public void testInvalidJson() {
+		String input = "{\"resourceType\":\"Patient\",\"active\":true";
+		DataFormatException e = assertThrows(DataFormatException.class, () -> ourStreamingCtx.newJsonParser().parseResource(input));
+		assertThat(e.getMessage(), containsString(Msg.code(1861)));
+
+		DataFormatException e2 = assertThrows(DataFormatException.class, () -> ourStreamingCtx.newJsonParser().parseResource("[]"));
+		assertThat(e2.getMessage(), containsString(Msg.code(1859)));
+	}
+
+	@Test
+	public void testErrorHandlerInvokedForInvalidStructure() {
+		String input = "{\"resourceType\":\"Patient\",\"name\":{\"family\":\"SMITH\"}}";
+
+		IParser treeParser = ourCtx.newJsonParser().setParserErrorHandler(new StrictErrorHandler());
+		DataFormatException treeException = assertThrows(DataFormatException.class, () -> treeParser.parseResource(input));
+
+		IParser streamingParser = ourStreamingCtx.newJsonParser().setParserErrorHandler(new StrictErrorHandler());
+		DataFormatException streamingException = assertThrows(DataFormatException.class, () -> streamingParser.parseResource(input));
+
+		assertEquals(treeException.getMessage(), streamingException.getMessage());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends IBaseResource> T assertParsesIdentically(String theInput) {
+		IBaseResource expected = ourCtx.newJsonParser().parseResource(theInput);
+		IBaseResource actual = ourStreamingCtx.newJsonParser().parseResource(theInput);
+
+		assertEquals(ourCtx.newJsonParser().encodeResourceToString(expected), ourCtx.newJsonParser().encodeResourceToString(actual));
+		return (T) actual;
+	}
+}
@@ -0,0 +1,129 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.OptionalParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.annotation.RequiredParam;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.method.BaseMethodBinding;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MethodDispatchIndexR4Test {
+
+	private static final FhirContext ourCtx = FhirContext.forR4Cached();
+	private MethodDispatchIndex myIndex;
+
+	@BeforeEach
+	public void before() {
+		List<BaseMethodBinding> bindings = new ArrayList<>();
+		PatientResourceProvider provider = new PatientResourceProvider();
+		for (Method next : PatientResourceProvider.class.getDeclaredMethods()) {
+			BaseMethodBinding binding = BaseMethodBinding.bindMethod(next, ourCtx, provider);
+			if (binding != null) {
+				bindings.add(binding);
+			}
+		}
+		assertEquals(4, bindings.size());
+		myIndex = new MethodDispatchIndex(bindings);
+	}
+
+	@Test
+	public void testReadAndSearchShareGroupButSearchesAreCached() {
+		assertEquals("read", getMethodName(newRequest("Patient/123", Map.of())));
+		assertEquals("searchByFamily", getMethodName(newRequest(null, Map.of("family", new String[] {"smith"}))));
+		assertEquals("searchByGiven", getMethodName(newRequest(null, Map.of("given", new String[] {"john"}))));
+		assertEquals("searchAll", getMethodName(newRequest(null, Map.of())));
+		assertEquals(4L, myIndex.getCachedResultCount());
+
+		// Requests with the same shape reuse the cached result of the search methods, while
+		// the read method is still tested every time
+		assertEquals("searchByFamily", getMethodName(newRequest(null, Map.of("family", new String[] {"jones"}))));
+		assertEquals("searchByGiven", getMethodName(newRequest(null, Map.of("given", new String[] {"jane"}))));
+		assertEquals("read", getMethodName(newRequest("Patient/456", Map.of())));
+		assertEquals("read", getMethodName(newRequest("Patient/456", Map.of("_pretty", new String[] {"true"}))));
+		assertEquals(5L, myIndex.getCachedResultCount());
+
+		// Only the read method supports an ID, and it doesn't accept search parameters
+		assertNull(myIndex.getMethod(newRequest("Patient/123", Map.of("family", new String[] {"smith"}))));
+		assertNull(myIndex.getMethod(newRequest("Patient/123/_history/2", Map.of())));
+		assertNull(myIndex.getMethod(newRequest(null, Map.of("birthdate", new String[] {"2000"}))));
+	}
+
+	@Test
+	public void testCachedResultsAreBounded() {
+		// Parameter names chosen by the client can't fill the cache up for good
+		for (int i = 0; i < MethodDispatchIndex.MAX_CACHED_RESULTS_PER_GROUP * 2; i++) {
+			assertNull(myIndex.getMethod(newRequest(null, Map.of("junk" + i, new String[] {"a"}))));
+		}
+		assertThat(myIndex.getCachedResultCount(), lessThanOrEqualTo((long) MethodDispatchIndex.MAX_CACHED_RESULTS_PER_GROUP));
+
+		// ..and shapes which are actually used still get cached and resolved correctly
+		assertEquals("searchByFamily", getMethodName(newRequest(null, Map.of("family", new String[] {"smith"}))));
+		assertEquals("searchByFamily", getMethodName(newRequest(null, Map.of("family", new String[] {"jones"}))));
+		assertEquals("searchAll", getMethodName(newRequest(null, Map.of())));
+	}
+
+	private String getMethodName(SystemRequestDetails theRequest) {
+		return myIndex.getMethod(theRequest).getMethod().getName();
+	}
+
+	private static SystemRequestDetails newRequest(String theId, Map<String, String[]> theParameters) {
+		SystemRequestDetails retVal = new SystemRequestDetails();
+		retVal.setResourceName("Patient");
+		retVal.setRequestType(RequestTypeEnum.GET);
+		if (theId != null) {
+			retVal.setId(new IdType(theId));
+		}
+		retVal.setParameters(new HashMap<>(theParameters));
+		return retVal;
+	}
+
+	public static class PatientResourceProvider implements IResourceProvider {
+
+		@Read
+		public Patient read(@IdParam IdType theId) {
+			return new Patient();
+		}
+
+		@Search
+		public List<Patient> searchAll() {
+			return List.of();
+		}
+
+		@Search
+		public List<Patient> searchByFamily(@RequiredParam(name = Patient.SP_FAMILY) StringParam theFamily) {
+			return List.of();
+		}
+
+		@Search
+		public List<Patient> searchByGiven(
+			@RequiredParam(name = Patient.SP_GIVEN) StringParam theGiven,
+			@OptionalParam(name = Patient.SP_FAMILY) StringParam theFamily) {
+			return List.of();
+		}
+
+		@Override
+		public Class<? extends IBaseResource> getResourceType() {
+			return Patient.class;
+		}
+	}
+}